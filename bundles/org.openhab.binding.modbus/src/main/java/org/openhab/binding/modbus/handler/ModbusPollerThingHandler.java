@@ -12,7 +12,9 @@
  */
 package org.openhab.binding.modbus.handler;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
@@ -41,7 +43,9 @@ import org.openhab.io.transport.modbus.ModbusFailureCallback;
 import org.openhab.io.transport.modbus.ModbusReadCallback;
 import org.openhab.io.transport.modbus.ModbusReadFunctionCode;
 import org.openhab.io.transport.modbus.ModbusReadRequestBlueprint;
+import org.openhab.io.transport.modbus.ModbusRegisterArray;
 import org.openhab.io.transport.modbus.PollTask;
+import org.openhab.io.transport.modbus.RegisterDecodePlan;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -69,6 +73,13 @@ public class ModbusPollerThingHandler extends BaseBridgeHandler {
 
         private volatile @Nullable AtomicStampedValue<PollResult> lastResult;
 
+        /**
+         * Decodes the values of all child things at once, compiled on the first result after the children have
+         * changed
+         */
+        private volatile @Nullable RegisterDecodePlan decodePlan;
+        private volatile Map<ModbusDataThingHandler, Integer> decodeSlots = new HashMap<>();
+
         public synchronized void handleResult(PollResult result) {
             // Ignore all incoming data and errors if configuration is not correct
             if (hasConfigurationError() || disposed) {
@@ -134,20 +145,63 @@ public class ModbusPollerThingHandler extends BaseBridgeHandler {
             AsyncModbusReadResult result = pollResult.result;
             @Nullable
             AsyncModbusFailure<ModbusReadRequestBlueprint> failure = pollResult.failure;
+            @Nullable
+            ModbusRegisterArray registers = result == null ? null : result.getRegisters().orElse(null);
+            @Nullable
+            RegisterDecodePlan plan = registers == null ? null : getDecodePlan();
+            if (plan != null && registers != null) {
+                plan.decode(registers);
+            }
             childCallbacks.forEach(handler -> {
                 if (result != null) {
-                    handler.onReadResult(result);
+                    @Nullable
+                    Integer slot = plan == null ? null : decodeSlots.get(handler);
+                    if (plan != null && registers != null && slot != null) {
+                        handler.onDecodedRegisters(result.getRequest(), registers, plan, slot);
+                    } else {
+                        handler.onReadResult(result);
+                    }
                 } else if (failure != null) {
                     handler.handleReadError(failure);
                 }
             });
         }
 
+        private RegisterDecodePlan getDecodePlan() {
+            RegisterDecodePlan plan = decodePlan;
+            if (plan == null) {
+                RegisterDecodePlan.Builder builder = new RegisterDecodePlan.Builder();
+                Map<ModbusDataThingHandler, Integer> slots = new HashMap<>();
+                childCallbacks.forEach(handler -> {
+                    int slot = handler.addToDecodePlan(builder);
+                    if (slot >= 0) {
+                        slots.put(handler, slot);
+                    }
+                });
+                decodeSlots = slots;
+                decodePlan = plan = builder.build();
+                logger.debug("Thing {} decodes the registers of {} child things with {}", thing.getUID(),
+                        slots.size(), plan);
+            }
+            return plan;
+        }
+
+        /**
+         * Compile the decode plan again on the next result, e.g. after the child things have changed.
+         *
+         * Children missing from the plan, or re-initialized since it was compiled, are notified without it.
+         */
+        public void resetDecodePlan() {
+            decodePlan = null;
+            decodeSlots = new HashMap<>();
+        }
+
         /**
          * Rest data caches
          */
         public void resetCache() {
             lastResult = null;
+            resetDecodePlan();
         }
     }
 
@@ -380,6 +434,7 @@ public class ModbusPollerThingHandler extends BaseBridgeHandler {
     public void childHandlerInitialized(ThingHandler childHandler, Thing childThing) {
         if (childHandler instanceof ModbusDataThingHandler) {
             this.childCallbacks.add((ModbusDataThingHandler) childHandler);
+            callbackDelegator.resetDecodePlan();
         }
     }
 
@@ -388,6 +443,7 @@ public class ModbusPollerThingHandler extends BaseBridgeHandler {
     public void childHandlerDisposed(ThingHandler childHandler, Thing childThing) {
         if (childHandler instanceof ModbusDataThingHandler) {
             this.childCallbacks.remove(childHandler);
+            callbackDelegator.resetDecodePlan();
         }
     }
 
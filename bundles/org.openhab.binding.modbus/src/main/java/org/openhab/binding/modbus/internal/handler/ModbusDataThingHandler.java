@@ -74,6 +74,7 @@ import org.openhab.io.transport.modbus.ModbusRegisterArray;
 import org.openhab.io.transport.modbus.ModbusWriteCoilRequestBlueprint;
 import org.openhab.io.transport.modbus.ModbusWriteRegisterRequestBlueprint;
 import org.openhab.io.transport.modbus.ModbusWriteRequestBlueprint;
+import org.openhab.io.transport.modbus.RegisterDecodePlan;
 import org.openhab.io.transport.modbus.exception.ModbusConnectionException;
 import org.openhab.io.transport.modbus.exception.ModbusTransportException;
 import org.openhab.io.transport.modbus.json.WriteRequestJsonUtilities;
@@ -147,6 +148,11 @@ public class ModbusDataThingHandler extends BaseThingHandler {
     private volatile Map<String, ChannelUID> channelCache = new HashMap<>();
     private volatile Map<ChannelUID, Long> channelLastUpdated = new HashMap<>(NUMER_OF_CHANNELS_HINT);
     private volatile Map<ChannelUID, State> channelLastState = new HashMap<>(NUMER_OF_CHANNELS_HINT);
+    /**
+     * Channel states of the value last decoded with the decode plan of the poller, reused while the registers of
+     * the value do not change
+     */
+    private volatile @Nullable Map<ChannelUID, State> lastDecodedStates;
 
     private volatile LocalDateTime lastStatusInfoUpdate = LocalDateTime.MIN;
     private volatile ThingStatusInfo statusInfo = new ThingStatusInfo(ThingStatus.UNKNOWN, ThingStatusDetail.NONE,
@@ -413,6 +419,20 @@ public class ModbusDataThingHandler extends BaseThingHandler {
         statusInfo = new ThingStatusInfo(ThingStatus.UNKNOWN, ThingStatusDetail.NONE, null);
         channelLastUpdated = new HashMap<>(NUMER_OF_CHANNELS_HINT);
         channelLastState = new HashMap<>(NUMER_OF_CHANNELS_HINT);
+        lastDecodedStates = null;
+    }
+
+    @Override
+    public synchronized void channelLinked(ChannelUID channelUID) {
+        // the states of newly linked channels are not cached
+        lastDecodedStates = null;
+        super.channelLinked(channelUID);
+    }
+
+    @Override
+    public synchronized void channelUnlinked(ChannelUID channelUID) {
+        lastDecodedStates = null;
+        super.channelUnlinked(channelUID);
     }
 
     @Override
@@ -681,7 +701,23 @@ public class ModbusDataThingHandler extends BaseThingHandler {
             return;
         }
         State numericState;
+        int extractIndex = getExtractIndex(readValueType);
+        numericState = ModbusBitUtilities.extractStateFromRegisters(registers, extractIndex, readValueType)
+                .map(state -> (State) state).orElse(UnDefType.UNDEF);
+        lastDecodedStates = null;
+        boolean boolValue = !numericState.equals(DecimalType.ZERO);
+        Map<ChannelUID, State> values = processUpdatedValue(numericState, boolValue);
+        logger.debug(
+                "Thing {} channels updated: {}. readValueType={}, readIndex={}, readSubIndex(or 0)={}, extractIndex={} -> numeric value {} and boolValue={}. Registers {} for request {}",
+                thing.getUID(), values, readValueType, readIndex, readSubIndex.orElse(0), extractIndex, numericState,
+                boolValue, registers, request);
+    }
 
+    /**
+     * Index of the value read by this thing, as with
+     * {@link ModbusBitUtilities#extractStateFromRegisters(ModbusRegisterArray, int, ValueType)}
+     */
+    private int getExtractIndex(ValueType readValueType) {
         // extractIndex:
         // e.g. with bit, extractIndex=4 means 5th bit (from right) ("10.4" -> 5th bit of register 10, "10.4" -> 5th bit
         // of register 10)
@@ -691,23 +727,83 @@ public class ModbusDataThingHandler extends BaseThingHandler {
         // with <16 bit types, this is the index of the N'th 1-bit/8-bit item. Each register has 16/2 items,
         // respectively.
         // with >=16 bit types, this is index of first register
-        int extractIndex;
         if (readValueType.getBits() >= 16) {
             // Invariant, checked in initialize
             assert readSubIndex.orElse(0) == 0;
-            extractIndex = readIndex.get() - pollStart;
+            return readIndex.get() - pollStart;
         } else {
             int subIndex = readSubIndex.orElse(0);
             int itemsPerRegister = 16 / readValueType.getBits();
-            extractIndex = (readIndex.get() - pollStart) * itemsPerRegister + subIndex;
+            return (readIndex.get() - pollStart) * itemsPerRegister + subIndex;
         }
-        numericState = ModbusBitUtilities.extractStateFromRegisters(registers, extractIndex, readValueType)
-                .map(state -> (State) state).orElse(UnDefType.UNDEF);
+    }
+
+    /**
+     * Add the value read by this thing to the decode plan of the poller
+     *
+     * @param builder decode plan of the poller
+     * @return slot of the value, or -1 if this thing does not read registers
+     */
+    public synchronized int addToDecodePlan(RegisterDecodePlan.Builder builder) {
+        ValueType readValueType = this.readValueType;
+        if (hasConfigurationError() || !isReadEnabled || readValueType == null || !readIndex.isPresent()) {
+            return -1;
+        }
+        ModbusReadFunctionCode functionCode = this.functionCode;
+        if (functionCode != ModbusReadFunctionCode.READ_INPUT_REGISTERS
+                && functionCode != ModbusReadFunctionCode.READ_MULTIPLE_REGISTERS) {
+            return -1;
+        }
+        int extractIndex = getExtractIndex(readValueType);
+        return extractIndex < 0 ? -1 : builder.add(extractIndex, readValueType);
+    }
+
+    /**
+     * Update the channels with the value decoded by the decode plan of the poller.
+     *
+     * When the registers of the value have not changed, the channel states of the previous value are used again, and
+     * the value is not transformed again.
+     *
+     * @param request request of the poll
+     * @param registers registers of the response
+     * @param plan decode plan of the poller, with the registers decoded
+     * @param slot slot of the value of this thing, see {@link #addToDecodePlan(RegisterDecodePlan.Builder)}
+     */
+    public synchronized void onDecodedRegisters(ModbusReadRequestBlueprint request, ModbusRegisterArray registers,
+            RegisterDecodePlan plan, int slot) {
+        if (hasConfigurationError()) {
+            return;
+        } else if (!isReadEnabled) {
+            return;
+        }
+        ValueType readValueType = this.readValueType;
+        if (readValueType == null) {
+            return;
+        }
+        if (plan.getValueType(slot) != readValueType || plan.getIndex(slot) != getExtractIndex(readValueType)) {
+            // re-initialized since the plan was compiled
+            onRegisters(request, registers);
+            return;
+        }
+        Map<ChannelUID, State> cachedStates = lastDecodedStates;
+        if (!plan.isChanged(slot) && cachedStates != null && readTransformation != null) {
+            Map<ChannelUID, State> states = new HashMap<>(cachedStates);
+            ChannelUID lastReadSuccessUID = getChannelUID(ModbusBindingConstantsInternal.CHANNEL_LAST_READ_SUCCESS);
+            if (isLinked(lastReadSuccessUID)) {
+                states.put(lastReadSuccessUID, new DateTimeType());
+            }
+            updateExpiredChannels(states);
+            logger.trace("Thing {} registers unchanged, channels updated with previous states: {}", thing.getUID(),
+                    states);
+            return;
+        }
+        State numericState = plan.getState(slot).map(state -> (State) state).orElse(UnDefType.UNDEF);
         boolean boolValue = !numericState.equals(DecimalType.ZERO);
         Map<ChannelUID, State> values = processUpdatedValue(numericState, boolValue);
+        lastDecodedStates = values;
         logger.debug(
-                "Thing {} channels updated: {}. readValueType={}, readIndex={}, readSubIndex(or 0)={}, extractIndex={} -> numeric value {} and boolValue={}. Registers {} for request {}",
-                thing.getUID(), values, readValueType, readIndex, readSubIndex.orElse(0), extractIndex, numericState,
+                "Thing {} channels updated: {}. readValueType={}, readIndex={}, readSubIndex(or 0)={}, slot={} -> numeric value {} and boolValue={}. Registers {} for request {}",
+                thing.getUID(), values, readValueType, readIndex, readSubIndex.orElse(0), slot, numericState,
                 boolValue, registers, request);
     }
 
@@ -60,6 +60,7 @@ public class ModbusTcpThingHandler
         poolConfiguration.setInterConnectDelayMillis(config.getTimeBetweenReconnectMillis());
         poolConfiguration.setInterTransactionDelayMillis(config.getTimeBetweenTransactionsMillis());
         poolConfiguration.setReconnectAfterMillis(config.getReconnectAfterMillis());
+        poolConfiguration.setMaxInFlightTransactions(config.getMaxInFlightTransactions());
     }
 
     @SuppressWarnings("null") // since Optional.map is always called with NonNull argument
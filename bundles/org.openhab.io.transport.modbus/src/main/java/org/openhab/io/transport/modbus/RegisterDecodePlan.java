@@ -0,0 +1,237 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.io.transport.modbus;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.io.transport.modbus.ModbusConstants.ValueType;
+
+/**
+ * Decodes several values from the registers of a poll response, remembering which values have changed since the
+ * previous response.
+ *
+ * The plan is compiled once from the value types and indices of the values, see {@link Builder}. Each value is given a
+ * slot. {@link #decode(ModbusRegisterArray)} decodes the values into primitive slots, and only if the registers of the
+ * value differ from the previous response. {@link #getState(int)} returns the same state as
+ * {@link ModbusBitUtilities#extractStateFromRegisters(ModbusRegisterArray, int, ValueType)} would with the index and
+ * value type of the slot.
+ *
+ * This class is not thread safe.
+ *
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class RegisterDecodePlan {
+
+    /**
+     * Collects the values to decode
+     */
+    public static class Builder {
+        private final List<Integer> indices = new ArrayList<>();
+        private final List<ValueType> types = new ArrayList<>();
+
+        /**
+         * Add a value to decode
+         *
+         * @param index index of the value, as with
+         *            {@link ModbusBitUtilities#extractStateFromRegisters(ModbusRegisterArray, int, ValueType)}
+         * @param type value type
+         * @return slot of the value
+         */
+        public int add(int index, ValueType type) {
+            if (index < 0) {
+                throw new IllegalArgumentException("Negative index " + index);
+            }
+            indices.add(index);
+            types.add(type);
+            return indices.size() - 1;
+        }
+
+        public RegisterDecodePlan build() {
+            return new RegisterDecodePlan(indices.stream().mapToInt(Integer::intValue).toArray(),
+                    types.toArray(new ValueType[0]));
+        }
+    }
+
+    private final int[] indices;
+    private final ValueType[] types;
+    private final int[] firstRegisters;
+    private final int[] registerCounts;
+    private final long[] values;
+    private final boolean[] changed;
+    private final boolean[] inBounds;
+    private int[] words = new int[0];
+    private int[] previousWords = new int[0];
+    private boolean decoded;
+
+    private RegisterDecodePlan(int[] indices, ValueType[] types) {
+        this.indices = indices;
+        this.types = types;
+        int size = indices.length;
+        firstRegisters = new int[size];
+        registerCounts = new int[size];
+        values = new long[size];
+        changed = new boolean[size];
+        inBounds = new boolean[size];
+        for (int slot = 0; slot < size; slot++) {
+            int bits = types[slot].getBits();
+            if (bits >= 16) {
+                firstRegisters[slot] = indices[slot];
+                registerCounts[slot] = bits / 16;
+            } else {
+                firstRegisters[slot] = indices[slot] * bits / 16;
+                registerCounts[slot] = 1;
+            }
+        }
+    }
+
+    /**
+     * @return number of slots
+     */
+    public int size() {
+        return indices.length;
+    }
+
+    public int getIndex(int slot) {
+        return indices[slot];
+    }
+
+    public ValueType getValueType(int slot) {
+        return types[slot];
+    }
+
+    /**
+     * Decode the values whose registers have changed since the previous call.
+     *
+     * @param registers registers of the response
+     */
+    public void decode(ModbusRegisterArray registers) {
+        int size = registers.size();
+        int[] current = previousWords.length == size ? previousWords : new int[size];
+        for (int i = 0; i < size; i++) {
+            current[i] = registers.getRegister(i).toUnsignedShort();
+        }
+        boolean comparable = decoded && words.length == size;
+        for (int slot = 0; slot < indices.length; slot++) {
+            int first = firstRegisters[slot];
+            int end = first + registerCounts[slot];
+            inBounds[slot] = end <= size;
+            if (!inBounds[slot]) {
+                changed[slot] = true;
+                continue;
+            }
+            changed[slot] = !comparable || !Arrays.equals(words, first, end, current, first, end);
+            if (changed[slot]) {
+                values[slot] = decodeSlot(current, slot);
+            }
+        }
+        previousWords = words;
+        words = current;
+        decoded = true;
+    }
+
+    private long decodeSlot(int[] words, int slot) {
+        int index = indices[slot];
+        switch (types[slot]) {
+            case BIT:
+                return (words[index / 16] >> (index % 16)) & 1;
+            case INT8:
+                return (byte) (words[index / 2] >> (8 * (index % 2)));
+            case UINT8:
+                return (words[index / 2] >> (8 * (index % 2))) & 0xff;
+            case INT16:
+                return (short) words[index];
+            case UINT16:
+                return words[index];
+            case INT32:
+            case FLOAT32:
+                return (words[index] << 16) | words[index + 1];
+            case UINT32:
+                return ((long) words[index] << 16) | words[index + 1];
+            case INT32_SWAP:
+            case FLOAT32_SWAP:
+                return (words[index + 1] << 16) | words[index];
+            case UINT32_SWAP:
+                return ((long) words[index + 1] << 16) | words[index];
+            case INT64:
+            case UINT64:
+                return ((long) words[index] << 48) | ((long) words[index + 1] << 32) | ((long) words[index + 2] << 16)
+                        | words[index + 3];
+            case INT64_SWAP:
+            case UINT64_SWAP:
+                return ((long) words[index + 3] << 48) | ((long) words[index + 2] << 32)
+                        | ((long) words[index + 1] << 16) | words[index];
+            default:
+                throw new IllegalArgumentException(types[slot].getConfigValue());
+        }
+    }
+
+    /**
+     * Whether the registers of the slot changed in the last {@link #decode(ModbusRegisterArray)}. Slots are always
+     * changed on the first decode, and when the number of registers changes.
+     *
+     * @param slot slot to query
+     * @return whether the value of the slot might have changed
+     */
+    public boolean isChanged(int slot) {
+        return changed[slot];
+    }
+
+    /**
+     * Get the decoded value of the slot as state
+     *
+     * @param slot slot to query
+     * @return number representation of the value. Empty optional is returned with NaN and infinity floating point
+     *         values
+     * @throws IllegalArgumentException when the slot is out of bounds of the decoded registers
+     * @throws IllegalStateException when nothing has been decoded yet
+     */
+    public Optional<DecimalType> getState(int slot) {
+        if (!decoded) {
+            throw new IllegalStateException("No registers decoded yet");
+        }
+        if (!inBounds[slot]) {
+            throw new IllegalArgumentException(
+                    String.format("Index=%d with type=%s is out-of-bounds given registers of size %d", indices[slot],
+                            types[slot], words.length));
+        }
+        long value = values[slot];
+        switch (types[slot]) {
+            case FLOAT32:
+            case FLOAT32_SWAP: {
+                float floatValue = Float.intBitsToFloat((int) value);
+                if (Float.isNaN(floatValue) || Float.isInfinite(floatValue)) {
+                    return Optional.empty();
+                }
+                return Optional.of(new DecimalType(floatValue));
+            }
+            case UINT64:
+            case UINT64_SWAP:
+                return Optional.of(new DecimalType(
+                        value >= 0 ? BigDecimal.valueOf(value) : new BigDecimal(Long.toUnsignedString(value))));
+            default:
+                return Optional.of(new DecimalType(value));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RegisterDecodePlan [slots=" + indices.length + "]";
+    }
+}
@@ -0,0 +1,304 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.io.transport.modbus.internal;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes the operations of one endpoint one at a time, keeping the delays between the transactions without blocking
+ * threads of the executor.
+ *
+ * Operations are queued, and the next operation is handed to the executor only when the previous one has finished and
+ * the endpoint is ready again, as told by the <code>millisUntilReady</code> supplier. When the endpoint is not ready
+ * yet, a timer of the executor is armed instead of sleeping.
+ *
+ * Queued writes are executed before all queued polls. Polls are ordered by their deadline, and a poller can have only
+ * one queued poll: submitting a poll of a poller whose previous poll is still queued does not queue another one. This
+ * way all pollers get their turn even if the endpoint cannot keep up with the poll periods.
+ *
+ * When the endpoint is not used anymore, the scheduler can be closed once it has executed the queued operations, see
+ * {@link #closeWhenIdle(Runnable)}. Until then it is the only scheduler of the endpoint, so operations of the endpoint
+ * are never executed by two schedulers at once.
+ *
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class EndpointScheduler {
+
+    private static final Comparator<Entry> ORDER = Comparator.<Entry> comparingInt(entry -> entry.write ? 0 : 1)
+            .thenComparingLong(entry -> entry.deadlineMillis).thenComparingLong(entry -> entry.sequence);
+
+    private final Logger logger = LoggerFactory.getLogger(EndpointScheduler.class);
+
+    private final String name;
+    private final ScheduledExecutorService executor;
+    private final LongSupplier millisUntilReady;
+
+    /* guarded by this */
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>(ORDER);
+    /* guarded by this */
+    private final Map<Object, Entry> queuedPolls = new HashMap<>();
+    /* guarded by this */
+    private long nextSequence;
+    /* guarded by this */
+    private boolean running;
+    /* guarded by this */
+    private @Nullable ScheduledFuture<?> timer;
+    /* guarded by this */
+    private boolean closed;
+    /* guarded by this */
+    private @Nullable Runnable onClosedWhenIdle;
+
+    /**
+     * Queued operation
+     */
+    private static class Entry {
+        private final @Nullable Object poller;
+        private final boolean write;
+        private final long deadlineMillis;
+        private final long sequence;
+        private final Runnable operation;
+        private final CompletableFuture<@Nullable Void> future = new CompletableFuture<>();
+
+        Entry(@Nullable Object poller, boolean write, long deadlineMillis, long sequence, Runnable operation) {
+            this.poller = poller;
+            this.write = write;
+            this.deadlineMillis = deadlineMillis;
+            this.sequence = sequence;
+            this.operation = operation;
+        }
+    }
+
+    /**
+     * @param name name of the endpoint, used in log messages
+     * @param executor executor running the operations and the timers
+     * @param millisUntilReady milliseconds until the endpoint is ready for the next transaction, zero or negative if
+     *            ready
+     */
+    public EndpointScheduler(String name, ScheduledExecutorService executor, LongSupplier millisUntilReady) {
+        this.name = name;
+        this.executor = executor;
+        this.millisUntilReady = millisUntilReady;
+    }
+
+    /**
+     * Queue a write, to be executed before all queued polls
+     *
+     * @param operation operation to execute
+     * @return future completed when the operation has been executed
+     */
+    public CompletableFuture<@Nullable Void> submitWrite(Runnable operation) {
+        return submit(null, true, System.currentTimeMillis(), operation);
+    }
+
+    /**
+     * Queue a poll.
+     *
+     * @param poller identifies the poller, or <code>null</code> for a one-off poll
+     * @param deadlineMillis time (as in {@link System#currentTimeMillis()}) by which the poll should be executed
+     * @param operation operation to execute
+     * @return future completed when the operation has been executed. If the poller has a queued poll already, its
+     *         future is returned.
+     */
+    public CompletableFuture<@Nullable Void> submitPoll(@Nullable Object poller, long deadlineMillis,
+            Runnable operation) {
+        return submit(poller, false, deadlineMillis, operation);
+    }
+
+    private synchronized CompletableFuture<@Nullable Void> submit(@Nullable Object poller, boolean write,
+            long deadlineMillis, Runnable operation) {
+        if (closed) {
+            throw new RejectedExecutionException("Scheduler of " + name + " is closed");
+        }
+        if (poller != null) {
+            Entry queued = queuedPolls.get(poller);
+            if (queued != null && !queued.future.isDone()) {
+                logger.debug("Previous poll of {} is still queued for {}, not queueing another one", poller, name);
+                return queued.future;
+            }
+        }
+        Entry entry = new Entry(poller, write, deadlineMillis, nextSequence++, operation);
+        queue.add(entry);
+        if (poller != null) {
+            queuedPolls.put(poller, entry);
+        }
+        dispatch();
+        return entry.future;
+    }
+
+    /**
+     * Remove the queued poll of the poller, if any
+     *
+     * @param poller poller whose poll to remove
+     */
+    public void cancel(Object poller) {
+        synchronized (this) {
+            Entry entry = queuedPolls.remove(poller);
+            if (entry != null) {
+                queue.remove(entry);
+                entry.future.cancel(false);
+            }
+        }
+        closeIfIdle();
+    }
+
+    /**
+     * Hand the next operation to the executor, or arm the timer if the endpoint is not ready yet.
+     */
+    private synchronized void dispatch() {
+        if (closed || running || timer != null) {
+            return;
+        }
+        Entry entry;
+        while ((entry = queue.peek()) != null && entry.future.isDone()) {
+            // canceled by the caller
+            remove(queue.poll());
+        }
+        if (entry == null) {
+            return;
+        }
+        long delay = millisUntilReady.getAsLong();
+        try {
+            if (delay > 0) {
+                timer = executor.schedule(this::timerExpired, delay, TimeUnit.MILLISECONDS);
+                return;
+            }
+            Entry next = queue.poll();
+            remove(next);
+            running = true;
+            executor.execute(() -> run(next));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Executor rejected the operations of {}, aborting {} queued operations", name, queue.size());
+            running = false;
+            close();
+        }
+    }
+
+    private void remove(Entry entry) {
+        if (entry.poller != null) {
+            queuedPolls.remove(entry.poller, entry);
+        }
+    }
+
+    private void timerExpired() {
+        synchronized (this) {
+            timer = null;
+            dispatch();
+        }
+        closeIfIdle();
+    }
+
+    private void run(Entry entry) {
+        try {
+            if (!entry.future.isDone()) {
+                entry.operation.run();
+                entry.future.complete(null);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Operation of {} failed unexpectedly", name, e);
+            entry.future.completeExceptionally(e);
+        } finally {
+            synchronized (this) {
+                running = false;
+                dispatch();
+            }
+            closeIfIdle();
+        }
+    }
+
+    /**
+     * @return number of queued operations, not including the operation being executed
+     */
+    public synchronized int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Close the scheduler as soon as it has executed the queued operations and the running one, unlike
+     * {@link #close()}, which cancels them. The request is withdrawn by {@link #retain()}.
+     *
+     * @param onClosed called when the scheduler has been closed, without holding the lock of the scheduler
+     */
+    public void closeWhenIdle(Runnable onClosed) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            onClosedWhenIdle = onClosed;
+        }
+        closeIfIdle();
+    }
+
+    /**
+     * Withdraw the request to close the scheduler when it is idle, as the endpoint is used again
+     *
+     * @return <code>false</code> if the scheduler is closed already and cannot be used anymore
+     */
+    public synchronized boolean retain() {
+        onClosedWhenIdle = null;
+        return !closed;
+    }
+
+    /**
+     * Close the scheduler if it has been requested by {@link #closeWhenIdle(Runnable)} and nothing is left to execute.
+     * Must not be called while holding the lock of the scheduler.
+     */
+    private void closeIfIdle() {
+        Runnable onClosed;
+        synchronized (this) {
+            onClosed = onClosedWhenIdle;
+            if (onClosed == null || closed || running || timer != null
+                    || !queue.stream().allMatch(entry -> entry.future.isDone())) {
+                return;
+            }
+            logger.debug("Closing the idle scheduler of {}", name);
+            close();
+        }
+        onClosed.run();
+    }
+
+    /**
+     * Stop executing operations, and cancel the queued ones
+     */
+    public synchronized void close() {
+        closed = true;
+        onClosedWhenIdle = null;
+        ScheduledFuture<?> localTimer = timer;
+        if (localTimer != null) {
+            localTimer.cancel(false);
+            timer = null;
+        }
+        queue.forEach(entry -> entry.future.cancel(false));
+        queue.clear();
+        queuedPolls.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "EndpointScheduler [name=" + name + ", queued=" + queue.size() + ", running=" + running + "]";
+    }
+}
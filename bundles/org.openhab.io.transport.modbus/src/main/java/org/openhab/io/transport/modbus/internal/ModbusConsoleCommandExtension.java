@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.io.transport.modbus.internal;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.core.io.console.Console;
+import org.openhab.core.io.console.extensions.AbstractConsoleCommandExtension;
+import org.openhab.core.io.console.extensions.ConsoleCommandExtension;
+import org.openhab.io.transport.modbus.metrics.EndpointStatistics;
+import org.openhab.io.transport.modbus.metrics.ModbusMetrics;
+import org.openhab.io.transport.modbus.metrics.OperationStatistics;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+
+/**
+ * Console commands for the Modbus transport
+ *
+ * @author agent - Initial contribution
+ */
+@Component(service = ConsoleCommandExtension.class)
+@NonNullByDefault
+public class ModbusConsoleCommandExtension extends AbstractConsoleCommandExtension {
+    private static final String SUBCMD_METRICS = "metrics";
+    private static final String SUBCMD_RESET_METRICS = "resetmetrics";
+
+    private final ModbusMetrics metrics;
+
+    @Activate
+    public ModbusConsoleCommandExtension(final @Reference ModbusMetrics metrics) {
+        super("modbus", "Interact with the Modbus transport.");
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void execute(String[] args, Console console) {
+        if (args.length == 1 && SUBCMD_METRICS.equals(args[0])) {
+            printMetrics(console);
+        } else if (args.length == 1 && SUBCMD_RESET_METRICS.equals(args[0])) {
+            metrics.resetStatistics();
+            console.println("Modbus metrics cleared.");
+        } else {
+            printUsage(console);
+        }
+    }
+
+    @Override
+    public List<String> getUsages() {
+        return List.of(
+                buildCommandUsage(SUBCMD_METRICS,
+                        "lists the connection, queue and latency statistics of the endpoints per function code"),
+                buildCommandUsage(SUBCMD_RESET_METRICS, "clears the collected statistics"));
+    }
+
+    private void printMetrics(Console console) {
+        List<EndpointStatistics> endpoints = new ArrayList<>(metrics.getEndpointStatistics());
+        if (endpoints.isEmpty()) {
+            console.println("No Modbus endpoints have been used yet.");
+            return;
+        }
+        long windowSeconds = TimeUnit.MILLISECONDS.toSeconds(metrics.getWindowMillis());
+        console.println(String.format(
+                "Counters are totals since the metrics were last cleared, latencies and utilization cover the last %d s.",
+                windowSeconds));
+        List<OperationStatistics> operations = metrics.getOperationStatistics();
+        endpoints.sort(Comparator.comparing(endpoint -> endpoint.getEndpoint().toString()));
+        for (EndpointStatistics endpoint : endpoints) {
+            console.println(endpoint.toString());
+            for (OperationStatistics operation : operations.stream()
+                    .filter(operation -> operation.getEndpoint().equals(endpoint.getEndpoint()))
+                    .sorted(Comparator.comparing(OperationStatistics::getFunctionCode)).collect(Collectors.toList())) {
+                console.println(String.format("  %s", operation.getFunctionCode()));
+                console.println(
+                        String.format("    totals:              %d operations, %d failed, %d retries, %d timeouts",
+                                operation.getOperations(), operation.getFailures(), operation.getRetries(),
+                                operation.getTimeouts()));
+                console.println(String.format("    last %d s", windowSeconds));
+                console.println("      connection wait:   " + operation.getConnectionWait());
+                console.println("      transaction:       " + operation.getTransaction());
+                console.println("      callback:          " + operation.getCallback());
+                console.println("      total:             " + operation.getTotal());
+            }
+        }
+    }
+}
@@ -13,7 +13,11 @@
 package org.openhab.io.transport.modbus.internal;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -37,11 +41,13 @@ import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.jetty.util.ConcurrentHashSet;
 import org.openhab.core.common.ThreadPoolManager;
 import org.openhab.io.transport.modbus.AsyncModbusFailure;
+import org.openhab.io.transport.modbus.AsyncModbusReadResult;
 import org.openhab.io.transport.modbus.AsyncModbusWriteResult;
 import org.openhab.io.transport.modbus.ModbusCommunicationInterface;
 import org.openhab.io.transport.modbus.ModbusFailureCallback;
 import org.openhab.io.transport.modbus.ModbusManager;
 import org.openhab.io.transport.modbus.ModbusReadCallback;
+import org.openhab.io.transport.modbus.ModbusReadFunctionCode;
 import org.openhab.io.transport.modbus.ModbusReadRequestBlueprint;
 import org.openhab.io.transport.modbus.ModbusResultCallback;
 import org.openhab.io.transport.modbus.ModbusWriteCallback;
@@ -59,7 +65,11 @@ import org.openhab.io.transport.modbus.exception.ModbusConnectionException;
 import org.openhab.io.transport.modbus.exception.ModbusUnexpectedResponseFunctionCodeException;
 import org.openhab.io.transport.modbus.exception.ModbusUnexpectedResponseSizeException;
 import org.openhab.io.transport.modbus.exception.ModbusUnexpectedTransactionIdException;
+import org.openhab.io.transport.modbus.internal.ReadRequestPlanner.CoalescedRead;
 import org.openhab.io.transport.modbus.internal.pooling.ModbusSlaveConnectionFactoryImpl;
+import org.openhab.io.transport.modbus.metrics.EndpointStatistics;
+import org.openhab.io.transport.modbus.metrics.ModbusMetrics;
+import org.openhab.io.transport.modbus.metrics.OperationStatistics;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Deactivate;
@@ -71,6 +81,7 @@ import net.wimpi.modbus.ModbusException;
 import net.wimpi.modbus.ModbusIOException;
 import net.wimpi.modbus.ModbusSlaveException;
 import net.wimpi.modbus.io.ModbusTransaction;
+import net.wimpi.modbus.msg.ExceptionResponse;
 import net.wimpi.modbus.msg.ModbusRequest;
 import net.wimpi.modbus.msg.ModbusResponse;
 import net.wimpi.modbus.net.ModbusSlaveConnection;
@@ -82,11 +93,16 @@ import net.wimpi.modbus.net.ModbusSlaveConnection;
  * important with serial slaves but practice has shown that even many tcp slaves have limited
  * capability to handle many connections at the same time
  *
+ * The operations of an endpoint are queued to its {@link EndpointScheduler}, which waits for the delays between the
+ * transactions with timers instead of sleeping in the threads of the thread pool.
+ *
+ * The timings of the operations are collected per endpoint and function code, and published as {@link ModbusMetrics}.
+ *
  * @author Sami Salonen - Initial contribution
  */
-@Component(service = ModbusManager.class, configurationPid = "transport.modbus")
+@Component(service = { ModbusManager.class, ModbusMetrics.class }, configurationPid = "transport.modbus")
 @NonNullByDefault
-public class ModbusManagerImpl implements ModbusManager {
+public class ModbusManagerImpl implements ModbusManager, ModbusMetrics {
 
     static class PollTaskUnregistered extends Exception {
         public PollTaskUnregistered(String msg) {
@@ -96,7 +112,6 @@ public class ModbusManagerImpl implements ModbusManager {
         private static final long serialVersionUID = 6939730579178506885L;
     }
 
-    @FunctionalInterface
     private interface ModbusOperation<T> {
 
         /**
@@ -120,6 +135,46 @@ public class ModbusManagerImpl implements ModbusManager {
         public void accept(AggregateStopWatch timer, T task, ModbusSlaveConnection connection)
                 throws ModbusException, IIOException, ModbusUnexpectedTransactionIdException,
                 ModbusUnexpectedResponseFunctionCodeException, ModbusUnexpectedResponseSizeException;
+
+        /**
+         * Execute the operation using a pipelined connection, see {@link ModbusTCPPipeline}.
+         *
+         * Errors should be raised as with {@link #accept(AggregateStopWatch, Object, ModbusSlaveConnection)}.
+         *
+         * @param timer aggregate stop watch for performance profiling
+         * @param task task to execute
+         * @param pipeline pipelined connection to use
+         *
+         * @throws IOException on I/O errors, including timeouts
+         * @throws InterruptedException when interrupted while waiting for the response
+         */
+        public void acceptPipelined(AggregateStopWatch timer, T task, ModbusTCPPipeline pipeline)
+                throws ModbusException, IOException, InterruptedException, ModbusUnexpectedTransactionIdException,
+                ModbusUnexpectedResponseFunctionCodeException, ModbusUnexpectedResponseSizeException;
+    }
+
+    /**
+     * Execute the request using the pipelined connection
+     *
+     * @param timer aggregate stop watch for performance profiling
+     * @param pipeline pipelined connection to use
+     * @param libRequest modbus request
+     * @return the response
+     * @throws ModbusSlaveException when the slave responded with an exception response
+     */
+    private ModbusResponse executePipelined(AggregateStopWatch timer, ModbusTCPPipeline pipeline,
+            ModbusRequest libRequest) throws ModbusSlaveException, IOException, InterruptedException {
+        ModbusResponse response;
+        timer.transaction.resume();
+        try {
+            response = pipeline.execute(libRequest);
+        } finally {
+            timer.transaction.suspend();
+        }
+        if (response instanceof ExceptionResponse) {
+            throw new ModbusSlaveException(((ExceptionResponse) response).getExceptionCode());
+        }
+        return response;
     }
 
     /**
@@ -215,6 +270,25 @@ public class ModbusManagerImpl implements ModbusManager {
             timer.callback
                     .timeRunnable(() -> ModbusLibraryWrapper.invokeCallbackWithResponse(request, callback, response));
         }
+
+        @Override
+        public void acceptPipelined(AggregateStopWatch timer, PollTask task, ModbusTCPPipeline pipeline)
+                throws ModbusException, IOException, InterruptedException, ModbusUnexpectedTransactionIdException,
+                ModbusUnexpectedResponseFunctionCodeException, ModbusUnexpectedResponseSizeException {
+            ModbusReadRequestBlueprint request = task.getRequest();
+            ModbusReadCallback callback = task.getResultCallback();
+            String operationId = timer.operationId;
+
+            ModbusRequest libRequest = ModbusLibraryWrapper.createRequest(request);
+            ModbusResponse response = executePipelined(timer, pipeline, libRequest);
+            logger.trace("Pipelined response for read request (FC={}, transaction ID={}): {} [operation ID {}]",
+                    response.getFunctionCode(), response.getTransactionID(), response.getHexMessage(), operationId);
+            checkTransactionId(response, libRequest, operationId);
+            checkFunctionCode(response, libRequest, operationId);
+            checkResponseSize(response, request, operationId);
+            timer.callback
+                    .timeRunnable(() -> ModbusLibraryWrapper.invokeCallbackWithResponse(request, callback, response));
+        }
     }
 
     /**
@@ -252,6 +326,25 @@ public class ModbusManagerImpl implements ModbusManager {
             timer.callback.timeRunnable(
                     () -> invokeCallbackWithResponse(request, callback, new ModbusResponseImpl(response)));
         }
+
+        @Override
+        public void acceptPipelined(AggregateStopWatch timer, WriteTask task, ModbusTCPPipeline pipeline)
+                throws ModbusException, IOException, InterruptedException, ModbusUnexpectedTransactionIdException,
+                ModbusUnexpectedResponseFunctionCodeException {
+            ModbusWriteRequestBlueprint request = task.getRequest();
+            @Nullable
+            ModbusWriteCallback callback = task.getResultCallback();
+            String operationId = timer.operationId;
+
+            ModbusRequest libRequest = ModbusLibraryWrapper.createRequest(request);
+            ModbusResponse response = executePipelined(timer, pipeline, libRequest);
+            logger.trace("Pipelined response for write request (FC={}, transaction ID={}): {} [operation ID {}]",
+                    response.getFunctionCode(), response.getTransactionID(), response.getHexMessage(), operationId);
+            checkTransactionId(response, libRequest, operationId);
+            checkFunctionCode(response, libRequest, operationId);
+            timer.callback.timeRunnable(
+                    () -> invokeCallbackWithResponse(request, callback, new ModbusResponseImpl(response)));
+        }
     }
 
     private final Logger logger = LoggerFactory.getLogger(ModbusManagerImpl.class);
@@ -294,6 +387,23 @@ public class ModbusManagerImpl implements ModbusManager {
     private static final long WARN_QUEUE_SIZE = 500;
     private static final long MONITOR_QUEUE_INTERVAL_MILLIS = 10000;
 
+    /**
+     * Configuration property enabling the coalescing of regular polls, see {@link CoalescedPollGroup}
+     */
+    private static final String CONFIG_READ_COALESCING = "readCoalescing";
+
+    /**
+     * Configuration property for the maximum number of unrequested registers (or bits) read in order to coalesce two
+     * regular polls
+     */
+    private static final String CONFIG_READ_COALESCING_MAX_GAP = "readCoalescingMaxGap";
+
+    /**
+     * Rolling window of the latency metrics, see {@link ModbusMetrics}
+     */
+    private static final long METRICS_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final int METRICS_WINDOW_SLICES = 10;
+
     private final PollOperation pollOperation = new PollOperation();
     private final WriteOperation writeOperation = new WriteOperation();
 
@@ -318,6 +428,138 @@ public class ModbusManagerImpl implements ModbusManager {
     private volatile @Nullable ScheduledExecutorService scheduledThreadPoolExecutor;
     private volatile @Nullable ScheduledFuture<?> monitorFuture;
     private volatile Set<ModbusCommunicationInterfaceImpl> communicationInterfaces = new ConcurrentHashSet<>();
+    private volatile Map<ModbusSlaveEndpoint, ModbusTCPPipeline> pipelines = new ConcurrentHashMap<>();
+    private volatile Map<ModbusSlaveEndpoint, EndpointScheduler> endpointSchedulers = new ConcurrentHashMap<>();
+    private volatile Map<PollGroupKey, CoalescedPollGroup> pollGroups = new ConcurrentHashMap<>();
+    private volatile Map<PollTask, CoalescedPollGroup> pollGroupsByTask = new ConcurrentHashMap<>();
+    private volatile Map<ModbusSlaveEndpoint, Map<String, OperationMetrics>> operationMetrics =
+            new ConcurrentHashMap<>();
+    private volatile boolean readCoalescing;
+    private volatile int readCoalescingMaxGap;
+
+    /**
+     * Regular polls which are coalesced with each other: same endpoint, unit ID, function code and poll period
+     */
+    private static class PollGroupKey {
+        private final ModbusSlaveEndpoint endpoint;
+        private final int unitId;
+        private final ModbusReadFunctionCode functionCode;
+        private final long pollPeriodMillis;
+
+        PollGroupKey(ModbusSlaveEndpoint endpoint, ModbusReadRequestBlueprint request, long pollPeriodMillis) {
+            this.endpoint = endpoint;
+            this.unitId = request.getUnitID();
+            this.functionCode = request.getFunctionCode();
+            this.pollPeriodMillis = pollPeriodMillis;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(endpoint, unitId, functionCode, pollPeriodMillis);
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof PollGroupKey)) {
+                return false;
+            }
+            PollGroupKey other = (PollGroupKey) obj;
+            return endpoint.equals(other.endpoint) && unitId == other.unitId && functionCode == other.functionCode
+                    && pollPeriodMillis == other.pollPeriodMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "PollGroupKey [endpoint=" + endpoint + ", unitId=" + unitId + ", functionCode=" + functionCode
+                    + ", pollPeriodMillis=" + pollPeriodMillis + "]";
+        }
+    }
+
+    /**
+     * Group of regular polls which are executed together, using as few requests as possible.
+     *
+     * The group has one scheduled future, which is shared by all its poll tasks in {@link #scheduledPollTasks}. Every
+     * execution runs the requests planned by {@link ReadRequestPlanner} and hands each poll task its part of the
+     * response, or the failure of the request covering it.
+     */
+    private class CoalescedPollGroup {
+        private final PollGroupKey key;
+        private final Set<PollTask> members = new ConcurrentHashSet<>();
+        private volatile List<CoalescedRead> plan = Collections.emptyList();
+        private volatile @Nullable ScheduledFuture<?> future;
+
+        CoalescedPollGroup(PollGroupKey key) {
+            this.key = key;
+        }
+
+        void add(PollTask task) {
+            members.add(task);
+            replan();
+        }
+
+        void remove(PollTask task) {
+            members.remove(task);
+            replan();
+        }
+
+        boolean isEmpty() {
+            return members.isEmpty();
+        }
+
+        private void replan() {
+            plan = ReadRequestPlanner.plan(members, readCoalescingMaxGap);
+            logger.debug("Regular polls of {} are now executed with {} requests: {}", key, plan.size(), plan);
+        }
+
+        void execute(ScheduledExecutorService executor) {
+            for (CoalescedRead read : plan) {
+                BasicPollTask task = new BasicPollTask(key.endpoint, read.getRequest(),
+                        result -> handleResult(read, result), failure -> handleFailure(read, failure));
+                // registration of the members is checked when dispatching the result
+                Runnable operation = () -> {
+                    if (read.getMembers().stream().anyMatch(scheduledPollTasks::containsKey)) {
+                        executeOperation(task, true, pollOperation);
+                    }
+                };
+                EndpointScheduler scheduler = getScheduler(executor, key.endpoint);
+                if (scheduler == null) {
+                    operation.run();
+                } else {
+                    scheduler.submitPoll(read, System.currentTimeMillis() + key.pollPeriodMillis, operation);
+                }
+            }
+        }
+
+        private void handleResult(CoalescedRead read, AsyncModbusReadResult result) {
+            for (PollTask member : read.getMembers()) {
+                if (!scheduledPollTasks.containsKey(member)) {
+                    continue;
+                }
+                try {
+                    member.getResultCallback().handle(ReadRequestPlanner.slice(result, member.getRequest()));
+                } catch (RuntimeException e) {
+                    logger.warn("Result callback of coalesced poll task {} failed", member, e);
+                }
+            }
+        }
+
+        private void handleFailure(CoalescedRead read, AsyncModbusFailure<ModbusReadRequestBlueprint> failure) {
+            for (PollTask member : read.getMembers()) {
+                if (!scheduledPollTasks.containsKey(member)) {
+                    continue;
+                }
+                try {
+                    member.getFailureCallback()
+                            .handle(new AsyncModbusFailure<>(member.getRequest(), failure.getCause()));
+                } catch (RuntimeException e) {
+                    logger.warn("Failure callback of coalesced poll task {} failed", member, e);
+                }
+            }
+        }
+    }
 
     private void constructConnectionPool() {
         ModbusSlaveConnectionFactoryImpl connectionFactory = new ModbusSlaveConnectionFactoryImpl();
@@ -440,12 +682,14 @@ public class ModbusManagerImpl implements ModbusManager {
      * @param operationId id appened to log messages for identifying the operation
      * @param oneOffTask whether this is one-off, or execution of previously scheduled poll
      * @param task task representing the read or write operation
+     * @param metrics metrics of the operation, recording the time to acquire the connection
      * @return {@link ModbusSlaveConnection} to the endpoint as specified by the task, or empty {@link Optional} when
      *         connection cannot be established
      * @throws PollTaskUnregistered
      */
     private <R, C extends ModbusResultCallback, F extends ModbusFailureCallback<R>, T extends TaskWithEndpoint<R, C, F>> Optional<ModbusSlaveConnection> getConnection(
-            AggregateStopWatch timer, boolean oneOffTask, @NonNull T task) throws PollTaskUnregistered {
+            AggregateStopWatch timer, boolean oneOffTask, @NonNull T task, OperationMetrics metrics)
+            throws PollTaskUnregistered {
         KeyedObjectPool<ModbusSlaveEndpoint, ModbusSlaveConnection> connectionPool = this.connectionPool;
         if (connectionPool == null) {
             return Optional.empty();
@@ -460,7 +704,9 @@ public class ModbusManagerImpl implements ModbusManager {
         ModbusSlaveEndpoint endpoint = task.getEndpoint();
 
         R request = task.getRequest();
+        long connectionMillisBefore = timer.connection.getTotalTimeMillis();
         Optional<ModbusSlaveConnection> connection = timer.connection.timeSupplier(() -> borrowConnection(endpoint));
+        metrics.recordConnectionWait(timer.connection.getTotalTimeMillis() - connectionMillisBefore);
         logger.trace("Executing task {} (oneOff={})! Connection received in {} ms [operation ID {}]", task, oneOffTask,
                 System.currentTimeMillis() - connectionBorrowStart, operationId);
         if (scheduledThreadPoolExecutor == null) {
@@ -540,6 +786,7 @@ public class ModbusManagerImpl implements ModbusManager {
         ModbusSlaveEndpoint endpoint = task.getEndpoint();
         F failureCallback = task.getFailureCallback();
         int maxTries = task.getMaxTries();
+        OperationMetrics metrics = getOperationMetrics(endpoint, request);
         AtomicReference<@Nullable Exception> lastError = new AtomicReference<>();
         @SuppressWarnings("null") // since cfg in lambda cannot be really null
         long retryDelay = Optional.ofNullable(connectionFactory.getEndpointPoolConfiguration(endpoint))
@@ -549,11 +796,25 @@ public class ModbusManagerImpl implements ModbusManager {
             throw new IllegalArgumentException("maxTries should be positive");
         }
 
+        ModbusTCPPipeline pipeline = getPipeline(connectionFactory, endpoint);
+        if (pipeline != null) {
+            boolean succeeded = false;
+            try {
+                succeeded = executePipelinedOperation(timer, task, oneOffTask, operation, pipeline, metrics);
+            } finally {
+                timer.suspendAllRunning();
+                metrics.recordOperation(timer, succeeded);
+                logger.debug("Modbus operation ended, timing info: {} [operation ID {}]", timer, operationId);
+            }
+            return;
+        }
+
         Optional<ModbusSlaveConnection> connection = Optional.empty();
+        boolean succeeded = false;
         try {
             logger.trace("Starting new operation with task {}. Trying to get connection [operation ID {}]", task,
                     operationId);
-            connection = getConnection(timer, oneOffTask, task);
+            connection = getConnection(timer, oneOffTask, task, metrics);
             logger.trace("Operation with task {}. Got a connection {} [operation ID {}]", task,
                     connection.isPresent() ? "successfully" : "which was unconnected (connection issue)", operationId);
             if (!connection.isPresent()) {
@@ -572,8 +833,9 @@ public class ModbusManagerImpl implements ModbusManager {
             int tryIndex = 0;
             /**
              * last execution is tracked such that the endpoint is not spammed on retry. First retry can be executed
-             * right away since getConnection ensures enough time has passed since last transaction. More precisely,
-             * ModbusSlaveConnectionFactoryImpl sleeps on activate() (i.e. before returning connection).
+             * right away since getConnection ensures enough time has passed since last transaction. Usually the
+             * EndpointScheduler of the endpoint has waited for it already, otherwise ModbusSlaveConnectionFactoryImpl
+             * sleeps on activate() (i.e. before returning connection).
              */
             @Nullable
             Long lastTryMillis = null;
@@ -602,14 +864,17 @@ public class ModbusManagerImpl implements ModbusManager {
                 logger.trace("Sleep ended, slept {} [operation ID {}]", slept, operationId);
 
                 boolean willRetry = false;
+                long transactionMillisBefore = timer.transaction.getTotalTimeMillis();
                 try {
                     tryIndex++;
                     willRetry = tryIndex < maxTries;
                     operation.accept(timer, task, connection.get());
                     lastError.set(null);
+                    succeeded = true;
                     break;
                 } catch (IOException e) {
                     lastError.set(new ModbusSlaveIOExceptionImpl(e));
+                    metrics.recordError(e);
                     // IO exception occurred, we re-establish new connection hoping it would fix the issue (e.g.
                     // broken pipe on write)
                     if (willRetry) {
@@ -627,6 +892,7 @@ public class ModbusManagerImpl implements ModbusManager {
                     continue;
                 } catch (ModbusIOException e) {
                     lastError.set(new ModbusSlaveIOExceptionImpl(e));
+                    metrics.recordError(e);
                     // IO exception occurred, we re-establish new connection hoping it would fix the issue (e.g.
                     // broken pipe on write)
                     if (willRetry) {
@@ -689,11 +955,12 @@ public class ModbusManagerImpl implements ModbusManager {
                     connection = Optional.empty();
                     continue;
                 } finally {
+                    metrics.recordTry(timer.transaction.getTotalTimeMillis() - transactionMillisBefore, tryIndex > 1);
                     lastTryMillis = System.currentTimeMillis();
                     // Connection was reseted in error handling and needs to be reconnected.
                     // Try to re-establish connection.
                     if (willRetry && !connection.isPresent()) {
-                        connection = getConnection(timer, oneOffTask, task);
+                        connection = getConnection(timer, oneOffTask, task, metrics);
                     }
                 }
             }
@@ -718,10 +985,156 @@ public class ModbusManagerImpl implements ModbusManager {
             timer.connection.timeConsumer(c -> returnConnection(endpoint, c), connection);
             logger.trace("Connection was returned to the pool, ending operation [operation ID {}]", operationId);
             timer.suspendAllRunning();
+            metrics.recordOperation(timer, succeeded);
             logger.debug("Modbus operation ended, timing info: {} [operation ID {}]", timer, operationId);
         }
     }
 
+    /**
+     * Get the pipelined connection of the endpoint
+     *
+     * @return pipelined connection, or <code>null</code> if the endpoint is not configured for more than one
+     *         outstanding transaction
+     */
+    private @Nullable ModbusTCPPipeline getPipeline(ModbusSlaveConnectionFactoryImpl connectionFactory,
+            ModbusSlaveEndpoint endpoint) {
+        if (!(endpoint instanceof ModbusTCPSlaveEndpoint)) {
+            return null;
+        }
+        EndpointPoolConfiguration configuration = connectionFactory.getEndpointPoolConfiguration(endpoint);
+        if (configuration == null || configuration.getMaxInFlightTransactions() <= 1) {
+            return null;
+        }
+        return pipelines.computeIfAbsent(endpoint, key -> {
+            ModbusTCPSlaveEndpoint tcpEndpoint = (ModbusTCPSlaveEndpoint) key;
+            logger.debug("Using up to {} outstanding transactions with endpoint {}",
+                    configuration.getMaxInFlightTransactions(), tcpEndpoint);
+            return new ModbusTCPPipeline(tcpEndpoint.getAddress(), tcpEndpoint.getPort(),
+                    configuration.getMaxInFlightTransactions(), configuration.getConnectTimeoutMillis(),
+                    Modbus.DEFAULT_TIMEOUT);
+        });
+    }
+
+    private void closePipeline(ModbusSlaveEndpoint endpoint) {
+        ModbusTCPPipeline pipeline = pipelines.remove(endpoint);
+        if (pipeline != null) {
+            pipeline.close();
+        }
+    }
+
+    /**
+     * Get the scheduler pacing the operations of the endpoint
+     *
+     * @return scheduler of the endpoint, or <code>null</code> if the manager is deactivated or the endpoint uses a
+     *         pipelined connection, see {@link #getPipeline(ModbusSlaveConnectionFactoryImpl, ModbusSlaveEndpoint)}
+     */
+    private @Nullable EndpointScheduler getScheduler(ScheduledExecutorService executor, ModbusSlaveEndpoint endpoint) {
+        ModbusSlaveConnectionFactoryImpl connectionFactory = this.connectionFactory;
+        if (connectionFactory == null || getPipeline(connectionFactory, endpoint) != null) {
+            return null;
+        }
+        EndpointScheduler scheduler = endpointSchedulers.get(endpoint);
+        if (scheduler != null && scheduler.retain()) {
+            return scheduler;
+        }
+        // the scheduler has been closed when it became idle after the endpoint was not used anymore
+        return endpointSchedulers.compute(endpoint,
+                (key, existing) -> existing != null && existing.retain() ? existing
+                        : new EndpointScheduler(key.toString(), executor,
+                                () -> connectionFactory.getMillisUntilReady(key)));
+    }
+
+    /**
+     * Get the metrics of the operations with the function code of the request to the endpoint
+     */
+    private OperationMetrics getOperationMetrics(ModbusSlaveEndpoint endpoint, Object request) {
+        String functionCode;
+        if (request instanceof ModbusReadRequestBlueprint) {
+            functionCode = ((ModbusReadRequestBlueprint) request).getFunctionCode().name();
+        } else if (request instanceof ModbusWriteRequestBlueprint) {
+            functionCode = ((ModbusWriteRequestBlueprint) request).getFunctionCode().name();
+        } else {
+            functionCode = request.getClass().getSimpleName();
+        }
+        return operationMetrics.computeIfAbsent(endpoint, key -> new ConcurrentHashMap<>()).computeIfAbsent(
+                functionCode, key -> new OperationMetrics(endpoint, key, METRICS_WINDOW_MILLIS, METRICS_WINDOW_SLICES));
+    }
+
+    /**
+     * Execute operation using a pipelined connection, with retries.
+     *
+     * Unlike {@link #executeOperation}, no connection is borrowed from the pool and no delay is kept between the
+     * transactions: the pipeline limits the number of outstanding transactions, and an I/O error resets its connection
+     * for all of them.
+     *
+     * @return whether a valid response was received
+     */
+    private <R, C extends ModbusResultCallback, F extends ModbusFailureCallback<R>, T extends TaskWithEndpoint<R, C, F>> boolean executePipelinedOperation(
+            AggregateStopWatch timer, T task, boolean oneOffTask, ModbusOperation<T> operation,
+            ModbusTCPPipeline pipeline, OperationMetrics metrics) {
+        String operationId = timer.operationId;
+        R request = task.getRequest();
+        int maxTries = task.getMaxTries();
+        @Nullable
+        Exception lastError = null;
+        try {
+            for (int tryIndex = 1; tryIndex <= maxTries; tryIndex++) {
+                if (Thread.interrupted()) {
+                    logger.warn("Thread interrupted. Aborting operation [operation ID {}]", operationId);
+                    return false;
+                }
+                if (!oneOffTask && task instanceof PollTask) {
+                    verifyTaskIsRegistered((PollTask) task);
+                }
+                long transactionMillisBefore = timer.transaction.getTotalTimeMillis();
+                try {
+                    operation.acceptPipelined(timer, task, pipeline);
+                    lastError = null;
+                    break;
+                } catch (IOException e) {
+                    lastError = new ModbusSlaveIOExceptionImpl(e);
+                    metrics.recordError(e);
+                } catch (ModbusIOException e) {
+                    lastError = new ModbusSlaveIOExceptionImpl(e);
+                    metrics.recordError(e);
+                } catch (ModbusSlaveException e) {
+                    lastError = new ModbusSlaveErrorResponseExceptionImpl(e);
+                } catch (ModbusUnexpectedTransactionIdException | ModbusUnexpectedResponseFunctionCodeException
+                        | ModbusUnexpectedResponseSizeException | ModbusException e) {
+                    lastError = e;
+                } finally {
+                    metrics.recordTry(timer.transaction.getTotalTimeMillis() - transactionMillisBefore, tryIndex > 1);
+                }
+                if (tryIndex < maxTries) {
+                    logger.warn(
+                            "Try {} out of {} failed when executing pipelined request ({}). Will try again. Error details: {} {} [operation ID {}]",
+                            tryIndex, maxTries, request, lastError.getClass().getName(), lastError.getMessage(),
+                            operationId);
+                } else {
+                    logger.error(
+                            "Last try {} failed when executing pipelined request ({}). Aborting. Error details: {} {} [operation ID {}]",
+                            tryIndex, request, lastError.getClass().getName(), lastError.getMessage(), operationId);
+                }
+            }
+            Exception exception = lastError;
+            if (exception != null) {
+                // All retries failed with some error
+                timer.callback.timeRunnable(() -> {
+                    invokeCallbackWithError(request, task.getFailureCallback(), exception);
+                });
+                return false;
+            }
+            return true;
+        } catch (PollTaskUnregistered e) {
+            logger.warn("Poll task was unregistered -- not executing/proceeding with the poll: {} [operation ID {}]",
+                    e.getMessage(), operationId);
+        } catch (InterruptedException e) {
+            logger.warn("Poll task was canceled -- not executing/proceeding with the poll: {} [operation ID {}]",
+                    e.getMessage(), operationId);
+        }
+        return false;
+    }
+
     private class ModbusCommunicationInterfaceImpl implements ModbusCommunicationInterface {
 
         private volatile ModbusSlaveEndpoint endpoint;
@@ -748,13 +1161,15 @@ public class ModbusManagerImpl implements ModbusManager {
             long scheduleTime = System.currentTimeMillis();
             BasicPollTask task = new BasicPollTask(endpoint, request, resultCallback, failureCallback);
             logger.debug("Scheduling one-off poll task {}", task);
-            Future<?> future = executor.submit(() -> {
+            Runnable operation = () -> {
                 long millisInThreadPoolWaiting = System.currentTimeMillis() - scheduleTime;
                 logger.debug("Will now execute one-off poll task {}, waited in thread pool for {}", task,
                         millisInThreadPoolWaiting);
                 executeOperation(task, true, pollOperation);
-            });
-            return future;
+            };
+            EndpointScheduler scheduler = getScheduler(executor, endpoint);
+            return scheduler == null ? executor.submit(operation)
+                    : scheduler.submitPoll(null, scheduleTime, operation);
         }
 
         @Override
@@ -774,12 +1189,31 @@ public class ModbusManagerImpl implements ModbusManager {
                     logger.trace("Unregistering previous poll task (possibly with different period)");
                     unregisterRegularPoll(task);
                 }
-                ScheduledFuture<?> future = executor.scheduleWithFixedDelay(() -> {
+                if (readCoalescing) {
+                    registerCoalescedPoll(executor, task, pollPeriodMillis, initialDelayMillis);
+                    pollTasksRegisteredByThisCommInterface.add(task);
+                    return task;
+                }
+                Runnable operation = () -> {
                     long started = System.currentTimeMillis();
                     logger.debug("Executing scheduled ({}ms) poll task {}. Current millis: {}", pollPeriodMillis, task,
                             started);
+                    executeOperation(task, false, pollOperation);
+                    long finished = System.currentTimeMillis();
+                    logger.debug(
+                            "Execution of scheduled ({}ms) poll task {} finished at {}. Was started at millis: {} (=duration of {} millis)",
+                            pollPeriodMillis, task, finished, started, finished - started);
+                };
+                ScheduledFuture<?> future = executor.scheduleWithFixedDelay(() -> {
                     try {
-                        executeOperation(task, false, pollOperation);
+                        // the poll is queued to the scheduler of the endpoint, which keeps the delays between
+                        // transactions
+                        EndpointScheduler scheduler = getScheduler(executor, endpoint);
+                        if (scheduler == null) {
+                            operation.run();
+                        } else {
+                            scheduler.submitPoll(task, System.currentTimeMillis() + pollPeriodMillis, operation);
+                        }
                     } catch (RuntimeException e) {
                         // We want to catch all unexpected exceptions since all unhandled exceptions make
                         // ScheduledExecutorService halt the polling. It is better to print out the exception, and try
@@ -789,10 +1223,6 @@ public class ModbusManagerImpl implements ModbusManager {
                                 "Execution of scheduled ({}ms) poll task {} failed unexpectedly. Ignoring exception, polling again according to poll interval.",
                                 pollPeriodMillis, task, e);
                     }
-                    long finished = System.currentTimeMillis();
-                    logger.debug(
-                            "Execution of scheduled ({}ms) poll task {} finished at {}. Was started at millis: {} (=duration of {} millis)",
-                            pollPeriodMillis, task, finished, started, finished - started);
                 }, initialDelayMillis, pollPeriodMillis, TimeUnit.MILLISECONDS);
 
                 scheduledPollTasks.put(task, future);
@@ -823,8 +1253,22 @@ public class ModbusManagerImpl implements ModbusManager {
                     logger.warn("Caller tried to unregister nonexisting poll task {}", task);
                     return false;
                 }
+                @Nullable
+                CoalescedPollGroup group = pollGroupsByTask.remove(task);
+                if (group != null) {
+                    group.remove(task);
+                    if (!group.isEmpty()) {
+                        logger.debug("Unregistered regular poll task {}, its group is still polled", task);
+                        return true;
+                    }
+                    pollGroups.remove(group.key);
+                }
                 logger.debug("Unregistering regular poll task {} (interrupting if necessary)", task);
                 future.cancel(true);
+                EndpointScheduler scheduler = endpointSchedulers.get(task.getEndpoint());
+                if (scheduler != null) {
+                    scheduler.cancel(task);
+                }
                 logger.debug("Poll task {} canceled", task);
                 return true;
             }
@@ -841,13 +1285,15 @@ public class ModbusManagerImpl implements ModbusManager {
             WriteTask task = new BasicWriteTask(endpoint, request, resultCallback, failureCallback);
             long scheduleTime = System.currentTimeMillis();
             logger.debug("Scheduling one-off write task {}", task);
-            Future<?> future = localScheduledThreadPoolExecutor.submit(() -> {
+            Runnable operation = () -> {
                 long millisInThreadPoolWaiting = System.currentTimeMillis() - scheduleTime;
                 logger.debug("Will now execute one-off write task {}, waited in thread pool for {}", task,
                         millisInThreadPoolWaiting);
                 executeOperation(task, true, writeOperation);
-            });
-            return future;
+            };
+            EndpointScheduler scheduler = getScheduler(localScheduledThreadPoolExecutor, endpoint);
+            return scheduler == null ? localScheduledThreadPoolExecutor.submit(operation)
+                    : scheduler.submitWrite(operation);
         }
 
         @Override
@@ -875,6 +1321,36 @@ public class ModbusManagerImpl implements ModbusManager {
         }
     }
 
+    /**
+     * Adds the poll task to the group of its endpoint, unit ID, function code and period, scheduling the group if
+     * it is new. Must be called while synchronized on this manager.
+     */
+    private void registerCoalescedPoll(ScheduledExecutorService executor, PollTask task, long pollPeriodMillis,
+            long initialDelayMillis) {
+        PollGroupKey key = new PollGroupKey(task.getEndpoint(), task.getRequest(), pollPeriodMillis);
+        CoalescedPollGroup group = pollGroups.computeIfAbsent(key, CoalescedPollGroup::new);
+        group.add(task);
+        pollGroupsByTask.put(task, group);
+        ScheduledFuture<?> future = group.future;
+        if (future == null) {
+            group.future = future = executor.scheduleWithFixedDelay(() -> {
+                long started = System.currentTimeMillis();
+                try {
+                    group.execute(executor);
+                } catch (RuntimeException e) {
+                    // See registerRegularPoll: unhandled exceptions would halt the polling
+                    logger.warn(
+                            "Execution of coalesced poll tasks {} failed unexpectedly. Ignoring exception, polling again according to poll interval.",
+                            key, e);
+                }
+                logger.debug("Execution of coalesced poll tasks {} took {} millis", key,
+                        System.currentTimeMillis() - started);
+            }, initialDelayMillis, pollPeriodMillis, TimeUnit.MILLISECONDS);
+        }
+        scheduledPollTasks.put(task, future);
+        logger.trace("Registered poll task {} to be coalesced with other poll tasks of {}", task, key);
+    }
+
     @Override
     public ModbusCommunicationInterface newModbusCommunicationInterface(ModbusSlaveEndpoint endpoint,
             @Nullable EndpointPoolConfiguration configuration) throws IllegalArgumentException {
@@ -897,6 +1373,43 @@ public class ModbusManagerImpl implements ModbusManager {
         return connectionFactory.getEndpointPoolConfiguration(endpoint);
     }
 
+    @Override
+    public long getWindowMillis() {
+        return METRICS_WINDOW_MILLIS;
+    }
+
+    @Override
+    public List<OperationStatistics> getOperationStatistics() {
+        List<OperationStatistics> statistics = new ArrayList<>();
+        operationMetrics.values()
+                .forEach(metrics -> metrics.values().forEach(metric -> statistics.add(metric.getStatistics())));
+        return statistics;
+    }
+
+    @Override
+    public List<EndpointStatistics> getEndpointStatistics() {
+        Set<ModbusSlaveEndpoint> endpoints = new HashSet<>(operationMetrics.keySet());
+        communicationInterfaces.forEach(comm -> endpoints.add(comm.endpoint));
+        KeyedObjectPool<ModbusSlaveEndpoint, ModbusSlaveConnection> pool = connectionPool;
+        List<EndpointStatistics> statistics = new ArrayList<>();
+        for (ModbusSlaveEndpoint endpoint : endpoints) {
+            EndpointScheduler scheduler = endpointSchedulers.get(endpoint);
+            ModbusTCPPipeline pipeline = pipelines.get(endpoint);
+            long busyMillis = operationMetrics.getOrDefault(endpoint, Collections.emptyMap()).values().stream()
+                    .mapToLong(OperationMetrics::getBusyMillis).sum();
+            statistics.add(new EndpointStatistics(endpoint, pool == null ? 0 : pool.getNumActive(endpoint),
+                    pool == null ? 0 : pool.getNumIdle(endpoint), scheduler == null ? 0 : scheduler.getQueueSize(),
+                    pipeline == null ? 0 : pipeline.getOutstandingCount(),
+                    busyMillis / (double) METRICS_WINDOW_MILLIS));
+        }
+        return statistics;
+    }
+
+    @Override
+    public void resetStatistics() {
+        operationMetrics.clear();
+    }
+
     private void unregisterCommunicationInterface(ModbusCommunicationInterface commInterface) {
         communicationInterfaces.remove(commInterface);
         maybeCloseConnections(commInterface.getEndpoint());
@@ -911,6 +1424,13 @@ public class ModbusManagerImpl implements ModbusManager {
 
             // Make sure connections to this endpoint are closed when they are returned to pool (which
             // is usually pretty soon as transactions should be relatively short-lived)
+            closePipeline(endpoint);
+            // Queued operations are still executed. The scheduler is kept until then, so that operations of the
+            // endpoint are not executed by a new scheduler at the same time if the endpoint is used again.
+            EndpointScheduler scheduler = endpointSchedulers.get(endpoint);
+            if (scheduler != null) {
+                scheduler.closeWhenIdle(() -> endpointSchedulers.remove(endpoint, scheduler));
+            }
             ModbusSlaveConnectionFactoryImpl localConnectionFactory = connectionFactory;
             if (localConnectionFactory != null) {
                 localConnectionFactory.disconnectOnReturn(endpoint, System.currentTimeMillis());
@@ -930,6 +1450,16 @@ public class ModbusManagerImpl implements ModbusManager {
     protected void activate(Map<String, Object> configProperties) {
         synchronized (this) {
             logger.info("Modbus manager activated");
+            Object coalescing = configProperties.get(CONFIG_READ_COALESCING);
+            readCoalescing = coalescing != null && Boolean.parseBoolean(coalescing.toString());
+            Object maxGap = configProperties.get(CONFIG_READ_COALESCING_MAX_GAP);
+            try {
+                readCoalescingMaxGap = maxGap == null ? 0 : Math.max(0, Integer.parseInt(maxGap.toString().trim()));
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid value '{}' for {}, using 0", maxGap, CONFIG_READ_COALESCING_MAX_GAP);
+                readCoalescingMaxGap = 0;
+            }
+            logger.debug("Coalescing of regular polls: {} (maximum gap {})", readCoalescing, readCoalescingMaxGap);
             if (connectionPool == null) {
                 constructConnectionPool();
             }
@@ -964,6 +1494,10 @@ public class ModbusManagerImpl implements ModbusManager {
                 connectionPool.close();
                 this.connectionPool = connectionPool = null;
             }
+            pipelines.values().forEach(ModbusTCPPipeline::close);
+            pipelines.clear();
+            endpointSchedulers.values().forEach(EndpointScheduler::close);
+            endpointSchedulers.clear();
 
             if (monitorFuture != null) {
                 monitorFuture.cancel(true);
@@ -996,6 +1530,14 @@ public class ModbusManagerImpl implements ModbusManager {
                         task.getRequest().getDataLength(), future.isDone(), future.isCancelled(),
                         future.getDelay(TimeUnit.MILLISECONDS), task);
             });
+            this.endpointSchedulers.values().forEach(scheduler -> {
+                pollMonitorLogger.trace("POLL MONITOR: {}", scheduler);
+                if (scheduler.getQueueSize() >= WARN_QUEUE_SIZE) {
+                    pollMonitorLogger.warn(
+                            "Many ({}) operations queued in {}! The endpoint cannot keep up with the requests.",
+                            scheduler.getQueueSize(), scheduler);
+                }
+            });
             if (scheduledThreadPoolExecutor instanceof ThreadPoolExecutor) {
                 ThreadPoolExecutor executor = ((ThreadPoolExecutor) scheduledThreadPoolExecutor);
                 pollMonitorLogger.trace(
@@ -0,0 +1,294 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.io.transport.modbus.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.wimpi.modbus.msg.ModbusRequest;
+import net.wimpi.modbus.msg.ModbusResponse;
+
+/**
+ * Modbus TCP connection with several outstanding transactions.
+ *
+ * Requests are written to the connection as soon as one of the <code>maxInFlight</code> slots is free, without waiting
+ * for the responses of earlier requests. A reader thread matches every response to its request by the transaction ID
+ * of the MBAP header, so responses may arrive in any order.
+ *
+ * A request which is not answered in time fails with a {@link SocketTimeoutException}. Its transaction ID is released,
+ * and a late response is discarded. An I/O error closes the connection and fails all outstanding requests, the next
+ * request opens a new connection.
+ *
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class ModbusTCPPipeline implements AutoCloseable {
+
+    /**
+     * Size of the MBAP header: transaction ID, protocol ID and length
+     */
+    private static final int MBAP_HEADER_LENGTH = 6;
+
+    /**
+     * Maximum value of the length field of the MBAP header: unit ID and 253 bytes PDU
+     */
+    private static final int MAX_MBAP_LENGTH = 254;
+
+    private final Logger logger = LoggerFactory.getLogger(ModbusTCPPipeline.class);
+
+    private final String host;
+    private final int port;
+    private final int connectTimeoutMillis;
+    private final long responseTimeoutMillis;
+    private final Semaphore slots;
+
+    /* guarded by this */
+    private @Nullable Connection connection;
+    /* guarded by this */
+    private int nextTransactionId = 1;
+    /* guarded by this */
+    private boolean closed;
+
+    /**
+     * One socket with its outstanding transactions
+     */
+    private class Connection {
+        private final Socket socket;
+        private final OutputStream output;
+        private final Map<Integer, CompletableFuture<ModbusResponse>> pending = new ConcurrentHashMap<>();
+        private volatile boolean open = true;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.output = socket.getOutputStream();
+            Thread reader = new Thread(this::read, "OH-modbus-pipeline-" + host + ":" + port);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        private void read() {
+            try {
+                DataInputStream input = new DataInputStream(socket.getInputStream());
+                while (open) {
+                    byte[] frame = readFrame(input);
+                    int transactionId = ((frame[0] & 0xff) << 8) | (frame[1] & 0xff);
+                    int functionCode = frame[MBAP_HEADER_LENGTH + 1] & 0xff;
+                    ModbusResponse response = ModbusResponse.createModbusResponse(functionCode);
+                    response.readFrom(new DataInputStream(new ByteArrayInputStream(frame)));
+
+                    CompletableFuture<ModbusResponse> future = pending.remove(transactionId);
+                    if (future == null) {
+                        logger.debug("Discarding response with unknown transaction ID {} from {}:{}", transactionId,
+                                host, port);
+                    } else {
+                        future.complete(response);
+                    }
+                }
+            } catch (IOException e) {
+                fail(e);
+            } catch (RuntimeException e) {
+                // response which could not be parsed
+                fail(new IOException("Invalid response: " + e.getMessage(), e));
+            }
+        }
+
+        void fail(IOException error) {
+            close();
+            if (!pending.isEmpty()) {
+                logger.debug("Connection to {}:{} failed with {} outstanding transactions: {}", host, port,
+                        pending.size(), error.getMessage());
+            }
+            pending.values().forEach(future -> future.completeExceptionally(error));
+            pending.clear();
+        }
+
+        void close() {
+            open = false;
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+    }
+
+    /**
+     * @param host host name of the slave
+     * @param port port of the slave
+     * @param maxInFlight maximum number of outstanding transactions
+     * @param connectTimeoutMillis connect timeout in milliseconds, 0 for the system default
+     * @param responseTimeoutMillis maximum time in milliseconds to wait for a response
+     */
+    public ModbusTCPPipeline(String host, int port, int maxInFlight, int connectTimeoutMillis,
+            long responseTimeoutMillis) {
+        this.host = host;
+        this.port = port;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.responseTimeoutMillis = responseTimeoutMillis;
+        this.slots = new Semaphore(maxInFlight, true);
+    }
+
+    /**
+     * Reads one MBAP frame, including its header
+     */
+    private static byte[] readFrame(DataInputStream input) throws IOException {
+        byte[] header = new byte[MBAP_HEADER_LENGTH];
+        input.readFully(header);
+        int length = ((header[4] & 0xff) << 8) | (header[5] & 0xff);
+        if (length < 2 || length > MAX_MBAP_LENGTH) {
+            throw new IOException("Invalid MBAP length " + length);
+        }
+        byte[] frame = new byte[MBAP_HEADER_LENGTH + length];
+        System.arraycopy(header, 0, frame, 0, MBAP_HEADER_LENGTH);
+        input.readFully(frame, MBAP_HEADER_LENGTH, length);
+        return frame;
+    }
+
+    /**
+     * Executes the request, waiting for a free slot and for the response.
+     *
+     * The transaction ID of the request is overwritten.
+     *
+     * @param request request to execute
+     * @return the response to the request
+     * @throws IOException on connection errors, or if there was no free slot or no response in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public ModbusResponse execute(ModbusRequest request) throws IOException, InterruptedException {
+        if (!slots.tryAcquire(responseTimeoutMillis, TimeUnit.MILLISECONDS)) {
+            throw new SocketTimeoutException(String.format("No free transaction slot for %s:%d within %d ms", host,
+                    port, responseTimeoutMillis));
+        }
+        try {
+            CompletableFuture<ModbusResponse> future = new CompletableFuture<>();
+            Connection connection;
+            int transactionId;
+            synchronized (this) {
+                connection = getConnection();
+                transactionId = allocateTransactionId(connection);
+                request.setTransactionID(transactionId);
+                connection.pending.put(transactionId, future);
+                try {
+                    // write the frame with one call, so that it is sent as one segment
+                    ByteArrayOutputStream frame = new ByteArrayOutputStream(MBAP_HEADER_LENGTH + MAX_MBAP_LENGTH);
+                    request.writeTo(new DataOutputStream(frame));
+                    frame.writeTo(connection.output);
+                    connection.output.flush();
+                } catch (IOException e) {
+                    connection.fail(e);
+                    this.connection = null;
+                    throw e;
+                }
+            }
+            logger.trace("Sent request with transaction ID {} to {}:{}", transactionId, host, port);
+
+            try {
+                return future.get(responseTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                throw new SocketTimeoutException(String.format("No response from %s:%d for transaction %d within %d ms",
+                        host, port, transactionId, responseTimeoutMillis));
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException(cause);
+            } finally {
+                connection.pending.remove(transactionId);
+            }
+        } finally {
+            slots.release();
+        }
+    }
+
+    private Connection getConnection() throws IOException {
+        if (closed) {
+            throw new IOException("Pipeline to " + host + ":" + port + " is closed");
+        }
+        Connection current = connection;
+        if (current != null && current.open) {
+            return current;
+        }
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, port), connectTimeoutMillis);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        logger.debug("Opened pipelined connection to {}:{}", host, port);
+        current = new Connection(socket);
+        connection = current;
+        return current;
+    }
+
+    private int allocateTransactionId(Connection connection) {
+        int transactionId;
+        do {
+            transactionId = nextTransactionId;
+            nextTransactionId = transactionId == 0xffff ? 1 : transactionId + 1;
+        } while (connection.pending.containsKey(transactionId));
+        return transactionId;
+    }
+
+    /**
+     * @return the number of transactions waiting for their response
+     */
+    public synchronized int getOutstandingCount() {
+        Connection current = connection;
+        return current == null ? 0 : current.pending.size();
+    }
+
+    /**
+     * Closes the connection, failing all outstanding transactions
+     */
+    @Override
+    public void close() {
+        Connection current;
+        synchronized (this) {
+            closed = true;
+            current = connection;
+            connection = null;
+        }
+        if (current != null) {
+            current.fail(new EOFException("Pipeline to " + host + ":" + port + " closed"));
+            logger.debug("Closed pipelined connection to {}:{}", host, port);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ModbusTCPPipeline [host=" + host + ", port=" + port + ", slots=" + slots.availablePermits() + "]";
+    }
+}
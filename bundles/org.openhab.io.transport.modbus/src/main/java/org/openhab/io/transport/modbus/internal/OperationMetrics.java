@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.io.transport.modbus.internal;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.io.transport.modbus.endpoint.ModbusSlaveEndpoint;
+import org.openhab.io.transport.modbus.metrics.OperationStatistics;
+
+/**
+ * Collects the metrics of the operations with one function code to one endpoint, from the
+ * {@link AggregateStopWatch} of the operations.
+ *
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class OperationMetrics {
+
+    private final ModbusSlaveEndpoint endpoint;
+    private final String functionCode;
+    private final AtomicLong operations = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final RollingLatencyHistogram connectionWait;
+    private final RollingLatencyHistogram transaction;
+    private final RollingLatencyHistogram callback;
+    private final RollingLatencyHistogram total;
+
+    public OperationMetrics(ModbusSlaveEndpoint endpoint, String functionCode, long windowMillis, int slices) {
+        this.endpoint = endpoint;
+        this.functionCode = functionCode;
+        connectionWait = new RollingLatencyHistogram(windowMillis, slices);
+        transaction = new RollingLatencyHistogram(windowMillis, slices);
+        callback = new RollingLatencyHistogram(windowMillis, slices);
+        total = new RollingLatencyHistogram(windowMillis, slices);
+    }
+
+    void recordConnectionWait(long millis) {
+        connectionWait.record(millis);
+    }
+
+    /**
+     * Record one try of the operation
+     *
+     * @param transactionMillis time of the transaction
+     * @param retry whether the try was a retry
+     */
+    void recordTry(long transactionMillis, boolean retry) {
+        transaction.record(transactionMillis);
+        if (retry) {
+            retries.incrementAndGet();
+        }
+    }
+
+    /**
+     * Record failed try, counting timeouts
+     *
+     * @param error error of the try
+     */
+    void recordError(Exception error) {
+        if (isTimeout(error)) {
+            timeouts.incrementAndGet();
+        }
+    }
+
+    /**
+     * Record the operation after all its stop watches have been suspended
+     *
+     * @param timer stop watches of the operation
+     * @param succeeded whether a valid response was received
+     */
+    void recordOperation(AggregateStopWatch timer, boolean succeeded) {
+        operations.incrementAndGet();
+        if (!succeeded) {
+            failures.incrementAndGet();
+        }
+        callback.record(timer.callback.getTotalTimeMillis());
+        total.record(timer.total.getTotalTimeMillis());
+    }
+
+    /**
+     * @return sum of the total times of the operations during the window
+     */
+    long getBusyMillis() {
+        return total.getStatistics().getSumMillis();
+    }
+
+    public OperationStatistics getStatistics() {
+        return new OperationStatistics(endpoint, functionCode, operations.get(), failures.get(), retries.get(),
+                timeouts.get(), connectionWait.getStatistics(), transaction.getStatistics(), callback.getStatistics(),
+                total.getStatistics());
+    }
+
+    /**
+     * Whether the error is caused by a timeout, i.e. there is an {@link InterruptedIOException} (such as
+     * {@link java.net.SocketTimeoutException}) in its causes. Timeouts the Modbus library reports without the original
+     * exception are not counted.
+     */
+    private static boolean isTimeout(Exception error) {
+        @Nullable
+        Throwable cause = error;
+        while (cause != null) {
+            if (cause instanceof InterruptedIOException) {
+                return true;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+}
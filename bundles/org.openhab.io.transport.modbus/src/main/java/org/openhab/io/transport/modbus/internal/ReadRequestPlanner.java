@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.io.transport.modbus.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.io.transport.modbus.AsyncModbusReadResult;
+import org.openhab.io.transport.modbus.BitArray;
+import org.openhab.io.transport.modbus.ModbusConstants;
+import org.openhab.io.transport.modbus.ModbusReadFunctionCode;
+import org.openhab.io.transport.modbus.ModbusReadRequestBlueprint;
+import org.openhab.io.transport.modbus.ModbusRegister;
+import org.openhab.io.transport.modbus.ModbusRegisterArray;
+import org.openhab.io.transport.modbus.PollTask;
+
+/**
+ * Plans the read requests of several poll tasks such that they are executed with as few requests as possible.
+ *
+ * Poll tasks with the same unit ID and function code are sorted by their start address, and a task is merged into the
+ * previous request if at most <code>maxGap</code> unrequested registers (or bits) lie between them and the merged
+ * request does not exceed {@link ModbusConstants#MAX_REGISTERS_READ_COUNT} registers or
+ * {@link ModbusConstants#MAX_BITS_READ_COUNT} bits. The data of a merged response is sliced back to the tasks with
+ * {@link #slice(AsyncModbusReadResult, ModbusReadRequestBlueprint)}.
+ *
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class ReadRequestPlanner {
+
+    /**
+     * A request covering the requests of one or more poll tasks
+     */
+    public static class CoalescedRead {
+        private final ModbusReadRequestBlueprint request;
+        private final List<PollTask> members;
+
+        public CoalescedRead(ModbusReadRequestBlueprint request, List<PollTask> members) {
+            this.request = request;
+            this.members = members;
+        }
+
+        /**
+         * @return the request to execute
+         */
+        public ModbusReadRequestBlueprint getRequest() {
+            return request;
+        }
+
+        /**
+         * @return the poll tasks whose requests are covered by the request
+         */
+        public List<PollTask> getMembers() {
+            return members;
+        }
+
+        @Override
+        public String toString() {
+            return "CoalescedRead [request=" + request + ", members=" + members.size() + "]";
+        }
+    }
+
+    private static final Comparator<PollTask> BY_ADDRESS = Comparator
+            .<PollTask> comparingInt(task -> task.getRequest().getReference())
+            .thenComparingInt(task -> task.getRequest().getDataLength());
+
+    /**
+     * Maximum number of registers or bits which can be read with one request of the function code
+     */
+    public static int getMaxReadCount(ModbusReadFunctionCode functionCode) {
+        switch (functionCode) {
+            case READ_COILS:
+            case READ_INPUT_DISCRETES:
+                return ModbusConstants.MAX_BITS_READ_COUNT;
+            default:
+                return ModbusConstants.MAX_REGISTERS_READ_COUNT;
+        }
+    }
+
+    /**
+     * Plans the requests of the poll tasks.
+     *
+     * @param tasks the poll tasks, all using the same endpoint
+     * @param maxGap maximum number of unrequested registers (or bits) read in order to merge two requests
+     * @return the requests to execute, ordered by unit ID, function code and address
+     */
+    public static List<CoalescedRead> plan(Collection<PollTask> tasks, int maxGap) {
+        Map<String, List<PollTask>> groups = new LinkedHashMap<>();
+        for (PollTask task : tasks) {
+            ModbusReadRequestBlueprint request = task.getRequest();
+            groups.computeIfAbsent(request.getUnitID() + "/" + request.getFunctionCode(), key -> new ArrayList<>())
+                    .add(task);
+        }
+
+        List<CoalescedRead> plan = new ArrayList<>();
+        for (List<PollTask> group : groups.values()) {
+            group.sort(BY_ADDRESS);
+            int maxCount = getMaxReadCount(group.get(0).getRequest().getFunctionCode());
+
+            List<PollTask> members = new ArrayList<>();
+            int start = 0;
+            int end = 0;
+            for (PollTask task : group) {
+                ModbusReadRequestBlueprint request = task.getRequest();
+                int taskEnd = request.getReference() + request.getDataLength();
+                int mergedEnd = Math.max(end, taskEnd);
+                if (!members.isEmpty() && request.getReference() - end <= maxGap && mergedEnd - start <= maxCount) {
+                    members.add(task);
+                    end = mergedEnd;
+                } else {
+                    if (!members.isEmpty()) {
+                        plan.add(createRead(members, start, end));
+                    }
+                    members = new ArrayList<>();
+                    members.add(task);
+                    start = request.getReference();
+                    end = taskEnd;
+                }
+            }
+            plan.add(createRead(members, start, end));
+        }
+        return plan;
+    }
+
+    private static CoalescedRead createRead(List<PollTask> members, int start, int end) {
+        if (members.size() == 1) {
+            return new CoalescedRead(members.get(0).getRequest(), Collections.singletonList(members.get(0)));
+        }
+        ModbusReadRequestBlueprint first = members.get(0).getRequest();
+        int maxTries = members.stream().mapToInt(PollTask::getMaxTries).max().orElse(1);
+        return new CoalescedRead(new ModbusReadRequestBlueprint(first.getUnitID(), first.getFunctionCode(), start,
+                end - start, maxTries), Collections.unmodifiableList(members));
+    }
+
+    /**
+     * Extracts the data of a request from the result of a request covering it.
+     *
+     * @param result the result of the covering request
+     * @param request the request covered by the request of the result
+     * @return result of the request
+     */
+    public static AsyncModbusReadResult slice(AsyncModbusReadResult result, ModbusReadRequestBlueprint request) {
+        ModbusReadRequestBlueprint covering = result.getRequest();
+        if (covering.equals(request)) {
+            return result;
+        }
+        int offset = request.getReference() - covering.getReference();
+        int length = request.getDataLength();
+
+        Optional<ModbusRegisterArray> registers = result.getRegisters();
+        if (registers.isPresent()) {
+            ModbusRegister[] slice = new ModbusRegister[length];
+            for (int i = 0; i < length; i++) {
+                slice[i] = registers.get().getRegister(offset + i);
+            }
+            return new AsyncModbusReadResult(request, new ModbusRegisterArray(slice));
+        }
+        @Nullable
+        BitArray bits = result.getBits().orElse(null);
+        if (bits == null) {
+            throw new IllegalArgumentException("Result has neither registers nor bits: " + result);
+        }
+        BitArray slice = new BitArray(length);
+        for (int i = 0; i < length; i++) {
+            slice.setBit(i, bits.getBit(offset + i));
+        }
+        return new AsyncModbusReadResult(request, slice);
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.io.transport.modbus.internal;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.io.transport.modbus.metrics.LatencyStatistics;
+
+/**
+ * Latency histogram over a rolling window.
+ *
+ * The window is divided into slices of equal length, each with fixed buckets of its own. Recording a latency
+ * increments one bucket of the current slice, and a slice is cleared when it is reused for a new period of time. Thus
+ * recording allocates nothing, and the statistics cover the current slice and the preceding slices of the window.
+ *
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class RollingLatencyHistogram {
+
+    /**
+     * Upper bounds of the buckets, in milliseconds
+     */
+    public static final long[] BUCKET_BOUNDS_MILLIS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000,
+            10000 };
+
+    private final long sliceMillis;
+    private final LongSupplier clock;
+
+    /* guarded by this */
+    private final long[] sliceIds;
+    /* guarded by this */
+    private final long[][] counts;
+    /* guarded by this */
+    private final long[] sums;
+    /* guarded by this */
+    private final long[] maxes;
+
+    /**
+     * @param windowMillis length of the window in milliseconds
+     * @param slices number of slices the window is divided into
+     */
+    public RollingLatencyHistogram(long windowMillis, int slices) {
+        this(windowMillis, slices, System::currentTimeMillis);
+    }
+
+    /**
+     * @param windowMillis length of the window in milliseconds
+     * @param slices number of slices the window is divided into
+     * @param clock current time in milliseconds
+     */
+    public RollingLatencyHistogram(long windowMillis, int slices, LongSupplier clock) {
+        if (slices <= 0 || windowMillis < slices) {
+            throw new IllegalArgumentException("Window should be at least one millisecond per slice");
+        }
+        this.sliceMillis = windowMillis / slices;
+        this.clock = clock;
+        sliceIds = new long[slices];
+        Arrays.fill(sliceIds, -1);
+        counts = new long[slices][BUCKET_BOUNDS_MILLIS.length + 1];
+        sums = new long[slices];
+        maxes = new long[slices];
+    }
+
+    /**
+     * Record a latency
+     *
+     * @param millis latency in milliseconds, negative values are recorded as zero
+     */
+    public synchronized void record(long millis) {
+        long value = Math.max(0, millis);
+        long sliceId = clock.getAsLong() / sliceMillis;
+        int slice = (int) (sliceId % sliceIds.length);
+        if (sliceIds[slice] != sliceId) {
+            sliceIds[slice] = sliceId;
+            Arrays.fill(counts[slice], 0);
+            sums[slice] = 0;
+            maxes[slice] = 0;
+        }
+        int bucket = Arrays.binarySearch(BUCKET_BOUNDS_MILLIS, value);
+        counts[slice][bucket >= 0 ? bucket : -bucket - 1]++;
+        sums[slice] += value;
+        maxes[slice] = Math.max(maxes[slice], value);
+    }
+
+    /**
+     * Get the statistics of the latencies recorded during the window
+     *
+     * @return snapshot of the statistics
+     */
+    public synchronized LatencyStatistics getStatistics() {
+        long currentSliceId = clock.getAsLong() / sliceMillis;
+        long[] bucketCounts = new long[BUCKET_BOUNDS_MILLIS.length + 1];
+        long sum = 0;
+        long max = 0;
+        for (int slice = 0; slice < sliceIds.length; slice++) {
+            if (sliceIds[slice] <= currentSliceId - sliceIds.length || sliceIds[slice] > currentSliceId) {
+                // stale, or not used yet
+                continue;
+            }
+            for (int bucket = 0; bucket < bucketCounts.length; bucket++) {
+                bucketCounts[bucket] += counts[slice][bucket];
+            }
+            sum += sums[slice];
+            max = Math.max(max, maxes[slice]);
+        }
+        return new LatencyStatistics(BUCKET_BOUNDS_MILLIS, bucketCounts, sum, max);
+    }
+}
@@ -353,6 +353,35 @@ public class ModbusSlaveConnectionFactoryImpl
         return millisToWaitStill;
     }
 
+    /**
+     * Milliseconds until a connection of the endpoint can be borrowed without waiting in
+     * {@link #activateObject(ModbusSlaveEndpoint, PooledObject)}
+     *
+     * The delay between connects is taken into account only with endpoints which reconnect on every borrow, other
+     * connections are usually connected already.
+     *
+     * @param endpoint endpoint to query
+     * @return milliseconds to wait, zero or negative if no wait is needed
+     */
+    public long getMillisUntilReady(ModbusSlaveEndpoint endpoint) {
+        @Nullable
+        EndpointPoolConfiguration config = getEndpointPoolConfiguration(endpoint);
+        if (config == null) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        long wait = millisUntil(lastPassivateMillis.get(endpoint), config.getInterTransactionDelayMillis(), now);
+        if (config.getReconnectAfterMillis() == 0) {
+            wait = Math.max(wait, millisUntil(lastConnectMillis.get(endpoint),
+                    Math.max(config.getInterConnectDelayMillis(), config.getInterTransactionDelayMillis()), now));
+        }
+        return wait;
+    }
+
+    private static long millisUntil(@Nullable Long lastOperation, long waitMillis, long now) {
+        return lastOperation == null ? 0 : lastOperation + waitMillis - now;
+    }
+
     /**
      * Disconnect returning connections which have been connected before certain time
      *
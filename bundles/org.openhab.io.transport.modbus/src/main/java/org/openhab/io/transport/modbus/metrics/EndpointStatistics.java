@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.io.transport.modbus.metrics;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.io.transport.modbus.endpoint.ModbusSlaveEndpoint;
+
+/**
+ * Connection and queue statistics of one endpoint
+ *
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class EndpointStatistics {
+
+    private final ModbusSlaveEndpoint endpoint;
+    private final int activeConnections;
+    private final int idleConnections;
+    private final int queuedOperations;
+    private final int outstandingTransactions;
+    private final double utilization;
+
+    public EndpointStatistics(ModbusSlaveEndpoint endpoint, int activeConnections, int idleConnections,
+            int queuedOperations, int outstandingTransactions, double utilization) {
+        this.endpoint = endpoint;
+        this.activeConnections = activeConnections;
+        this.idleConnections = idleConnections;
+        this.queuedOperations = queuedOperations;
+        this.outstandingTransactions = outstandingTransactions;
+        this.utilization = utilization;
+    }
+
+    public ModbusSlaveEndpoint getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * @return number of pooled connections borrowed at the moment
+     */
+    public int getActiveConnections() {
+        return activeConnections;
+    }
+
+    /**
+     * @return number of idle pooled connections at the moment
+     */
+    public int getIdleConnections() {
+        return idleConnections;
+    }
+
+    /**
+     * @return number of operations waiting for their turn at the moment
+     */
+    public int getQueuedOperations() {
+        return queuedOperations;
+    }
+
+    /**
+     * @return number of transactions waiting for the response at the moment, with pipelined connections
+     */
+    public int getOutstandingTransactions() {
+        return outstandingTransactions;
+    }
+
+    /**
+     * Average number of operations in progress during the rolling window. With the connection pool, one operation is
+     * executed at a time, and this is the share of time the endpoint was busy. Values near 1 mean that the endpoint
+     * cannot keep up with more requests.
+     *
+     * @return average number of operations in progress
+     */
+    public double getUtilization() {
+        return utilization;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s: %d active and %d idle connections, %d queued operations, %d outstanding transactions, utilization %.2f",
+                endpoint, activeConnections, idleConnections, queuedOperations, outstandingTransactions, utilization);
+    }
+}
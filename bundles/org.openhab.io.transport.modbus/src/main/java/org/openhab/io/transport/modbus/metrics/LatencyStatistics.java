@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.io.transport.modbus.metrics;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * Histogram of latencies, in milliseconds.
+ *
+ * The latencies are counted in buckets. Bucket <code>i</code> counts the latencies up to
+ * <code>bucketBoundsMillis[i]</code> (inclusive) and greater than the bound of the previous bucket. The last bucket
+ * counts the latencies greater than all bounds.
+ *
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class LatencyStatistics {
+
+    private final long[] bucketBoundsMillis;
+    private final long[] bucketCounts;
+    private final long count;
+    private final long sumMillis;
+    private final long maxMillis;
+
+    /**
+     * @param bucketBoundsMillis upper bounds of the buckets, in ascending order
+     * @param bucketCounts number of latencies in each bucket, one more than there are bounds
+     * @param sumMillis sum of the latencies
+     * @param maxMillis maximum latency
+     */
+    public LatencyStatistics(long[] bucketBoundsMillis, long[] bucketCounts, long sumMillis, long maxMillis) {
+        if (bucketCounts.length != bucketBoundsMillis.length + 1) {
+            throw new IllegalArgumentException("Expecting one more bucket than there are bounds");
+        }
+        this.bucketBoundsMillis = bucketBoundsMillis.clone();
+        this.bucketCounts = bucketCounts.clone();
+        long total = 0;
+        for (long bucketCount : bucketCounts) {
+            total += bucketCount;
+        }
+        this.count = total;
+        this.sumMillis = sumMillis;
+        this.maxMillis = maxMillis;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSumMillis() {
+        return sumMillis;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    public double getMeanMillis() {
+        return count == 0 ? 0 : sumMillis / (double) count;
+    }
+
+    public long[] getBucketBoundsMillis() {
+        return bucketBoundsMillis.clone();
+    }
+
+    public long[] getBucketCounts() {
+        return bucketCounts.clone();
+    }
+
+    /**
+     * Get an upper estimate of the percentile
+     *
+     * @param percentile percentile to get, greater than 0 and at most 100
+     * @return bound of the bucket containing the percentile, or the maximum latency if it is smaller. Zero if no
+     *         latencies have been recorded.
+     * @throws IllegalArgumentException when the percentile is out of range
+     */
+    public long getPercentileMillis(double percentile) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile should be greater than 0 and at most 100");
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long cumulative = 0;
+        for (int i = 0; i < bucketBoundsMillis.length; i++) {
+            cumulative += bucketCounts[i];
+            if (cumulative >= rank) {
+                return Math.min(bucketBoundsMillis[i], maxMillis);
+            }
+        }
+        return maxMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d, mean %.1f ms, p50 %d ms, p90 %d ms, p99 %d ms, max %d ms", count, getMeanMillis(),
+                getPercentileMillis(50), getPercentileMillis(90), getPercentileMillis(99), maxMillis);
+    }
+}
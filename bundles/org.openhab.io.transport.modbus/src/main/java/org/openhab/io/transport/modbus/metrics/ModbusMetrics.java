@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.io.transport.modbus.metrics;
+
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * Performance metrics of the Modbus operations, per endpoint and function code.
+ *
+ * Latencies are collected over a rolling window, see {@link #getWindowMillis()}. Counters are totals since the metrics
+ * were last reset.
+ *
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public interface ModbusMetrics {
+
+    /**
+     * Get the length of the rolling window of the latency statistics
+     *
+     * @return window length in milliseconds
+     */
+    long getWindowMillis();
+
+    /**
+     * Get the statistics of the operations, one per endpoint and function code used
+     *
+     * @return snapshot of the statistics
+     */
+    List<OperationStatistics> getOperationStatistics();
+
+    /**
+     * Get the connection and queue statistics of the endpoints
+     *
+     * @return snapshot of the statistics
+     */
+    List<EndpointStatistics> getEndpointStatistics();
+
+    /**
+     * Clear all collected statistics
+     */
+    void resetStatistics();
+}
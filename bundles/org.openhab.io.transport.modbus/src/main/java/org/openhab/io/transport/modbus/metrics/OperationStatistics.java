@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.io.transport.modbus.metrics;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.io.transport.modbus.endpoint.ModbusSlaveEndpoint;
+
+/**
+ * Statistics of the operations with one function code to one endpoint. The counters are totals since the metrics
+ * were last reset, the latencies cover the rolling window of {@link ModbusMetrics}.
+ *
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class OperationStatistics {
+
+    private final ModbusSlaveEndpoint endpoint;
+    private final String functionCode;
+    private final long operations;
+    private final long failures;
+    private final long retries;
+    private final long timeouts;
+    private final LatencyStatistics connectionWait;
+    private final LatencyStatistics transaction;
+    private final LatencyStatistics callback;
+    private final LatencyStatistics total;
+
+    public OperationStatistics(ModbusSlaveEndpoint endpoint, String functionCode, long operations, long failures,
+            long retries, long timeouts, LatencyStatistics connectionWait, LatencyStatistics transaction,
+            LatencyStatistics callback, LatencyStatistics total) {
+        this.endpoint = endpoint;
+        this.functionCode = functionCode;
+        this.operations = operations;
+        this.failures = failures;
+        this.retries = retries;
+        this.timeouts = timeouts;
+        this.connectionWait = connectionWait;
+        this.transaction = transaction;
+        this.callback = callback;
+        this.total = total;
+    }
+
+    public ModbusSlaveEndpoint getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * @return name of the function code, e.g. READ_MULTIPLE_REGISTERS
+     */
+    public String getFunctionCode() {
+        return functionCode;
+    }
+
+    /**
+     * @return number of operations executed since the metrics were last reset
+     */
+    public long getOperations() {
+        return operations;
+    }
+
+    /**
+     * @return number of operations which did not get a valid response, even after retries, since the metrics were
+     *         last reset
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return number of tries after the first try of the operations, since the metrics were last reset
+     */
+    public long getRetries() {
+        return retries;
+    }
+
+    /**
+     * @return number of tries which failed with an {@link java.io.InterruptedIOException}, such as a socket timeout,
+     *         since the metrics were last reset. Timeouts the Modbus library reports without the original exception
+     *         are not counted.
+     */
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * @return time to acquire a connection from the pool, including the wait for the delays between transactions and
+     *         connecting. One sample per acquired connection.
+     */
+    public LatencyStatistics getConnectionWait() {
+        return connectionWait;
+    }
+
+    /**
+     * @return time of the request and response with the slave. One sample per try.
+     */
+    public LatencyStatistics getTransaction() {
+        return transaction;
+    }
+
+    /**
+     * @return time spent calling the callbacks. One sample per operation.
+     */
+    public LatencyStatistics getCallback() {
+        return callback;
+    }
+
+    /**
+     * @return total time of the operations. One sample per operation.
+     */
+    public LatencyStatistics getTotal() {
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "OperationStatistics [endpoint=" + endpoint + ", functionCode=" + functionCode + ", operations="
+                + operations + ", failures=" + failures + ", retries=" + retries + ", timeouts=" + timeouts + "]";
+    }
+}
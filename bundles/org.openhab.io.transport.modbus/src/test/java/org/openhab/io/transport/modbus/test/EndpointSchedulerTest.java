@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.io.transport.modbus.test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openhab.io.transport.modbus.internal.EndpointScheduler;
+
+/**
+ * @author agent - Initial contribution
+ */
+public class EndpointSchedulerTest {
+
+    private static final long DELAY_MILLIS = 100;
+
+    private ScheduledExecutorService executor;
+    private final List<String> executed = new CopyOnWriteArrayList<>();
+    private final AtomicLong lastEnd = new AtomicLong();
+    private EndpointScheduler scheduler;
+
+    @BeforeEach
+    public void setUp() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        scheduler = new EndpointScheduler("test", executor, () -> 0);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        scheduler.close();
+        executor.shutdownNow();
+    }
+
+    private Runnable operation(String name) {
+        return () -> executed.add(name);
+    }
+
+    /**
+     * Submits an operation which blocks until the returned latch is released
+     */
+    private CountDownLatch block() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.submitWrite(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        return release;
+    }
+
+    @Test
+    public void testWritesPreemptQueuedPolls() throws Exception {
+        CountDownLatch release = block();
+        long now = System.currentTimeMillis();
+        scheduler.submitPoll("poller1", now, operation("poll1"));
+        scheduler.submitPoll("poller2", now, operation("poll2"));
+        CompletableFuture<?> write = scheduler.submitWrite(operation("write"));
+        assertThat(scheduler.getQueueSize(), is(equalTo(3)));
+
+        release.countDown();
+        scheduler.submitPoll("poller3", now, operation("poll3")).get(1, TimeUnit.SECONDS);
+
+        assertTrue(write.isDone());
+        assertThat(executed, is(equalTo(List.of("write", "poll1", "poll2", "poll3"))));
+    }
+
+    @Test
+    public void testPollsAreOrderedByDeadline() throws Exception {
+        CountDownLatch release = block();
+        long now = System.currentTimeMillis();
+        scheduler.submitPoll("slow", now + 3000, operation("slow"));
+        scheduler.submitPoll("fast", now + 100, operation("fast"));
+        CompletableFuture<?> last = scheduler.submitPoll("medium", now + 1000, operation("medium"));
+
+        release.countDown();
+        last.get(1, TimeUnit.SECONDS);
+        scheduler.submitPoll("end", now, operation("end")).get(1, TimeUnit.SECONDS);
+
+        assertThat(executed, is(equalTo(List.of("fast", "medium", "slow", "end"))));
+    }
+
+    @Test
+    public void testPollerHasAtMostOneQueuedPoll() throws Exception {
+        CountDownLatch release = block();
+        long now = System.currentTimeMillis();
+        CompletableFuture<?> first = scheduler.submitPoll("fast", now, operation("fast"));
+        CompletableFuture<?> second = scheduler.submitPoll("fast", now, operation("fast"));
+        scheduler.submitPoll("slow", now + 1000, operation("slow"));
+        CompletableFuture<?> third = scheduler.submitPoll("fast", now, operation("fast"));
+
+        assertThat(second, is(sameInstance(first)));
+        assertThat(third, is(sameInstance(first)));
+        assertThat(scheduler.getQueueSize(), is(equalTo(2)));
+
+        release.countDown();
+        scheduler.submitPoll(null, now + 2000, operation("end")).get(1, TimeUnit.SECONDS);
+        assertThat(executed, is(equalTo(List.of("fast", "slow", "end"))));
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        CountDownLatch release = block();
+        long now = System.currentTimeMillis();
+        CompletableFuture<?> canceled = scheduler.submitPoll("poller1", now, operation("poll1"));
+        scheduler.submitPoll("poller2", now, operation("poll2"));
+        scheduler.cancel("poller1");
+
+        release.countDown();
+        scheduler.submitPoll(null, now, operation("end")).get(1, TimeUnit.SECONDS);
+
+        assertTrue(canceled.isCancelled());
+        assertThat(executed, is(equalTo(List.of("poll2", "end"))));
+    }
+
+    @Test
+    public void testCloseCancelsQueuedOperations() throws Exception {
+        CountDownLatch release = block();
+        CompletableFuture<?> queued = scheduler.submitWrite(operation("write"));
+        scheduler.close();
+        release.countDown();
+
+        assertTrue(queued.isCancelled());
+        executor.submit(() -> null).get(1, TimeUnit.SECONDS);
+        assertThat(executed.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testCloseWhenIdleExecutesQueuedOperations() throws Exception {
+        CountDownLatch release = block();
+        CompletableFuture<?> queued = scheduler.submitWrite(operation("write"));
+        CountDownLatch closed = new CountDownLatch(1);
+        scheduler.closeWhenIdle(closed::countDown);
+        assertThat(closed.getCount(), is(equalTo(1L)));
+
+        release.countDown();
+        queued.get(1, TimeUnit.SECONDS);
+        assertTrue(closed.await(1, TimeUnit.SECONDS));
+        assertThat(executed, is(equalTo(List.of("write"))));
+        assertThat(scheduler.retain(), is(false));
+        assertThrows(RejectedExecutionException.class, () -> scheduler.submitWrite(operation("rejected")));
+    }
+
+    @Test
+    public void testRetainWithdrawsCloseWhenIdle() throws Exception {
+        CountDownLatch release = block();
+        CountDownLatch closed = new CountDownLatch(1);
+        scheduler.closeWhenIdle(closed::countDown);
+        assertThat(scheduler.retain(), is(true));
+
+        release.countDown();
+        scheduler.submitWrite(operation("write")).get(1, TimeUnit.SECONDS);
+        assertThat(closed.getCount(), is(equalTo(1L)));
+        assertThat(executed, is(equalTo(List.of("write"))));
+    }
+
+    @Test
+    public void testDelayBetweenTransactionsDoesNotBlockExecutor() throws Exception {
+        scheduler.close();
+        scheduler = new EndpointScheduler("paced", executor,
+                () -> lastEnd.get() == 0 ? 0 : lastEnd.get() + DELAY_MILLIS - System.currentTimeMillis());
+        List<Long> starts = new CopyOnWriteArrayList<>();
+        CompletableFuture<?> last = null;
+        for (int i = 0; i < 3; i++) {
+            last = scheduler.submitWrite(() -> {
+                starts.add(System.currentTimeMillis());
+                lastEnd.set(System.currentTimeMillis());
+            });
+        }
+
+        // while the scheduler waits, the only thread of the executor is free for other tasks
+        Thread.sleep(DELAY_MILLIS / 2);
+        long submitted = System.currentTimeMillis();
+        long otherTaskExecuted = executor.submit(System::currentTimeMillis).get(1, TimeUnit.SECONDS);
+        assertTrue(otherTaskExecuted - submitted < DELAY_MILLIS / 2,
+                "other task waited " + (otherTaskExecuted - submitted) + " ms");
+
+        last.get(1, TimeUnit.SECONDS);
+        assertThat(starts.size(), is(equalTo(3)));
+        for (int i = 1; i < starts.size(); i++) {
+            long gap = starts.get(i) - starts.get(i - 1);
+            assertTrue(gap >= DELAY_MILLIS, "gap between transactions was only " + gap + " ms");
+        }
+    }
+}
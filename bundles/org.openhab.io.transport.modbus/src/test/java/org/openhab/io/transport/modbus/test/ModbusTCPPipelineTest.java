@@ -0,0 +1,215 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.io.transport.modbus.test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openhab.io.transport.modbus.internal.ModbusTCPPipeline;
+
+import net.wimpi.modbus.msg.ModbusResponse;
+import net.wimpi.modbus.msg.ReadMultipleRegistersRequest;
+import net.wimpi.modbus.msg.ReadMultipleRegistersResponse;
+
+/**
+ * Tests {@link ModbusTCPPipeline} against a minimal Modbus TCP slave, which collects a batch of requests before
+ * answering them in reverse order.
+ *
+ * Read holding registers requests are answered with the register values <code>start, start + 1, ...</code>. Requests
+ * for start address {@link #UNANSWERED_ADDRESS} are never answered, requests for {@link #DISCONNECT_ADDRESS} close the
+ * connection.
+ *
+ * @author agent - Initial contribution
+ */
+public class ModbusTCPPipelineTest {
+
+    private static final int UNANSWERED_ADDRESS = 999;
+    private static final int DISCONNECT_ADDRESS = 666;
+    private static final long TIMEOUT_MILLIS = 2000;
+
+    private ServerSocket serverSocket;
+    private Thread slaveThread;
+    private volatile int batchSize = 1;
+    private final AtomicInteger maxOutstanding = new AtomicInteger();
+    private final AtomicInteger connections = new AtomicInteger();
+    private ModbusTCPPipeline pipeline;
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        serverSocket = new ServerSocket(0);
+        slaveThread = new Thread(this::runSlave, "modbus-slave-stand-in");
+        slaveThread.setDaemon(true);
+        slaveThread.start();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        if (pipeline != null) {
+            pipeline.close();
+        }
+        executor.shutdownNow();
+        serverSocket.close();
+    }
+
+    private void runSlave() {
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+                connections.incrementAndGet();
+                serve(socket);
+            } catch (IOException e) {
+                // connection closed, accept the next one
+            }
+        }
+    }
+
+    private void serve(Socket socket) throws IOException {
+        DataInputStream input = new DataInputStream(socket.getInputStream());
+        DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+        List<int[]> batch = new ArrayList<>();
+        while (true) {
+            int transactionId = input.readUnsignedShort();
+            input.readUnsignedShort(); // protocol ID
+            input.readUnsignedShort(); // length
+            int unitId = input.readUnsignedByte();
+            int functionCode = input.readUnsignedByte();
+            int start = input.readUnsignedShort();
+            int count = input.readUnsignedShort();
+            if (start == DISCONNECT_ADDRESS) {
+                return;
+            }
+            if (start != UNANSWERED_ADDRESS) {
+                batch.add(new int[] { transactionId, unitId, functionCode, start, count });
+            }
+            maxOutstanding.accumulateAndGet(batch.size(), Math::max);
+            if (batch.size() < batchSize) {
+                continue;
+            }
+            Collections.reverse(batch);
+            for (int[] request : batch) {
+                int byteCount = 2 * request[4];
+                output.writeShort(request[0]);
+                output.writeShort(0);
+                output.writeShort(3 + byteCount);
+                output.writeByte(request[1]);
+                output.writeByte(request[2]);
+                output.writeByte(byteCount);
+                for (int i = 0; i < request[4]; i++) {
+                    output.writeShort(request[3] + i);
+                }
+            }
+            output.flush();
+            batch.clear();
+        }
+    }
+
+    private static ReadMultipleRegistersRequest request(int start, int count) {
+        ReadMultipleRegistersRequest request = new ReadMultipleRegistersRequest(start, count);
+        request.setUnitID(1);
+        return request;
+    }
+
+    private ModbusResponse execute(int start, int count) throws Exception {
+        return pipeline.execute(request(start, count));
+    }
+
+    private static void assertRegisters(ModbusResponse response, int start, int count) {
+        assertThat(response, is(instanceOf(ReadMultipleRegistersResponse.class)));
+        ReadMultipleRegistersResponse registers = (ReadMultipleRegistersResponse) response;
+        assertThat(registers.getWordCount(), is(equalTo(count)));
+        for (int i = 0; i < count; i++) {
+            assertThat(registers.getRegisterValue(i), is(equalTo(start + i)));
+        }
+    }
+
+    @Test
+    public void testSequentialRequests() throws Exception {
+        pipeline = new ModbusTCPPipeline("localhost", serverSocket.getLocalPort(), 4, 0, TIMEOUT_MILLIS);
+
+        for (int start = 0; start < 5; start++) {
+            assertRegisters(execute(start * 10, 3), start * 10, 3);
+        }
+        assertThat(connections.get(), is(equalTo(1)));
+    }
+
+    @Test
+    public void testOutOfOrderResponsesAreMatchedByTransactionId() throws Exception {
+        batchSize = 3;
+        pipeline = new ModbusTCPPipeline("localhost", serverSocket.getLocalPort(), 3, 0, TIMEOUT_MILLIS);
+
+        List<Future<ModbusResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            int start = 100 * i;
+            int count = 2 + i;
+            futures.add(executor.submit(() -> execute(start, count)));
+        }
+        for (int i = 0; i < 3; i++) {
+            assertRegisters(futures.get(i).get(), 100 * i, 2 + i);
+        }
+        assertThat(maxOutstanding.get(), is(equalTo(3)));
+    }
+
+    @Test
+    public void testWindowLimitsOutstandingTransactions() throws Exception {
+        batchSize = 2;
+        pipeline = new ModbusTCPPipeline("localhost", serverSocket.getLocalPort(), 2, 0, TIMEOUT_MILLIS);
+
+        List<Future<ModbusResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            int start = 10 * i;
+            futures.add(executor.submit(() -> execute(start, 1)));
+        }
+        for (int i = 0; i < 6; i++) {
+            assertRegisters(futures.get(i).get(), 10 * i, 1);
+        }
+        assertThat(maxOutstanding.get(), is(equalTo(2)));
+    }
+
+    @Test
+    public void testTimeoutDoesNotAffectOtherTransactions() throws Exception {
+        pipeline = new ModbusTCPPipeline("localhost", serverSocket.getLocalPort(), 2, 0, 300);
+
+        assertThrows(SocketTimeoutException.class, () -> execute(UNANSWERED_ADDRESS, 1));
+        assertRegisters(execute(5, 2), 5, 2);
+        assertThat(connections.get(), is(equalTo(1)));
+    }
+
+    @Test
+    public void testReconnectAfterConnectionLoss() throws Exception {
+        pipeline = new ModbusTCPPipeline("localhost", serverSocket.getLocalPort(), 2, 0, TIMEOUT_MILLIS);
+
+        assertRegisters(execute(1, 1), 1, 1);
+        assertThrows(IOException.class, () -> execute(DISCONNECT_ADDRESS, 1));
+        assertRegisters(execute(2, 1), 2, 1);
+        assertThat(connections.get(), is(equalTo(2)));
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.io.transport.modbus.test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.openhab.io.transport.modbus.AsyncModbusReadResult;
+import org.openhab.io.transport.modbus.BitArray;
+import org.openhab.io.transport.modbus.ModbusReadFunctionCode;
+import org.openhab.io.transport.modbus.ModbusReadRequestBlueprint;
+import org.openhab.io.transport.modbus.ModbusRegisterArray;
+import org.openhab.io.transport.modbus.PollTask;
+import org.openhab.io.transport.modbus.endpoint.ModbusTCPSlaveEndpoint;
+import org.openhab.io.transport.modbus.internal.BasicPollTask;
+import org.openhab.io.transport.modbus.internal.ReadRequestPlanner;
+import org.openhab.io.transport.modbus.internal.ReadRequestPlanner.CoalescedRead;
+
+/**
+ * @author agent - Initial contribution
+ */
+public class ReadRequestPlannerTest {
+
+    private static final ModbusTCPSlaveEndpoint ENDPOINT = new ModbusTCPSlaveEndpoint("localhost", 502);
+
+    private static PollTask task(int unitId, ModbusReadFunctionCode functionCode, int start, int length) {
+        return new BasicPollTask(ENDPOINT, new ModbusReadRequestBlueprint(unitId, functionCode, start, length, 1),
+                result -> {
+                }, failure -> {
+                });
+    }
+
+    private static PollTask registers(int start, int length) {
+        return task(1, ModbusReadFunctionCode.READ_MULTIPLE_REGISTERS, start, length);
+    }
+
+    @Test
+    public void testAdjacentRequestsAreMerged() {
+        PollTask first = registers(0, 10);
+        PollTask second = registers(10, 31);
+        PollTask third = registers(45, 16);
+        List<CoalescedRead> plan = ReadRequestPlanner.plan(List.of(third, first, second), 0);
+
+        assertThat(plan.size(), is(equalTo(2)));
+        assertThat(plan.get(0).getRequest().getReference(), is(equalTo(0)));
+        assertThat(plan.get(0).getRequest().getDataLength(), is(equalTo(41)));
+        assertThat(plan.get(0).getMembers(), is(equalTo(List.of(first, second))));
+        assertThat(plan.get(1).getRequest(), is(equalTo(third.getRequest())));
+    }
+
+    @Test
+    public void testGapTolerance() {
+        List<CoalescedRead> plan = ReadRequestPlanner.plan(List.of(registers(0, 10), registers(10, 31),
+                registers(45, 16)), 4);
+
+        assertThat(plan.size(), is(equalTo(1)));
+        assertThat(plan.get(0).getRequest().getReference(), is(equalTo(0)));
+        assertThat(plan.get(0).getRequest().getDataLength(), is(equalTo(61)));
+        assertThat(plan.get(0).getMembers().size(), is(equalTo(3)));
+    }
+
+    @Test
+    public void testOverlappingRequests() {
+        List<CoalescedRead> plan = ReadRequestPlanner.plan(List.of(registers(5, 20), registers(0, 10),
+                registers(5, 20)), 0);
+
+        assertThat(plan.size(), is(equalTo(1)));
+        assertThat(plan.get(0).getRequest().getReference(), is(equalTo(0)));
+        assertThat(plan.get(0).getRequest().getDataLength(), is(equalTo(25)));
+        assertThat(plan.get(0).getMembers().size(), is(equalTo(3)));
+    }
+
+    @Test
+    public void testRegisterLimit() {
+        List<CoalescedRead> plan = ReadRequestPlanner.plan(List.of(registers(0, 100), registers(100, 25),
+                registers(125, 1)), 0);
+
+        assertThat(plan.size(), is(equalTo(2)));
+        assertThat(plan.get(0).getRequest().getDataLength(), is(equalTo(125)));
+        assertThat(plan.get(1).getRequest().getReference(), is(equalTo(125)));
+    }
+
+    @Test
+    public void testCoilLimit() {
+        List<CoalescedRead> plan = ReadRequestPlanner
+                .plan(List.of(task(1, ModbusReadFunctionCode.READ_COILS, 0, 1000),
+                        task(1, ModbusReadFunctionCode.READ_COILS, 1000, 1000),
+                        task(1, ModbusReadFunctionCode.READ_COILS, 2000, 8)), 0);
+
+        assertThat(plan.size(), is(equalTo(2)));
+        assertThat(plan.get(0).getRequest().getDataLength(), is(equalTo(2000)));
+    }
+
+    @Test
+    public void testDifferentUnitsAndFunctionCodesAreNotMerged() {
+        List<CoalescedRead> plan = ReadRequestPlanner.plan(
+                List.of(registers(0, 10), task(2, ModbusReadFunctionCode.READ_MULTIPLE_REGISTERS, 10, 10),
+                        task(1, ModbusReadFunctionCode.READ_INPUT_REGISTERS, 10, 10)),
+                100);
+
+        assertThat(plan.size(), is(equalTo(3)));
+    }
+
+    @Test
+    public void testMaxTriesOfMergedRequest() {
+        PollTask first = new BasicPollTask(ENDPOINT,
+                new ModbusReadRequestBlueprint(1, ModbusReadFunctionCode.READ_MULTIPLE_REGISTERS, 0, 2, 1), result -> {
+                }, failure -> {
+                });
+        PollTask second = new BasicPollTask(ENDPOINT,
+                new ModbusReadRequestBlueprint(1, ModbusReadFunctionCode.READ_MULTIPLE_REGISTERS, 2, 2, 3), result -> {
+                }, failure -> {
+                });
+        List<CoalescedRead> plan = ReadRequestPlanner.plan(List.of(first, second), 0);
+
+        assertThat(plan.size(), is(equalTo(1)));
+        assertThat(plan.get(0).getRequest().getMaxTries(), is(equalTo(3)));
+    }
+
+    @Test
+    public void testSliceRegisters() {
+        ModbusReadRequestBlueprint merged = new ModbusReadRequestBlueprint(1,
+                ModbusReadFunctionCode.READ_MULTIPLE_REGISTERS, 10, 5, 1);
+        AsyncModbusReadResult result = new AsyncModbusReadResult(merged, new ModbusRegisterArray(1, 2, 3, 4, 5));
+        ModbusReadRequestBlueprint request = new ModbusReadRequestBlueprint(1,
+                ModbusReadFunctionCode.READ_MULTIPLE_REGISTERS, 12, 2, 1);
+
+        AsyncModbusReadResult slice = ReadRequestPlanner.slice(result, request);
+
+        assertThat(slice.getRequest(), is(sameInstance(request)));
+        ModbusRegisterArray registers = slice.getRegisters().get();
+        assertThat(registers.size(), is(equalTo(2)));
+        assertThat(registers.getRegister(0).getValue(), is(equalTo(3)));
+        assertThat(registers.getRegister(1).getValue(), is(equalTo(4)));
+    }
+
+    @Test
+    public void testSliceBits() {
+        ModbusReadRequestBlueprint merged = new ModbusReadRequestBlueprint(1, ModbusReadFunctionCode.READ_COILS, 0, 5,
+                1);
+        AsyncModbusReadResult result = new AsyncModbusReadResult(merged,
+                new BitArray(true, false, false, true, true));
+        ModbusReadRequestBlueprint request = new ModbusReadRequestBlueprint(1, ModbusReadFunctionCode.READ_COILS, 2,
+                3, 1);
+
+        AsyncModbusReadResult slice = ReadRequestPlanner.slice(result, request);
+
+        assertThat(slice.getBits().get(), is(equalTo(new BitArray(false, true, true))));
+    }
+}
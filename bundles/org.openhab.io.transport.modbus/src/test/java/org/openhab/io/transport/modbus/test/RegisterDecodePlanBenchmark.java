@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.io.transport.modbus.test;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.io.transport.modbus.ModbusBitUtilities;
+import org.openhab.io.transport.modbus.ModbusConstants.ValueType;
+import org.openhab.io.transport.modbus.ModbusRegisterArray;
+import org.openhab.io.transport.modbus.RegisterDecodePlan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares decoding the values of all data things of a poller with a {@link RegisterDecodePlan} with decoding every
+ * value on its own with {@link ModbusBitUtilities#extractStateFromRegisters(ModbusRegisterArray, int, ValueType)}, as
+ * the data things did before.
+ *
+ * The poller reads 120 registers. The values are a mix of 16 and 32 bit types spread over the registers. Every
+ * invocation decodes the next response, in which either none or a quarter of the registers have changed.
+ *
+ * This is not run by the build. Run the main method with the test class path, e.g. from the IDE.
+ *
+ * @author agent - Initial contribution
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RegisterDecodePlanBenchmark {
+
+    private static final int REGISTERS = 120;
+    private static final ValueType[] TYPES = { ValueType.INT16, ValueType.UINT16, ValueType.FLOAT32,
+            ValueType.INT32_SWAP };
+
+    @Param({ "10", "60" })
+    private int things;
+
+    @Param({ "0", "25" })
+    private int changedPercent;
+
+    private final int[] indices = new int[60];
+    private final ValueType[] types = new ValueType[60];
+    private final ModbusRegisterArray[] responses = new ModbusRegisterArray[2];
+    private RegisterDecodePlan plan;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RegisterDecodePlan.Builder builder = new RegisterDecodePlan.Builder();
+        for (int i = 0; i < things; i++) {
+            types[i] = TYPES[i % TYPES.length];
+            // 16 bit values at every even register, 32 bit values at the odd register before them
+            indices[i] = types[i].getBits() == 16 ? 2 * i : 2 * i - 1;
+            builder.add(indices[i], types[i]);
+        }
+        plan = builder.build();
+        for (int response = 0; response < responses.length; response++) {
+            int[] values = new int[REGISTERS];
+            for (int i = 0; i < REGISTERS; i++) {
+                boolean changing = i * 100 / REGISTERS < changedPercent;
+                values[i] = changing ? 1000 * response + i : i;
+            }
+            responses[response] = new ModbusRegisterArray(values);
+        }
+    }
+
+    @Benchmark
+    public void decodeWithPlan(Blackhole blackhole) {
+        plan.decode(responses[counter++ & 1]);
+        for (int slot = 0; slot < things; slot++) {
+            if (plan.isChanged(slot)) {
+                blackhole.consume(plan.getState(slot));
+            }
+        }
+    }
+
+    @Benchmark
+    public void decodeEachThing(Blackhole blackhole) {
+        ModbusRegisterArray registers = responses[counter++ & 1];
+        for (int i = 0; i < things; i++) {
+            blackhole.consume(ModbusBitUtilities.extractStateFromRegisters(registers, indices[i], types[i]));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RegisterDecodePlanBenchmark.class.getSimpleName()).build()).run();
+    }
+}
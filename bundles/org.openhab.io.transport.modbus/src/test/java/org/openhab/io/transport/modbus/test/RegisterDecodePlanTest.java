@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.io.transport.modbus.test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Optional;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.io.transport.modbus.ModbusConstants.ValueType;
+import org.openhab.io.transport.modbus.ModbusRegisterArray;
+import org.openhab.io.transport.modbus.RegisterDecodePlan;
+
+/**
+ * @author agent - Initial contribution
+ */
+public class RegisterDecodePlanTest {
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @ParameterizedTest
+    @MethodSource("org.openhab.io.transport.modbus.test.BitUtilitiesExtractStateFromRegistersTest#data")
+    public void testSameStateAsExtractStateFromRegisters(Object expectedResult, ValueType type,
+            ModbusRegisterArray registers, int index) {
+        RegisterDecodePlan.Builder builder = new RegisterDecodePlan.Builder();
+        int slot = builder.add(index, type);
+        RegisterDecodePlan plan = builder.build();
+        plan.decode(registers);
+        if (expectedResult instanceof Class && Exception.class.isAssignableFrom((Class) expectedResult)) {
+            assertThrows((Class) expectedResult, () -> plan.getState(slot));
+            return;
+        }
+
+        Optional<@NonNull DecimalType> expectedStateWrapped = expectedResult instanceof DecimalType
+                ? Optional.of((DecimalType) expectedResult)
+                : (Optional<@NonNull DecimalType>) expectedResult;
+        assertThat(String.format("registers=%s, index=%d, type=%s", registers, index, type), plan.getState(slot),
+                is(equalTo(expectedStateWrapped)));
+    }
+
+    @Test
+    public void testOnlyChangedRegistersAreDecoded() {
+        RegisterDecodePlan.Builder builder = new RegisterDecodePlan.Builder();
+        int int16 = builder.add(0, ValueType.INT16);
+        int float32 = builder.add(1, ValueType.FLOAT32);
+        int uint16 = builder.add(3, ValueType.UINT16);
+        RegisterDecodePlan plan = builder.build();
+
+        plan.decode(new ModbusRegisterArray(0xFFFF, 0x4148, 0x0000, 7));
+        assertThat(plan.isChanged(int16), is(true));
+        assertThat(plan.isChanged(float32), is(true));
+        assertThat(plan.isChanged(uint16), is(true));
+        assertThat(plan.getState(int16), is(equalTo(Optional.of(new DecimalType(-1)))));
+        assertThat(plan.getState(float32), is(equalTo(Optional.of(new DecimalType(12.5)))));
+        assertThat(plan.getState(uint16), is(equalTo(Optional.of(new DecimalType(7)))));
+
+        plan.decode(new ModbusRegisterArray(0xFFFF, 0x4148, 0x0000, 8));
+        assertThat(plan.isChanged(int16), is(false));
+        assertThat(plan.isChanged(float32), is(false));
+        assertThat(plan.isChanged(uint16), is(true));
+        assertThat(plan.getState(float32), is(equalTo(Optional.of(new DecimalType(12.5)))));
+        assertThat(plan.getState(uint16), is(equalTo(Optional.of(new DecimalType(8)))));
+
+        plan.decode(new ModbusRegisterArray(0xFFFF, 0x4148, 0x8000, 8));
+        assertThat(plan.isChanged(int16), is(false));
+        assertThat(plan.isChanged(float32), is(true));
+        assertThat(plan.isChanged(uint16), is(false));
+        assertThat(plan.getState(float32), is(equalTo(Optional.of(new DecimalType(12.53125)))));
+    }
+
+    @Test
+    public void testBitsOfDifferentRegisters() {
+        RegisterDecodePlan.Builder builder = new RegisterDecodePlan.Builder();
+        int first = builder.add(3, ValueType.BIT);
+        int second = builder.add(17, ValueType.BIT);
+        int highByte = builder.add(3, ValueType.UINT8);
+        RegisterDecodePlan plan = builder.build();
+
+        plan.decode(new ModbusRegisterArray(0, 0x0302));
+        plan.decode(new ModbusRegisterArray(0x0008, 0x0302));
+        assertThat(plan.isChanged(first), is(true));
+        assertThat(plan.isChanged(second), is(false));
+        assertThat(plan.isChanged(highByte), is(false));
+        assertThat(plan.getState(first), is(equalTo(Optional.of(new DecimalType(1)))));
+        assertThat(plan.getState(second), is(equalTo(Optional.of(new DecimalType(1)))));
+        assertThat(plan.getState(highByte), is(equalTo(Optional.of(new DecimalType(3)))));
+    }
+
+    @Test
+    public void testAllChangedWhenRegisterCountChanges() {
+        RegisterDecodePlan.Builder builder = new RegisterDecodePlan.Builder();
+        int slot = builder.add(0, ValueType.UINT16);
+        RegisterDecodePlan plan = builder.build();
+
+        plan.decode(new ModbusRegisterArray(5, 6));
+        plan.decode(new ModbusRegisterArray(5));
+        assertThat(plan.isChanged(slot), is(true));
+        plan.decode(new ModbusRegisterArray(5));
+        assertThat(plan.isChanged(slot), is(false));
+        assertThat(plan.getState(slot), is(equalTo(Optional.of(new DecimalType(5)))));
+    }
+
+    @Test
+    public void testOutOfBounds() {
+        RegisterDecodePlan.Builder builder = new RegisterDecodePlan.Builder();
+        int slot = builder.add(1, ValueType.INT32);
+        RegisterDecodePlan plan = builder.build();
+
+        plan.decode(new ModbusRegisterArray(1, 2));
+        assertThrows(IllegalArgumentException.class, () -> plan.getState(slot));
+        plan.decode(new ModbusRegisterArray(1, 2, 3));
+        assertThat(plan.getState(slot), is(equalTo(Optional.of(new DecimalType(0x20003)))));
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.io.transport.modbus.test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.openhab.io.transport.modbus.internal.RollingLatencyHistogram;
+import org.openhab.io.transport.modbus.metrics.LatencyStatistics;
+
+/**
+ * @author agent - Initial contribution
+ */
+public class RollingLatencyHistogramTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final RollingLatencyHistogram histogram = new RollingLatencyHistogram(1000, 10, now::get);
+
+    @Test
+    public void testEmpty() {
+        LatencyStatistics statistics = histogram.getStatistics();
+        assertThat(statistics.getCount(), is(equalTo(0L)));
+        assertThat(statistics.getMeanMillis(), is(equalTo(0.0)));
+        assertThat(statistics.getPercentileMillis(99), is(equalTo(0L)));
+    }
+
+    @Test
+    public void testStatistics() {
+        for (int i = 0; i < 98; i++) {
+            histogram.record(3);
+        }
+        histogram.record(40);
+        histogram.record(12345);
+        histogram.record(-1);
+
+        LatencyStatistics statistics = histogram.getStatistics();
+        assertThat(statistics.getCount(), is(equalTo(101L)));
+        assertThat(statistics.getSumMillis(), is(equalTo(98 * 3L + 40 + 12345)));
+        assertThat(statistics.getMaxMillis(), is(equalTo(12345L)));
+        // upper bound of the bucket of the percentile
+        assertThat(statistics.getPercentileMillis(50), is(equalTo(5L)));
+        assertThat(statistics.getPercentileMillis(99), is(equalTo(50L)));
+        // beyond the last bound, the maximum is used
+        assertThat(statistics.getPercentileMillis(100), is(equalTo(12345L)));
+        assertThat(statistics.getBucketCounts()[0], is(equalTo(1L)));
+        assertThrows(IllegalArgumentException.class, () -> statistics.getPercentileMillis(0));
+    }
+
+    @Test
+    public void testPercentileIsAtMostMaximum() {
+        histogram.record(3);
+        assertThat(histogram.getStatistics().getPercentileMillis(50), is(equalTo(3L)));
+    }
+
+    @Test
+    public void testOldSlicesLeaveTheWindow() {
+        histogram.record(100);
+        now.addAndGet(500);
+        histogram.record(7);
+        assertThat(histogram.getStatistics().getCount(), is(equalTo(2L)));
+
+        now.addAndGet(500);
+        LatencyStatistics statistics = histogram.getStatistics();
+        assertThat(statistics.getCount(), is(equalTo(1L)));
+        assertThat(statistics.getMaxMillis(), is(equalTo(7L)));
+
+        // slice of the first latency is reused
+        histogram.record(1);
+        statistics = histogram.getStatistics();
+        assertThat(statistics.getCount(), is(equalTo(2L)));
+        assertThat(statistics.getSumMillis(), is(equalTo(8L)));
+
+        now.addAndGet(10_000);
+        assertThat(histogram.getStatistics().getCount(), is(equalTo(0L)));
+    }
+}
@@ -15,10 +15,10 @@ package org.openhab.persistence.dynamodb.internal;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
-import java.util.UUID;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.TimeUnit;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
@@ -32,6 +32,12 @@ import org.slf4j.LoggerFactory;
 /**
  * Abstract class for buffered persistence services
  *
+ * Stored items are added to a lock-free queue, so that any number of threads can store without blocking each other.
+ * The buffer is written by {@link #flushBufferedData()}, which is triggered by {@link #requestFlush()} when the buffer
+ * is full. Items stored while the buffer is full are added to it anyway and written by the pending flush. Only if the
+ * flush falls behind by another full buffer, storing threads wait until it has taken the items, so no data is
+ * discarded. With a buffer size of 0, every item is written immediately on the calling thread.
+ *
  * @param <T> Type of the state as accepted by the AWS SDK.
  *
  * @author Sami Salonen - Initial contribution
@@ -41,25 +47,46 @@ import org.slf4j.LoggerFactory;
 @NonNullByDefault
 public abstract class AbstractBufferedPersistenceService<T> implements PersistenceService {
 
-    private static final long BUFFER_OFFER_TIMEOUT_MILLIS = 500;
+    // time after which a waiting store requests the flush again
+    private static final long BUFFER_WAIT_MILLIS = 500;
 
     private final Logger logger = LoggerFactory.getLogger(AbstractBufferedPersistenceService.class);
-    protected @Nullable BlockingQueue<T> buffer;
+    protected final Queue<T> buffer = new ConcurrentLinkedQueue<>();
+    // ConcurrentLinkedQueue.size() traverses the queue, so the size is tracked separately
+    private final AtomicInteger bufferedCount = new AtomicInteger();
+    private final AtomicLong waitedCount = new AtomicLong();
+    // notified when items are taken from the buffer
+    private final Object bufferTaken = new Object();
 
+    private int capacity = 1;
     private boolean writeImmediately;
 
     protected void resetWithBufferSize(int bufferSize) {
-        int capacity = Math.max(1, bufferSize);
-        buffer = new ArrayBlockingQueue<>(capacity, true);
+        capacity = Math.max(1, bufferSize);
         writeImmediately = bufferSize == 0;
+        buffer.clear();
+        bufferedCount.set(0);
     }
 
     protected abstract T persistenceItemFromState(String name, State state, ZonedDateTime time);
 
     protected abstract boolean isReadyToStore();
 
+    /**
+     * Writes all buffered items. Called by a single thread at a time.
+     */
     protected abstract void flushBufferedData();
 
+    /**
+     * Requests an asynchronous call of {@link #flushBufferedData()}, never blocks.
+     */
+    protected abstract void requestFlush();
+
+    /**
+     * Writes a single item on the calling thread, used when the buffer size is 0.
+     */
+    protected abstract void writeImmediately(T persistenceItem);
+
     @Override
     public void store(Item item) {
         store(item, null);
@@ -68,7 +95,6 @@ public abstract class AbstractBufferedPersistenceService<T> implements Persisten
     @Override
     public void store(Item item, @Nullable String alias) {
         long storeStart = System.currentTimeMillis();
-        String uuid = UUID.randomUUID().toString();
         if (item.getState() instanceof UnDefType) {
             logger.debug("Undefined item state received. Not storing item {}.", item.getName());
             return;
@@ -76,54 +102,90 @@ public abstract class AbstractBufferedPersistenceService<T> implements Persisten
         if (!isReadyToStore()) {
             return;
         }
-        if (buffer == null) {
-            throw new IllegalStateException("Buffer not initialized with resetWithBufferSize. Bug?");
-        }
         ZonedDateTime time = ZonedDateTime.ofInstant(Instant.ofEpochMilli(storeStart), ZoneId.systemDefault());
         String realName = item.getName();
         String name = (alias != null) ? alias : realName;
         State state = item.getState();
         T persistenceItem = persistenceItemFromState(name, state, time);
-        logger.trace("store() called with item {}, which was converted to {} [{}]", item, persistenceItem, uuid);
+        logger.trace("store() called with item {}, which was converted to {}", item, persistenceItem);
         if (writeImmediately) {
-            logger.debug("Writing immediately item {} [{}]", realName, uuid);
-            // We want to write everything immediately
-            // Synchronous behavior to ensure buffer does not get full.
-            synchronized (this) {
-                boolean buffered = addToBuffer(persistenceItem);
-                assert buffered;
-                flushBufferedData();
-            }
+            logger.debug("Writing immediately item {}", realName);
+            writeImmediately(persistenceItem);
         } else {
-            long bufferStart = System.currentTimeMillis();
-            boolean buffered = addToBuffer(persistenceItem);
-            if (buffered) {
-                logger.debug("Buffered item {} in {} ms. Total time for store(): {} [{}]", realName,
-                        System.currentTimeMillis() - bufferStart, System.currentTimeMillis() - storeStart, uuid);
-            } else {
-                logger.debug(
-                        "Buffer is full. Writing buffered data immediately and trying again. Consider increasing bufferSize");
-                // Buffer is full, commit it immediately
-                flushBufferedData();
-                boolean buffered2 = addToBuffer(persistenceItem);
-                if (buffered2) {
-                    logger.debug("Buffered item in {} ms (2nd try, flushed buffer in-between) [{}]",
-                            System.currentTimeMillis() - bufferStart, uuid);
-                } else {
-                    // The unlikely case happened -- buffer got full again immediately
-                    logger.warn("Buffering failed for the second time -- Too small bufferSize? Discarding data [{}]",
-                            uuid);
-                }
-            }
+            addToBuffer(persistenceItem);
+            logger.debug("Buffered item {} in {} ms", realName, System.currentTimeMillis() - storeStart);
         }
     }
 
-    protected boolean addToBuffer(T persistenceItem) {
+    /**
+     * Adds an item to the buffer and requests a flush once the buffer is full. If the buffer holds twice its capacity,
+     * i.e. the flush does not keep up, the calling thread waits until the buffer has been taken by the flush. The item
+     * is buffered in any case.
+     */
+    protected void addToBuffer(T persistenceItem) {
+        buffer.add(persistenceItem);
+        int count = bufferedCount.incrementAndGet();
+        if (count < capacity) {
+            return;
+        }
+        requestFlush();
+        if (count > 2 * capacity) {
+            awaitBufferTaken();
+        }
+    }
+
+    private void awaitBufferTaken() {
+        long waited = waitedCount.incrementAndGet();
+        if (waited == 1) {
+            logger.warn("Buffer is full, storing waits until the buffered data has been written. Consider increasing "
+                    + "bufferSize");
+        } else {
+            logger.debug("Buffer is full, storing waits until the buffered data has been written. Waited so far: {}",
+                    waited);
+        }
         try {
-            return buffer != null && buffer.offer(persistenceItem, BUFFER_OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            synchronized (bufferTaken) {
+                while (bufferedCount.get() > capacity) {
+                    bufferTaken.wait(BUFFER_WAIT_MILLIS);
+                    if (bufferedCount.get() > capacity) {
+                        requestFlush();
+                    }
+                }
+            }
         } catch (InterruptedException e) {
-            logger.warn("Interrupted when trying to buffer data! Dropping data");
-            return false;
+            // the item is buffered already
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Removes the head of the buffer.
+     *
+     * @return the item or <code>null</code> if the buffer is empty
+     */
+    protected @Nullable T pollBuffer() {
+        T persistenceItem = buffer.poll();
+        if (persistenceItem != null) {
+            if (bufferedCount.decrementAndGet() == capacity) {
+                synchronized (bufferTaken) {
+                    bufferTaken.notifyAll();
+                }
+            }
         }
+        return persistenceItem;
+    }
+
+    /**
+     * Returns the number of buffered items.
+     */
+    public int getBufferedCount() {
+        return bufferedCount.get();
+    }
+
+    /**
+     * Returns the number of times storing had to wait because the buffer was full.
+     */
+    public long getWaitedCount() {
+        return waitedCount.get();
     }
 }
@@ -13,25 +13,28 @@
 package org.openhab.persistence.dynamodb.internal;
 
 import java.time.ZonedDateTime;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
 import org.openhab.core.common.NamedThreadFactory;
+import org.openhab.core.common.ThreadPoolManager;
 import org.openhab.core.config.core.ConfigurableService;
 import org.openhab.core.items.Item;
 import org.openhab.core.items.ItemNotFoundException;
@@ -76,6 +79,9 @@ import com.amazonaws.services.dynamodbv2.model.WriteRequest;
  *
  * The service creates tables automatically, one for numbers, and one for strings.
  *
+ * Buffered data is written in chunks of at most {@link #BATCH_WRITE_MAX_ITEMS} items, which is the limit of a single
+ * BatchWriteItem request. The chunks of all tables are written in parallel.
+ *
  * @see AbstractDynamoDBItem.fromState for details how different items are persisted
  *
  * @author Sami Salonen - Initial contribution
@@ -163,6 +169,8 @@ public class DynamoDBPersistenceService extends AbstractBufferedPersistenceServi
     private static final int WAIT_ON_FIRST_RESOURCE_NOT_FOUND_MILLIS = 5000;
     private static final int[] WAIT_MILLIS_IN_RETRIES = new int[] { 100, 100, 200, 300, 500 };
     private static final String DYNAMODB_THREADPOOL_NAME = "dynamodbPersistenceService";
+    // maximum number of items in one BatchWriteItem request
+    static final int BATCH_WRITE_MAX_ITEMS = 25;
 
     private final ItemRegistry itemRegistry;
     private @Nullable DynamoDBClient db;
@@ -173,6 +181,15 @@ public class DynamoDBPersistenceService extends AbstractBufferedPersistenceServi
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1,
             new NamedThreadFactory(DYNAMODB_THREADPOOL_NAME));
     private @Nullable ScheduledFuture<?> writeBufferedDataFuture;
+    private final ExecutorService writerPool = ThreadPoolManager.getPool(DYNAMODB_THREADPOOL_NAME + "-writer");
+    private final AtomicBoolean flushPending = new AtomicBoolean();
+
+    // metrics
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong batchWriteCount = new AtomicLong();
+    private final AtomicLong batchWriteTimeTotal = new AtomicLong();
+    private final AtomicLong batchWriteTimeMax = new AtomicLong();
 
     @Activate
     public DynamoDBPersistenceService(final @Reference ItemRegistry itemRegistry) {
@@ -242,6 +259,19 @@ public class DynamoDBPersistenceService extends AbstractBufferedPersistenceServi
             writeBufferedDataFuture.cancel(false);
             writeBufferedDataFuture = null;
         }
+        if (isProperlyConfigured) {
+            // write what is left in the buffer before the client is closed. The flush runs on the scheduler so that
+            // it waits for a scheduled or requested flush which is still running.
+            try {
+                scheduler.submit(this::flushBufferedData).get();
+            } catch (ExecutionException e) {
+                logger.warn("Flushing of buffered data failed unexpectedly", e.getCause());
+            } catch (InterruptedException e) {
+                logger.debug("Interrupted while flushing buffered data!");
+                Thread.currentThread().interrupt();
+            }
+        }
+        logger.debug("dynamodb persistence service metrics: {}", getMetrics());
         resetClient();
     }
 
@@ -388,47 +418,77 @@ public class DynamoDBPersistenceService extends AbstractBufferedPersistenceServi
         return Collections.emptySet();
     }
 
+    @Override
+    protected void requestFlush() {
+        if (flushPending.compareAndSet(false, true)) {
+            scheduler.execute(() -> {
+                try {
+                    flushBufferedData();
+                } catch (RuntimeException e) {
+                    logger.warn("Flushing of buffered data failed unexpectedly", e);
+                }
+            });
+        }
+    }
+
+    @Override
+    protected void writeImmediately(DynamoDBItem<?> persistenceItem) {
+        flushBatch(getDBMapper(tableNameResolver.fromItem(persistenceItem)), List.of(persistenceItem));
+    }
+
     @Override
     protected void flushBufferedData() {
-        if (buffer != null && buffer.isEmpty()) {
+        flushPending.set(false);
+        if (buffer.isEmpty()) {
             return;
         }
-        logger.debug("Writing buffered data. Buffer size: {}", buffer.size());
-
-        for (;;) {
-            Map<String, Deque<DynamoDBItem<?>>> itemsByTable = readBuffer();
-            // Write batch of data, one table at a time
-            for (Entry<String, Deque<DynamoDBItem<?>>> entry : itemsByTable.entrySet()) {
-                String tableName = entry.getKey();
-                Deque<DynamoDBItem<?>> batch = entry.getValue();
-                if (!batch.isEmpty()) {
-                    flushBatch(getDBMapper(tableName), batch);
-                }
+        logger.debug("Writing buffered data. Buffer size: {}", getBufferedCount());
+        long flushStart = System.currentTimeMillis();
+
+        // Write chunks of all tables in parallel, and wait for them so that flushes do not overlap
+        List<Future<?>> writes = new ArrayList<>();
+        List<Integer> chunkSizes = new ArrayList<>();
+        for (Entry<String, List<List<DynamoDBItem<?>>>> entry : readBuffer().entrySet()) {
+            DynamoDBMapper mapper = getDBMapper(entry.getKey());
+            for (List<DynamoDBItem<?>> chunk : entry.getValue()) {
+                writes.add(writerPool.submit(() -> flushBatch(mapper, chunk)));
+                chunkSizes.add(chunk.size());
             }
-            if (buffer != null && buffer.isEmpty()) {
-                break;
+        }
+        for (int i = 0; i < writes.size(); i++) {
+            try {
+                writes.get(i).get();
+            } catch (ExecutionException e) {
+                failedCount.addAndGet(chunkSizes.get(i));
+                logger.warn("Writing buffered data failed unexpectedly, {} items are lost", chunkSizes.get(i),
+                        e.getCause());
+            } catch (InterruptedException e) {
+                logger.debug("Interrupted while writing buffered data!");
+                Thread.currentThread().interrupt();
+                return;
             }
         }
+        logger.debug("Wrote {} chunks in {} ms. {}", writes.size(), System.currentTimeMillis() - flushStart,
+                getMetrics());
     }
 
-    private Map<String, Deque<DynamoDBItem<?>>> readBuffer() {
-        Map<String, Deque<DynamoDBItem<?>>> batchesByTable = new HashMap<>(2);
-        // Get batch of data
-        while (!buffer.isEmpty()) {
-            DynamoDBItem<?> dynamoItem = buffer.poll();
-            if (dynamoItem == null) {
-                break;
-            }
+    /**
+     * Empties the buffer.
+     *
+     * @return the buffered items per table, in chunks of at most {@link #BATCH_WRITE_MAX_ITEMS} items
+     */
+    private Map<String, List<List<DynamoDBItem<?>>>> readBuffer() {
+        Map<String, List<List<DynamoDBItem<?>>>> chunksByTable = new HashMap<>(2);
+        DynamoDBItem<?> dynamoItem;
+        while ((dynamoItem = pollBuffer()) != null) {
             String tableName = tableNameResolver.fromItem(dynamoItem);
-            Deque<DynamoDBItem<?>> batch = batchesByTable.computeIfAbsent(tableName, new Function<>() {
-                @Override
-                public Deque<DynamoDBItem<?>> apply(String t) {
-                    return new ArrayDeque<>();
-                }
-            });
-            batch.add(dynamoItem);
+            List<List<DynamoDBItem<?>>> chunks = chunksByTable.computeIfAbsent(tableName, t -> new ArrayList<>());
+            if (chunks.isEmpty() || chunks.get(chunks.size() - 1).size() >= BATCH_WRITE_MAX_ITEMS) {
+                chunks.add(new ArrayList<>(BATCH_WRITE_MAX_ITEMS));
+            }
+            chunks.get(chunks.size() - 1).add(dynamoItem);
         }
-        return batchesByTable;
+        return chunksByTable;
     }
 
     /**
@@ -437,22 +497,34 @@ public class DynamoDBPersistenceService extends AbstractBufferedPersistenceServi
      * @param mapper mapper associated with the batch
      * @param batch batch of data to write to DynamoDB
      */
-    private void flushBatch(DynamoDBMapper mapper, Deque<DynamoDBItem<?>> batch) {
+    private void flushBatch(DynamoDBMapper mapper, List<DynamoDBItem<?>> batch) {
         long currentTimeMillis = System.currentTimeMillis();
         List<FailedBatch> failed = mapper.batchSave(batch);
+        int lost = 0;
         for (FailedBatch failedBatch : failed) {
             if (failedBatch.getException() instanceof ResourceNotFoundException) {
                 // Table did not exist. Try again after creating table
-                retryFlushAfterCreatingTable(mapper, batch, failedBatch);
+                lost += retryFlushAfterCreatingTable(mapper, batch, failedBatch);
             } else {
                 logger.debug("Batch failed with {}. Retrying next with exponential back-off",
                         failedBatch.getException().getMessage());
-                new ExponentialBackoffRetry(failedBatch.getUnprocessedItems()).run();
+                ExponentialBackoffRetry retry = new ExponentialBackoffRetry(failedBatch.getUnprocessedItems());
+                retry.run();
+                lost += countWriteRequests(retry.getUnprocessedItems());
             }
         }
+        long writeTime = System.currentTimeMillis() - currentTimeMillis;
+        writtenCount.addAndGet(Math.max(0, batch.size() - lost));
+        failedCount.addAndGet(lost);
+        batchWriteCount.incrementAndGet();
+        batchWriteTimeTotal.addAndGet(writeTime);
+        batchWriteTimeMax.accumulateAndGet(writeTime, Math::max);
         if (failed.isEmpty()) {
             logger.debug("flushBatch ended with {} items in {} ms: {}", batch.size(),
                     System.currentTimeMillis() - currentTimeMillis, batch);
+        } else if (lost > 0) {
+            logger.warn("flushBatch ended with {} items in {} ms, {} of them could not be written: {}", batch.size(),
+                    System.currentTimeMillis() - currentTimeMillis, lost, batch);
         } else {
             logger.warn(
                     "flushBatch ended with {} items in {} ms: {}. There were some failed batches that were retried -- check logs for ERRORs to see if writes were successful",
@@ -466,11 +538,12 @@ public class DynamoDBPersistenceService extends AbstractBufferedPersistenceServi
      * @param mapper mapper associated with the batch
      * @param batch original batch of data. Used for logging and to determine table name
      * @param failedBatch failed batch that should be retried
+     * @return number of items which could not be written
      */
-    private void retryFlushAfterCreatingTable(DynamoDBMapper mapper, Deque<DynamoDBItem<?>> batch,
+    private int retryFlushAfterCreatingTable(DynamoDBMapper mapper, List<DynamoDBItem<?>> batch,
             FailedBatch failedBatch) {
         logger.debug("Table was not found. Trying to create table and try saving again");
-        if (createTable(mapper, batch.peek().getClass())) {
+        if (createTable(mapper, batch.get(0).getClass())) {
             logger.debug("Table creation successful, trying to save again");
             if (!failedBatch.getUnprocessedItems().isEmpty()) {
                 ExponentialBackoffRetry retry = new ExponentialBackoffRetry(failedBatch.getUnprocessedItems());
@@ -478,11 +551,22 @@ public class DynamoDBPersistenceService extends AbstractBufferedPersistenceServi
                 if (retry.getUnprocessedItems().isEmpty()) {
                     logger.debug("Successfully saved items after table creation");
                 }
+                return countWriteRequests(retry.getUnprocessedItems());
             }
+            return 0;
         } else {
             logger.warn("Table creation failed. Not storing some parts of batch: {}. Unprocessed items: {}", batch,
                     failedBatch.getUnprocessedItems());
+            return countWriteRequests(failedBatch.getUnprocessedItems());
+        }
+    }
+
+    private static int countWriteRequests(Map<String, List<WriteRequest>> writeRequests) {
+        int count = 0;
+        for (List<WriteRequest> tableRequests : writeRequests.values()) {
+            count += tableRequests.size();
         }
+        return count;
     }
 
     @Override
@@ -544,6 +628,42 @@ public class DynamoDBPersistenceService extends AbstractBufferedPersistenceServi
         return historicItems;
     }
 
+    /**
+     * Returns the number of items written, including items written by retries of failed batches.
+     */
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /**
+     * Returns the number of items which could not be written, even after retries.
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Returns the average time in milliseconds to write a batch, including retries.
+     */
+    public double getBatchWriteTimeAverage() {
+        long count = batchWriteCount.get();
+        return count == 0 ? 0 : (double) batchWriteTimeTotal.get() / count;
+    }
+
+    /**
+     * Returns the maximum time in milliseconds to write a batch, including retries.
+     */
+    public long getBatchWriteTimeMax() {
+        return batchWriteTimeMax.get();
+    }
+
+    private String getMetrics() {
+        return String.format(
+                "Buffered: %d, waited: %d, written: %d, failed: %d, batch write time average: %.1f ms, max: %d ms",
+                getBufferedCount(), getWaitedCount(), getWrittenCount(), getFailedCount(),
+                getBatchWriteTimeAverage(), getBatchWriteTimeMax());
+    }
+
     /**
      * Retrieves the item for the given name from the item registry
      *
@@ -0,0 +1,200 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.dynamodb.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openhab.core.library.items.NumberItem;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.persistence.strategy.PersistenceStrategy;
+import org.openhab.core.types.State;
+import org.openhab.core.types.UnDefType;
+
+/**
+ *
+ * @author agent - Initial contribution
+ *
+ */
+@NonNullByDefault
+public class AbstractBufferedPersistenceServiceTest {
+
+    private static class TestService extends AbstractBufferedPersistenceService<String> {
+        final List<String> written = new ArrayList<>();
+        final List<String> writtenImmediately = new ArrayList<>();
+        final AtomicInteger flushRequests = new AtomicInteger();
+
+        @Override
+        protected String persistenceItemFromState(String name, State state, ZonedDateTime time) {
+            return name + "=" + state;
+        }
+
+        @Override
+        protected boolean isReadyToStore() {
+            return true;
+        }
+
+        @Override
+        protected void flushBufferedData() {
+            String item;
+            while ((item = pollBuffer()) != null) {
+                written.add(item);
+            }
+        }
+
+        @Override
+        protected void requestFlush() {
+            flushRequests.incrementAndGet();
+        }
+
+        @Override
+        protected void writeImmediately(String persistenceItem) {
+            writtenImmediately.add(persistenceItem);
+        }
+
+        @Override
+        public String getId() {
+            return "test";
+        }
+
+        @Override
+        public String getLabel(@Nullable Locale locale) {
+            return "test";
+        }
+
+        @Override
+        public List<PersistenceStrategy> getDefaultStrategies() {
+            return List.of();
+        }
+    }
+
+    private @NonNullByDefault({}) TestService service;
+    private @NonNullByDefault({}) NumberItem item;
+
+    @BeforeEach
+    public void setUp() {
+        service = new TestService();
+        item = new NumberItem("number");
+        item.setState(new DecimalType(1));
+    }
+
+    @Test
+    public void testFlushIsRequestedWhenBufferIsFull() {
+        service.resetWithBufferSize(3);
+        service.store(item);
+        service.store(item);
+        assertEquals(0, service.flushRequests.get());
+        assertEquals(2, service.getBufferedCount());
+
+        service.store(item);
+        assertEquals(1, service.flushRequests.get());
+        assertEquals(3, service.getBufferedCount());
+
+        service.flushBufferedData();
+        assertEquals(List.of("number=1", "number=1", "number=1"), service.written);
+        assertEquals(0, service.getBufferedCount());
+        assertEquals(0, service.getWaitedCount());
+    }
+
+    @Test
+    public void testOverflowIsAddedToThePendingFlush() {
+        service.resetWithBufferSize(1);
+        service.store(item);
+        service.store(item, "alias");
+
+        assertEquals(2, service.getBufferedCount());
+        assertEquals(2, service.flushRequests.get());
+        service.flushBufferedData();
+        assertEquals(List.of("number=1", "alias=1"), service.written);
+        assertEquals(0, service.getWaitedCount());
+    }
+
+    @Test
+    public void testStoringWaitsWhenTheFlushFallsBehind() throws InterruptedException {
+        service.resetWithBufferSize(1);
+        service.store(item);
+        service.store(item);
+        Thread producer = new Thread(() -> service.store(item, "alias"));
+        producer.start();
+        producer.join(200);
+
+        assertTrue(producer.isAlive());
+        assertEquals(3, service.getBufferedCount());
+        service.flushBufferedData();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        assertEquals(List.of("number=1", "number=1", "alias=1"), service.written);
+        assertEquals(1, service.getWaitedCount());
+    }
+
+    @Test
+    public void testWriteImmediatelyBypassesBuffer() {
+        service.resetWithBufferSize(0);
+        service.store(item, "alias");
+
+        assertEquals(List.of("alias=1"), service.writtenImmediately);
+        assertEquals(0, service.getBufferedCount());
+        assertEquals(0, service.flushRequests.get());
+    }
+
+    @Test
+    public void testUndefinedStateIsNotStored() {
+        service.resetWithBufferSize(10);
+        item.setState(UnDefType.UNDEF);
+        service.store(item);
+
+        assertEquals(0, service.getBufferedCount());
+    }
+
+    @Test
+    public void testConcurrentStores() throws InterruptedException {
+        int threads = 8;
+        int storesPerThread = 1000;
+        service.resetWithBufferSize(threads * storesPerThread);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread producer = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int j = 0; j < storesPerThread; j++) {
+                    service.store(item);
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        start.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertEquals(threads * storesPerThread, service.getBufferedCount());
+        assertEquals(0, service.getWaitedCount());
+        service.flushBufferedData();
+        assertEquals(threads * storesPerThread, service.written.size());
+    }
+}
@@ -12,9 +12,12 @@
  */
 package org.openhab.persistence.influxdb;
 
+import java.time.Duration;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -24,9 +27,13 @@ import java.util.stream.Collectors;
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
 import org.openhab.core.config.core.ConfigurableService;
+import org.openhab.core.items.GroupItem;
 import org.openhab.core.items.Item;
+import org.openhab.core.items.ItemNotFoundException;
 import org.openhab.core.items.ItemRegistry;
 import org.openhab.core.items.MetadataRegistry;
+import org.openhab.core.library.items.NumberItem;
+import org.openhab.core.library.types.StringType;
 import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.core.persistence.HistoricItem;
 import org.openhab.core.persistence.PersistenceItemInfo;
@@ -222,20 +229,78 @@ public class InfluxDBPersistenceService implements QueryablePersistenceService {
                     filter.getItemName(), filter.getOrdering().toString(), filter.getState(), filter.getOperator(),
                     filter.getBeginDate(), filter.getEndDate(), filter.getPageSize(), filter.getPageNumber());
 
-            String query = RepositoryFactory.createQueryCreator(configuration).createQuery(filter,
-                    configuration.getRetentionPolicy());
+            FilterCriteriaQueryCreator queryCreator = RepositoryFactory.createQueryCreator(configuration);
+            long windowSeconds = getAggregateWindowSeconds(filter);
+            String query;
+            if (windowSeconds > 0) {
+                query = queryCreator.createAggregateQuery(filter, configuration.getRetentionPolicy(),
+                        configuration.getQueryAggregateFunction(), windowSeconds);
+            } else {
+                query = queryCreator.createQuery(filter, configuration.getRetentionPolicy());
+            }
             logger.trace("Query {}", query);
-            List<InfluxRow> results = influxDBRepository.query(query);
-            return results.stream().map(this::mapRow2HistoricItem).collect(Collectors.toList());
+
+            // rows are converted while they are read, items are looked up once per query
+            List<HistoricItem> historicItems = new ArrayList<>();
+            Map<String, @Nullable Item> items = new HashMap<>();
+            influxDBRepository.query(query, row -> historicItems.add(mapRow2HistoricItem(row, items)));
+            return historicItems;
         } else {
             logger.debug("query ignored, InfluxDB is not yet connected");
             return Collections.emptyList();
         }
     }
 
-    private HistoricItem mapRow2HistoricItem(InfluxRow row) {
-        State state = InfluxDBStateConvertUtils.objectToState(row.getValue(), row.getItemName(), itemRegistry);
-        return new InfluxDBHistoricItem(row.getItemName(), state,
+    /**
+     * Returns the length of the time windows the query result should be aggregated to in the database, or 0 if the
+     * stored values should be returned.
+     *
+     * Aggregation is disabled unless an aggregate function is configured. Values are then only aggregated for number
+     * items when the first page of a bounded time range is requested and each of the page size windows spans at least
+     * the configured minimum window, so that ordinary paged queries still return the stored values.
+     */
+    private long getAggregateWindowSeconds(FilterCriteria filter) {
+        String itemName = filter.getItemName();
+        ZonedDateTime beginDate = filter.getBeginDate();
+        if (configuration.getQueryAggregateFunction().isEmpty() || itemName == null || beginDate == null
+                || filter.getPageSize() == Integer.MAX_VALUE || filter.getPageNumber() != 0
+                || filter.getState() != null) {
+            return 0;
+        }
+        try {
+            Item item = itemRegistry.getItem(itemName);
+            if (item instanceof GroupItem) {
+                item = ((GroupItem) item).getBaseItem();
+            }
+            if (!(item instanceof NumberItem)) {
+                return 0;
+            }
+        } catch (ItemNotFoundException e) {
+            return 0;
+        }
+        ZonedDateTime endDate = filter.getEndDate();
+        long rangeSeconds = Duration.between(beginDate, endDate != null ? endDate : ZonedDateTime.now()).getSeconds();
+        long windowSeconds = rangeSeconds / filter.getPageSize();
+        return windowSeconds >= configuration.getQueryAggregateMinWindow() ? windowSeconds : 0;
+    }
+
+    private HistoricItem mapRow2HistoricItem(InfluxRow row, Map<String, @Nullable Item> items) {
+        String itemName = row.getItemName();
+        Item item;
+        if (items.containsKey(itemName)) {
+            item = items.get(itemName);
+        } else {
+            try {
+                item = itemRegistry.getItem(itemName);
+            } catch (ItemNotFoundException e) {
+                logger.info("Could not find item '{}' in registry", itemName);
+                item = null;
+            }
+            items.put(itemName, item);
+        }
+        State state = item != null ? InfluxDBStateConvertUtils.objectToState(row.getValue(), item)
+                : new StringType(String.valueOf(row.getValue()));
+        return new InfluxDBHistoricItem(itemName, state,
                 ZonedDateTime.ofInstant(row.getTime(), ZoneId.systemDefault()));
     }
 
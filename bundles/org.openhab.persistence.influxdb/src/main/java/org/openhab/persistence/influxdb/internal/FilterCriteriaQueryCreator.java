@@ -31,6 +31,19 @@ public interface FilterCriteriaQueryCreator {
      */
     String createQuery(FilterCriteria criteria, String retentionPolicy);
 
+    /**
+     * Create query from {@link FilterCriteria} that aggregates the values per time window in the database. The page
+     * size limits the number of windows, the page number and state of the criteria are ignored.
+     *
+     * @param criteria Criteria to create query from, with begin and end date
+     * @param retentionPolicy Name of the retentionPolicy/bucket to use in query
+     * @param aggregateFunction Name of the aggregate function: mean, min, max or last
+     * @param windowSeconds Length of a window in seconds
+     * @return Created query as an String
+     */
+    String createAggregateQuery(FilterCriteria criteria, String retentionPolicy, String aggregateFunction,
+            long windowSeconds);
+
     default String getOperationSymbol(FilterCriteria.Operator operator, InfluxDBVersion version) {
         switch (operator) {
             case EQ:
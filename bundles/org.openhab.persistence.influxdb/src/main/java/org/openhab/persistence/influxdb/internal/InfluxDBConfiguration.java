@@ -14,6 +14,7 @@ package org.openhab.persistence.influxdb.internal;
 
 import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import java.util.StringJoiner;
 
 import org.eclipse.jdt.annotation.NonNull;
@@ -40,6 +41,13 @@ public class InfluxDBConfiguration {
     public static final String ADD_CATEGORY_TAG_PARAM = "addCategoryTag";
     public static final String ADD_LABEL_TAG_PARAM = "addLabelTag";
     public static final String ADD_TYPE_TAG_PARAM = "addTypeTag";
+    public static final String WRITE_BATCH_SIZE_PARAM = "writeBatchSize";
+    public static final String WRITE_INTERVAL_PARAM = "writeInterval";
+    public static final String WRITE_BUFFER_SIZE_PARAM = "writeBufferSize";
+    public static final String SPOOL_MAX_SIZE_PARAM = "spoolMaxSize";
+    public static final String QUERY_AGGREGATE_FUNCTION_PARAM = "queryAggregateFunction";
+    public static final Set<String> QUERY_AGGREGATE_FUNCTIONS = Set.of("mean", "min", "max", "last");
+    public static final String QUERY_AGGREGATE_MIN_WINDOW_PARAM = "queryAggregateMinWindow";
     public static InfluxDBConfiguration NO_CONFIGURATION = new InfluxDBConfiguration(Collections.emptyMap());
     private final Logger logger = LoggerFactory.getLogger(InfluxDBConfiguration.class);
     private final String url;
@@ -55,6 +63,14 @@ public class InfluxDBConfiguration {
     private final boolean addTypeTag;
     private final boolean addLabelTag;
 
+    private final int writeBatchSize;
+    private final int writeInterval;
+    private final int writeBufferSize;
+    private final int spoolMaxSize;
+
+    private final String queryAggregateFunction;
+    private final int queryAggregateMinWindow;
+
     public InfluxDBConfiguration(Map<String, @Nullable Object> config) {
         url = (@NonNull String) config.getOrDefault(URL_PARAM, "http://127.0.0.1:8086");
         user = (@NonNull String) config.getOrDefault(USER_PARAM, "openhab");
@@ -68,6 +84,39 @@ public class InfluxDBConfiguration {
         addCategoryTag = getConfigBooleanValue(config, ADD_CATEGORY_TAG_PARAM, false);
         addLabelTag = getConfigBooleanValue(config, ADD_LABEL_TAG_PARAM, false);
         addTypeTag = getConfigBooleanValue(config, ADD_TYPE_TAG_PARAM, false);
+
+        writeBatchSize = Math.max(1, getConfigIntValue(config, WRITE_BATCH_SIZE_PARAM, 500));
+        writeInterval = Math.max(10, getConfigIntValue(config, WRITE_INTERVAL_PARAM, 1000));
+        writeBufferSize = Math.max(1, getConfigIntValue(config, WRITE_BUFFER_SIZE_PARAM, 10000));
+        spoolMaxSize = Math.max(0, getConfigIntValue(config, SPOOL_MAX_SIZE_PARAM, 64));
+
+        queryAggregateFunction = parseQueryAggregateFunction(config.get(QUERY_AGGREGATE_FUNCTION_PARAM));
+        queryAggregateMinWindow = Math.max(1, getConfigIntValue(config, QUERY_AGGREGATE_MIN_WINDOW_PARAM, 300));
+    }
+
+    private String parseQueryAggregateFunction(@Nullable Object value) {
+        String function = value instanceof String ? ((String) value).trim().toLowerCase() : "";
+        if (function.isEmpty() || "none".equals(function)) {
+            return "";
+        } else if (QUERY_AGGREGATE_FUNCTIONS.contains(function)) {
+            return function;
+        }
+        logger.warn("Invalid query aggregate function {}, queries won't be aggregated", value);
+        return "";
+    }
+
+    private int getConfigIntValue(Map<String, @Nullable Object> config, String key, int defaultValue) {
+        Object object = config.get(key);
+        if (object instanceof Number) {
+            return ((Number) object).intValue();
+        } else if (object instanceof String && !((String) object).isBlank()) {
+            try {
+                return Integer.parseInt(((String) object).trim());
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid value {} for {}, using {}", object, key, defaultValue);
+            }
+        }
+        return defaultValue;
     }
 
     private static boolean getConfigBooleanValue(Map<String, @Nullable Object> config, String key,
@@ -158,6 +207,40 @@ public class InfluxDBConfiguration {
         return addLabelTag;
     }
 
+    public int getWriteBatchSize() {
+        return writeBatchSize;
+    }
+
+    public int getWriteInterval() {
+        return writeInterval;
+    }
+
+    public int getWriteBufferSize() {
+        return writeBufferSize;
+    }
+
+    /**
+     * Returns the maximum size of the spool file in MB, 0 disables spooling.
+     */
+    public int getSpoolMaxSize() {
+        return spoolMaxSize;
+    }
+
+    /**
+     * Returns the function used to aggregate query results in the database, empty if queries are not aggregated.
+     */
+    public String getQueryAggregateFunction() {
+        return queryAggregateFunction;
+    }
+
+    /**
+     * Returns the minimum length of an aggregation window in seconds. Queries which would need shorter windows return
+     * the stored values.
+     */
+    public int getQueryAggregateMinWindow() {
+        return queryAggregateMinWindow;
+    }
+
     public String getUser() {
         return user;
     }
@@ -176,7 +259,10 @@ public class InfluxDBConfiguration {
                 + password.length() + " chars" + '\'' + ", token='" + token.length() + " chars" + '\''
                 + ", databaseName='" + databaseName + '\'' + ", retentionPolicy='" + retentionPolicy + '\''
                 + ", version=" + version + ", replaceUnderscore=" + replaceUnderscore + ", addCategoryTag="
-                + addCategoryTag + ", addTypeTag=" + addTypeTag + ", addLabelTag=" + addLabelTag + '}';
+                + addCategoryTag + ", addTypeTag=" + addTypeTag + ", addLabelTag=" + addLabelTag + ", writeBatchSize="
+                + writeBatchSize + ", writeInterval=" + writeInterval + ", writeBufferSize=" + writeBufferSize
+                + ", spoolMaxSize=" + spoolMaxSize + ", queryAggregateFunction='" + queryAggregateFunction + '\''
+                + ", queryAggregateMinWindow=" + queryAggregateMinWindow + '}';
         return sb;
     }
 
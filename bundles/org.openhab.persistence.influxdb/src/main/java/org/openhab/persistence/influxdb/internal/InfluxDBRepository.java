@@ -12,8 +12,10 @@
  */
 package org.openhab.persistence.influxdb.internal;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 
@@ -63,7 +65,20 @@ public interface InfluxDBRepository {
      * @param query Query
      * @return Query results
      */
-    List<InfluxRow> query(String query);
+    default List<InfluxRow> query(String query) {
+        List<InfluxRow> rows = new ArrayList<>();
+        query(query, rows::add);
+        return rows;
+    }
+
+    /**
+     * Executes query passing each row to the consumer as soon as it is read, so that the result doesn't need to be
+     * kept in memory as a whole. Returns when all rows have been passed.
+     *
+     * @param query Query
+     * @param rowConsumer Consumer of the resulting rows, called by a single thread
+     */
+    void query(String query, Consumer<InfluxRow> rowConsumer);
 
     /**
      * Write point to database
@@ -0,0 +1,483 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.influxdb.internal;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.core.OpenHAB;
+import org.openhab.core.common.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write pipeline shared by the InfluxDB 1 and 2 repositories. Points are queued as line protocol records and written
+ * by a single background thread in batches of <code>batchSize</code> records, at the latest every
+ * <code>interval</code> milliseconds.
+ *
+ * When a batch cannot be written, it is appended to a local spool file together with all records that follow, so that
+ * the order is kept. The spool is replayed before any new records are written once the server is available again.
+ * At most <code>MAX_REPLAY_BATCHES</code> spooled batches are written per flush, new records are appended to the spool
+ * until it has been replayed completely, so that a large spool does not keep the queue from being drained.
+ *
+ * Records the server rejects, e.g. because of a field type conflict, would be rejected again and are dropped instead.
+ * If a batch is rejected, its records are written one by one to find the rejected ones. Rewriting records the server
+ * has already accepted from that batch does no harm, since a point with the same series and time is overwritten.
+ *
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class InfluxDBWriteBuffer {
+    private final Logger logger = LoggerFactory.getLogger(InfluxDBWriteBuffer.class);
+
+    // time to wait after a failed write before the server is tried again
+    static final long RETRY_INTERVAL_MS = 10000;
+    // maximum number of spooled batches written per flush
+    static final int MAX_REPLAY_BATCHES = 10;
+    static final Path SPOOL_FOLDER = Paths.get(OpenHAB.getUserDataFolder(), "persistence", "influxdb");
+
+    private final Consumer<List<String>> writer;
+    private final Predicate<RuntimeException> rejected;
+    private final int batchSize;
+    private final Path spoolFile;
+    private final long spoolMaxBytes;
+    private final BlockingQueue<String> queue;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean flushPending = new AtomicBoolean();
+
+    // only accessed by the writer thread
+    private long nextRetry = 0;
+    private long nextStatistics = 0;
+    private boolean replayPending = false;
+
+    // metrics
+    private final long startTime = System.currentTimeMillis();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong spooledCount = new AtomicLong();
+
+    /**
+     * @param writer writes a batch of line protocol records, throws a {@link RuntimeException} if that fails
+     * @param rejected tells whether an exception of the writer means that the server rejected the records, so that
+     *            writing them again would fail again
+     * @param batchSize maximum number of records per write
+     * @param interval maximum time in milliseconds a record is queued
+     * @param queueSize maximum number of queued records
+     * @param spoolFile the file records are spooled to while the server is not available
+     * @param spoolMaxSize maximum size of the spool file in MB, 0 disables spooling
+     */
+    public InfluxDBWriteBuffer(Consumer<List<String>> writer, Predicate<RuntimeException> rejected, int batchSize,
+            int interval, int queueSize, Path spoolFile, int spoolMaxSize) {
+        this.writer = writer;
+        this.rejected = rejected;
+        this.batchSize = batchSize;
+        this.spoolFile = spoolFile;
+        this.spoolMaxBytes = spoolMaxSize * 1024L * 1024L;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.spooledCount.set(countSpooledRecords());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("influxdb-writer"));
+        scheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a buffer with the limits of the configuration, spooling to the userdata folder. Each database gets its
+     * own spool file, so that spooled records are never written to a database other than the one they were meant for.
+     *
+     * @param writer writes a batch of line protocol records, throws a {@link RuntimeException} if that fails
+     * @param rejected tells whether an exception of the writer means that the server rejected the records
+     */
+    public static InfluxDBWriteBuffer create(InfluxDBConfiguration configuration, Consumer<List<String>> writer,
+            Predicate<RuntimeException> rejected) {
+        return new InfluxDBWriteBuffer(writer, rejected, configuration.getWriteBatchSize(),
+                configuration.getWriteInterval(), configuration.getWriteBufferSize(), getSpoolFile(configuration),
+                configuration.getSpoolMaxSize());
+    }
+
+    /**
+     * Returns the spool file of the database of a configuration. The file name is derived from a hash of the URL,
+     * database and retention policy.
+     */
+    static Path getSpoolFile(InfluxDBConfiguration configuration) {
+        String target = configuration.getUrl() + "|" + configuration.getDatabaseName() + "|"
+                + configuration.getRetentionPolicy();
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(target.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder("spool-");
+            for (int i = 0; i < 8; i++) {
+                name.append(String.format("%02x", hash[i]));
+            }
+            return SPOOL_FOLDER.resolve(name.append(".lp").toString());
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Converts a point to line protocol and queues it.
+     *
+     * @return <code>false</code> if the point cannot be represented or was dropped
+     */
+    public boolean add(InfluxPoint point) {
+        String record = point.toLineProtocol();
+        if (record == null) {
+            // e.g. a point without value or with NaN as value, the clients do not write these either
+            droppedCount.incrementAndGet();
+            logger.debug("Dropping point {} which cannot be written as line protocol", point);
+            return false;
+        }
+        return add(record);
+    }
+
+    /**
+     * Queues a line protocol record for writing, never blocks.
+     *
+     * @return <code>false</code> if the record was dropped because the queue is full
+     */
+    public boolean add(String record) {
+        if (!queue.offer(record)) {
+            long dropped = droppedCount.incrementAndGet();
+            if (dropped % 1000 == 1) {
+                logger.warn("InfluxDB write queue is full, dropped {} points so far", dropped);
+            }
+            return false;
+        }
+        if (queue.size() >= batchSize) {
+            requestFlush();
+        }
+        return true;
+    }
+
+    private void requestFlush() {
+        if (flushPending.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(this::flush);
+            } catch (RuntimeException e) {
+                // scheduler has been shut down, remaining records are handled by stop()
+                flushPending.set(false);
+            }
+        }
+    }
+
+    /**
+     * Stops the background thread and writes or spools all queued records on the calling thread.
+     */
+    public void stop() {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("InfluxDB write queue did not finish in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        nextRetry = 0;
+        flush();
+        logger.debug("InfluxDB write buffer stopped: {}", this);
+    }
+
+    private void flush() {
+        flushPending.set(false);
+        if (logger.isDebugEnabled() && System.currentTimeMillis() >= nextStatistics) {
+            logger.debug("{}", this);
+            nextStatistics = System.currentTimeMillis() + 60000;
+        }
+        try {
+            if (System.currentTimeMillis() < nextRetry || (Files.exists(spoolFile) && !replaySpool())) {
+                // server is not available or the spool has not been replayed completely, spool everything to keep
+                // the order
+                spoolQueued();
+                if (replayPending) {
+                    // continue with the next part of the spool without waiting for the interval
+                    requestFlush();
+                }
+                return;
+            }
+            List<String> batch = new ArrayList<>(Math.min(batchSize, queue.size()));
+            while (queue.drainTo(batch, batchSize) > 0) {
+                int handled = writeBatch(batch);
+                if (handled < batch.size()) {
+                    spool(batch.subList(handled, batch.size()));
+                    spoolQueued();
+                    return;
+                }
+                batch.clear();
+            }
+        } catch (RuntimeException e) {
+            // keep the scheduled task alive
+            logger.warn("Unexpected error writing to InfluxDB: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes a batch, dropping the records the server rejects.
+     *
+     * @return the number of records from the start of the batch which have been written or dropped, less than the
+     *         size of the batch if the server is not available
+     */
+    private int writeBatch(List<String> batch) {
+        switch (write(batch)) {
+            case WRITTEN:
+                return batch.size();
+            case FAILED:
+                return 0;
+            default:
+                break;
+        }
+        if (batch.size() == 1) {
+            reject(batch.get(0));
+            return 1;
+        }
+        logger.debug("InfluxDB rejected a batch of {} points, writing them one by one", batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            List<String> record = batch.subList(i, i + 1);
+            WriteResult result = write(record);
+            if (result == WriteResult.FAILED) {
+                return i;
+            } else if (result == WriteResult.REJECTED) {
+                reject(record.get(0));
+            }
+        }
+        return batch.size();
+    }
+
+    private WriteResult write(List<String> batch) {
+        try {
+            writer.accept(batch);
+            writtenCount.addAndGet(batch.size());
+            if (nextRetry != 0) {
+                logger.info("InfluxDB is available again");
+                nextRetry = 0;
+            }
+            return WriteResult.WRITTEN;
+        } catch (RuntimeException e) {
+            if (rejected.test(e)) {
+                logger.debug("InfluxDB rejected {} points: {}", batch.size(), e.getMessage());
+                return WriteResult.REJECTED;
+            }
+            if (nextRetry == 0) {
+                logger.warn("Writing {} points to InfluxDB failed, spooling points until it is available: {}",
+                        batch.size(), e.getMessage());
+            } else {
+                logger.debug("Writing {} points to InfluxDB failed: {}", batch.size(), e.getMessage());
+            }
+            nextRetry = System.currentTimeMillis() + RETRY_INTERVAL_MS;
+            return WriteResult.FAILED;
+        }
+    }
+
+    private void reject(String record) {
+        rejectedCount.incrementAndGet();
+        logger.warn("InfluxDB rejected point '{}', dropping it", record);
+    }
+
+    private void spoolQueued() {
+        List<String> batch = new ArrayList<>(Math.min(batchSize, queue.size()));
+        while (queue.drainTo(batch, batchSize) > 0) {
+            spool(batch);
+            batch.clear();
+        }
+    }
+
+    private void spool(List<String> batch) {
+        long size = 0;
+        for (String record : batch) {
+            size += record.length() + 1;
+        }
+        try {
+            if (spoolMaxBytes == 0 || (Files.exists(spoolFile) ? Files.size(spoolFile) : 0) + size > spoolMaxBytes) {
+                droppedCount.addAndGet(batch.size());
+                logger.debug("InfluxDB spool is full, dropped {} points", batch.size());
+                return;
+            }
+            Files.createDirectories(spoolFile.getParent());
+            try (BufferedWriter out = Files.newBufferedWriter(spoolFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (String record : batch) {
+                    out.write(record);
+                    out.write('\n');
+                }
+            }
+            spooledCount.addAndGet(batch.size());
+        } catch (IOException e) {
+            droppedCount.addAndGet(batch.size());
+            logger.warn("Unable to spool {} points to '{}': {}", batch.size(), spoolFile, e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the spooled records in order.
+     *
+     * @return <code>true</code> if the spool has been written completely and was removed
+     */
+    private boolean replaySpool() {
+        replayPending = false;
+        Path remaining = null;
+        long replayed = 0;
+        int batches = 0;
+        try (BufferedReader in = Files.newBufferedReader(spoolFile, StandardCharsets.UTF_8)) {
+            List<String> batch = new ArrayList<>(batchSize);
+            String line;
+            do {
+                line = in.readLine();
+                if (line != null && !line.isEmpty()) {
+                    batch.add(line);
+                }
+                if (!batch.isEmpty() && (line == null || batch.size() >= batchSize)) {
+                    int handled = writeBatch(batch);
+                    if (handled < batch.size()) {
+                        replayed += handled;
+                        spooledCount.addAndGet(-handled);
+                        if (replayed > 0) {
+                            // keep the records that have not been written yet
+                            remaining = spoolFile.resolveSibling(spoolFile.getFileName() + ".tmp");
+                            writeRemaining(remaining, batch.subList(handled, batch.size()), in);
+                        }
+                        break;
+                    }
+                    replayed += batch.size();
+                    spooledCount.addAndGet(-batch.size());
+                    batch.clear();
+                    if (++batches >= MAX_REPLAY_BATCHES && line != null) {
+                        // write the rest with the next flush, so that the queue is drained in between
+                        remaining = spoolFile.resolveSibling(spoolFile.getFileName() + ".tmp");
+                        writeRemaining(remaining, batch, in);
+                        replayPending = true;
+                        break;
+                    }
+                }
+            } while (line != null);
+        } catch (IOException e) {
+            logger.warn("Unable to replay spooled points from '{}': {}", spoolFile, e.getMessage());
+            return false;
+        }
+        try {
+            if (remaining != null) {
+                Files.move(remaining, spoolFile, StandardCopyOption.REPLACE_EXISTING);
+                logger.debug("Replayed {} spooled points to InfluxDB, {} remaining", replayed, spooledCount.get());
+                return false;
+            } else if (nextRetry != 0) {
+                return false;
+            }
+            Files.delete(spoolFile);
+            spooledCount.set(0);
+            logger.info("Replayed {} spooled points to InfluxDB", replayed);
+            return true;
+        } catch (IOException e) {
+            logger.warn("Unable to update spool file '{}': {}", spoolFile, e.getMessage());
+            return false;
+        }
+    }
+
+    private void writeRemaining(Path target, List<String> batch, BufferedReader in) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            for (String record : batch) {
+                out.write(record);
+                out.write('\n');
+            }
+            String line;
+            while ((line = in.readLine()) != null) {
+                out.write(line);
+                out.write('\n');
+            }
+        }
+    }
+
+    private long countSpooledRecords() {
+        if (!Files.exists(spoolFile)) {
+            return 0;
+        }
+        try (BufferedReader in = Files.newBufferedReader(spoolFile, StandardCharsets.UTF_8)) {
+            return in.lines().filter(line -> !line.isEmpty()).count();
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Unable to read spool file '{}': {}", spoolFile, e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the number of records waiting in memory.
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of records waiting in the spool file.
+     */
+    public long getSpooledCount() {
+        return spooledCount.get();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /**
+     * Returns the number of records which have been dropped because the queue or the spool was full, or because they
+     * could not be represented as line protocol.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Returns the number of records which have been dropped because the server rejected them.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Returns the average number of records written per second since the buffer was created.
+     */
+    public double getThroughput() {
+        long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+        return writtenCount.get() * 1000.0 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return "InfluxDBWriteBuffer [queued=" + getQueueSize() + ", spooled=" + getSpooledCount() + ", written="
+                + getWrittenCount() + ", dropped=" + getDroppedCount() + ", rejected=" + getRejectedCount()
+                + ", throughput=" + String.format("%.1f", getThroughput()) + " points/s]";
+    }
+
+    private enum WriteResult {
+        WRITTEN,
+        REJECTED,
+        FAILED
+    }
+}
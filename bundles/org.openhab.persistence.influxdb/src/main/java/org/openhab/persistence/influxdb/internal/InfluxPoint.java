@@ -12,13 +12,17 @@
  */
 package org.openhab.persistence.influxdb.internal;
 
+import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.jdt.annotation.DefaultLocation;
 import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
 
 /**
  * Point data to be stored in InfluxDB
@@ -30,7 +34,8 @@ public class InfluxPoint {
     private String measurementName;
     private Instant time;
     private Object value;
-    private Map<String, String> tags;
+    // tag names and values, alternating
+    private List<String> tags;
 
     private InfluxPoint(Builder builder) {
         measurementName = builder.measurementName;
@@ -56,14 +61,95 @@ public class InfluxPoint {
     }
 
     public Map<String, String> getTags() {
-        return Collections.unmodifiableMap(tags);
+        Map<String, String> tagMap = new LinkedHashMap<>();
+        for (int i = 0; i < tags.size(); i += 2) {
+            tagMap.put(tags.get(i), tags.get(i + 1));
+        }
+        return Collections.unmodifiableMap(tagMap);
+    }
+
+    /**
+     * Appends this point in InfluxDB line protocol with millisecond precision, the value is stored in the field
+     * {@link InfluxDBConstants#FIELD_VALUE_NAME}. Numbers are written the same way as the InfluxDB clients do, so the
+     * field types do not change.
+     *
+     * @param sb the builder to append the line to, without a trailing newline
+     * @return <code>false</code> if the point cannot be represented, in that case nothing is appended
+     */
+    public boolean appendLineProtocol(StringBuilder sb) {
+        String field = formatFieldValue(value);
+        if (field == null) {
+            return false;
+        }
+        escape(sb, measurementName, false);
+        for (int i = 0; i < tags.size(); i += 2) {
+            String tagValue = tags.get(i + 1);
+            // empty tag values are not allowed
+            if (!tagValue.isEmpty()) {
+                sb.append(',');
+                escape(sb, tags.get(i), true);
+                sb.append('=');
+                escape(sb, tagValue, true);
+            }
+        }
+        sb.append(' ').append(InfluxDBConstants.FIELD_VALUE_NAME).append('=').append(field).append(' ')
+                .append(time.toEpochMilli());
+        return true;
+    }
+
+    /**
+     * Returns this point in InfluxDB line protocol or <code>null</code> if it cannot be represented.
+     */
+    public @Nullable String toLineProtocol() {
+        StringBuilder sb = new StringBuilder(64);
+        return appendLineProtocol(sb) ? sb.toString() : null;
+    }
+
+    private static @Nullable String formatFieldValue(@Nullable Object value) {
+        if (value instanceof String) {
+            String string = (String) value;
+            StringBuilder sb = new StringBuilder(string.length() + 2).append('"');
+            for (int i = 0; i < string.length(); i++) {
+                char c = string.charAt(i);
+                if (c == '"' || c == '\\') {
+                    sb.append('\\');
+                }
+                sb.append(c);
+            }
+            return sb.append('"').toString();
+        } else if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        } else if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            return Double.isFinite(d) ? new BigDecimal(value.toString()).toPlainString() : null;
+        } else if (value instanceof Number) {
+            return value.toString() + 'i';
+        } else if (value instanceof Boolean) {
+            return value.toString();
+        } else {
+            return null;
+        }
+    }
+
+    private static void escape(StringBuilder sb, String s, boolean escapeEquals) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == ',' || c == ' ' || (escapeEquals && c == '=')) {
+                sb.append('\\');
+            } else if (c == '\n') {
+                // line breaks would end the record
+                sb.append(' ');
+                continue;
+            }
+            sb.append(c);
+        }
     }
 
     public static final class Builder {
         private String measurementName;
         private Instant time;
         private Object value;
-        private Map<String, String> tags = new HashMap<>();
+        private List<String> tags = new ArrayList<>(8);
 
         private Builder(String measurementName) {
             this.measurementName = measurementName;
@@ -80,7 +166,14 @@ public class InfluxPoint {
         }
 
         public Builder withTag(String name, String value) {
-            tags.put(name, value);
+            for (int i = 0; i < tags.size(); i += 2) {
+                if (tags.get(i).equals(name)) {
+                    tags.set(i + 1, value);
+                    return this;
+                }
+            }
+            tags.add(name);
+            tags.add(value);
             return this;
         }
 
@@ -92,6 +185,6 @@ public class InfluxPoint {
     @Override
     public String toString() {
         return "InfluxPoint{" + "measurementName='" + measurementName + '\'' + ", time=" + time + ", value=" + value
-                + ", tags=" + tags + '}';
+                + ", tags=" + getTags() + '}';
     }
 }
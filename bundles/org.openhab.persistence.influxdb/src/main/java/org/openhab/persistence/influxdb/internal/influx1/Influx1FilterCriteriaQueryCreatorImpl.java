@@ -23,6 +23,7 @@ import org.influxdb.querybuilder.BuiltQuery;
 import org.influxdb.querybuilder.Select;
 import org.influxdb.querybuilder.Where;
 import org.influxdb.querybuilder.clauses.SimpleClause;
+import org.influxdb.querybuilder.time.DurationLiteral;
 import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.persistence.influxdb.internal.FilterCriteriaQueryCreator;
 import org.openhab.persistence.influxdb.internal.InfluxDBVersion;
@@ -37,26 +38,9 @@ public class Influx1FilterCriteriaQueryCreatorImpl implements FilterCriteriaQuer
 
     @Override
     public String createQuery(FilterCriteria criteria, String retentionPolicy) {
-        final String tableName;
-        boolean hasCriteriaName = criteria.getItemName() != null;
-        if (hasCriteriaName) {
-            tableName = criteria.getItemName();
-        } else {
-            tableName = "/.*/";
-        }
+        Select select = select(COLUMN_VALUE_NAME_V1).fromRaw(null, fullQualifiedTableName(retentionPolicy, criteria));
 
-        Select select = select(COLUMN_VALUE_NAME_V1).fromRaw(null,
-                fullQualifiedTableName(retentionPolicy, tableName, hasCriteriaName));
-
-        Where where = select.where();
-        if (criteria.getBeginDate() != null) {
-            where = where.and(
-                    BuiltQuery.QueryBuilder.gte(COLUMN_TIME_NAME_V1, criteria.getBeginDate().toInstant().toString()));
-        }
-        if (criteria.getEndDate() != null) {
-            where = where.and(
-                    BuiltQuery.QueryBuilder.lte(COLUMN_TIME_NAME_V1, criteria.getEndDate().toInstant().toString()));
-        }
+        Where where = addTimeRange(criteria, select.where());
 
         if (criteria.getState() != null && criteria.getOperator() != null) {
             where = where.and(new SimpleClause(COLUMN_VALUE_NAME_V1,
@@ -82,6 +66,48 @@ public class Influx1FilterCriteriaQueryCreatorImpl implements FilterCriteriaQuer
         return query.getCommand();
     }
 
+    @Override
+    public String createAggregateQuery(FilterCriteria criteria, String retentionPolicy, String aggregateFunction,
+            long windowSeconds) {
+        // the aggregated column is named like the value column, so that results are read the same way
+        Select select = select().function(aggregateFunction, column(COLUMN_VALUE_NAME_V1)).as(COLUMN_VALUE_NAME_V1)
+                .fromRaw(null, fullQualifiedTableName(retentionPolicy, criteria));
+
+        addTimeRange(criteria, select.where());
+        select = select.groupBy(time(windowSeconds, DurationLiteral.SECOND));
+
+        if (criteria.getOrdering() == FilterCriteria.Ordering.DESCENDING) {
+            select = select.orderBy(desc());
+        } else if (criteria.getOrdering() == FilterCriteria.Ordering.ASCENDING) {
+            select = select.orderBy(asc());
+        }
+
+        if (criteria.getPageSize() != Integer.MAX_VALUE) {
+            select = select.limit(criteria.getPageSize());
+        }
+
+        final Query query = (Query) select;
+        return query.getCommand();
+    }
+
+    private Where addTimeRange(FilterCriteria criteria, Where where) {
+        if (criteria.getBeginDate() != null) {
+            where = where.and(
+                    BuiltQuery.QueryBuilder.gte(COLUMN_TIME_NAME_V1, criteria.getBeginDate().toInstant().toString()));
+        }
+        if (criteria.getEndDate() != null) {
+            where = where.and(
+                    BuiltQuery.QueryBuilder.lte(COLUMN_TIME_NAME_V1, criteria.getEndDate().toInstant().toString()));
+        }
+        return where;
+    }
+
+    private String fullQualifiedTableName(String retentionPolicy, FilterCriteria criteria) {
+        boolean hasCriteriaName = criteria.getItemName() != null;
+        return fullQualifiedTableName(retentionPolicy, hasCriteriaName ? criteria.getItemName() : "/.*/",
+                hasCriteriaName);
+    }
+
     private String fullQualifiedTableName(String retentionPolicy, String tableName, boolean escapeTableName) {
         StringBuilder sb = new StringBuilder();
         Appender.appendName(retentionPolicy, sb);
@@ -14,28 +14,27 @@ package org.openhab.persistence.influxdb.internal.influx1;
 
 import static org.openhab.persistence.influxdb.internal.InfluxDBConstants.COLUMN_TIME_NAME_V1;
 import static org.openhab.persistence.influxdb.internal.InfluxDBConstants.COLUMN_VALUE_NAME_V1;
-import static org.openhab.persistence.influxdb.internal.InfluxDBConstants.FIELD_VALUE_NAME;
 
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
 import org.influxdb.InfluxDB;
+import org.influxdb.InfluxDBException;
 import org.influxdb.InfluxDBFactory;
-import org.influxdb.dto.Point;
 import org.influxdb.dto.Pong;
 import org.influxdb.dto.Query;
 import org.influxdb.dto.QueryResult;
 import org.openhab.persistence.influxdb.internal.InfluxDBConfiguration;
 import org.openhab.persistence.influxdb.internal.InfluxDBRepository;
+import org.openhab.persistence.influxdb.internal.InfluxDBWriteBuffer;
 import org.openhab.persistence.influxdb.internal.InfluxPoint;
 import org.openhab.persistence.influxdb.internal.InfluxRow;
-import org.openhab.persistence.influxdb.internal.UnnexpectedConditionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,6 +50,8 @@ public class InfluxDB1RepositoryImpl implements InfluxDBRepository {
     private InfluxDBConfiguration configuration;
     @Nullable
     private InfluxDB client;
+    @Nullable
+    private InfluxDBWriteBuffer writeBuffer;
 
     public InfluxDB1RepositoryImpl(InfluxDBConfiguration configuration) {
         this.configuration = configuration;
@@ -67,13 +68,31 @@ public class InfluxDB1RepositoryImpl implements InfluxDBRepository {
                 configuration.getPassword());
         createdClient.setDatabase(configuration.getDatabaseName());
         createdClient.setRetentionPolicy(configuration.getRetentionPolicy());
-        createdClient.enableBatch(200, 100, TimeUnit.MILLISECONDS);
         this.client = createdClient;
+        // points are batched by the write buffer, which also keeps them while the server is not available
+        this.writeBuffer = InfluxDBWriteBuffer.create(configuration,
+                records -> createdClient.write(configuration.getDatabaseName(), configuration.getRetentionPolicy(),
+                        InfluxDB.ConsistencyLevel.ONE, TimeUnit.MILLISECONDS, records),
+                InfluxDB1RepositoryImpl::isRejected);
         return checkConnectionStatus();
     }
 
+    /**
+     * Tells whether the server rejected the points themselves, as opposed to a connection or server error
+     */
+    private static boolean isRejected(RuntimeException e) {
+        return e instanceof InfluxDBException.FieldTypeConflictException
+                || e instanceof InfluxDBException.PointsBeyondRetentionPolicyException
+                || e instanceof InfluxDBException.UnableToParseException;
+    }
+
     @Override
     public void disconnect() {
+        final InfluxDBWriteBuffer currentWriteBuffer = this.writeBuffer;
+        if (currentWriteBuffer != null) {
+            currentWriteBuffer.stop();
+        }
+        this.writeBuffer = null;
         this.client = null;
     }
 
@@ -111,52 +130,27 @@ public class InfluxDB1RepositoryImpl implements InfluxDBRepository {
 
     @Override
     public void write(InfluxPoint point) {
-        final InfluxDB currentClient = this.client;
-        if (currentClient != null) {
-            Point clientPoint = convertPointToClientFormat(point);
-            currentClient.write(configuration.getDatabaseName(), configuration.getRetentionPolicy(), clientPoint);
+        final InfluxDBWriteBuffer currentWriteBuffer = this.writeBuffer;
+        if (currentWriteBuffer != null) {
+            currentWriteBuffer.add(point);
         } else {
             logger.warn("Write point {} ignored due to client isn't connected", point);
         }
     }
 
-    private Point convertPointToClientFormat(InfluxPoint point) {
-        Point.Builder clientPoint = Point.measurement(point.getMeasurementName()).time(point.getTime().toEpochMilli(),
-                TimeUnit.MILLISECONDS);
-        setPointValue(point.getValue(), clientPoint);
-        point.getTags().entrySet().forEach(e -> clientPoint.tag(e.getKey(), e.getValue()));
-        return clientPoint.build();
-    }
-
-    private void setPointValue(@Nullable Object value, Point.Builder point) {
-        if (value instanceof String) {
-            point.addField(FIELD_VALUE_NAME, (String) value);
-        } else if (value instanceof Number) {
-            point.addField(FIELD_VALUE_NAME, (Number) value);
-        } else if (value instanceof Boolean) {
-            point.addField(FIELD_VALUE_NAME, (Boolean) value);
-        } else if (value == null) {
-            point.addField(FIELD_VALUE_NAME, (String) null);
-        } else {
-            throw new UnnexpectedConditionException("Not expected value type");
-        }
-    }
-
     @Override
-    public List<InfluxRow> query(String query) {
+    public void query(String query, Consumer<InfluxRow> rowConsumer) {
         final InfluxDB currentClient = client;
         if (currentClient != null) {
             Query parsedQuery = new Query(query, configuration.getDatabaseName());
             List<QueryResult.Result> results = currentClient.query(parsedQuery, TimeUnit.MILLISECONDS).getResults();
-            return convertClientResutToRepository(results);
+            convertClientResutToRepository(results, rowConsumer);
         } else {
             logger.warn("Returning empty list because queryAPI isn't present");
-            return Collections.emptyList();
         }
     }
 
-    private List<InfluxRow> convertClientResutToRepository(List<QueryResult.Result> results) {
-        List<InfluxRow> rows = new ArrayList<>();
+    private void convertClientResutToRepository(List<QueryResult.Result> results, Consumer<InfluxRow> rowConsumer) {
         for (QueryResult.Result result : results) {
             List<QueryResult.Series> seriess = result.getSeries();
             if (result.getError() != null) {
@@ -193,15 +187,18 @@ public class InfluxDB1RepositoryImpl implements InfluxDBRepository {
                                 Double rawTime = (Double) valuess.get(i).get(timestampColumn);
                                 Instant time = Instant.ofEpochMilli(rawTime.longValue());
                                 Object value = valuess.get(i).get(valueColumn);
+                                if (value == null) {
+                                    // aggregated queries return null for empty time windows
+                                    continue;
+                                }
                                 logger.trace("adding historic item {}: time {} value {}", itemName, time, value);
-                                rows.add(new InfluxRow(time, itemName, value));
+                                rowConsumer.accept(new InfluxRow(time, itemName, value));
                             }
                         }
                     }
                 }
             }
         }
-        return rows;
     }
 
     @Override
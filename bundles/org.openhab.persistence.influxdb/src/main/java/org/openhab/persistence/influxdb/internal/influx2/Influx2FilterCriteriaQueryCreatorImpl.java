@@ -36,6 +36,43 @@ import com.influxdb.query.dsl.functions.restriction.Restrictions;
 public class Influx2FilterCriteriaQueryCreatorImpl implements FilterCriteriaQueryCreator {
     @Override
     public String createQuery(FilterCriteria criteria, String retentionPolicy) {
+        Flux flux = createRangeQuery(criteria, retentionPolicy);
+
+        if (criteria.getState() != null && criteria.getOperator() != null) {
+            Restrictions restrictions = Restrictions.and(Restrictions.field().equal(FIELD_VALUE_NAME),
+                    Restrictions.value().custom(stateToObject(criteria.getState()),
+                            getOperationSymbol(criteria.getOperator(), InfluxDBVersion.V2)));
+            flux = flux.filter(restrictions);
+        }
+
+        flux = addOrdering(criteria, flux);
+
+        if (criteria.getPageSize() != Integer.MAX_VALUE) {
+            flux = flux.limit(criteria.getPageSize()).withPropertyValue("offset",
+                    criteria.getPageNumber() * criteria.getPageSize());
+        }
+
+        return flux.toString();
+    }
+
+    @Override
+    public String createAggregateQuery(FilterCriteria criteria, String retentionPolicy, String aggregateFunction,
+            long windowSeconds) {
+        Flux flux = createRangeQuery(criteria, retentionPolicy);
+
+        flux = flux.expression(
+                "aggregateWindow(every: " + windowSeconds + "s, fn: " + aggregateFunction + ", createEmpty: false)");
+
+        flux = addOrdering(criteria, flux);
+
+        if (criteria.getPageSize() != Integer.MAX_VALUE) {
+            flux = flux.limit(criteria.getPageSize());
+        }
+
+        return flux.toString();
+    }
+
+    private Flux createRangeQuery(FilterCriteria criteria, String retentionPolicy) {
         Flux flux = Flux.from(retentionPolicy);
 
         if (criteria.getBeginDate() != null || criteria.getEndDate() != null) {
@@ -55,23 +92,14 @@ public class Influx2FilterCriteriaQueryCreatorImpl implements FilterCriteriaQuer
             flux = flux.filter(measurement().equal(criteria.getItemName()));
         }
 
-        if (criteria.getState() != null && criteria.getOperator() != null) {
-            Restrictions restrictions = Restrictions.and(Restrictions.field().equal(FIELD_VALUE_NAME),
-                    Restrictions.value().custom(stateToObject(criteria.getState()),
-                            getOperationSymbol(criteria.getOperator(), InfluxDBVersion.V2)));
-            flux = flux.filter(restrictions);
-        }
+        return flux;
+    }
 
+    private Flux addOrdering(FilterCriteria criteria, Flux flux) {
         if (criteria.getOrdering() != null) {
             boolean desc = criteria.getOrdering() == FilterCriteria.Ordering.DESCENDING;
-            flux = flux.sort().withDesc(desc).withColumns(new String[] { COLUMN_TIME_NAME_V2 });
-        }
-
-        if (criteria.getPageSize() != Integer.MAX_VALUE) {
-            flux = flux.limit(criteria.getPageSize()).withPropertyValue("offset",
-                    criteria.getPageNumber() * criteria.getPageSize());
+            return flux.sort().withDesc(desc).withColumns(new String[] { COLUMN_TIME_NAME_V2 });
         }
-
-        return flux.toString();
+        return flux;
     }
 }
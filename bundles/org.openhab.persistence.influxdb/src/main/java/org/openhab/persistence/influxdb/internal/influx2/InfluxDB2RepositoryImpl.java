@@ -17,19 +17,19 @@ import static org.openhab.persistence.influxdb.internal.InfluxDBConstants.*;
 import java.time.Instant;
 import java.util.Collections;
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
 import org.openhab.persistence.influxdb.internal.InfluxDBConfiguration;
 import org.openhab.persistence.influxdb.internal.InfluxDBConstants;
 import org.openhab.persistence.influxdb.internal.InfluxDBRepository;
+import org.openhab.persistence.influxdb.internal.InfluxDBWriteBuffer;
 import org.openhab.persistence.influxdb.internal.InfluxPoint;
 import org.openhab.persistence.influxdb.internal.InfluxRow;
-import org.openhab.persistence.influxdb.internal.UnnexpectedConditionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,11 +37,11 @@ import com.influxdb.client.InfluxDBClient;
 import com.influxdb.client.InfluxDBClientFactory;
 import com.influxdb.client.InfluxDBClientOptions;
 import com.influxdb.client.QueryApi;
-import com.influxdb.client.WriteApi;
+import com.influxdb.client.WriteApiBlocking;
 import com.influxdb.client.domain.Ready;
 import com.influxdb.client.domain.WritePrecision;
-import com.influxdb.client.write.Point;
-import com.influxdb.query.FluxTable;
+import com.influxdb.exceptions.InfluxException;
+import com.influxdb.query.FluxRecord;
 
 /**
  * Implementation of {@link InfluxDBRepository} for InfluxDB 2.0
@@ -57,7 +57,7 @@ public class InfluxDB2RepositoryImpl implements InfluxDBRepository {
     @Nullable
     private QueryApi queryAPI;
     @Nullable
-    private WriteApi writeAPI;
+    private InfluxDBWriteBuffer writeBuffer;
 
     public InfluxDB2RepositoryImpl(InfluxDBConfiguration configuration) {
         this.configuration = configuration;
@@ -94,15 +94,35 @@ public class InfluxDB2RepositoryImpl implements InfluxDBRepository {
         this.client = createdClient;
         logger.debug("Succesfully connected to InfluxDB. Instance ready={}", createdClient.ready());
         queryAPI = createdClient.getQueryApi();
-        writeAPI = createdClient.getWriteApi();
+        // points are batched by the write buffer, which also keeps them while the server is not available
+        WriteApiBlocking writeAPI = createdClient.getWriteApiBlocking();
+        writeBuffer = InfluxDBWriteBuffer.create(configuration,
+                records -> writeAPI.writeRecords(WritePrecision.MS, records), InfluxDB2RepositoryImpl::isRejected);
         return checkConnectionStatus();
     }
 
+    /**
+     * Tells whether the server rejected the points themselves, as opposed to a connection or server error: bad request,
+     * request too large or unprocessable points, e.g. beyond the retention period or with a conflicting field type
+     */
+    private static boolean isRejected(RuntimeException e) {
+        if (e instanceof InfluxException) {
+            int status = ((InfluxException) e).status();
+            return status == 400 || status == 413 || status == 422;
+        }
+        return false;
+    }
+
     /**
      * Disconnect from InfluxDB server
      */
     @Override
     public void disconnect() {
+        final InfluxDBWriteBuffer currentWriteBuffer = this.writeBuffer;
+        if (currentWriteBuffer != null) {
+            currentWriteBuffer.stop();
+        }
+        this.writeBuffer = null;
         final InfluxDBClient currentClient = this.client;
         if (currentClient != null) {
             currentClient.close();
@@ -140,64 +160,54 @@ public class InfluxDB2RepositoryImpl implements InfluxDBRepository {
      */
     @Override
     public void write(InfluxPoint point) {
-        final WriteApi currentWriteAPI = writeAPI;
-        if (currentWriteAPI != null) {
-            currentWriteAPI.writePoint(convertPointToClientFormat(point));
+        final InfluxDBWriteBuffer currentWriteBuffer = writeBuffer;
+        if (currentWriteBuffer != null) {
+            currentWriteBuffer.add(point);
         } else {
             logger.warn("Write point {} ignored due to writeAPI isn't present", point);
         }
     }
 
-    private Point convertPointToClientFormat(InfluxPoint point) {
-        Point clientPoint = Point.measurement(point.getMeasurementName()).time(point.getTime(), WritePrecision.MS);
-        setPointValue(point.getValue(), clientPoint);
-        point.getTags().entrySet().forEach(e -> clientPoint.addTag(e.getKey(), e.getValue()));
-        return clientPoint;
-    }
-
-    private void setPointValue(@Nullable Object value, Point point) {
-        if (value instanceof String) {
-            point.addField(FIELD_VALUE_NAME, (String) value);
-        } else if (value instanceof Number) {
-            point.addField(FIELD_VALUE_NAME, (Number) value);
-        } else if (value instanceof Boolean) {
-            point.addField(FIELD_VALUE_NAME, (Boolean) value);
-        } else if (value == null) {
-            point.addField(FIELD_VALUE_NAME, (String) null);
-        } else {
-            throw new UnnexpectedConditionException("Not expected value type");
-        }
-    }
-
     /**
      * Executes Flux query
      *
      * @param query Query
-     * @return Query results
+     * @param rowConsumer Consumer of the resulting rows
      */
     @Override
-    public List<InfluxRow> query(String query) {
+    public void query(String query, Consumer<InfluxRow> rowConsumer) {
         final QueryApi currentQueryAPI = queryAPI;
         if (currentQueryAPI != null) {
-            List<FluxTable> clientResult = currentQueryAPI.query(query);
-            return convertClientResutToRepository(clientResult);
+            // records are streamed from the response instead of collecting all tables first
+            streamQuery(currentQueryAPI, query, record -> rowConsumer.accept(mapRecordToRow(record)));
         } else {
             logger.warn("Returning empty list because queryAPI isn't present");
-            return Collections.emptyList();
         }
     }
 
-    private List<InfluxRow> convertClientResutToRepository(List<FluxTable> clientResult) {
-        return clientResult.stream().flatMap(this::mapRawResultToHistoric).collect(Collectors.toList());
+    private void streamQuery(QueryApi currentQueryAPI, String query, Consumer<FluxRecord> recordConsumer) {
+        CompletableFuture<@Nullable Void> done = new CompletableFuture<>();
+        currentQueryAPI.query(query, (cancellable, record) -> {
+            try {
+                recordConsumer.accept(record);
+            } catch (RuntimeException e) {
+                cancellable.cancel();
+                done.completeExceptionally(e);
+            }
+        }, done::completeExceptionally, () -> done.complete(null));
+        try {
+            done.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : e;
+        }
     }
 
-    private Stream<InfluxRow> mapRawResultToHistoric(FluxTable rawRow) {
-        return rawRow.getRecords().stream().map(r -> {
-            String itemName = (String) r.getValueByKey(InfluxDBConstants.TAG_ITEM_NAME);
-            Object value = r.getValueByKey(COLUMN_VALUE_NAME_V2);
-            Instant time = (Instant) r.getValueByKey(COLUMN_TIME_NAME_V2);
-            return new InfluxRow(time, itemName, value);
-        });
+    private InfluxRow mapRecordToRow(FluxRecord record) {
+        String itemName = (String) record.getValueByKey(InfluxDBConstants.TAG_ITEM_NAME);
+        Object value = record.getValueByKey(COLUMN_VALUE_NAME_V2);
+        Instant time = (Instant) record.getValueByKey(COLUMN_TIME_NAME_V2);
+        return new InfluxRow(time, itemName, value);
     }
 
     /**
@@ -217,8 +227,7 @@ public class InfluxDB2RepositoryImpl implements InfluxDBRepository {
                     + "  |> group(columns: [\"" + TAG_ITEM_NAME + "\"], mode:\"by\")\n" + "  |> count()\n"
                     + "  |> group()";
 
-            List<FluxTable> queryResult = currentQueryAPI.query(query);
-            queryResult.stream().findFirst().orElse(new FluxTable()).getRecords().forEach(row -> {
+            streamQuery(currentQueryAPI, query, row -> {
                 result.put((String) row.getValueByKey(TAG_ITEM_NAME), ((Number) row.getValue()).intValue());
             });
             return result;
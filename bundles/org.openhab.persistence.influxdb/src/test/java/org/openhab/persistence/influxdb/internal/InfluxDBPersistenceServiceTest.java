@@ -12,9 +12,12 @@
  */
 package org.openhab.persistence.influxdb.internal;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
+import java.time.ZonedDateTime;
 import java.util.Map;
 
 import org.eclipse.jdt.annotation.DefaultLocation;
@@ -24,10 +27,13 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.openhab.core.items.ItemNotFoundException;
 import org.openhab.core.items.ItemRegistry;
 import org.openhab.core.items.MetadataRegistry;
+import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.persistence.influxdb.InfluxDBPersistenceService;
 
 /**
@@ -39,13 +45,14 @@ public class InfluxDBPersistenceServiceTest {
     private InfluxDBPersistenceService instance;
 
     private @Mock InfluxDBRepository influxDBRepository;
+    private @Mock ItemRegistry itemRegistry;
 
     private Map<String, @Nullable Object> validConfig;
     private Map<String, @Nullable Object> invalidConfig;
 
     @BeforeEach
     public void before() {
-        instance = new InfluxDBPersistenceService(mock(ItemRegistry.class), mock(MetadataRegistry.class)) {
+        instance = new InfluxDBPersistenceService(itemRegistry, mock(MetadataRegistry.class)) {
             @Override
             protected InfluxDBRepository createInfluxDBRepository() {
                 return influxDBRepository;
@@ -62,6 +69,7 @@ public class InfluxDBPersistenceServiceTest {
         invalidConfig = null;
         instance = null;
         influxDBRepository = null;
+        itemRegistry = null;
     }
 
     @Test
@@ -104,4 +112,39 @@ public class InfluxDBPersistenceServiceTest {
         instance.store(ItemTestHelper.createNumberItem("number", 5));
         verify(influxDBRepository, never()).write(any());
     }
+
+    @Test
+    public void queryIsAggregatedWhenWindowsAreLongEnough() throws ItemNotFoundException {
+        // a day in 100 values gives windows of 864 s
+        assertThat(queryDay("mean", 100), containsString("aggregateWindow(every: 864s, fn: mean"));
+    }
+
+    @Test
+    public void queryReturnsStoredValuesWhenWindowsAreShort() throws ItemNotFoundException {
+        // a day in 1000 values gives windows of 86 s, less than the default minimum window
+        assertThat(queryDay("mean", 1000), not(containsString("aggregateWindow")));
+    }
+
+    @Test
+    public void queryReturnsStoredValuesWhenAggregationIsDisabled() throws ItemNotFoundException {
+        assertThat(queryDay("none", 100), not(containsString("aggregateWindow")));
+    }
+
+    private String queryDay(String aggregateFunction, int pageSize) throws ItemNotFoundException {
+        validConfig.put(InfluxDBConfiguration.QUERY_AGGREGATE_FUNCTION_PARAM, aggregateFunction);
+        instance.activate(validConfig);
+        when(influxDBRepository.isConnected()).thenReturn(true);
+        lenient().when(itemRegistry.getItem("number")).thenReturn(ItemTestHelper.createNumberItem("number", 5));
+
+        FilterCriteria criteria = new FilterCriteria();
+        criteria.setItemName("number");
+        criteria.setEndDate(ZonedDateTime.now());
+        criteria.setBeginDate(criteria.getEndDate().minusDays(1));
+        criteria.setPageSize(pageSize);
+        instance.query(criteria);
+
+        ArgumentCaptor<String> query = ArgumentCaptor.forClass(String.class);
+        verify(influxDBRepository).query(query.capture(), any());
+        return query.getValue();
+    }
 }
@@ -0,0 +1,228 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.influxdb.internal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class InfluxDBWriteBufferTest {
+    private static final int LONG_INTERVAL = 60000;
+
+    @TempDir
+    @NonNullByDefault({})
+    Path tempDir;
+
+    @Test
+    public void pointsAreSpooledWhileUnavailableAndReplayedInOrder() throws IOException {
+        Path spoolFile = tempDir.resolve("spool.lp");
+
+        InfluxDBWriteBuffer unavailable = new InfluxDBWriteBuffer(records -> {
+            throw new IllegalStateException("connection refused");
+        }, e -> false, 10, LONG_INTERVAL, 100, spoolFile, 1);
+        unavailable.add("a");
+        unavailable.add("b");
+        unavailable.add("c");
+        unavailable.stop();
+
+        assertThat(Files.readAllLines(spoolFile, StandardCharsets.UTF_8), contains("a", "b", "c"));
+        assertThat(unavailable.getSpooledCount(), is(3L));
+        assertThat(unavailable.getWrittenCount(), is(0L));
+
+        List<String> written = new ArrayList<>();
+        InfluxDBWriteBuffer available = new InfluxDBWriteBuffer(written::addAll, e -> false, 2, LONG_INTERVAL, 100,
+                spoolFile, 1);
+        assertThat(available.getSpooledCount(), is(3L));
+        available.add("d");
+        available.stop();
+
+        assertThat(written, contains("a", "b", "c", "d"));
+        assertThat(available.getWrittenCount(), is(4L));
+        assertThat(available.getSpooledCount(), is(0L));
+        assertThat(Files.exists(spoolFile), is(false));
+    }
+
+    @Test
+    public void spoolIsReplayedInPartsAndNewPointsAreAppended() throws IOException {
+        Path spoolFile = tempDir.resolve("spool.lp");
+        int replayedPerFlush = 2 * InfluxDBWriteBuffer.MAX_REPLAY_BATCHES;
+        List<String> spooled = new ArrayList<>();
+        for (int i = 0; i < replayedPerFlush + 5; i++) {
+            spooled.add("s" + i);
+        }
+        Files.write(spoolFile, spooled, StandardCharsets.UTF_8);
+
+        List<String> written = new ArrayList<>();
+        InfluxDBWriteBuffer buffer = new InfluxDBWriteBuffer(written::addAll, e -> false, 2, LONG_INTERVAL, 100,
+                spoolFile, 1);
+        buffer.add("new");
+        // stop() flushes once, which replays one part of the spool only
+        buffer.stop();
+
+        List<String> remaining = new ArrayList<>(spooled.subList(replayedPerFlush, spooled.size()));
+        remaining.add("new");
+        assertThat(written, is(spooled.subList(0, replayedPerFlush)));
+        assertThat(Files.readAllLines(spoolFile, StandardCharsets.UTF_8), is(remaining));
+        assertThat(buffer.getSpooledCount(), is(6L));
+    }
+
+    @Test
+    public void spoolIsReplayedCompletelyByConsecutiveFlushes() throws IOException, InterruptedException {
+        Path spoolFile = tempDir.resolve("spool.lp");
+        List<String> spooled = new ArrayList<>();
+        for (int i = 0; i < 3 * InfluxDBWriteBuffer.MAX_REPLAY_BATCHES; i++) {
+            spooled.add("s" + i);
+        }
+        Files.write(spoolFile, spooled, StandardCharsets.UTF_8);
+
+        List<String> written = new CopyOnWriteArrayList<>();
+        InfluxDBWriteBuffer buffer = new InfluxDBWriteBuffer(written::addAll, e -> false, 1, LONG_INTERVAL, 100,
+                spoolFile, 1);
+        // a full batch triggers a flush, the following parts are replayed without waiting for the interval
+        buffer.add("new");
+        long end = System.currentTimeMillis() + 10000;
+        while (written.size() <= spooled.size() && System.currentTimeMillis() < end) {
+            Thread.sleep(20);
+        }
+        buffer.stop();
+
+        List<String> expected = new ArrayList<>(spooled);
+        expected.add("new");
+        assertThat(written, is(expected));
+        assertThat(Files.exists(spoolFile), is(false));
+    }
+
+    @Test
+    public void pointsAreDroppedWhenSpoolingIsDisabled() {
+        Path spoolFile = tempDir.resolve("spool.lp");
+        InfluxDBWriteBuffer buffer = new InfluxDBWriteBuffer(records -> {
+            throw new IllegalStateException("connection refused");
+        }, e -> false, 10, LONG_INTERVAL, 100, spoolFile, 0);
+        buffer.add("a");
+        buffer.stop();
+
+        assertThat(buffer.getDroppedCount(), is(1L));
+        assertThat(Files.exists(spoolFile), is(false));
+    }
+
+    @Test
+    public void pointsAreDroppedWhenQueueIsFull() {
+        List<String> written = new ArrayList<>();
+        InfluxDBWriteBuffer buffer = new InfluxDBWriteBuffer(written::addAll, e -> false, 10, LONG_INTERVAL, 2,
+                tempDir.resolve("spool.lp"), 1);
+        assertThat(buffer.add("a"), is(true));
+        assertThat(buffer.add("b"), is(true));
+        assertThat(buffer.add("c"), is(false));
+        buffer.stop();
+
+        assertThat(written, contains("a", "b"));
+        assertThat(buffer.getDroppedCount(), is(1L));
+    }
+
+    @Test
+    public void rejectedPointsAreDroppedAndTheOthersWritten() throws IOException {
+        Path spoolFile = tempDir.resolve("spool.lp");
+        List<String> written = new ArrayList<>();
+        InfluxDBWriteBuffer buffer = new InfluxDBWriteBuffer(records -> {
+            if (records.contains("bad")) {
+                throw new RejectedException();
+            }
+            written.addAll(records);
+        }, e -> e instanceof RejectedException, 10, LONG_INTERVAL, 100, spoolFile, 1);
+        buffer.add("a");
+        buffer.add("bad");
+        buffer.add("b");
+        buffer.stop();
+
+        assertThat(written, contains("a", "b"));
+        assertThat(buffer.getWrittenCount(), is(2L));
+        assertThat(buffer.getRejectedCount(), is(1L));
+        assertThat(Files.exists(spoolFile), is(false));
+    }
+
+    @Test
+    public void rejectedPointsAreDroppedFromTheSpool() throws IOException {
+        Path spoolFile = tempDir.resolve("spool.lp");
+        Files.write(spoolFile, List.of("a", "bad", "b"), StandardCharsets.UTF_8);
+
+        List<String> written = new ArrayList<>();
+        InfluxDBWriteBuffer buffer = new InfluxDBWriteBuffer(records -> {
+            if (records.contains("bad")) {
+                throw new RejectedException();
+            }
+            written.addAll(records);
+        }, e -> e instanceof RejectedException, 2, LONG_INTERVAL, 100, spoolFile, 1);
+        buffer.add("c");
+        buffer.stop();
+
+        assertThat(written, contains("a", "b", "c"));
+        assertThat(buffer.getRejectedCount(), is(1L));
+        assertThat(buffer.getSpooledCount(), is(0L));
+        assertThat(Files.exists(spoolFile), is(false));
+    }
+
+    @Test
+    public void pointsAfterAnOutageDuringRetryAreSpooledInOrder() throws IOException {
+        Path spoolFile = tempDir.resolve("spool.lp");
+        List<String> written = new ArrayList<>();
+        InfluxDBWriteBuffer buffer = new InfluxDBWriteBuffer(records -> {
+            if (records.contains("bad")) {
+                throw new RejectedException();
+            }
+            if (records.contains("b")) {
+                throw new IllegalStateException("connection refused");
+            }
+            written.addAll(records);
+        }, e -> e instanceof RejectedException, 10, LONG_INTERVAL, 100, spoolFile, 1);
+        buffer.add("a");
+        buffer.add("bad");
+        buffer.add("b");
+        buffer.add("c");
+        buffer.stop();
+
+        assertThat(written, contains("a"));
+        assertThat(buffer.getRejectedCount(), is(1L));
+        assertThat(Files.readAllLines(spoolFile, StandardCharsets.UTF_8), contains("b", "c"));
+    }
+
+    @Test
+    public void spoolFileDependsOnTheDatabase() {
+        Map<String, @Nullable Object> config = ConfigurationTestHelper.createValidConfigurationParameters();
+        Path spoolFile = InfluxDBWriteBuffer.getSpoolFile(new InfluxDBConfiguration(config));
+        assertThat(InfluxDBWriteBuffer.getSpoolFile(new InfluxDBConfiguration(config)), is(spoolFile));
+
+        config.put(InfluxDBConfiguration.DATABASE_PARAM, "other");
+        assertThat(InfluxDBWriteBuffer.getSpoolFile(new InfluxDBConfiguration(config)), is(not(spoolFile)));
+    }
+
+    @SuppressWarnings("serial")
+    private static class RejectedException extends RuntimeException {
+    }
+}
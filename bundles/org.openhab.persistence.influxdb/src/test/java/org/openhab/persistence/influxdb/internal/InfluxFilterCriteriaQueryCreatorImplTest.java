@@ -159,6 +159,47 @@ public class InfluxFilterCriteriaQueryCreatorImplTest {
                         + "|> sort(desc:false, columns:[\"_time\"])"));
     }
 
+    @Test
+    public void testAggregateQuery() {
+        FilterCriteria criteria = createBaseCriteria();
+        ZonedDateTime now = ZonedDateTime.now();
+        ZonedDateTime tomorrow = now.plus(1, ChronoUnit.DAYS);
+        criteria.setBeginDate(now);
+        criteria.setEndDate(tomorrow);
+        criteria.setPageSize(24);
+
+        String queryV1 = instanceV1.createAggregateQuery(criteria, RETENTION_POLICY, "mean", 3600);
+        String expectedQueryV1 = String.format(
+                "SELECT mean(value) AS value FROM origin.sampleItem WHERE time >= '%s' AND time <= '%s' "
+                        + "GROUP BY time(3600s) LIMIT 24;",
+                now.toInstant(), tomorrow.toInstant());
+        assertThat(queryV1, equalTo(expectedQueryV1));
+
+        String queryV2 = instanceV2.createAggregateQuery(criteria, RETENTION_POLICY, "mean", 3600);
+        String expectedQueryV2 = String.format("from(bucket:\"origin\")\n\t" + "|> range(start:%s, stop:%s)\n\t"
+                + "|> filter(fn: (r) => r[\"_measurement\"] == \"sampleItem\")\n\t"
+                + "|> aggregateWindow(every: 3600s, fn: mean, createEmpty: false)\n\t" + "|> limit(n:24)",
+                INFLUX2_DATE_FORMATTER.format(now.toInstant()), INFLUX2_DATE_FORMATTER.format(tomorrow.toInstant()));
+        assertThat(queryV2, equalTo(expectedQueryV2));
+    }
+
+    @Test
+    public void testAggregateQueryOrdering() {
+        FilterCriteria criteria = createBaseCriteria();
+        criteria.setOrdering(FilterCriteria.Ordering.DESCENDING);
+
+        String queryV1 = instanceV1.createAggregateQuery(criteria, RETENTION_POLICY, "max", 60);
+        assertThat(queryV1,
+                equalTo("SELECT max(value) AS value FROM origin.sampleItem GROUP BY time(60s) ORDER BY time DESC;"));
+
+        String queryV2 = instanceV2.createAggregateQuery(criteria, RETENTION_POLICY, "max", 60);
+        assertThat(queryV2,
+                equalTo("from(bucket:\"origin\")\n\t" + "|> range(start:-100y)\n\t"
+                        + "|> filter(fn: (r) => r[\"_measurement\"] == \"sampleItem\")\n\t"
+                        + "|> aggregateWindow(every: 60s, fn: max, createEmpty: false)\n\t"
+                        + "|> sort(desc:true, columns:[\"_time\"])"));
+    }
+
     private FilterCriteria createBaseCriteria() {
         return createBaseCriteria(ITEM_NAME);
     }
@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.influxdb.internal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class InfluxPointTest {
+    private static final Instant TIME = Instant.ofEpochMilli(1600000000123L);
+
+    @Test
+    public void numbersAreWrittenLikeTheClients() {
+        assertThat(point(new BigDecimal("5.50")).toLineProtocol(),
+                equalTo("my.item,item=myItem value=5.50 1600000000123"));
+        assertThat(point(5.5).toLineProtocol(), equalTo("my.item,item=myItem value=5.5 1600000000123"));
+        assertThat(point(1).toLineProtocol(), equalTo("my.item,item=myItem value=1i 1600000000123"));
+        assertThat(point(1600000000123L).toLineProtocol(),
+                equalTo("my.item,item=myItem value=1600000000123i 1600000000123"));
+        assertThat(point(Double.NaN).toLineProtocol(), nullValue());
+    }
+
+    @Test
+    public void specialCharactersAreEscaped() {
+        InfluxPoint point = InfluxPoint.newBuilder("my item,x").withTime(TIME).withValue("say \"hi\" \\o/")
+                .withTag("item", "myItem").withTag("label", "a=b, c").withTag("empty", "").build();
+        assertThat(point.toLineProtocol(), equalTo(
+                "my\\ item\\,x,item=myItem,label=a\\=b\\,\\ c value=\"say \\\"hi\\\" \\\\o/\" 1600000000123"));
+    }
+
+    @Test
+    public void tagsKeepTheLastValue() {
+        InfluxPoint point = InfluxPoint.newBuilder("m").withTime(TIME).withValue(true).withTag("a", "1")
+                .withTag("b", "2").withTag("a", "3").build();
+        assertThat(point.getTags(), allOf(hasEntry("a", "3"), hasEntry("b", "2"), aMapWithSize(2)));
+        assertThat(point.toLineProtocol(), equalTo("m,a=3,b=2 value=true 1600000000123"));
+    }
+
+    private static InfluxPoint point(Object value) {
+        return InfluxPoint.newBuilder("my.item").withTime(TIME).withValue(value).withTag("item", "myItem").build();
+    }
+}
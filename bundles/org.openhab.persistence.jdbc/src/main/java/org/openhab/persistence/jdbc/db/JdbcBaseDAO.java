@@ -13,17 +13,25 @@
 package org.openhab.persistence.jdbc.db;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
+import javax.measure.Quantity;
+import javax.measure.Unit;
+
 import org.knowm.yank.Yank;
 import org.openhab.core.items.GroupItem;
 import org.openhab.core.items.Item;
@@ -41,6 +49,7 @@ import org.openhab.core.library.types.HSBType;
 import org.openhab.core.library.types.OnOffType;
 import org.openhab.core.library.types.OpenClosedType;
 import org.openhab.core.library.types.PercentType;
+import org.openhab.core.library.types.QuantityType;
 import org.openhab.core.library.types.StringType;
 import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.core.persistence.FilterCriteria.Ordering;
@@ -79,6 +88,13 @@ public class JdbcBaseDAO {
     protected String sqlGetItemTables;
     protected String sqlCreateItemTable;
     protected String sqlInsertItemValue;
+    protected String sqlInsertItemValues;
+    protected String sqlTimeBucket;
+
+    // number of rows fetched from the database at once by history queries
+    protected int queryFetchSize = 1000;
+    // some drivers only fetch in chunks within a transaction
+    protected boolean queryWithoutAutoCommit = false;
 
     /********
      * INIT *
@@ -138,6 +154,8 @@ public class JdbcBaseDAO {
         sqlGetItemTables = "SELECT table_name FROM information_schema.tables WHERE table_type='BASE TABLE' AND table_schema='#jdbcUriDatabaseName#' AND NOT table_name='#itemsManageTable#'";
         sqlCreateItemTable = "CREATE TABLE IF NOT EXISTS #tableName# (time #tablePrimaryKey# NOT NULL, value #dbType#, PRIMARY KEY(time))";
         sqlInsertItemValue = "INSERT INTO #tableName# (TIME, VALUE) VALUES( #tablePrimaryValue#, ? ) ON DUPLICATE KEY UPDATE VALUE= ?";
+        sqlInsertItemValues = "INSERT INTO #tableName# (TIME, VALUE) VALUES( ?, ? ) ON DUPLICATE KEY UPDATE VALUE= VALUES(VALUE)";
+        sqlTimeBucket = "FLOOR(UNIX_TIMESTAMP(time) / #bucketSeconds#)";
     }
 
     /**
@@ -327,15 +345,111 @@ public class JdbcBaseDAO {
         Yank.execute(sql, params);
     }
 
+    /**
+     * Stores several values in one item table as a single JDBC batch. In contrast to
+     * {@link #doStoreItemValue(Item, ItemVO)} the time of each value is taken from {@link ItemVO#getTime()} instead of
+     * being set by the database.
+     *
+     * @param tableName the item table to write to
+     * @param dbType the SQL type of the value column
+     * @param vol the values to store, prepared by {@link #doPrepareItemValue(Item, ItemVO, Date)}
+     * @return <code>true</code> if the batch has been executed, <code>false</code> if it failed and none of the values
+     *         have been stored
+     */
+    public boolean doStoreItemValues(String tableName, String dbType, List<ItemVO> vol) {
+        String sql = StringUtilsExt.replaceArrayMerge(sqlInsertItemValues,
+                new String[] { "#tableName#", "#dbType#", "#tablePrimaryKey#" },
+                new String[] { tableName, dbType, sqlTypes.get("tablePrimaryKey") });
+        Object[][] params = new Object[vol.size()][];
+        for (int i = 0; i < vol.size(); i++) {
+            ItemVO vo = vol.get(i);
+            params[i] = new Object[] { getTimeParameter(vo.getTime()), vo.getValue() };
+        }
+        logger.debug("JDBC::doStoreItemValues sql={} rows={}", sql, params.length);
+        // Yank executes the batch in one transaction and returns null if it has been rolled back
+        return Yank.executeBatch(sql, params) != null;
+    }
+
+    /**
+     * Converts the current state of an item into a value for {@link #doStoreItemValues(String, String, List)}.
+     *
+     * @param item the item to take the state from
+     * @param vo the value with the table name set
+     * @param time the time to store the value with
+     * @return the value ready to be stored
+     */
+    public ItemVO doPrepareItemValue(Item item, ItemVO vo, Date time) {
+        ItemVO storedVO = storeItemValueProvider(item, vo);
+        storedVO.setTime(time);
+        return storedVO;
+    }
+
     public List<HistoricItem> doGetHistItemFilterQuery(Item item, FilterCriteria filter, int numberDecimalcount,
             String table, String name) {
-        String sql = histItemFilterQueryProvider(filter, numberDecimalcount, table, name);
+        List<Object> params = new ArrayList<>();
+        String sql = histItemFilterQueryProvider(filter, numberDecimalcount, table, name, params);
         logger.debug("JDBC::doGetHistItemFilterQuery sql={}", sql);
-        List<Object[]> m = Yank.queryObjectArrays(sql, null);
+        return doQueryHistItems(item, sql, params, -2);
+    }
 
+    /**
+     * Queries numeric values aggregated per time bucket, so that large time ranges return a bounded number of rows.
+     * The time of each returned value is the time of the first row in its bucket.
+     *
+     * @param aggregate the SQL aggregate function to apply to the values of each bucket: AVG, MIN or MAX
+     * @param bucketSeconds the length of a bucket in seconds
+     */
+    public List<HistoricItem> doGetHistItemDownsampledQuery(Item item, FilterCriteria filter, int numberDecimalcount,
+            String table, String aggregate, long bucketSeconds) {
+        List<Object> params = new ArrayList<>();
+        String sql = histItemDownsampledQueryProvider(filter, table, aggregate, bucketSeconds, params);
+        logger.debug("JDBC::doGetHistItemDownsampledQuery sql={}", sql);
+        return doQueryHistItems(item, sql, params, numberDecimalcount);
+    }
+
+    /**
+     * Runs a history query as a prepared statement and maps the rows while they are fetched.
+     * The statement is prepared on a pooled connection, which closes it again when the connection is returned, so
+     * prepared statements are reused by the statement cache of the driver (see <code>initDbProps()</code> of the
+     * DAOs) instead of being held here.
+     *
+     * @param params the parameters to bind to the statement
+     * @param aggregatedDecimalcount if > -2, the values are aggregated numbers which are rounded to this number of
+     *            decimals (-1 means no rounding)
+     */
+    protected List<HistoricItem> doQueryHistItems(Item item, String sql, List<Object> params,
+            int aggregatedDecimalcount) {
         List<HistoricItem> items = new ArrayList<>();
-        for (int i = 0; i < m.size(); i++) {
-            items.add(new JdbcHistoricItem(item.getName(), getState(item, m.get(i)[1]), objectAsDate(m.get(i)[0])));
+        try (Connection connection = Yank.getDefaultConnectionPool().getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            if (queryWithoutAutoCommit && autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setFetchSize(queryFetchSize);
+                for (int i = 0; i < params.size(); i++) {
+                    statement.setObject(i + 1, params.get(i));
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        Object value = resultSet.getObject(2);
+                        if (value == null) {
+                            continue;
+                        }
+                        State state = aggregatedDecimalcount > -2
+                                ? getAggregatedState(item, (Number) value, aggregatedDecimalcount)
+                                : getState(item, value);
+                        items.add(new JdbcHistoricItem(item.getName(), state, objectAsDate(resultSet.getObject(1))));
+                    }
+                }
+            } finally {
+                if (connection.getAutoCommit() != autoCommit) {
+                    connection.rollback();
+                    connection.setAutoCommit(autoCommit);
+                }
+            }
+        } catch (SQLException e) {
+            logger.warn("JDBC::doQueryHistItems: query for item '{}' failed: {}", item.getName(), e.getMessage());
         }
         return items;
     }
@@ -343,23 +457,13 @@ public class JdbcBaseDAO {
     /*************
      * Providers *
      *************/
-    static final DateTimeFormatter JDBC_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-
-    private String histItemFilterQueryProvider(FilterCriteria filter, int numberDecimalcount, String table,
-            String simpleName) {
+    protected String histItemFilterQueryProvider(FilterCriteria filter, int numberDecimalcount, String table,
+            String simpleName, List<Object> params) {
         logger.debug(
                 "JDBC::getHistItemFilterQueryProvider filter = {}, numberDecimalcount = {}, table = {}, simpleName = {}",
                 filter.toString(), numberDecimalcount, table, simpleName);
 
-        String filterString = "";
-        if (filter.getBeginDate() != null) {
-            filterString += filterString.isEmpty() ? " WHERE" : " AND";
-            filterString += " TIME>'" + JDBC_DATE_FORMAT.format(filter.getBeginDate()) + "'";
-        }
-        if (filter.getEndDate() != null) {
-            filterString += filterString.isEmpty() ? " WHERE" : " AND";
-            filterString += " TIME<'" + JDBC_DATE_FORMAT.format(filter.getEndDate()) + "'";
-        }
+        String filterString = timeFilterProvider(filter, params);
         filterString += (filter.getOrdering() == Ordering.ASCENDING) ? " ORDER BY time ASC" : " ORDER BY time DESC ";
         if (filter.getPageSize() != 0x7fffffff) {
             filterString += " LIMIT " + filter.getPageNumber() * filter.getPageSize() + "," + filter.getPageSize();
@@ -376,6 +480,35 @@ public class JdbcBaseDAO {
         return queryString;
     }
 
+    protected String histItemDownsampledQueryProvider(FilterCriteria filter, String table, String aggregate,
+            long bucketSeconds, List<Object> params) {
+        String bucket = StringUtilsExt.replaceArrayMerge(sqlTimeBucket, new String[] { "#bucketSeconds#" },
+                new String[] { String.valueOf(bucketSeconds) });
+        String queryString = "SELECT MIN(time), " + aggregate + "(value) FROM " + table
+                + timeFilterProvider(filter, params) + " GROUP BY " + bucket
+                + ((filter.getOrdering() == Ordering.ASCENDING) ? " ORDER BY 1 ASC" : " ORDER BY 1 DESC");
+        logger.debug("JDBC::query queryString = {}", queryString);
+        return queryString;
+    }
+
+    /**
+     * Returns the WHERE clause for the begin and end date of the filter and adds the dates to the parameters.
+     */
+    protected String timeFilterProvider(FilterCriteria filter, List<Object> params) {
+        String filterString = "";
+        if (filter.getBeginDate() != null) {
+            filterString += filterString.isEmpty() ? " WHERE" : " AND";
+            filterString += " TIME>?";
+            params.add(getTimeParameter(Date.from(filter.getBeginDate().toInstant())));
+        }
+        if (filter.getEndDate() != null) {
+            filterString += filterString.isEmpty() ? " WHERE" : " AND";
+            filterString += " TIME<?";
+            params.add(getTimeParameter(Date.from(filter.getEndDate().toInstant())));
+        }
+        return filterString;
+    }
+
     private String updateItemTableNamesProvider(List<ItemVO> namesList) {
         logger.debug("JDBC::updateItemTableNamesProvider namesList.size = {}", namesList.size());
         String queryString = "";
@@ -459,6 +592,14 @@ public class JdbcBaseDAO {
     /*****************
      * H E L P E R S *
      *****************/
+    /**
+     * Converts the time of a value into the parameter that is bound to the time column by
+     * {@link #doStoreItemValues(String, String, List)}.
+     */
+    protected Object getTimeParameter(Date time) {
+        return new Timestamp(time.getTime());
+    }
+
     protected State getState(Item item, Object v) {
         String clazz = v.getClass().getSimpleName();
         logger.debug("JDBC::ItemResultHandler::handleResult getState value = '{}', getClass = '{}', clazz = '{}'",
@@ -466,13 +607,13 @@ public class JdbcBaseDAO {
         if (item instanceof NumberItem) {
             String it = getSqlTypes().get("NUMBERITEM");
             if (it.toUpperCase().contains("DOUBLE")) {
-                return new DecimalType(((Number) v).doubleValue());
+                return getNumberState(item, BigDecimal.valueOf(((Number) v).doubleValue()));
             } else if (it.toUpperCase().contains("DECIMAL") || it.toUpperCase().contains("NUMERIC")) {
-                return new DecimalType((BigDecimal) v);
+                return getNumberState(item, (BigDecimal) v);
             } else if (it.toUpperCase().contains("INT")) {
-                return new DecimalType(((Integer) v).intValue());
+                return getNumberState(item, BigDecimal.valueOf(((Integer) v).intValue()));
             }
-            return DecimalType.valueOf(((String) v).toString());
+            return getNumberState(item, new BigDecimal(((String) v).toString()));
         } else if (item instanceof ColorItem) {
             return HSBType.valueOf(((String) v).toString());
         } else if (item instanceof DimmerItem) {
@@ -493,6 +634,22 @@ public class JdbcBaseDAO {
         }
     }
 
+    protected State getAggregatedState(Item item, Number v, int numberDecimalcount) {
+        BigDecimal value = v instanceof BigDecimal ? (BigDecimal) v : BigDecimal.valueOf(v.doubleValue());
+        return getNumberState(item,
+                numberDecimalcount > -1 ? value.setScale(numberDecimalcount, RoundingMode.HALF_UP) : value);
+    }
+
+    /**
+     * Returns a number value as {@link QuantityType} in the unit of the item if it has a dimension, otherwise as
+     * {@link DecimalType}. The value column holds the number of the state in the unit of the item.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    protected State getNumberState(Item item, BigDecimal value) {
+        Unit<? extends Quantity<?>> unit = item instanceof NumberItem ? ((NumberItem) item).getUnit() : null;
+        return unit != null ? new QuantityType(value, unit) : new DecimalType(value);
+    }
+
     protected ZonedDateTime objectAsDate(Object v) {
         if (v instanceof java.lang.String) {
             return ZonedDateTime.ofInstant(Timestamp.valueOf(v.toString()).toInstant(), ZoneId.systemDefault());
@@ -12,6 +12,10 @@
  */
 package org.openhab.persistence.jdbc.db;
 
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+
 import org.knowm.yank.Yank;
 import org.openhab.core.items.Item;
 import org.openhab.persistence.jdbc.model.ItemVO;
@@ -30,6 +34,8 @@ import org.slf4j.LoggerFactory;
 public class JdbcSqliteDAO extends JdbcBaseDAO {
     private final Logger logger = LoggerFactory.getLogger(JdbcSqliteDAO.class);
 
+    private static final DateTimeFormatter SQLITE_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
     /********
      * INIT *
      ********/
@@ -47,6 +53,8 @@ public class JdbcSqliteDAO extends JdbcBaseDAO {
         sqlIfTableExists = "SELECT name FROM sqlite_master WHERE type='table' AND name='#searchTable#'";
         sqlCreateItemsTableIfNot = "CREATE TABLE IF NOT EXISTS #itemsManageTable# (ItemId INTEGER PRIMARY KEY AUTOINCREMENT, #colname# #coltype# NOT NULL)";
         sqlInsertItemValue = "INSERT OR IGNORE INTO #tableName# (TIME, VALUE) VALUES( #tablePrimaryValue#, CAST( ? as #dbType#) )";
+        sqlInsertItemValues = "INSERT OR IGNORE INTO #tableName# (TIME, VALUE) VALUES( ?, CAST( ? as #dbType#) )";
+        sqlTimeBucket = "CAST(strftime('%s', time) AS INTEGER) / #bucketSeconds#";
     }
 
     /**
@@ -107,6 +115,14 @@ public class JdbcSqliteDAO extends JdbcBaseDAO {
     /*****************
      * H E L P E R S *
      *****************/
+    /**
+     * The time column is filled with local time strings by 'tablePrimaryValue', so the same format is used for
+     * batched values.
+     */
+    @Override
+    protected Object getTimeParameter(Date time) {
+        return SQLITE_DATE_FORMAT.format(time.toInstant().atZone(ZoneId.systemDefault()));
+    }
 
     /******************************
      * public Getters and Setters *
@@ -0,0 +1,227 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.jdbc.internal;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openhab.core.common.NamedThreadFactory;
+import org.openhab.persistence.jdbc.db.JdbcBaseDAO;
+import org.openhab.persistence.jdbc.model.ItemVO;
+import org.openhab.persistence.jdbc.utils.MovingAverage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write-behind queue for item values. Values are collected in a bounded queue and written by a single background
+ * thread, grouped by item table, as one JDBC batch per table. A flush is started when <code>batchSize</code> values
+ * are queued or at the latest every <code>batchInterval</code> milliseconds.
+ *
+ * When the queue is full, callers are blocked for up to {@link #OFFER_TIMEOUT_MS} before the value is dropped. Values
+ * which cannot be written are dropped as well; both are counted in {@link #getDroppedCount()}.
+ *
+ * @author agent - Initial contribution
+ */
+public class JdbcBatchWriter {
+    private final Logger logger = LoggerFactory.getLogger(JdbcBatchWriter.class);
+
+    static final long OFFER_TIMEOUT_MS = 1000;
+
+    private final JdbcBaseDAO dao;
+    private final int batchSize;
+    private final BlockingQueue<ItemVO> queue;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean flushPending = new AtomicBoolean();
+
+    // metrics
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final MovingAverage flushTimeAverage = new MovingAverage(50); // also guards flushTimeMax
+    private long flushTimeMax = 0;
+
+    public JdbcBatchWriter(JdbcBaseDAO dao, int batchSize, int batchInterval, int queueSize) {
+        this.dao = dao;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("jdbc-writer"));
+        scheduler.scheduleWithFixedDelay(this::flush, batchInterval, batchInterval, TimeUnit.MILLISECONDS);
+        logger.debug("JDBC::JdbcBatchWriter: started with batchSize={} batchInterval={} ms queueSize={}", batchSize,
+                batchInterval, queueSize);
+    }
+
+    /**
+     * Queues a value for writing.
+     *
+     * @param vo the value, with table name, db type, time and value set
+     * @return <code>false</code> if the value was dropped because the queue stayed full
+     */
+    public boolean add(ItemVO vo) {
+        try {
+            if (!queue.offer(vo, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                droppedCount.incrementAndGet();
+                logger.warn("JDBC::add: write queue is full, dropping value for table '{}'. Dropped so far: {}",
+                        vo.getTableName(), droppedCount.get());
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            droppedCount.incrementAndGet();
+            return false;
+        }
+        if (queue.size() >= batchSize && flushPending.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(this::flush);
+            } catch (RuntimeException e) {
+                // scheduler has been shut down, remaining values are written by stop()
+                flushPending.set(false);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops the background thread and writes all queued values on the calling thread.
+     */
+    public void stop() {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("JDBC::stop: write queue did not finish in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        logger.debug("JDBC::stop: {}", this);
+    }
+
+    synchronized void flush() {
+        flushPending.set(false);
+        List<ItemVO> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            long timerStart = System.currentTimeMillis();
+
+            Map<String, List<ItemVO>> tables = new LinkedHashMap<>();
+            for (ItemVO vo : batch) {
+                tables.computeIfAbsent(vo.getTableName(), t -> new ArrayList<>()).add(vo);
+            }
+            for (Map.Entry<String, List<ItemVO>> table : tables.entrySet()) {
+                storeValues(table.getKey(), table.getValue());
+            }
+
+            long flushTime = System.currentTimeMillis() - timerStart;
+            synchronized (flushTimeAverage) {
+                flushTimeAverage.add(flushTime);
+                flushTimeMax = Math.max(flushTimeMax, flushTime);
+            }
+            logger.debug("JDBC::flush: flushed {} values to {} tables in {} ms, {} values queued", batch.size(),
+                    tables.size(), flushTime, queue.size());
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes the values of one table as a batch. If the batch fails while the database is reachable, the values are
+     * written one by one, so that a single rejected value does not cost the whole batch.
+     */
+    private void storeValues(String tableName, List<ItemVO> vol) {
+        if (storeBatch(tableName, vol)) {
+            writtenCount.addAndGet(vol.size());
+            return;
+        }
+        int lost = vol.size();
+        if (vol.size() > 1 && isReachable()) {
+            logger.debug("JDBC::flush: batch of {} values to table '{}' failed, writing them one by one", vol.size(),
+                    tableName);
+            for (ItemVO vo : vol) {
+                if (storeBatch(tableName, List.of(vo))) {
+                    lost--;
+                }
+            }
+        }
+        writtenCount.addAndGet(vol.size() - lost);
+        if (lost > 0) {
+            droppedCount.addAndGet(lost);
+            logger.warn("JDBC::flush: unable to write {} of {} values to table '{}'. Dropped so far: {}", lost,
+                    vol.size(), tableName, droppedCount.get());
+        }
+    }
+
+    private boolean storeBatch(String tableName, List<ItemVO> vol) {
+        try {
+            return dao.doStoreItemValues(tableName, vol.get(0).getDbType(), vol);
+        } catch (RuntimeException e) {
+            logger.debug("JDBC::flush: unable to write {} values to table '{}': {}", vol.size(), tableName,
+                    e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean isReachable() {
+        try {
+            Integer ping = dao.doPingDB();
+            return ping != null && ping > 0;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the number of values waiting to be written.
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Returns the average time in milliseconds of the last 50 flushes of one batch.
+     */
+    public double getFlushTimeAverage() {
+        synchronized (flushTimeAverage) {
+            return flushTimeAverage.getAverageDouble();
+        }
+    }
+
+    /**
+     * Returns the longest time in milliseconds a flush of one batch took since the writer was started.
+     */
+    public long getFlushTimeMax() {
+        synchronized (flushTimeAverage) {
+            return flushTimeMax;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "JdbcBatchWriter [queueSize=" + getQueueSize() + ", written=" + getWrittenCount() + ", dropped="
+                + getDroppedCount() + ", flushTimeAverage=" + getFlushTimeAverage() + " ms, flushTimeMax="
+                + getFlushTimeMax() + " ms]";
+    }
+}
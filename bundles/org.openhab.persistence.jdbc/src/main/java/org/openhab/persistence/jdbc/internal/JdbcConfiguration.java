@@ -61,6 +61,14 @@ public class JdbcConfiguration {
 
     private int errReconnectThreshold = 0;
 
+    private boolean batchInsert = false;
+    private int batchSize = 100;
+    private int batchInterval = 1000;
+    private int batchQueueSize = 10000;
+
+    private int downsampleMaxRows = 0;
+    private String downsampleFunction = "AVG";
+
     public int timerCount = 0;
     public int time1000Statements = 0;
     public long timer1000 = 0;
@@ -174,6 +182,47 @@ public class JdbcConfiguration {
             logger.debug("JDBC::updateConfig: rebuildTableNames={}", rebuildTableNames);
         }
 
+        String bi = (String) configuration.get("batchInsert");
+        if (bi != null && !bi.isBlank()) {
+            batchInsert = Boolean.parseBoolean(bi);
+            logger.debug("JDBC::updateConfig: batchInsert={}", batchInsert);
+        }
+
+        String bs = (String) configuration.get("batchSize");
+        if (bs != null && !bs.isBlank() && isNumericPattern.matcher(bs).matches()) {
+            batchSize = Math.max(1, Integer.parseInt(bs));
+            logger.debug("JDBC::updateConfig: batchSize={}", batchSize);
+        }
+
+        String bn = (String) configuration.get("batchInterval");
+        if (bn != null && !bn.isBlank() && isNumericPattern.matcher(bn).matches()) {
+            batchInterval = Math.max(10, Integer.parseInt(bn));
+            logger.debug("JDBC::updateConfig: batchInterval={}", batchInterval);
+        }
+
+        String bq = (String) configuration.get("batchQueueSize");
+        if (bq != null && !bq.isBlank() && isNumericPattern.matcher(bq).matches()) {
+            batchQueueSize = Math.max(1, Integer.parseInt(bq));
+            logger.debug("JDBC::updateConfig: batchQueueSize={}", batchQueueSize);
+        }
+
+        String dr = (String) configuration.get("downsampleMaxRows");
+        if (dr != null && !dr.isBlank() && isNumericPattern.matcher(dr).matches()) {
+            downsampleMaxRows = Math.max(0, Integer.parseInt(dr));
+            logger.debug("JDBC::updateConfig: downsampleMaxRows={}", downsampleMaxRows);
+        }
+
+        String df = (String) configuration.get("downsampleFunction");
+        if (df != null && !df.isBlank()) {
+            df = df.trim().toUpperCase();
+            if ("AVG".equals(df) || "MIN".equals(df) || "MAX".equals(df)) {
+                downsampleFunction = df;
+                logger.debug("JDBC::updateConfig: downsampleFunction={}", downsampleFunction);
+            } else {
+                logger.warn("JDBC::updateConfig: unknown downsampleFunction '{}', using '{}'", df, downsampleFunction);
+            }
+        }
+
         // undocumented
         String ac = (String) configuration.get("maximumPoolSize");
         if (ac != null && !ac.isBlank()) {
@@ -351,6 +400,30 @@ public class JdbcConfiguration {
         return tableIdDigitCount;
     }
 
+    public boolean getBatchInsert() {
+        return batchInsert;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getBatchInterval() {
+        return batchInterval;
+    }
+
+    public int getBatchQueueSize() {
+        return batchQueueSize;
+    }
+
+    public int getDownsampleMaxRows() {
+        return downsampleMaxRows;
+    }
+
+    public String getDownsampleFunction() {
+        return downsampleFunction;
+    }
+
     public JdbcBaseDAO getDBDAO() {
         return dBDAO;
     }
@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.jdbc.internal;
+
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.core.io.console.Console;
+import org.openhab.core.io.console.extensions.AbstractConsoleCommandExtension;
+import org.openhab.core.io.console.extensions.ConsoleCommandExtension;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+
+/**
+ * Console commands for the JDBC persistence service
+ *
+ * @author agent - Initial contribution
+ */
+@Component(service = ConsoleCommandExtension.class)
+@NonNullByDefault
+public class JdbcConsoleCommandExtension extends AbstractConsoleCommandExtension {
+    private static final String SUBCMD_METRICS = "metrics";
+
+    private final JdbcPersistenceService persistenceService;
+
+    @Activate
+    public JdbcConsoleCommandExtension(final @Reference JdbcPersistenceService persistenceService) {
+        super("jdbc", "Interact with the JDBC persistence service.");
+        this.persistenceService = persistenceService;
+    }
+
+    @Override
+    public void execute(String[] args, Console console) {
+        if (args.length == 1 && SUBCMD_METRICS.equals(args[0])) {
+            printMetrics(console);
+        } else {
+            printUsage(console);
+        }
+    }
+
+    @Override
+    public List<String> getUsages() {
+        return List.of(buildCommandUsage(SUBCMD_METRICS, "shows the queue depth and the flush times of batch inserts"));
+    }
+
+    private void printMetrics(Console console) {
+        JdbcBatchWriter writer = persistenceService.getBatchWriter();
+        if (writer == null) {
+            console.println("Batch inserts are not enabled, values are written immediately.");
+            return;
+        }
+        console.println(String.format("%d values queued, %d written, %d dropped", writer.getQueueSize(),
+                writer.getWrittenCount(), writer.getDroppedCount()));
+        console.println(String.format("flush time per batch: average %.1f ms, max %d ms",
+                writer.getFlushTimeAverage(), writer.getFlushTimeMax()));
+    }
+}
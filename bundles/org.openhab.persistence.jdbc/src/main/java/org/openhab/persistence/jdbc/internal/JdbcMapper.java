@@ -12,15 +12,35 @@
  */
 package org.openhab.persistence.jdbc.internal;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import org.knowm.yank.Yank;
+import org.openhab.core.OpenHAB;
+import org.openhab.core.common.ThreadPoolManager;
 import org.openhab.core.items.Item;
+import org.openhab.core.library.items.NumberItem;
 import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.core.persistence.HistoricItem;
 import org.openhab.core.persistence.PersistenceItemInfo;
@@ -42,10 +62,22 @@ public class JdbcMapper {
     protected int errCnt;
     protected boolean initialized = false;
     protected JdbcConfiguration conf = null;
-    protected final Map<String, String> sqlTables = new HashMap<>();
+    protected volatile JdbcBatchWriter batchWriter = null;
+    protected final Map<String, String> sqlTables = new ConcurrentHashMap<>();
+    // items known to have no table, cleared whenever the tables are discovered again
+    private final Set<String> missingTables = ConcurrentHashMap.newKeySet();
+    private volatile CompletableFuture<Void> tableDiscovery = CompletableFuture.completedFuture(null);
+    private final Object tableCreationLock = new Object();
     private long afterAccessMin = 10000;
     private long afterAccessMax = 0;
     private static final String ITEM_NAME_PATTERN = "[^a-zA-Z_0-9\\-]";
+    private static final File TABLE_SNAPSHOT_FILE = new File(OpenHAB.getUserDataFolder() + File.separator
+            + "persistence" + File.separator + "jdbc" + File.separator + "tables.properties");
+    // item names cannot contain dots, so this key never collides with an item
+    private static final String TABLE_SNAPSHOT_CONFIG_KEY = "jdbc.tables.config";
+    // new tables are written to the snapshot together, at most once in this time
+    private static final long TABLE_SNAPSHOT_DELAY_SECONDS = 10;
+    private final AtomicBoolean tableSnapshotPending = new AtomicBoolean();
 
     /*****************
      * MAPPER ITEMS *
@@ -146,8 +178,15 @@ public class JdbcMapper {
             return item;
         }
         long timerStart = System.currentTimeMillis();
-        conf.getDBDAO().doStoreItemValue(item, new ItemVO(tableName, null));
-        logTime("storeItemValue", timerStart, System.currentTimeMillis());
+        JdbcBatchWriter writer = batchWriter;
+        if (writer != null) {
+            // the value is taken now, it is written later by the batch writer
+            writer.add(conf.getDBDAO().doPrepareItemValue(item, new ItemVO(tableName, null), new Date()));
+            logTime("queueItemValue", timerStart, System.currentTimeMillis());
+        } else {
+            conf.getDBDAO().doStoreItemValue(item, new ItemVO(tableName, null));
+            logTime("storeItemValue", timerStart, System.currentTimeMillis());
+        }
         errCnt = 0;
         return item;
     }
@@ -159,9 +198,15 @@ public class JdbcMapper {
                 (filter != null), numberDecimalcount, table, item, item.getName());
         if (table != null) {
             long timerStart = System.currentTimeMillis();
-            List<HistoricItem> r = conf.getDBDAO().doGetHistItemFilterQuery(item, filter, numberDecimalcount, table,
-                    item.getName());
-            logTime("insertItemValue", timerStart, System.currentTimeMillis());
+            List<HistoricItem> r;
+            long bucketSeconds = getDownsampleBucketSeconds(filter, item);
+            if (bucketSeconds > 0) {
+                r = conf.getDBDAO().doGetHistItemDownsampledQuery(item, filter, numberDecimalcount, table,
+                        conf.getDownsampleFunction(), bucketSeconds);
+            } else {
+                r = conf.getDBDAO().doGetHistItemFilterQuery(item, filter, numberDecimalcount, table, item.getName());
+            }
+            logTime("getHistItemFilterQuery", timerStart, System.currentTimeMillis());
             return r;
         } else {
             logger.error("JDBC::getHistItemFilterQuery: TABLE is NULL; cannot get data from non-existent table.");
@@ -169,6 +214,22 @@ public class JdbcMapper {
         return null;
     }
 
+    /**
+     * Returns the length of the time buckets for a downsampled query, or 0 if the query must return all rows.
+     * Downsampling is only applied to unpaged queries of number items over a bounded time range without a state
+     * filter, as an aggregated value cannot be compared to the state of the filter.
+     */
+    private long getDownsampleBucketSeconds(FilterCriteria filter, Item item) {
+        int maxRows = conf.getDownsampleMaxRows();
+        if (maxRows <= 0 || !(item instanceof NumberItem) || filter.getBeginDate() == null
+                || filter.getPageSize() != Integer.MAX_VALUE || filter.getState() != null) {
+            return 0;
+        }
+        ZonedDateTime end = filter.getEndDate() != null ? filter.getEndDate() : ZonedDateTime.now();
+        long rangeSeconds = end.toEpochSecond() - filter.getBeginDate().toEpochSecond();
+        return rangeSeconds > 0 ? Math.max(1, rangeSeconds / maxRows) : 0;
+    }
+
     /***********************
      * DATABASE CONNECTION *
      ***********************/
@@ -187,6 +248,31 @@ public class JdbcMapper {
         return true;
     }
 
+    protected void startBatchWriter() {
+        stopBatchWriter();
+        if (conf.getBatchInsert()) {
+            logger.debug("JDBC::startBatchWriter");
+            batchWriter = new JdbcBatchWriter(conf.getDBDAO(), conf.getBatchSize(), conf.getBatchInterval(),
+                    conf.getBatchQueueSize());
+        }
+    }
+
+    protected void stopBatchWriter() {
+        JdbcBatchWriter writer = batchWriter;
+        if (writer != null) {
+            logger.debug("JDBC::stopBatchWriter");
+            batchWriter = null;
+            writer.stop();
+        }
+    }
+
+    /**
+     * Returns the writer of the queued values, <code>null</code> if values are written immediately.
+     */
+    public JdbcBatchWriter getBatchWriter() {
+        return batchWriter;
+    }
+
     protected void closeConnection() {
         logger.debug("JDBC::closeConnection");
         // Closes all open connection pools
@@ -222,23 +308,73 @@ public class JdbcMapper {
             formatTableNames();
             logger.info(
                     "JDBC::checkDBSchema: Rebuild complete, configure the 'rebuildTableNames' setting to 'false' to stop rebuilds on startup");
+            storeTableSnapshot();
         } else {
-            List<ItemsVO> al;
             // Reset the error counter
             errCnt = 0;
-            al = getItemIDTableNames();
-            for (int i = 0; i < al.size(); i++) {
-                String t = getTableName(al.get(i).getItemid(), al.get(i).getItemname());
-                sqlTables.put(al.get(i).getItemname(), t);
+            // known tables are available at once, the database is read in the background
+            loadTableSnapshot();
+            tableDiscovery = CompletableFuture.runAsync(this::discoverTables,
+                    ThreadPoolManager.getPool("persistence"));
+        }
+    }
+
+    /**
+     * Reads all item tables from the database and replaces the known tables with them.
+     */
+    private void discoverTables() {
+        long timerStart = System.currentTimeMillis();
+        Map<String, String> tables = new HashMap<>();
+        for (ItemsVO vo : getItemIDTableNames()) {
+            tables.put(vo.getItemname(), getTableName(vo.getItemid(), vo.getItemname()));
+        }
+        sqlTables.putAll(tables);
+        sqlTables.keySet().retainAll(tables.keySet());
+        missingTables.clear();
+        logger.debug("JDBC::discoverTables: found {} item tables in {} ms", tables.size(),
+                System.currentTimeMillis() - timerStart);
+        storeTableSnapshot();
+    }
+
+    /**
+     * Waits until the item tables have been read from the database. If reading them failed, it is retried on the
+     * calling thread.
+     */
+    private void awaitTableDiscovery() {
+        CompletableFuture<Void> discovery = tableDiscovery;
+        try {
+            discovery.join();
+        } catch (CompletionException e) {
+            synchronized (tableCreationLock) {
+                if (tableDiscovery == discovery) {
+                    logger.warn("JDBC::awaitTableDiscovery: reading item tables failed, retrying: {}",
+                            e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+                    discoverTables();
+                    tableDiscovery = CompletableFuture.completedFuture(null);
+                }
             }
         }
     }
 
-    protected String getTable(Item item) {
-        int rowId = 0;
-        ItemsVO isvo;
-        ItemVO ivo;
+    /**
+     * Returns the table of an item without creating it.
+     *
+     * @return the table name or <code>null</code> if no data has been stored for the item
+     */
+    protected String getTableIfExists(String itemName) {
+        String tableName = sqlTables.get(itemName);
+        if (tableName != null || missingTables.contains(itemName)) {
+            return tableName;
+        }
+        awaitTableDiscovery();
+        tableName = sqlTables.get(itemName);
+        if (tableName == null) {
+            missingTables.add(itemName);
+        }
+        return tableName;
+    }
 
+    protected String getTable(Item item) {
         String itemName = item.getName();
         String tableName = sqlTables.get(itemName);
 
@@ -247,6 +383,29 @@ public class JdbcMapper {
             return tableName;
         }
 
+        // the item may have a table which has not been read from the database yet
+        awaitTableDiscovery();
+        synchronized (tableCreationLock) {
+            tableName = sqlTables.get(itemName);
+            if (tableName != null) {
+                return tableName;
+            }
+            tableName = createTable(item);
+            missingTables.remove(itemName);
+        }
+        if (tableName != null) {
+            scheduleTableSnapshot();
+        }
+        return tableName;
+    }
+
+    private String createTable(Item item) {
+        int rowId = 0;
+        ItemsVO isvo;
+        ItemVO ivo;
+        String tableName;
+
+        String itemName = item.getName();
         logger.debug("JDBC::getTable: no table found for item '{}' in sqlTables", itemName);
 
         // Create a new entry in items table
@@ -290,6 +449,79 @@ public class JdbcMapper {
         return tableName;
     }
 
+    /**
+     * Loads the tables known from the last run, if they were stored for the same database and table naming.
+     */
+    private void loadTableSnapshot() {
+        if (!TABLE_SNAPSHOT_FILE.exists()) {
+            return;
+        }
+        Properties snapshot = new Properties();
+        try (InputStream is = new FileInputStream(TABLE_SNAPSHOT_FILE)) {
+            snapshot.load(is);
+        } catch (IOException e) {
+            logger.debug("JDBC::loadTableSnapshot: unable to read '{}': {}", TABLE_SNAPSHOT_FILE, e.getMessage());
+            return;
+        }
+        if (!getTableSnapshotConfig().equals(snapshot.getProperty(TABLE_SNAPSHOT_CONFIG_KEY))) {
+            logger.debug("JDBC::loadTableSnapshot: snapshot belongs to a different configuration, ignoring it");
+            return;
+        }
+        snapshot.remove(TABLE_SNAPSHOT_CONFIG_KEY);
+        for (String itemName : snapshot.stringPropertyNames()) {
+            sqlTables.put(itemName, snapshot.getProperty(itemName));
+        }
+        logger.debug("JDBC::loadTableSnapshot: loaded {} item tables", sqlTables.size());
+    }
+
+    /**
+     * Writes the snapshot after {@link #TABLE_SNAPSHOT_DELAY_SECONDS}, so that tables created in the meantime are
+     * written at once.
+     */
+    private void scheduleTableSnapshot() {
+        if (tableSnapshotPending.compareAndSet(false, true)) {
+            ThreadPoolManager.getScheduledPool("persistence").schedule(() -> {
+                tableSnapshotPending.set(false);
+                storeTableSnapshot();
+            }, TABLE_SNAPSHOT_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private synchronized void storeTableSnapshot() {
+        Properties snapshot = new Properties();
+        snapshot.putAll(sqlTables);
+        snapshot.setProperty(TABLE_SNAPSHOT_CONFIG_KEY, getTableSnapshotConfig());
+        File folder = TABLE_SNAPSHOT_FILE.getParentFile();
+        if (!folder.exists() && !folder.mkdirs()) {
+            logger.debug("JDBC::storeTableSnapshot: unable to create folder '{}'", folder);
+            return;
+        }
+        try (OutputStream os = new FileOutputStream(TABLE_SNAPSHOT_FILE)) {
+            snapshot.store(os, "item tables of the JDBC persistence service, rebuilt from the database on startup");
+        } catch (IOException e) {
+            logger.debug("JDBC::storeTableSnapshot: unable to write '{}': {}", TABLE_SNAPSHOT_FILE, e.getMessage());
+        }
+    }
+
+    /**
+     * Identifies the database and the table naming. The URL may contain credentials, so only a hash is stored.
+     */
+    private String getTableSnapshotConfig() {
+        String config = conf.getHikariConfiguration().getProperty("jdbcUrl") + "|" + conf.getTableNamePrefix() + "|"
+                + conf.getTableUseRealItemNames() + "|" + conf.getTableIdDigitCount();
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(config.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : hash) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
     private void formatTableNames() {
         boolean tmpinit = initialized;
         if (tmpinit) {
@@ -365,6 +597,7 @@ public class JdbcMapper {
     }
 
     public Set<PersistenceItemInfo> getItems() {
+        awaitTableDiscovery();
         // TODO: in general it would be possible to query the count, earliest and latest values for each item too but it
         // would be a very costly operation
         return sqlTables.keySet().stream().map(itemName -> new JdbcPersistenceItemInfo(itemName))
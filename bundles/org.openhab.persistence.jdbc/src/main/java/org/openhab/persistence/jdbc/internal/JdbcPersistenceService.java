@@ -46,8 +46,8 @@ import org.slf4j.LoggerFactory;
  * @author Kai Kreuzer - Migration to 3.x
  */
 @NonNullByDefault
-@Component(service = { PersistenceService.class,
-        QueryablePersistenceService.class }, configurationPid = "org.openhab.jdbc", configurationPolicy = ConfigurationPolicy.REQUIRE)
+@Component(service = { PersistenceService.class, QueryablePersistenceService.class,
+        JdbcPersistenceService.class }, configurationPid = "org.openhab.jdbc", configurationPolicy = ConfigurationPolicy.REQUIRE)
 public class JdbcPersistenceService extends JdbcMapper implements QueryablePersistenceService {
 
     private final Logger logger = LoggerFactory.getLogger(JdbcPersistenceService.class);
@@ -96,6 +96,7 @@ public class JdbcPersistenceService extends JdbcMapper implements QueryablePersi
     public void deactivate(final int reason) {
         logger.debug("JDBC::deactivate:  persistence bundle stopping. Disconnecting from database. reason={}", reason);
         // closeConnection();
+        stopBatchWriter();
         initialized = false;
     }
 
@@ -183,14 +184,10 @@ public class JdbcPersistenceService extends JdbcMapper implements QueryablePersi
             }
         }
 
-        String table = sqlTables.get(itemName);
+        String table = getTableIfExists(itemName);
         if (table == null) {
-            logger.warn(
-                    "JDBC::query: unable to find table for query, no data in database for item '{}'. Current number of tables in the database: {}",
-                    itemName, sqlTables.size());
-            // if enabled, table will be created immediately
-            logger.warn("JDBC::query: try to generate the table for item '{}'", itemName);
-            table = getTable(item);
+            logger.debug("JDBC::query: no table found for item '{}', no data in database", itemName);
+            return List.of();
         }
 
         long timerStart = System.currentTimeMillis();
@@ -207,9 +204,11 @@ public class JdbcPersistenceService extends JdbcMapper implements QueryablePersi
     public void updateConfig(Map<Object, Object> configuration) {
         logger.debug("JDBC::updateConfig");
 
+        stopBatchWriter();
         conf = new JdbcConfiguration(configuration);
         if (conf.valid && checkDBAccessability()) {
             checkDBSchema();
+            startBatchWriter();
             // connection has been established ... initialization completed!
             initialized = true;
         } else {
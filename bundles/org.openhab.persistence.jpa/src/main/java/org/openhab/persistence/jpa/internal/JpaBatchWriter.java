@@ -0,0 +1,237 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.jpa.internal;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.common.NamedThreadFactory;
+import org.openhab.persistence.jpa.internal.model.JpaPersistentItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write-behind writer for persistent items. Items are queued and persisted by a single thread with one persistence
+ * context and one transaction per batch of <code>batchSize</code> items, at the latest every <code>interval</code>
+ * milliseconds. Together with the JDBC batch limit of the persistence unit, the inserts of a batch are sent to the
+ * database in few statements. If a batch fails, its items are retried one by one, so only the items which cannot be
+ * persisted are dropped.
+ *
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class JpaBatchWriter {
+    private final Logger logger = LoggerFactory.getLogger(JpaBatchWriter.class);
+
+    /** number of failed items in a row after which the remaining items of a failed batch are not retried */
+    private static final int MAX_CONSECUTIVE_RETRY_FAILURES = 10;
+
+    private final Supplier<@Nullable EntityManagerFactory> emfSupplier;
+    private final int batchSize;
+    private final BlockingQueue<JpaPersistentItem> queue;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean flushPending = new AtomicBoolean();
+
+    // metrics
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * @param emfSupplier returns the entity manager factory, <code>null</code> if it is not available
+     * @param batchSize maximum number of items per transaction
+     * @param interval maximum time in milliseconds an item is queued
+     * @param queueSize maximum number of queued items
+     */
+    public JpaBatchWriter(Supplier<@Nullable EntityManagerFactory> emfSupplier, int batchSize, int interval,
+            int queueSize) {
+        this.emfSupplier = emfSupplier;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("jpa-writer"));
+        scheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues an item for persisting, never blocks.
+     *
+     * @return <code>false</code> if the item was dropped because the queue is full
+     */
+    public boolean add(JpaPersistentItem item) {
+        if (!queue.offer(item)) {
+            long dropped = droppedCount.incrementAndGet();
+            if (dropped % 1000 == 1) {
+                logger.warn("JPA write queue is full, dropped {} items so far", dropped);
+            }
+            return false;
+        }
+        if (queue.size() >= batchSize && flushPending.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(this::flush);
+            } catch (RuntimeException e) {
+                // scheduler has been shut down, remaining items are written by stop()
+                flushPending.set(false);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops the background thread and persists all queued items on the calling thread.
+     */
+    public void stop() {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("JPA write queue did not finish in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if (!queue.isEmpty()) {
+            logger.warn("Dropping {} items which could not be persisted", queue.size());
+            droppedCount.addAndGet(queue.size());
+            queue.clear();
+        }
+        logger.debug("JPA writer stopped: {}", this);
+    }
+
+    private synchronized void flush() {
+        flushPending.set(false);
+        if (queue.isEmpty()) {
+            return;
+        }
+        EntityManagerFactory emf;
+        try {
+            emf = emfSupplier.get();
+        } catch (RuntimeException e) {
+            logger.debug("Unable to create EntityManagerFactory: {}", e.getMessage());
+            emf = null;
+        }
+        if (emf == null) {
+            logger.debug("No EntityManagerFactory, keeping {} items queued", queue.size());
+            return;
+        }
+        List<JpaPersistentItem> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(emf, batch);
+            batch.clear();
+        }
+    }
+
+    private void write(EntityManagerFactory emf, List<JpaPersistentItem> batch) {
+        long start = System.currentTimeMillis();
+        try {
+            persist(emf, batch);
+            writtenCount.addAndGet(batch.size());
+            logger.debug("Persisted {} items in {} ms", batch.size(), System.currentTimeMillis() - start);
+            return;
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                droppedCount.incrementAndGet();
+                logger.warn("Persisting item failed, dropping it: {}", e.getMessage());
+                return;
+            }
+            logger.warn("Persisting {} items failed, retrying them one by one: {}", batch.size(), e.getMessage());
+        }
+
+        // a single invalid item rolls back the whole batch, retry the items in their own transactions
+        int failed = 0;
+        int consecutiveFailures = 0;
+        for (JpaPersistentItem item : batch) {
+            if (consecutiveFailures >= MAX_CONSECUTIVE_RETRY_FAILURES) {
+                // the database is most likely not available, don't try every item
+                failed++;
+                droppedCount.incrementAndGet();
+                continue;
+            }
+            try {
+                // the rolled back entity may still carry the state of the failed transaction
+                persist(emf, List.of(copy(item)));
+                writtenCount.incrementAndGet();
+                consecutiveFailures = 0;
+            } catch (RuntimeException e) {
+                failed++;
+                consecutiveFailures++;
+                droppedCount.incrementAndGet();
+                logger.debug("Persisting item '{}' failed: {}", item.getName(), e.getMessage());
+            }
+        }
+        if (failed > 0) {
+            logger.warn("Dropped {} of {} items which could not be persisted", failed, batch.size());
+        }
+        logger.debug("Persisted {} items one by one in {} ms", batch.size() - failed,
+                System.currentTimeMillis() - start);
+    }
+
+    private void persist(EntityManagerFactory emf, List<JpaPersistentItem> items) {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction transaction = em.getTransaction();
+        try {
+            transaction.begin();
+            for (JpaPersistentItem item : items) {
+                em.persist(item);
+            }
+            transaction.commit();
+        } catch (RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+
+    private static JpaPersistentItem copy(JpaPersistentItem item) {
+        JpaPersistentItem copy = new JpaPersistentItem();
+        copy.setName(item.getName());
+        copy.setRealName(item.getRealName());
+        copy.setTimestamp(Date.from(item.getTimestamp().toInstant()));
+        copy.setValue(item.getValue());
+        return copy;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "JpaBatchWriter [queued=" + getQueueSize() + ", written=" + getWrittenCount() + ", dropped="
+                + getDroppedCount() + "]";
+    }
+}
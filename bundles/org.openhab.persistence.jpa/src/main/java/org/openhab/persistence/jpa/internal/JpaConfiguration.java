@@ -32,6 +32,12 @@ public class JpaConfiguration {
     private static final String CFG_USERNAME = "user";
     private static final String CFG_PASSWORD = "password";
     private static final String CFG_SYNCMAPPING = "syncmappings";
+    private static final String CFG_BATCHSIZE = "batchsize";
+    private static final String CFG_BATCHINTERVAL = "batchinterval";
+    private static final String CFG_BATCHBUFFERSIZE = "batchbuffersize";
+
+    private static final int DEFAULT_BATCHINTERVAL = 1000;
+    private static final int DEFAULT_BATCHBUFFERSIZE = 10000;
 
     public static boolean isInitialized = false;
 
@@ -40,6 +46,10 @@ public class JpaConfiguration {
     public final String dbUserName;
     public final String dbPassword;
     public final String dbSyncMapping;
+    /** maximum number of items per transaction, 0 to persist each item in its own transaction */
+    public final int batchSize;
+    public final int batchInterval;
+    public final int batchBufferSize;
 
     public JpaConfiguration(final Map<String, Object> properties) {
         logger.debug("Update config...");
@@ -77,7 +87,27 @@ public class JpaConfiguration {
         }
         dbSyncMapping = (String) properties.get(CFG_SYNCMAPPING);
 
+        batchSize = Math.max(0, getInt(properties, CFG_BATCHSIZE, 0));
+        batchInterval = Math.max(1, getInt(properties, CFG_BATCHINTERVAL, DEFAULT_BATCHINTERVAL));
+        batchBufferSize = Math.max(Math.max(1, batchSize), getInt(properties, CFG_BATCHBUFFERSIZE,
+                DEFAULT_BATCHBUFFERSIZE));
+        logger.debug("batchsize: {}, batchinterval: {}, batchbuffersize: {}", batchSize, batchInterval,
+                batchBufferSize);
+
         isInitialized = true;
         logger.debug("Update config... done");
     }
+
+    private int getInt(final Map<String, Object> properties, final String key, final int defaultValue) {
+        Object value = properties.get(key);
+        if (value == null || value.toString().isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.toString().trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid value '{}' for {} in jpa.cfg, using {}", value, key, defaultValue);
+            return defaultValue;
+        }
+    }
 }
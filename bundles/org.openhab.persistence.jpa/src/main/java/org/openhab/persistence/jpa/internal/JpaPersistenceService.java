@@ -23,7 +23,6 @@ import java.util.Set;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
-import javax.persistence.Query;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
@@ -31,7 +30,6 @@ import org.openhab.core.items.Item;
 import org.openhab.core.items.ItemNotFoundException;
 import org.openhab.core.items.ItemRegistry;
 import org.openhab.core.persistence.FilterCriteria;
-import org.openhab.core.persistence.FilterCriteria.Ordering;
 import org.openhab.core.persistence.HistoricItem;
 import org.openhab.core.persistence.PersistenceItemInfo;
 import org.openhab.core.persistence.PersistenceService;
@@ -51,6 +49,11 @@ import org.slf4j.LoggerFactory;
 /**
  * JPA based implementation of QueryablePersistenceService.
  *
+ * If a batch size is configured, items are persisted write-behind by a {@link JpaBatchWriter} with one transaction per
+ * batch and JDBC batching enabled. Otherwise each item is persisted in its own transaction.
+ *
+ * Query results are read from the database in chunks while they are iterated, see {@link JpaScrollingQuery}.
+ *
  * @author Manfred Bergmann - Initial contribution
  */
 @NonNullByDefault
@@ -59,12 +62,17 @@ import org.slf4j.LoggerFactory;
 public class JpaPersistenceService implements QueryablePersistenceService {
     private final Logger logger = LoggerFactory.getLogger(JpaPersistenceService.class);
 
+    /** number of rows read from the database at once while iterating query results */
+    private static final int FETCH_BATCH_SIZE = 100;
+
     private final ItemRegistry itemRegistry;
 
     private @Nullable EntityManagerFactory emf = null;
 
     private @NonNullByDefault({}) JpaConfiguration config;
 
+    private @Nullable JpaBatchWriter writer;
+
     @Activate
     public JpaPersistenceService(final @Reference ItemRegistry itemRegistry) {
         this.itemRegistry = itemRegistry;
@@ -75,7 +83,7 @@ public class JpaPersistenceService implements QueryablePersistenceService {
      *
      * @return EntityManagerFactory
      */
-    protected @Nullable EntityManagerFactory getEntityManagerFactory() {
+    protected synchronized @Nullable EntityManagerFactory getEntityManagerFactory() {
         if (emf == null) {
             emf = newEntityManagerFactory();
         }
@@ -86,6 +94,10 @@ public class JpaPersistenceService implements QueryablePersistenceService {
     public void activate(BundleContext context, Map<String, Object> properties) {
         logger.debug("Activating jpa persistence service");
         config = new JpaConfiguration(properties);
+        if (config.batchSize > 0) {
+            writer = new JpaBatchWriter(this::getEntityManagerFactory, config.batchSize, config.batchInterval,
+                    config.batchBufferSize);
+        }
     }
 
     /**
@@ -94,6 +106,11 @@ public class JpaPersistenceService implements QueryablePersistenceService {
     @Deactivate
     public void deactivate() {
         logger.debug("Deactivating jpa persistence service");
+        JpaBatchWriter writer = this.writer;
+        if (writer != null) {
+            writer.stop();
+            this.writer = null;
+        }
         closeEntityManagerFactory();
     }
 
@@ -142,6 +159,12 @@ public class JpaPersistenceService implements QueryablePersistenceService {
         pItem.setRealName(item.getName());
         pItem.setTimestamp(new Date());
 
+        JpaBatchWriter writer = this.writer;
+        if (writer != null) {
+            writer.add(pItem);
+            return;
+        }
+
         EntityManager em = getEntityManagerFactory().createEntityManager();
         try {
             logger.debug("Persisting item...");
@@ -176,68 +199,11 @@ public class JpaPersistenceService implements QueryablePersistenceService {
 
         String itemName = filter.getItemName();
         Item item = getItemFromRegistry(itemName);
-
-        String sortOrder;
-        if (filter.getOrdering() == Ordering.ASCENDING) {
-            sortOrder = "ASC";
-        } else {
-            sortOrder = "DESC";
-        }
-
-        boolean hasBeginDate = false;
-        boolean hasEndDate = false;
-        String queryString = "SELECT n FROM " + JpaPersistentItem.class.getSimpleName()
-                + " n WHERE n.realName = :itemName";
-        if (filter.getBeginDate() != null) {
-            queryString += " AND n.timestamp >= :beginDate";
-            hasBeginDate = true;
-        }
-        if (filter.getEndDate() != null) {
-            queryString += " AND n.timestamp <= :endDate";
-            hasEndDate = true;
-        }
-        queryString += " ORDER BY n.timestamp " + sortOrder;
-
-        logger.debug("The query: {}", queryString);
-
-        EntityManager em = getEntityManagerFactory().createEntityManager();
-        try {
-            // In RESOURCE_LOCAL calls to EntityManager require a begin/commit
-            em.getTransaction().begin();
-
-            logger.debug("Creating query...");
-            Query query = em.createQuery(queryString);
-            query.setParameter("itemName", item.getName());
-            if (hasBeginDate) {
-                query.setParameter("beginDate", Date.from(filter.getBeginDate().toInstant()));
-            }
-            if (hasEndDate) {
-                query.setParameter("endDate", Date.from(filter.getEndDate().toInstant()));
-            }
-
-            query.setFirstResult(filter.getPageNumber() * filter.getPageSize());
-            query.setMaxResults(filter.getPageSize());
-            logger.debug("Creating query...done");
-
-            logger.debug("Retrieving result list...");
-            @SuppressWarnings("unchecked")
-            List<JpaPersistentItem> result = query.getResultList();
-            logger.debug("Retrieving result list...done");
-
-            List<HistoricItem> historicList = JpaHistoricItem.fromResultList(result, item);
-            logger.debug("{}", String.format("Convert to HistoricItem: %d", historicList.size()));
-
-            em.getTransaction().commit();
-
-            return historicList;
-        } catch (Exception e) {
-            logger.error("Error on querying database!", e);
-            em.getTransaction().rollback();
-        } finally {
-            em.close();
+        if (item == null) {
+            return Collections.emptyList();
         }
 
-        return Collections.emptyList();
+        return new JpaScrollingQuery(this::getEntityManagerFactory, item, filter, FETCH_BATCH_SIZE);
     }
 
     /**
@@ -264,6 +230,10 @@ public class JpaPersistenceService implements QueryablePersistenceService {
             logger.warn("You are settings openjpa.jdbc.SynchronizeMappings, I hope you know what you're doing!");
             properties.put("openjpa.jdbc.SynchronizeMappings", config.dbSyncMapping);
         }
+        if (config.batchSize > 0) {
+            // send the inserts of a batch in JDBC batches
+            properties.put("openjpa.jdbc.DBDictionary", "batchLimit=" + config.batchSize);
+        }
 
         EntityManagerFactory fac = Persistence.createEntityManagerFactory(getPersistenceUnitName(), properties);
         logger.debug("Creating EntityManagerFactory...done");
@@ -274,7 +244,7 @@ public class JpaPersistenceService implements QueryablePersistenceService {
     /**
      * Closes EntityManagerFactory
      */
-    protected void closeEntityManagerFactory() {
+    protected synchronized void closeEntityManagerFactory() {
         if (emf != null) {
             emf.close();
             emf = null;
@@ -0,0 +1,193 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.jpa.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.TypedQuery;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.items.Item;
+import org.openhab.core.persistence.FilterCriteria;
+import org.openhab.core.persistence.FilterCriteria.Ordering;
+import org.openhab.core.persistence.HistoricItem;
+import org.openhab.persistence.jpa.internal.model.JpaPersistentItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Result of a query, read from the database while it is iterated.
+ *
+ * The rows are read in chunks of <code>chunkSize</code> rows, each chunk with its own short-lived persistence context,
+ * and a row is mapped to a {@link JpaHistoricItem} only when the iterator reaches it. A chunk continues after the
+ * timestamp and id of the last row read, so the database does not skip the previous rows again for every chunk. No
+ * result set is kept open between the chunks, as callers do not have to iterate to the end.
+ *
+ * Every call of {@link #iterator()} runs the query again.
+ *
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class JpaScrollingQuery implements Iterable<HistoricItem> {
+    private final Logger logger = LoggerFactory.getLogger(JpaScrollingQuery.class);
+
+    private final Supplier<@Nullable EntityManagerFactory> emfSupplier;
+    private final Item item;
+    private final @Nullable Date beginDate;
+    private final @Nullable Date endDate;
+    private final boolean ascending;
+    private final int firstResult;
+    private final int maxResults;
+    private final int chunkSize;
+
+    /**
+     * @param emfSupplier returns the entity manager factory, <code>null</code> if it is not available
+     * @param item item whose states to read
+     * @param filter dates, ordering and page of the query
+     * @param chunkSize number of rows read from the database at once
+     */
+    public JpaScrollingQuery(Supplier<@Nullable EntityManagerFactory> emfSupplier, Item item, FilterCriteria filter,
+            int chunkSize) {
+        this.emfSupplier = emfSupplier;
+        this.item = item;
+        this.beginDate = filter.getBeginDate() == null ? null : Date.from(filter.getBeginDate().toInstant());
+        this.endDate = filter.getEndDate() == null ? null : Date.from(filter.getEndDate().toInstant());
+        this.ascending = filter.getOrdering() == Ordering.ASCENDING;
+        this.firstResult = filter.getPageNumber() * filter.getPageSize();
+        this.maxResults = filter.getPageSize();
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public Iterator<HistoricItem> iterator() {
+        return new ScrollingIterator();
+    }
+
+    private class ScrollingIterator implements Iterator<HistoricItem> {
+        private List<JpaPersistentItem> chunk = Collections.emptyList();
+        private int position;
+        private int remaining = maxResults;
+        private @Nullable JpaPersistentItem last;
+        private boolean exhausted;
+
+        @Override
+        public boolean hasNext() {
+            if (position < chunk.size()) {
+                return true;
+            }
+            if (exhausted || remaining <= 0) {
+                return false;
+            }
+            int size = Math.min(chunkSize, remaining);
+            chunk = readChunk(last, size);
+            position = 0;
+            remaining -= chunk.size();
+            exhausted = chunk.size() < size;
+            return !chunk.isEmpty();
+        }
+
+        @Override
+        public HistoricItem next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            JpaPersistentItem pItem = chunk.get(position++);
+            last = pItem;
+            return JpaHistoricItem.fromPersistedItem(pItem, item);
+        }
+    }
+
+    /**
+     * Reads the rows following the last row read
+     *
+     * @param last last row read, <code>null</code> for the first chunk
+     * @param size maximum number of rows to read
+     * @return rows read, empty if the query failed
+     */
+    private List<JpaPersistentItem> readChunk(@Nullable JpaPersistentItem last, int size) {
+        EntityManagerFactory emf = emfSupplier.get();
+        if (emf == null) {
+            logger.warn("EntityManagerFactory is not available, cannot query for {}", item.getName());
+            return Collections.emptyList();
+        }
+
+        @Nullable
+        Date beginDate = this.beginDate;
+        @Nullable
+        Date endDate = this.endDate;
+        String sortOrder = ascending ? "ASC" : "DESC";
+        String comparison = ascending ? ">" : "<";
+        String queryString = "SELECT n FROM " + JpaPersistentItem.class.getSimpleName()
+                + " n WHERE n.realName = :itemName";
+        if (beginDate != null) {
+            queryString += " AND n.timestamp >= :beginDate";
+        }
+        if (endDate != null) {
+            queryString += " AND n.timestamp <= :endDate";
+        }
+        if (last != null) {
+            queryString += " AND (n.timestamp " + comparison + " :lastTimestamp OR (n.timestamp = :lastTimestamp"
+                    + " AND n.id " + comparison + " :lastId))";
+        }
+        queryString += " ORDER BY n.timestamp " + sortOrder + ", n.id " + sortOrder;
+
+        logger.debug("The query: {}", queryString);
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            // In RESOURCE_LOCAL calls to EntityManager require a begin/commit
+            em.getTransaction().begin();
+
+            TypedQuery<JpaPersistentItem> query = em.createQuery(queryString, JpaPersistentItem.class);
+            query.setParameter("itemName", item.getName());
+            if (beginDate != null) {
+                query.setParameter("beginDate", beginDate);
+            }
+            if (endDate != null) {
+                query.setParameter("endDate", endDate);
+            }
+            if (last != null) {
+                query.setParameter("lastTimestamp", Date.from(last.getTimestamp().toInstant()));
+                query.setParameter("lastId", last.getId());
+            } else {
+                query.setFirstResult(firstResult);
+            }
+            query.setMaxResults(size);
+
+            List<JpaPersistentItem> result = new ArrayList<>(query.getResultList());
+            logger.debug("Read {} rows of {}", result.size(), item.getName());
+
+            em.getTransaction().commit();
+
+            return result;
+        } catch (Exception e) {
+            logger.error("Error on querying database!", e);
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+        } finally {
+            em.close();
+        }
+
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.jpa.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openhab.persistence.jpa.internal.model.JpaPersistentItem;
+
+/**
+ * Tests for {@link JpaBatchWriter} with an embedded in-memory Derby database.
+ *
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class JpaBatchWriterTest {
+
+    /* longer than the value column, Derby rejects it */
+    private static final String INVALID_VALUE = "x".repeat(32673);
+
+    private @NonNullByDefault({}) EntityManagerFactory emf;
+
+    @BeforeEach
+    public void setUp() {
+        emf = Persistence.createEntityManagerFactory("default_test",
+                Map.of("javax.persistence.jdbc.url", "jdbc:derby:memory:" + UUID.randomUUID() + ";create=true",
+                        "openjpa.Log", "DefaultLevel=WARN"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        emf.close();
+    }
+
+    private static JpaPersistentItem item(String value) {
+        JpaPersistentItem item = new JpaPersistentItem();
+        item.setName("Number");
+        item.setRealName("Number");
+        item.setTimestamp(new Date());
+        item.setValue(value);
+        return item;
+    }
+
+    private long countRows() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return (Long) em.createQuery("SELECT COUNT(n) FROM JpaPersistentItem n").getSingleResult();
+        } finally {
+            em.close();
+        }
+    }
+
+    @Test
+    public void testQueuedItemsArePersistedOnStop() {
+        JpaBatchWriter writer = new JpaBatchWriter(() -> emf, 10, 60000, 100);
+        for (int i = 0; i < 25; i++) {
+            assertTrue(writer.add(item(String.valueOf(i))));
+        }
+
+        writer.stop();
+
+        assertEquals(25, writer.getWrittenCount());
+        assertEquals(0, writer.getDroppedCount());
+        assertEquals(0, writer.getQueueSize());
+        assertEquals(25, countRows());
+    }
+
+    @Test
+    public void testFullBatchIsPersistedBeforeInterval() throws InterruptedException {
+        JpaBatchWriter writer = new JpaBatchWriter(() -> emf, 5, 60000, 100);
+        try {
+            for (int i = 0; i < 5; i++) {
+                writer.add(item(String.valueOf(i)));
+            }
+
+            long end = System.currentTimeMillis() + 10000;
+            while (writer.getWrittenCount() < 5 && System.currentTimeMillis() < end) {
+                Thread.sleep(50);
+            }
+            assertEquals(5, writer.getWrittenCount());
+            assertEquals(5, countRows());
+        } finally {
+            writer.stop();
+        }
+    }
+
+    @Test
+    public void testFailedBatchIsRetriedItemByItem() {
+        JpaBatchWriter writer = new JpaBatchWriter(() -> emf, 10, 60000, 100);
+        writer.add(item("1"));
+        writer.add(item("2"));
+        writer.add(item(INVALID_VALUE));
+        writer.add(item("3"));
+
+        writer.stop();
+
+        assertEquals(3, writer.getWrittenCount());
+        assertEquals(1, writer.getDroppedCount());
+        assertEquals(3, countRows());
+    }
+
+    @Test
+    public void testItemsAreDroppedWhenQueueIsFull() {
+        // without an entity manager factory the items stay queued
+        JpaBatchWriter writer = new JpaBatchWriter(() -> null, 10, 60000, 2);
+
+        assertTrue(writer.add(item("1")));
+        assertTrue(writer.add(item("2")));
+        assertFalse(writer.add(item("3")));
+        assertEquals(2, writer.getQueueSize());
+        assertEquals(1, writer.getDroppedCount());
+
+        writer.stop();
+
+        assertEquals(0, writer.getQueueSize());
+        assertEquals(3, writer.getDroppedCount());
+    }
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.jpa.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.openhab.core.items.ItemNotFoundException;
+import org.openhab.core.items.ItemRegistry;
+import org.openhab.core.library.items.NumberItem;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.persistence.FilterCriteria;
+import org.openhab.core.persistence.FilterCriteria.Ordering;
+import org.openhab.core.persistence.HistoricItem;
+import org.osgi.framework.BundleContext;
+
+/**
+ * Tests for {@link JpaPersistenceService} with an embedded in-memory Derby database.
+ *
+ * @author agent - Initial contribution
+ */
+@ExtendWith(MockitoExtension.class)
+@NonNullByDefault
+public class JpaPersistenceServiceTest {
+
+    private static final String ITEM_NAME = "Temperature";
+
+    private @Mock @NonNullByDefault({}) ItemRegistry itemRegistry;
+
+    private final NumberItem item = new NumberItem(ITEM_NAME);
+    private final Map<String, Object> config = new HashMap<>();
+    private @NonNullByDefault({}) JpaPersistenceService service;
+
+    @BeforeEach
+    public void setUp() {
+        config.put("url", "jdbc:derby:memory:" + UUID.randomUUID() + ";create=true");
+        config.put("driver", "org.apache.derby.jdbc.EmbeddedDriver");
+        service = new JpaPersistenceService(itemRegistry) {
+            @Override
+            protected String getPersistenceUnitName() {
+                return "default_test";
+            }
+        };
+    }
+
+    @AfterEach
+    public void tearDown() {
+        service.deactivate();
+    }
+
+    private void store(int value) {
+        item.setState(new DecimalType(value));
+        service.store(item);
+    }
+
+    private List<HistoricItem> query() {
+        FilterCriteria filter = new FilterCriteria();
+        filter.setItemName(ITEM_NAME);
+        filter.setOrdering(Ordering.ASCENDING);
+        return query(filter);
+    }
+
+    private List<HistoricItem> query(FilterCriteria filter) {
+        List<HistoricItem> result = new ArrayList<>();
+        service.query(filter).forEach(result::add);
+        return result;
+    }
+
+    private List<Integer> queryValues(Ordering ordering, int pageNumber, int pageSize) {
+        FilterCriteria filter = new FilterCriteria();
+        filter.setItemName(ITEM_NAME);
+        filter.setOrdering(ordering);
+        filter.setPageNumber(pageNumber);
+        filter.setPageSize(pageSize);
+        return query(filter).stream().map(historicItem -> ((DecimalType) historicItem.getState()).intValue())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return values from <code>first</code> to <code>last</code>, both included, counting up or down
+     */
+    private static List<Integer> values(int first, int last) {
+        int step = first <= last ? 1 : -1;
+        return IntStream.iterate(first, value -> value + step).limit(Math.abs(last - first) + 1).boxed()
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testStoreAndQuery() throws ItemNotFoundException {
+        when(itemRegistry.getItem(ITEM_NAME)).thenReturn(item);
+        service.activate(mock(BundleContext.class), config);
+
+        store(1);
+        store(2);
+        store(3);
+
+        List<Integer> values = query().stream().map(historicItem -> ((DecimalType) historicItem.getState()).intValue())
+                .sorted().collect(Collectors.toList());
+        assertEquals(List.of(1, 2, 3), values);
+    }
+
+    @Test
+    public void testQueryReadsAllChunksInOrder() throws ItemNotFoundException, InterruptedException {
+        when(itemRegistry.getItem(ITEM_NAME)).thenReturn(item);
+        // queueing is fast, so many of the values get the same timestamp
+        config.put("batchsize", "50");
+        config.put("batchinterval", "60000");
+        service.activate(mock(BundleContext.class), config);
+
+        // more values than read at once
+        for (int i = 0; i < 250; i++) {
+            store(i);
+        }
+        long end = System.currentTimeMillis() + 10000;
+        while (query().size() < 250 && System.currentTimeMillis() < end) {
+            Thread.sleep(50);
+        }
+
+        assertEquals(values(0, 249), queryValues(Ordering.ASCENDING, 0, Integer.MAX_VALUE));
+        assertEquals(values(249, 0), queryValues(Ordering.DESCENDING, 0, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testQueryPages() throws ItemNotFoundException {
+        when(itemRegistry.getItem(ITEM_NAME)).thenReturn(item);
+        service.activate(mock(BundleContext.class), config);
+
+        for (int i = 0; i < 250; i++) {
+            store(i);
+        }
+
+        assertEquals(values(90, 119), queryValues(Ordering.ASCENDING, 3, 30));
+        assertEquals(values(129, 10), queryValues(Ordering.DESCENDING, 1, 120));
+        assertEquals(values(240, 249), queryValues(Ordering.ASCENDING, 2, 120));
+        assertEquals(List.of(), queryValues(Ordering.ASCENDING, 3, 120));
+    }
+
+    @Test
+    public void testQueryIsRunAgainForEveryIteration() throws ItemNotFoundException {
+        when(itemRegistry.getItem(ITEM_NAME)).thenReturn(item);
+        service.activate(mock(BundleContext.class), config);
+
+        FilterCriteria filter = new FilterCriteria();
+        filter.setItemName(ITEM_NAME);
+        Iterable<HistoricItem> result = service.query(filter);
+        store(1);
+        assertEquals(1, countOf(result));
+        store(2);
+        assertEquals(2, countOf(result));
+    }
+
+    private static int countOf(Iterable<HistoricItem> result) {
+        int count = 0;
+        for (Iterator<HistoricItem> iterator = result.iterator(); iterator.hasNext(); iterator.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void testWriteBehindItemsAreVisibleOnceTheirBatchIsPersisted()
+            throws ItemNotFoundException, InterruptedException {
+        when(itemRegistry.getItem(ITEM_NAME)).thenReturn(item);
+        config.put("batchsize", "3");
+        config.put("batchinterval", "60000");
+        service.activate(mock(BundleContext.class), config);
+
+        store(1);
+        store(2);
+        // the batch is not full yet, the queued items are not in the database
+        assertEquals(0, query().size());
+
+        store(3);
+        long end = System.currentTimeMillis() + 10000;
+        while (query().size() < 3 && System.currentTimeMillis() < end) {
+            Thread.sleep(50);
+        }
+        assertEquals(3, query().size());
+    }
+
+    @Test
+    public void testMissingItemReturnsEmptyResult() throws ItemNotFoundException {
+        when(itemRegistry.getItem(ITEM_NAME)).thenThrow(new ItemNotFoundException(ITEM_NAME));
+        service.activate(mock(BundleContext.class), config);
+
+        assertEquals(0, query().size());
+    }
+}
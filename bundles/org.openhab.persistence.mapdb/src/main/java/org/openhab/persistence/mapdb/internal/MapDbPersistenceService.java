@@ -19,9 +19,10 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
@@ -40,7 +41,9 @@ import org.openhab.core.types.State;
 import org.openhab.core.types.UnDefType;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
 import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,11 +54,21 @@ import com.google.gson.GsonBuilder;
  * This is the implementation of the MapDB {@link PersistenceService}. To learn more about MapDB please visit their
  * <a href="http://www.mapdb.org/">website</a>.
  *
+ * Item states are stored as JSON by default. With the configuration option <code>binaryFormat</code>, they are
+ * stored in a compact binary form instead (see {@link StateCodec}). States are read in both forms, so the option can
+ * be switched at any time. Former versions cannot read the binary form, so once a state has been stored in it, the
+ * add-on cannot be downgraded without losing that state.
+ *
+ * All stored items are kept in memory as well, so that queries and the item info don't need to read the database.
+ * Commits are grouped: a commit is started at most {@link #COMMIT_DELAY_MS} after a store and includes all stores up
+ * to then.
+ *
  * @author Jens Viebig - Initial contribution
  * @author Martin Kühl - Port to 3.x
  */
 @NonNullByDefault
-@Component(service = { PersistenceService.class, QueryablePersistenceService.class })
+@Component(service = { PersistenceService.class,
+        QueryablePersistenceService.class }, configurationPid = "org.openhab.mapdb", configurationPolicy = ConfigurationPolicy.OPTIONAL)
 public class MapDbPersistenceService implements QueryablePersistenceService {
 
     private static final String SERVICE_ID = "mapdb";
@@ -63,22 +76,32 @@ public class MapDbPersistenceService implements QueryablePersistenceService {
     private static final String DB_FOLDER_NAME = OpenHAB.getUserDataFolder() + File.separator + "persistence"
             + File.separator + "mapdb";
     private static final String DB_FILE_NAME = "storage.mapdb";
+    private static final String CONFIG_BINARY_FORMAT = "binaryFormat";
+
+    // time to collect stores before they are committed together
+    static final long COMMIT_DELAY_MS = 200;
 
     private final Logger logger = LoggerFactory.getLogger(MapDbPersistenceService.class);
 
-    private final ExecutorService threadPool = ThreadPoolManager.getPool(getClass().getSimpleName());
+    private final ScheduledExecutorService scheduler = ThreadPoolManager
+            .getScheduledPool(getClass().getSimpleName());
+    private final AtomicBoolean commitPending = new AtomicBoolean();
 
     /** holds the local instance of the MapDB database */
 
     private @NonNullByDefault({}) DB db;
-    private @NonNullByDefault({}) Map<String, String> map;
+    // values are encoded by StateCodec or JSON strings, depending on the format they were stored with
+    private @NonNullByDefault({}) Map<String, Object> map;
+    private final Map<String, MapDbItem> items = new ConcurrentHashMap<>();
+    private volatile boolean binaryFormat;
 
     private transient Gson mapper = new GsonBuilder().registerTypeHierarchyAdapter(State.class, new StateTypeAdapter())
             .create();
 
     @Activate
-    public void activate() {
+    public void activate(final Map<String, Object> config) {
         logger.debug("MapDB persistence service is being activated");
+        modified(config);
 
         File folder = new File(DB_FOLDER_NAME);
         if (!folder.exists()) {
@@ -92,14 +115,42 @@ public class MapDbPersistenceService implements QueryablePersistenceService {
         File dbFile = new File(DB_FOLDER_NAME, DB_FILE_NAME);
         db = DBMaker.newFileDB(dbFile).closeOnJvmShutdown().make();
         map = db.createTreeMap("itemStore").makeOrGet();
+        loadItems();
         logger.debug("MapDB persistence service is now activated");
     }
 
+    @Modified
+    protected void modified(final Map<String, Object> config) {
+        Object value = config.get(CONFIG_BINARY_FORMAT);
+        binaryFormat = value != null && Boolean.parseBoolean(String.valueOf(value).trim());
+        logger.debug("MapDB stores states in the {} format", binaryFormat ? "binary" : "JSON");
+    }
+
     @Deactivate
     public void deactivate() {
         logger.debug("MapDB persistence service deactivated");
-        if (db != null) {
-            db.close();
+        synchronized (this) {
+            if (db != null) {
+                commit();
+                db.close();
+            }
+        }
+        items.clear();
+    }
+
+    private void loadItems() {
+        long start = System.currentTimeMillis();
+        int jsonCount = 0;
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            if (entry.getValue() instanceof String) {
+                jsonCount++;
+            }
+            deserialize(entry.getKey(), entry.getValue()).ifPresent(item -> items.put(entry.getKey(), item));
+        }
+        logger.debug("Loaded {} items in {} ms", items.size(), System.currentTimeMillis() - start);
+        if (binaryFormat && jsonCount > 0) {
+            logger.info("{} item states are stored as JSON, they are converted to the binary format when they are "
+                    + "stored next. Former versions cannot read that format.", jsonCount);
         }
     }
 
@@ -115,8 +166,7 @@ public class MapDbPersistenceService implements QueryablePersistenceService {
 
     @Override
     public Set<PersistenceItemInfo> getItemInfo() {
-        return map.values().stream().map(this::deserialize).flatMap(MapDbPersistenceService::streamOptional)
-                .collect(Collectors.<PersistenceItemInfo> toUnmodifiableSet());
+        return Set.copyOf(items.values());
     }
 
     @Override
@@ -139,26 +189,31 @@ public class MapDbPersistenceService implements QueryablePersistenceService {
         mItem.setName(localAlias);
         mItem.setState(state);
         mItem.setTimestamp(new Date());
-        String json = serialize(mItem);
-        map.put(localAlias, json);
-        commit();
-        if (logger.isDebugEnabled()) {
-            logger.debug("Stored '{}' with state '{}' as '{}' in MapDB database", localAlias, state, json);
-        }
+        map.put(localAlias, serialize(mItem));
+        items.put(localAlias, mItem);
+        scheduleCommit();
+        logger.debug("Stored '{}' with state '{}' in MapDB database", localAlias, state);
     }
 
     @Override
     public Iterable<HistoricItem> query(FilterCriteria filter) {
-        String json = map.get(filter.getItemName());
-        if (json == null) {
-            return List.of();
-        }
-        Optional<MapDbItem> item = deserialize(json);
-        return item.isPresent() ? List.of(item.get()) : List.of();
+        String itemName = filter.getItemName();
+        MapDbItem item = itemName == null ? null : items.get(itemName);
+        return item == null ? List.of() : List.of(item);
     }
 
-    private String serialize(MapDbItem item) {
-        return mapper.toJson(item);
+    private Object serialize(MapDbItem item) {
+        return binaryFormat ? StateCodec.encode(item) : mapper.toJson(item);
+    }
+
+    private Optional<MapDbItem> deserialize(String name, Object value) {
+        if (value instanceof byte[]) {
+            return Optional.ofNullable(StateCodec.decode(name, (byte[]) value));
+        } else if (value instanceof String) {
+            return deserialize((String) value);
+        }
+        logger.warn("Ignoring value of unknown type stored for '{}'", name);
+        return Optional.empty();
     }
 
     @SuppressWarnings("null")
@@ -174,12 +229,18 @@ public class MapDbPersistenceService implements QueryablePersistenceService {
         return Optional.of(item);
     }
 
-    private void commit() {
-        threadPool.submit(() -> db.commit());
+    private void scheduleCommit() {
+        if (commitPending.compareAndSet(false, true)) {
+            scheduler.schedule(this::commit, COMMIT_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
     }
 
-    private static <T> Stream<T> streamOptional(Optional<T> opt) {
-        return opt.isPresent() ? Stream.of(opt.get()) : Stream.empty();
+    private synchronized void commit() {
+        // stores after this point are included in the next commit
+        commitPending.set(false);
+        if (db != null && !db.isClosed()) {
+            db.commit();
+        }
     }
 
     @Override
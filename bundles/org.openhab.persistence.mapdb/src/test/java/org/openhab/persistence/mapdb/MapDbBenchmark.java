@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.mapdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.OnOffType;
+import org.openhab.core.library.types.QuantityType;
+import org.openhab.core.library.types.StringType;
+import org.openhab.persistence.mapdb.internal.MapDbItem;
+import org.openhab.persistence.mapdb.internal.StateCodec;
+import org.openhab.persistence.mapdb.internal.StateTypeAdapter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Compares the binary state format of {@link StateCodec} with the JSON format, and storing with a commit per state
+ * with grouped commits.
+ *
+ * This is not run by the build. Run the main method with the test class path, e.g. from the IDE.
+ *
+ * @author agent - Initial contribution
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@NonNullByDefault({})
+public class MapDbBenchmark {
+
+    // same as MapDbPersistenceService.COMMIT_DELAY_MS
+    private static final long COMMIT_DELAY_MS = 200;
+
+    @State(Scope.Benchmark)
+    public static class Format {
+        @Param({ "DecimalType", "QuantityType", "OnOffType", "StringType" })
+        public String type;
+
+        private final Gson mapper = new GsonBuilder()
+                .registerTypeHierarchyAdapter(org.openhab.core.types.State.class, new StateTypeAdapter()).create();
+        private MapDbItem item;
+        private byte[] binary;
+        private String json;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            item = new MapDbItem();
+            item.setName("item");
+            item.setState(createState(type));
+            item.setTimestamp(new Date(1600000000123L));
+            binary = StateCodec.encode(item);
+            json = mapper.toJson(item);
+        }
+
+        private static org.openhab.core.types.State createState(String type) {
+            switch (type) {
+                case "DecimalType":
+                    return new DecimalType(new BigDecimal("21.53"));
+                case "QuantityType":
+                    return new QuantityType<>("21.53 °C");
+                case "OnOffType":
+                    return OnOffType.ON;
+                default:
+                    return new StringType("some text of an item");
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Database {
+        private File folder;
+        private DB db;
+        private Map<String, Object> map;
+        private long lastCommit;
+        private int counter;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            folder = Files.createTempDirectory("mapdb-benchmark").toFile();
+            db = DBMaker.newFileDB(new File(folder, "storage.mapdb")).make();
+            map = db.createTreeMap("itemStore").makeOrGet();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            db.close();
+            File[] files = folder.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            folder.delete();
+        }
+
+        private void put(Object value) {
+            // the states of 100 items are updated in turn
+            map.put("item" + (counter++ % 100), value);
+        }
+    }
+
+    @Benchmark
+    public byte[] encodeBinary(Format format) {
+        return StateCodec.encode(format.item);
+    }
+
+    @Benchmark
+    public MapDbItem decodeBinary(Format format) {
+        return StateCodec.decode("item", format.binary);
+    }
+
+    @Benchmark
+    public String encodeJson(Format format) {
+        return format.mapper.toJson(format.item);
+    }
+
+    @Benchmark
+    public MapDbItem decodeJson(Format format) {
+        return format.mapper.fromJson(format.json, MapDbItem.class);
+    }
+
+    @Benchmark
+    public void storeCommittingEach(Format format, Database database) {
+        database.put(format.binary);
+        database.db.commit();
+    }
+
+    @Benchmark
+    public void storeCommittingGrouped(Format format, Database database) {
+        database.put(format.binary);
+        long now = System.currentTimeMillis();
+        if (now - database.lastCommit >= COMMIT_DELAY_MS) {
+            database.db.commit();
+            database.lastCommit = now;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MapDbBenchmark.class.getSimpleName()).build()).run();
+    }
+}
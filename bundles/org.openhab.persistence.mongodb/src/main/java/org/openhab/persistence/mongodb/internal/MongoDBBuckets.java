@@ -0,0 +1,250 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.mongodb.internal;
+
+import static org.openhab.persistence.mongodb.internal.MongoDBPersistenceService.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import com.mongodb.BulkWriteException;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+
+/**
+ * Helper for the bucketed schema, which stores one document per item and hour:
+ *
+ * <pre>
+ * { item, realName, bucket: start of the hour, first, last, count, samples: [ { timestamp, value }, ... ] }
+ * </pre>
+ *
+ * Samples are written as documents of the flat schema <code>{ _id, item, realName, timestamp, value }</code> and
+ * appended to their bucket with an upsert, which creates the bucket when the first sample of an hour is written.
+ * Migrated samples keep the <code>_id</code> of their source document, so that a repeated migration can recognize
+ * the buckets which already contain them.
+ *
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class MongoDBBuckets {
+
+    static final String FIELD_BUCKET = "bucket";
+    static final String FIELD_FIRST = "first";
+    static final String FIELD_LAST = "last";
+    static final String FIELD_COUNT = "count";
+    static final String FIELD_SAMPLES = "samples";
+
+    static final long BUCKET_MILLIS = 3600000;
+
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+
+    private MongoDBBuckets() {
+        // static methods only
+    }
+
+    /**
+     * Returns the start of the bucket the timestamp belongs to.
+     */
+    public static Date bucketStart(Date timestamp) {
+        long time = timestamp.getTime();
+        return new Date(time - Math.floorMod(time, BUCKET_MILLIS));
+    }
+
+    /**
+     * Appends the samples to their buckets with one upsert per bucket, in one unordered bulk operation.
+     *
+     * An upsert fails with a duplicate key error when another writer has created the bucket in the meantime, so
+     * these upserts are retried once. With <code>migrated</code>, an upsert also fails when the bucket already
+     * contains the samples, which is the case if it still fails when retried.
+     *
+     * @param collection the collection to write to
+     * @param samples samples in the flat schema, in the order they should be appended
+     * @param migrated whether the samples are migrated, see {@link #createQuery(List, boolean)} and
+     *            {@link #createUpdate(List, boolean)}
+     * @return the number of samples which could not be written, not counting migrated samples which had already been
+     *         written
+     * @throws com.mongodb.MongoException if the bulk operation could not be executed
+     */
+    public static int write(DBCollection collection, List<DBObject> samples, boolean migrated) {
+        List<List<DBObject>> pending = new ArrayList<>(groupByBucket(samples).values());
+        int failed = 0;
+        for (int attempt = 1; !pending.isEmpty(); attempt++) {
+            BulkWriteOperation bulk = collection.initializeUnorderedBulkOperation();
+            for (List<DBObject> bucket : pending) {
+                bulk.find(createQuery(bucket, migrated)).upsert().updateOne(createUpdate(bucket, migrated));
+            }
+            try {
+                bulk.execute();
+                break;
+            } catch (BulkWriteException e) {
+                // unordered, so all upserts without an error have been applied
+                List<List<DBObject>> retries = new ArrayList<>();
+                for (BulkWriteError error : e.getWriteErrors()) {
+                    List<DBObject> bucket = pending.get(error.getIndex());
+                    if (error.getCode() != DUPLICATE_KEY_ERROR) {
+                        failed += bucket.size();
+                    } else if (attempt == 1) {
+                        retries.add(bucket);
+                    } else if (!migrated) {
+                        failed += bucket.size();
+                    }
+                }
+                pending = retries;
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Groups samples by item name and bucket start, keeping their order.
+     */
+    static Map<List<Object>, List<DBObject>> groupByBucket(List<DBObject> samples) {
+        Map<List<Object>, List<DBObject>> buckets = new LinkedHashMap<>();
+        for (DBObject sample : samples) {
+            List<Object> key = List.of(sample.get(FIELD_ITEM), bucketStart((Date) sample.get(FIELD_TIMESTAMP)));
+            buckets.computeIfAbsent(key, k -> new ArrayList<>()).add(sample);
+        }
+        return buckets;
+    }
+
+    /**
+     * Creates the query which selects the bucket of the samples. For migrated samples, a bucket which already
+     * contains one of them is not selected.
+     */
+    static DBObject createQuery(List<DBObject> samples, boolean migrated) {
+        DBObject sample = samples.get(0);
+        BasicDBObject query = new BasicDBObject(FIELD_ITEM, sample.get(FIELD_ITEM)).append(FIELD_BUCKET,
+                bucketStart((Date) sample.get(FIELD_TIMESTAMP)));
+        if (migrated) {
+            List<Object> ids = new ArrayList<>(samples.size());
+            for (DBObject migratedSample : samples) {
+                ids.add(migratedSample.get(FIELD_ID));
+            }
+            query.append(FIELD_SAMPLES + "." + FIELD_ID, new BasicDBObject("$nin", ids));
+        }
+        return query;
+    }
+
+    /**
+     * Creates the update which appends the samples of one bucket. Migrated samples keep their <code>_id</code> and
+     * are sorted into the samples by their timestamp, as the bucket may already contain later samples.
+     */
+    static DBObject createUpdate(List<DBObject> samples, boolean migrated) {
+        List<DBObject> entries = new ArrayList<>(samples.size());
+        Date first = null;
+        Date last = null;
+        for (DBObject sample : samples) {
+            Date timestamp = (Date) sample.get(FIELD_TIMESTAMP);
+            BasicDBObject entry = new BasicDBObject(FIELD_TIMESTAMP, timestamp).append(FIELD_VALUE,
+                    sample.get(FIELD_VALUE));
+            if (migrated) {
+                entry.append(FIELD_ID, sample.get(FIELD_ID));
+            }
+            entries.add(entry);
+            first = first == null || timestamp.before(first) ? timestamp : first;
+            last = last == null || timestamp.after(last) ? timestamp : last;
+        }
+        BasicDBObject push = new BasicDBObject("$each", entries);
+        if (migrated) {
+            push.append("$sort", new BasicDBObject(FIELD_TIMESTAMP, 1));
+        }
+        return new BasicDBObject("$setOnInsert", new BasicDBObject(FIELD_REALNAME, samples.get(0).get(FIELD_REALNAME)))
+                .append("$push", new BasicDBObject(FIELD_SAMPLES, push))
+                .append("$inc", new BasicDBObject(FIELD_COUNT, samples.size()))
+                .append("$min", new BasicDBObject(FIELD_FIRST, first))
+                .append("$max", new BasicDBObject(FIELD_LAST, last));
+    }
+
+    /**
+     * Returns the number of samples of a bucket if all of them lie in the time range.
+     *
+     * @param bucket bucket with at least the fields first, last and count
+     * @param begin begin of the time range or <code>null</code>
+     * @param end end of the time range or <code>null</code>
+     * @return the number of samples or -1 if some of them may lie outside of the time range
+     */
+    static long countInRange(DBObject bucket, @Nullable Date begin, @Nullable Date end) {
+        Object first = bucket.get(FIELD_FIRST);
+        Object last = bucket.get(FIELD_LAST);
+        Object count = bucket.get(FIELD_COUNT);
+        if (!(first instanceof Date) || !(last instanceof Date) || !(count instanceof Number)) {
+            return -1;
+        }
+        if ((begin != null && ((Date) first).before(begin)) || (end != null && ((Date) last).after(end))) {
+            return -1;
+        }
+        return ((Number) count).longValue();
+    }
+
+    /**
+     * Applies a comparison operator to a sample value, like the database does for the flat schema. Values are
+     * compared as numbers if both are numbers or strings starting with a number, like the states of items with a
+     * unit, e.g. <code>"21.5 °C"</code>.
+     */
+    static boolean matches(@Nullable Object value, String op, @Nullable Object filterValue) {
+        int comparison;
+        BigDecimal number = toNumber(value);
+        BigDecimal filterNumber = toNumber(filterValue);
+        if (number != null && filterNumber != null) {
+            comparison = number.compareTo(filterNumber);
+        } else if (value instanceof Date && filterValue instanceof Date) {
+            comparison = ((Date) value).compareTo((Date) filterValue);
+        } else if (value != null && filterValue != null) {
+            comparison = value.toString().compareTo(filterValue.toString());
+        } else {
+            // a missing value only equals a missing value
+            boolean equal = value == filterValue;
+            return "$ne".equals(op) ? !equal : equal && "$eq".equals(op);
+        }
+        switch (op) {
+            case "$eq":
+                return comparison == 0;
+            case "$ne":
+                return comparison != 0;
+            case "$gt":
+                return comparison > 0;
+            case "$gte":
+                return comparison >= 0;
+            case "$lt":
+                return comparison < 0;
+            case "$lte":
+                return comparison <= 0;
+            default:
+                return false;
+        }
+    }
+
+    private static @Nullable BigDecimal toNumber(@Nullable Object value) {
+        if (!(value instanceof Number) && !(value instanceof String)) {
+            return null;
+        }
+        String string = value.toString().trim();
+        int end = string.indexOf(' ');
+        try {
+            return new BigDecimal(end < 0 ? string : string.substring(0, end));
+        } catch (NumberFormatException e) {
+            // not a number, or NaN or infinite
+            return null;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.mongodb.internal;
+
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.core.io.console.Console;
+import org.openhab.core.io.console.extensions.AbstractConsoleCommandExtension;
+import org.openhab.core.io.console.extensions.ConsoleCommandExtension;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+
+import com.mongodb.MongoException;
+
+/**
+ * Console commands for the MongoDB persistence service
+ *
+ * @author agent - Initial contribution
+ */
+@Component(service = ConsoleCommandExtension.class)
+@NonNullByDefault
+public class MongoDBConsoleCommandExtension extends AbstractConsoleCommandExtension {
+    private static final String SUBCMD_MIGRATE = "migrate";
+
+    private final MongoDBPersistenceService persistenceService;
+
+    @Activate
+    public MongoDBConsoleCommandExtension(final @Reference MongoDBPersistenceService persistenceService) {
+        super("mongodb", "Interact with the MongoDB persistence service.");
+        this.persistenceService = persistenceService;
+    }
+
+    @Override
+    public void execute(String[] args, Console console) {
+        if (args.length == 2 && SUBCMD_MIGRATE.equals(args[0])) {
+            migrate(args[1], console);
+        } else {
+            printUsage(console);
+        }
+    }
+
+    @Override
+    public List<String> getUsages() {
+        return List.of(buildCommandUsage(SUBCMD_MIGRATE + " <collection>",
+                "copies the documents of a collection written without the bucketed schema to the buckets of the configured collection"));
+    }
+
+    private void migrate(String sourceCollection, Console console) {
+        console.println("Migrating collection '" + sourceCollection + "' ...");
+        try {
+            long migrated = persistenceService.migrateToBuckets(sourceCollection,
+                    count -> console.println("Migrated " + count + " documents"));
+            console.println("Migration finished, " + migrated + " documents migrated. The collection '"
+                    + sourceCollection + "' can be dropped once the data has been checked.");
+        } catch (IllegalStateException | IllegalArgumentException | MongoException e) {
+            console.println("Migration failed: " + e.getMessage());
+        }
+    }
+}
@@ -12,6 +12,8 @@
  */
 package org.openhab.persistence.mongodb.internal;
 
+import static org.openhab.persistence.mongodb.internal.MongoDBBuckets.*;
+
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
@@ -21,6 +23,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.LongConsumer;
 
 import org.bson.types.ObjectId;
 import org.eclipse.jdt.annotation.NonNullByDefault;
@@ -69,26 +72,35 @@ import com.mongodb.MongoClientURI;
 /**
  * This is the implementation of the MongoDB {@link PersistenceService}.
  *
+ * States are written by a {@link MongoDBWriter} in the background, either as one document per state or, with the
+ * bucketed schema, as samples in one document per item and hour (see {@link MongoDBBuckets}).
+ *
  * @author Thorsten Hoeger - Initial contribution
  */
 @NonNullByDefault
-@Component(service = { PersistenceService.class,
-        QueryablePersistenceService.class }, configurationPid = "org.openhab.mongodb", configurationPolicy = ConfigurationPolicy.REQUIRE)
+@Component(service = { PersistenceService.class, QueryablePersistenceService.class,
+        MongoDBPersistenceService.class }, configurationPid = "org.openhab.mongodb", configurationPolicy = ConfigurationPolicy.REQUIRE)
 public class MongoDBPersistenceService implements QueryablePersistenceService {
 
-    private static final String FIELD_ID = "_id";
-    private static final String FIELD_ITEM = "item";
-    private static final String FIELD_REALNAME = "realName";
-    private static final String FIELD_TIMESTAMP = "timestamp";
-    private static final String FIELD_VALUE = "value";
+    static final String FIELD_ID = "_id";
+    static final String FIELD_ITEM = "item";
+    static final String FIELD_REALNAME = "realName";
+    static final String FIELD_TIMESTAMP = "timestamp";
+    static final String FIELD_VALUE = "value";
+
+    private static final int MIGRATION_BATCH_SIZE = 1000;
+    private static final String MIGRATIONS_SUFFIX = ".migrations";
+    private static final String FIELD_SOURCE_ID = "sourceId";
 
     private final Logger logger = LoggerFactory.getLogger(MongoDBPersistenceService.class);
 
     private @NonNullByDefault({}) String url;
     private @NonNullByDefault({}) String db;
     private @NonNullByDefault({}) String collection;
+    private boolean bucketed;
 
     private boolean initialized = false;
+    private volatile @Nullable MongoDBWriter writer;
 
     protected final ItemRegistry itemRegistry;
 
@@ -122,19 +134,66 @@ public class MongoDBPersistenceService implements QueryablePersistenceService {
             return;
         }
 
+        bucketed = getConfigBooleanValue(config, "bucketed", false);
+        logger.debug("MongoDB bucketed schema {}", bucketed);
+
+        stopWriter();
         disconnectFromDatabase();
-        connectToDatabase();
+        try {
+            connectToDatabase();
+        } catch (RuntimeException e) {
+            logger.warn("Connecting to MongoDB failed, the writer will retry: {}", e.getMessage());
+        }
+
+        writer = new MongoDBWriter(this::getCollection, bucketed,
+                Math.max(1, getConfigIntValue(config, "writeBatchSize", 500)),
+                Math.max(10, getConfigIntValue(config, "writeInterval", 1000)),
+                Math.max(1, getConfigIntValue(config, "writeBufferSize", 10000)));
 
-        // connection has been established... initialization completed!
+        // writer has been started... initialization completed!
         initialized = true;
     }
 
+    private int getConfigIntValue(Map<String, Object> config, String key, int defaultValue) {
+        Object value = config.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        } else if (value instanceof String && !((String) value).isBlank()) {
+            try {
+                return Integer.parseInt(((String) value).trim());
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid value {} for {}, using {}", value, key, defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
+    private boolean getConfigBooleanValue(Map<String, Object> config, String key, boolean defaultValue) {
+        Object value = config.get(key);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        } else if (value instanceof String && !((String) value).isBlank()) {
+            return Boolean.parseBoolean(((String) value).trim());
+        }
+        return defaultValue;
+    }
+
     @Deactivate
     public void deactivate(final int reason) {
         logger.debug("MongoDB persistence bundle stopping. Disconnecting from database.");
+        initialized = false;
+        stopWriter();
         disconnectFromDatabase();
     }
 
+    private void stopWriter() {
+        MongoDBWriter currentWriter = writer;
+        if (currentWriter != null) {
+            currentWriter.stop();
+            writer = null;
+        }
+    }
+
     @Override
     public String getId() {
         return "mongodb";
@@ -153,24 +212,13 @@ public class MongoDBPersistenceService implements QueryablePersistenceService {
         }
 
         // If we've not initialized the bundle, then return
-        if (!initialized) {
+        MongoDBWriter currentWriter = writer;
+        if (!initialized || currentWriter == null) {
             logger.warn("MongoDB not initialized");
             return;
         }
 
-        // Connect to mongodb server if we're not already connected
-        if (!isConnected()) {
-            connectToDatabase();
-        }
-
-        // If we still didn't manage to connect, then return!
-        if (!isConnected()) {
-            logger.warn(
-                    "mongodb: No connection to database. Cannot persist item '{}'! Will retry connecting to database next time.",
-                    item);
-            return;
-        }
-
+        // the connection is established by the writer if necessary
         String realName = item.getName();
         String name = (alias != null) ? alias : realName;
         Object value = this.convertValue(item.getState());
@@ -181,9 +229,9 @@ public class MongoDBPersistenceService implements QueryablePersistenceService {
         obj.put(FIELD_REALNAME, realName);
         obj.put(FIELD_TIMESTAMP, new Date());
         obj.put(FIELD_VALUE, value);
-        this.mongoCollection.save(obj);
+        currentWriter.add(obj);
 
-        logger.debug("MongoDB save {}={}", name, value);
+        logger.debug("MongoDB queued {}={}", name, value);
     }
 
     private Object convertValue(State state) {
@@ -222,21 +270,43 @@ public class MongoDBPersistenceService implements QueryablePersistenceService {
         return cl != null;
     }
 
+    /**
+     * Returns the collection, connects to the database if there is no connection yet.
+     *
+     * @return the collection or <code>null</code> if there is no connection
+     */
+    private synchronized @Nullable DBCollection getCollection() {
+        if (!isConnected()) {
+            try {
+                connectToDatabase();
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+        return mongoCollection;
+    }
+
     /**
      * Connects to the database
      */
-    private void connectToDatabase() {
+    private synchronized void connectToDatabase() {
         try {
             logger.debug("Connect MongoDB");
             this.cl = new MongoClient(new MongoClientURI(this.url));
             mongoCollection = cl.getDB(this.db).getCollection(this.collection);
 
-            BasicDBObject idx = new BasicDBObject();
-            idx.append(FIELD_TIMESTAMP, 1).append(FIELD_ITEM, 1);
-            this.mongoCollection.createIndex(idx);
+            if (bucketed) {
+                this.mongoCollection.createIndex(new BasicDBObject(FIELD_ITEM, 1).append(FIELD_BUCKET, 1),
+                        new BasicDBObject("unique", true));
+            } else {
+                BasicDBObject idx = new BasicDBObject();
+                idx.append(FIELD_TIMESTAMP, 1).append(FIELD_ITEM, 1);
+                this.mongoCollection.createIndex(idx);
+            }
             logger.debug("Connect MongoDB ... done");
         } catch (Exception e) {
             logger.error("Failed to connect to database {}", this.url);
+            disconnectFromDatabase();
             throw new RuntimeException("Cannot connect to database", e);
         }
     }
@@ -244,7 +314,7 @@ public class MongoDBPersistenceService implements QueryablePersistenceService {
     /**
      * Disconnects from the database
      */
-    private void disconnectFromDatabase() {
+    private synchronized void disconnectFromDatabase() {
         this.mongoCollection = null;
         if (this.cl != null) {
             this.cl.close();
@@ -258,11 +328,8 @@ public class MongoDBPersistenceService implements QueryablePersistenceService {
             return Collections.emptyList();
         }
 
-        if (!isConnected()) {
-            connectToDatabase();
-        }
-
-        if (!isConnected()) {
+        DBCollection currentCollection = getCollection();
+        if (currentCollection == null) {
             return Collections.emptyList();
         }
 
@@ -270,6 +337,11 @@ public class MongoDBPersistenceService implements QueryablePersistenceService {
         Item item = getItem(name);
 
         List<HistoricItem> items = new ArrayList<>();
+        if (bucketed) {
+            queryBuckets(currentCollection, filter, name, item, items);
+            return items;
+        }
+
         DBObject query = new BasicDBObject();
         if (filter.getItemName() != null) {
             query.put(FIELD_ITEM, filter.getItemName());
@@ -279,45 +351,219 @@ public class MongoDBPersistenceService implements QueryablePersistenceService {
             Object value = convertValue(filter.getState());
             query.put(FIELD_VALUE, new BasicDBObject(op, value));
         }
-        if (filter.getBeginDate() != null) {
-            query.put(FIELD_TIMESTAMP, new BasicDBObject("$gte", filter.getBeginDate()));
-        }
-        if (filter.getBeginDate() != null) {
-            query.put(FIELD_TIMESTAMP, new BasicDBObject("$lte", filter.getBeginDate()));
+        BasicDBObject timeRange = createTimeRange(toDate(filter.getBeginDate()), toDate(filter.getEndDate()));
+        if (!timeRange.isEmpty()) {
+            query.put(FIELD_TIMESTAMP, timeRange);
         }
 
         Integer sortDir = (filter.getOrdering() == Ordering.ASCENDING) ? 1 : -1;
-        DBCursor cursor = this.mongoCollection.find(query).sort(new BasicDBObject(FIELD_TIMESTAMP, sortDir))
+        DBCursor cursor = currentCollection.find(query).sort(new BasicDBObject(FIELD_TIMESTAMP, sortDir))
                 .skip(filter.getPageNumber() * filter.getPageSize()).limit(filter.getPageSize());
 
-        while (cursor.hasNext()) {
-            BasicDBObject obj = (BasicDBObject) cursor.next();
-
-            final State state;
-            if (item instanceof NumberItem) {
-                state = new DecimalType(obj.getDouble(FIELD_VALUE));
-            } else if (item instanceof DimmerItem) {
-                state = new PercentType(obj.getInt(FIELD_VALUE));
-            } else if (item instanceof SwitchItem) {
-                state = OnOffType.valueOf(obj.getString(FIELD_VALUE));
-            } else if (item instanceof ContactItem) {
-                state = OpenClosedType.valueOf(obj.getString(FIELD_VALUE));
-            } else if (item instanceof RollershutterItem) {
-                state = new PercentType(obj.getInt(FIELD_VALUE));
-            } else if (item instanceof DateTimeItem) {
-                state = new DateTimeType(
-                        ZonedDateTime.ofInstant(obj.getDate(FIELD_VALUE).toInstant(), ZoneId.systemDefault()));
-            } else {
-                state = new StringType(obj.getString(FIELD_VALUE));
+        try {
+            while (cursor.hasNext()) {
+                BasicDBObject obj = (BasicDBObject) cursor.next();
+                items.add(new MongoDBItem(name, convertToState(item, obj.get(FIELD_VALUE)),
+                        ZonedDateTime.ofInstant(obj.getDate(FIELD_TIMESTAMP).toInstant(), ZoneId.systemDefault())));
             }
-
-            items.add(new MongoDBItem(name, state,
-                    ZonedDateTime.ofInstant(obj.getDate(FIELD_TIMESTAMP).toInstant(), ZoneId.systemDefault())));
+        } finally {
+            cursor.close();
         }
 
         return items;
     }
 
+    /**
+     * Reads the buckets of the time range and passes their samples one by one through the filter, so that only one
+     * bucket is held in memory at a time.
+     */
+    private void queryBuckets(DBCollection currentCollection, FilterCriteria filter, String name, @Nullable Item item,
+            List<HistoricItem> items) {
+        ZonedDateTime beginDate = filter.getBeginDate();
+        ZonedDateTime endDate = filter.getEndDate();
+        DBObject query = new BasicDBObject();
+        if (filter.getItemName() != null) {
+            query.put(FIELD_ITEM, filter.getItemName());
+        }
+        // the bucket containing the begin date starts before it
+        BasicDBObject bucketRange = createTimeRange(
+                beginDate == null ? null : bucketStart(Date.from(beginDate.toInstant())), toDate(endDate));
+        if (!bucketRange.isEmpty()) {
+            query.put(FIELD_BUCKET, bucketRange);
+        }
+        String op = null;
+        Object filterValue = null;
+        if (filter.getState() != null && filter.getOperator() != null) {
+            op = convertOperator(filter.getOperator());
+            filterValue = convertValue(filter.getState());
+        }
+
+        boolean ascending = filter.getOrdering() == Ordering.ASCENDING;
+        DBObject sort = new BasicDBObject(FIELD_BUCKET, ascending ? 1 : -1);
+        long skip = (long) filter.getPageNumber() * filter.getPageSize();
+        if (skip > 0 && op == null && filter.getItemName() != null) {
+            // skip whole buckets by their sample count, without reading their samples. Only for a single item, as
+            // buckets of several items with the same start are not in a defined order.
+            Date pageBucket = null;
+            DBCursor counts = currentCollection.find(query, new BasicDBObject(FIELD_BUCKET, 1).append(FIELD_FIRST, 1)
+                    .append(FIELD_LAST, 1).append(FIELD_COUNT, 1)).sort(sort);
+            try {
+                while (counts.hasNext()) {
+                    DBObject bucket = counts.next();
+                    long count = countInRange(bucket, toDate(beginDate), toDate(endDate));
+                    if (count < 0 || count > skip) {
+                        pageBucket = (Date) bucket.get(FIELD_BUCKET);
+                        break;
+                    }
+                    skip -= count;
+                }
+            } finally {
+                counts.close();
+            }
+            if (pageBucket == null) {
+                // the page starts after the last sample
+                return;
+            }
+            bucketRange.put(ascending ? "$gte" : "$lte", pageBucket);
+            query.put(FIELD_BUCKET, bucketRange);
+        }
+        DBCursor cursor = currentCollection.find(query).sort(sort);
+        try {
+            while (cursor.hasNext() && items.size() < filter.getPageSize()) {
+                @SuppressWarnings("unchecked")
+                List<DBObject> samples = (List<DBObject>) cursor.next().get(FIELD_SAMPLES);
+                if (samples == null) {
+                    continue;
+                }
+                for (int i = 0; i < samples.size() && items.size() < filter.getPageSize(); i++) {
+                    DBObject sample = samples.get(ascending ? i : samples.size() - 1 - i);
+                    Date timestamp = (Date) sample.get(FIELD_TIMESTAMP);
+                    Object value = sample.get(FIELD_VALUE);
+                    if ((beginDate != null && timestamp.toInstant().isBefore(beginDate.toInstant()))
+                            || (endDate != null && timestamp.toInstant().isAfter(endDate.toInstant()))
+                            || (op != null && !matches(value, op, filterValue))) {
+                        continue;
+                    }
+                    if (skip > 0) {
+                        skip--;
+                        continue;
+                    }
+                    items.add(new MongoDBItem(name, convertToState(item, value),
+                            ZonedDateTime.ofInstant(timestamp.toInstant(), ZoneId.systemDefault())));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private BasicDBObject createTimeRange(@Nullable Date begin, @Nullable Date end) {
+        BasicDBObject range = new BasicDBObject();
+        if (begin != null) {
+            range.append("$gte", begin);
+        }
+        if (end != null) {
+            range.append("$lte", end);
+        }
+        return range;
+    }
+
+    private @Nullable Date toDate(@Nullable ZonedDateTime dateTime) {
+        return dateTime == null ? null : Date.from(dateTime.toInstant());
+    }
+
+    private State convertToState(@Nullable Item item, Object value) {
+        if (item instanceof NumberItem) {
+            return new DecimalType(((Number) value).doubleValue());
+        } else if (item instanceof DimmerItem) {
+            return new PercentType(((Number) value).intValue());
+        } else if (item instanceof SwitchItem) {
+            return OnOffType.valueOf(value.toString());
+        } else if (item instanceof ContactItem) {
+            return OpenClosedType.valueOf(value.toString());
+        } else if (item instanceof RollershutterItem) {
+            return new PercentType(((Number) value).intValue());
+        } else if (item instanceof DateTimeItem) {
+            return new DateTimeType(ZonedDateTime.ofInstant(((Date) value).toInstant(), ZoneId.systemDefault()));
+        } else {
+            return new StringType(value.toString());
+        }
+    }
+
+    /**
+     * Copies all documents of a collection in the flat schema to the buckets of the configured collection. The source
+     * collection is not modified.
+     *
+     * The documents are copied in batches in the order of their timestamp. The last copied document is recorded in
+     * the collection <code>&lt;collection&gt;.migrations</code> after each batch, so that a repeated migration
+     * continues after it. A batch which is copied again, because the migration was interrupted before it was
+     * recorded, does not duplicate samples, see {@link MongoDBBuckets#write(DBCollection, List, boolean)}.
+     *
+     * @param sourceCollection name of the collection in the flat schema
+     * @param progress receives the number of migrated documents after each batch
+     * @return the number of documents migrated by this call
+     * @throws IllegalStateException if the bucketed schema is not enabled, there is no connection, or documents could
+     *             not be written
+     * @throws IllegalArgumentException if the source is the configured collection
+     */
+    public long migrateToBuckets(String sourceCollection, LongConsumer progress) {
+        if (!initialized || !bucketed) {
+            throw new IllegalStateException("The bucketed schema is not enabled");
+        }
+        if (sourceCollection.equals(collection)) {
+            throw new IllegalArgumentException("Source and target collection must differ");
+        }
+        DBCollection target = getCollection();
+        if (target == null) {
+            throw new IllegalStateException("No connection to database");
+        }
+        DBCollection source = target.getDB().getCollection(sourceCollection);
+        DBCollection migrations = target.getDB().getCollection(collection + MIGRATIONS_SUFFIX);
+
+        // continue after the last document of a former migration
+        DBObject query = new BasicDBObject();
+        DBObject marker = migrations.findOne(new BasicDBObject(FIELD_ID, sourceCollection));
+        if (marker != null) {
+            Object lastTimestamp = marker.get(FIELD_TIMESTAMP);
+            query.put("$or", List.of(new BasicDBObject(FIELD_TIMESTAMP, new BasicDBObject("$gt", lastTimestamp)),
+                    new BasicDBObject(FIELD_TIMESTAMP, lastTimestamp).append(FIELD_ID,
+                            new BasicDBObject("$gt", marker.get(FIELD_SOURCE_ID)))));
+            logger.info("Continuing migration of collection '{}' after {}", sourceCollection, lastTimestamp);
+        }
+
+        long migrated = 0;
+        List<DBObject> batch = new ArrayList<>(MIGRATION_BATCH_SIZE);
+        // samples are appended in time order, which is the order the buckets are read in
+        DBCursor cursor = source.find(query).sort(new BasicDBObject(FIELD_TIMESTAMP, 1).append(FIELD_ID, 1));
+        try {
+            while (cursor.hasNext()) {
+                DBObject obj = cursor.next();
+                if (obj.get(FIELD_ITEM) != null && obj.get(FIELD_TIMESTAMP) instanceof Date) {
+                    batch.add(obj);
+                }
+                if (batch.size() >= MIGRATION_BATCH_SIZE || (!cursor.hasNext() && !batch.isEmpty())) {
+                    int failed = write(target, batch, true);
+                    if (failed > 0) {
+                        throw new IllegalStateException(failed + " documents could not be written, migrated "
+                                + migrated + " documents. Run the migration again to continue.");
+                    }
+                    DBObject last = batch.get(batch.size() - 1);
+                    migrations.save(new BasicDBObject(FIELD_ID, sourceCollection)
+                            .append(FIELD_TIMESTAMP, last.get(FIELD_TIMESTAMP))
+                            .append(FIELD_SOURCE_ID, last.get(FIELD_ID)));
+                    migrated += batch.size();
+                    batch.clear();
+                    progress.accept(migrated);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        logger.info("Migrated {} documents from collection '{}' to buckets in '{}'", migrated, sourceCollection,
+                collection);
+        return migrated;
+    }
+
     private @Nullable String convertOperator(Operator operator) {
         switch (operator) {
             case EQ:
@@ -331,7 +577,7 @@ public class MongoDBPersistenceService implements QueryablePersistenceService {
             case LTE:
                 return "$lte";
             case NEQ:
-                return "$neq";
+                return "$ne";
             default:
                 return null;
         }
@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.mongodb.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.common.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mongodb.BulkWriteException;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+
+/**
+ * Background writer for samples. Samples are queued and written by a single thread as one unordered bulk operation
+ * per batch of <code>batchSize</code> samples, at the latest every <code>interval</code> milliseconds. With the
+ * bucketed schema, the samples of a batch are grouped into one upsert per bucket.
+ *
+ * The collection is requested from the supplier before each flush, so that the connection is established on the
+ * writer thread. While it is not available the samples stay queued, further samples are dropped once the queue is
+ * full.
+ *
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class MongoDBWriter {
+    private final Logger logger = LoggerFactory.getLogger(MongoDBWriter.class);
+
+    private final Supplier<@Nullable DBCollection> collectionSupplier;
+    private final boolean bucketed;
+    private final int batchSize;
+    private final BlockingQueue<DBObject> queue;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean flushPending = new AtomicBoolean();
+
+    // metrics
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * @param collectionSupplier returns the collection to write to, <code>null</code> if there is no connection
+     * @param bucketed whether samples are written to buckets or as separate documents
+     * @param batchSize maximum number of samples per bulk operation
+     * @param interval maximum time in milliseconds a sample is queued
+     * @param queueSize maximum number of queued samples
+     */
+    public MongoDBWriter(Supplier<@Nullable DBCollection> collectionSupplier, boolean bucketed, int batchSize,
+            int interval, int queueSize) {
+        this.collectionSupplier = collectionSupplier;
+        this.bucketed = bucketed;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("mongodb-writer"));
+        scheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues a sample in the flat schema for writing, never blocks.
+     *
+     * @return <code>false</code> if the sample was dropped because the queue is full
+     */
+    public boolean add(DBObject sample) {
+        if (!queue.offer(sample)) {
+            long dropped = droppedCount.incrementAndGet();
+            if (dropped % 1000 == 1) {
+                logger.warn("MongoDB write queue is full, dropped {} samples so far", dropped);
+            }
+            return false;
+        }
+        if (queue.size() >= batchSize && flushPending.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(this::flush);
+            } catch (RuntimeException e) {
+                // scheduler has been shut down, remaining samples are written by stop()
+                flushPending.set(false);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops the background thread and writes all queued samples on the calling thread.
+     */
+    public void stop() {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("MongoDB write queue did not finish in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if (!queue.isEmpty()) {
+            logger.warn("Dropping {} samples which could not be written to MongoDB", queue.size());
+            droppedCount.addAndGet(queue.size());
+            queue.clear();
+        }
+        logger.debug("MongoDB writer stopped: {}", this);
+    }
+
+    private synchronized void flush() {
+        flushPending.set(false);
+        if (queue.isEmpty()) {
+            return;
+        }
+        DBCollection collection;
+        try {
+            collection = collectionSupplier.get();
+        } catch (RuntimeException e) {
+            logger.debug("Unable to connect to MongoDB: {}", e.getMessage());
+            collection = null;
+        }
+        if (collection == null) {
+            logger.debug("No connection to MongoDB, keeping {} samples queued", queue.size());
+            return;
+        }
+        List<DBObject> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(collection, batch);
+            batch.clear();
+        }
+    }
+
+    private void write(DBCollection collection, List<DBObject> batch) {
+        long start = System.currentTimeMillis();
+        int failed;
+        try {
+            if (bucketed) {
+                failed = MongoDBBuckets.write(collection, batch, false);
+            } else {
+                failed = insert(collection, batch);
+            }
+        } catch (MongoException e) {
+            droppedCount.addAndGet(batch.size());
+            logger.warn("Writing {} samples to MongoDB failed: {}", batch.size(), e.getMessage());
+            return;
+        }
+        writtenCount.addAndGet(batch.size() - failed);
+        droppedCount.addAndGet(failed);
+        if (failed > 0) {
+            logger.warn("Writing {} samples to MongoDB failed partially, {} samples have been dropped", batch.size(),
+                    failed);
+        } else {
+            logger.debug("Wrote {} samples in {} ms", batch.size(), System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Inserts the samples as separate documents.
+     *
+     * @return the number of samples which could not be written
+     */
+    private int insert(DBCollection collection, List<DBObject> batch) {
+        BulkWriteOperation bulk = collection.initializeUnorderedBulkOperation();
+        batch.forEach(bulk::insert);
+        try {
+            bulk.execute();
+            return 0;
+        } catch (BulkWriteException e) {
+            // unordered, so all inserts without an error have been applied
+            logger.debug("Inserting samples failed partially: {}", e.getWriteErrors());
+            return e.getWriteErrors().size();
+        }
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "MongoDBWriter [bucketed=" + bucketed + ", queued=" + getQueueSize() + ", written=" + getWrittenCount()
+                + ", dropped=" + getDroppedCount() + "]";
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.mongodb.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.openhab.persistence.mongodb.internal.MongoDBBuckets.*;
+import static org.openhab.persistence.mongodb.internal.MongoDBPersistenceService.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.types.ObjectId;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+
+/**
+ * Tests for {@link MongoDBBuckets}
+ *
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class MongoDBBucketsTest {
+
+    private static final long HOUR = 3600000;
+    private static final long START = 1600000000000L - 1600000000000L % HOUR;
+
+    private static DBObject sample(String item, long time, Object value) {
+        return new BasicDBObject(FIELD_ID, new ObjectId()).append(FIELD_ITEM, item).append(FIELD_REALNAME, item)
+                .append(FIELD_TIMESTAMP, new Date(time)).append(FIELD_VALUE, value);
+    }
+
+    @Test
+    public void testBucketStart() {
+        assertEquals(new Date(START), bucketStart(new Date(START)));
+        assertEquals(new Date(START), bucketStart(new Date(START + HOUR - 1)));
+        assertEquals(new Date(START + HOUR), bucketStart(new Date(START + HOUR)));
+        assertEquals(new Date(-HOUR), bucketStart(new Date(-1)));
+    }
+
+    @Test
+    public void testGroupByBucket() {
+        DBObject a1 = sample("a", START + 10, 1.0);
+        DBObject b1 = sample("b", START + 20, 2.0);
+        DBObject a2 = sample("a", START + HOUR + 30, 3.0);
+        DBObject a3 = sample("a", START + 40, 4.0);
+
+        Map<List<Object>, List<DBObject>> buckets = groupByBucket(List.of(a1, b1, a2, a3));
+
+        assertEquals(List.of(List.of("a", new Date(START)), List.of("b", new Date(START)),
+                List.of("a", new Date(START + HOUR))), new ArrayList<>(buckets.keySet()));
+        assertEquals(List.of(a1, a3), buckets.get(List.of("a", new Date(START))));
+        assertEquals(List.of(a2), buckets.get(List.of("a", new Date(START + HOUR))));
+    }
+
+    @Test
+    public void testCreateQuery() {
+        DBObject query = createQuery(List.of(sample("a", START + 10, 1.0)), false);
+
+        assertEquals(new BasicDBObject(FIELD_ITEM, "a").append(FIELD_BUCKET, new Date(START)), query);
+    }
+
+    @Test
+    public void testCreateQueryOfMigratedSamplesExcludesBucketsContainingThem() {
+        DBObject s1 = sample("a", START + 10, 1.0);
+        DBObject s2 = sample("a", START + 20, 2.0);
+
+        DBObject query = createQuery(List.of(s1, s2), true);
+
+        assertEquals(new BasicDBObject(FIELD_ITEM, "a").append(FIELD_BUCKET, new Date(START)).append("samples._id",
+                new BasicDBObject("$nin", List.of(s1.get(FIELD_ID), s2.get(FIELD_ID)))), query);
+    }
+
+    @Test
+    public void testCreateUpdate() {
+        DBObject update = createUpdate(
+                List.of(sample("a", START + 20, 1.0), sample("a", START + 10, 2.0), sample("a", START + 30, 3.0)),
+                false);
+
+        assertEquals(new BasicDBObject(FIELD_REALNAME, "a"), update.get("$setOnInsert"));
+        assertEquals(new BasicDBObject(FIELD_COUNT, 3), update.get("$inc"));
+        assertEquals(new BasicDBObject(FIELD_FIRST, new Date(START + 10)), update.get("$min"));
+        assertEquals(new BasicDBObject(FIELD_LAST, new Date(START + 30)), update.get("$max"));
+        DBObject push = (DBObject) ((DBObject) update.get("$push")).get(FIELD_SAMPLES);
+        assertEquals(List.of(new BasicDBObject(FIELD_TIMESTAMP, new Date(START + 20)).append(FIELD_VALUE, 1.0),
+                new BasicDBObject(FIELD_TIMESTAMP, new Date(START + 10)).append(FIELD_VALUE, 2.0),
+                new BasicDBObject(FIELD_TIMESTAMP, new Date(START + 30)).append(FIELD_VALUE, 3.0)), push.get("$each"));
+        assertNull(push.get("$sort"));
+    }
+
+    @Test
+    public void testCreateUpdateOfMigratedSamplesKeepsIdsAndSorts() {
+        DBObject sample = sample("a", START + 10, "ON");
+
+        DBObject update = createUpdate(List.of(sample), true);
+
+        DBObject push = (DBObject) ((DBObject) update.get("$push")).get(FIELD_SAMPLES);
+        assertEquals(List.of(new BasicDBObject(FIELD_TIMESTAMP, new Date(START + 10)).append(FIELD_VALUE, "ON")
+                .append(FIELD_ID, sample.get(FIELD_ID))), push.get("$each"));
+        assertEquals(new BasicDBObject(FIELD_TIMESTAMP, 1), push.get("$sort"));
+    }
+
+    @Test
+    public void testCountInRange() {
+        DBObject bucket = new BasicDBObject(FIELD_BUCKET, new Date(START)).append(FIELD_FIRST, new Date(START + 10))
+                .append(FIELD_LAST, new Date(START + 20)).append(FIELD_COUNT, 5);
+
+        assertEquals(5, countInRange(bucket, null, null));
+        assertEquals(5, countInRange(bucket, new Date(START + 10), new Date(START + 20)));
+        assertEquals(-1, countInRange(bucket, new Date(START + 11), null));
+        assertEquals(-1, countInRange(bucket, null, new Date(START + 19)));
+        assertEquals(-1, countInRange(new BasicDBObject(FIELD_BUCKET, new Date(START)), null, null));
+    }
+
+    @Test
+    public void testMatchesComparesNumbers() {
+        assertTrue(matches(10.0, "$gt", 9.5));
+        assertTrue(matches(10, "$eq", 10.0));
+        assertFalse(matches(9.0, "$gte", 10.0));
+        assertTrue(matches(2.0, "$ne", 3.0));
+    }
+
+    @Test
+    public void testMatchesComparesStatesWithUnitsAsNumbers() {
+        assertTrue(matches("100 °C", "$gt", "21.5 °C"));
+        assertTrue(matches("9 W", "$lt", "10 W"));
+        assertTrue(matches("21.50 °C", "$eq", "21.5 °C"));
+    }
+
+    @Test
+    public void testMatchesComparesOtherValues() {
+        assertTrue(matches("ON", "$eq", "ON"));
+        assertTrue(matches("OFF", "$ne", "ON"));
+        assertTrue(matches(new Date(START + 1), "$gt", new Date(START)));
+        assertTrue(matches(null, "$eq", null));
+        assertFalse(matches(null, "$lt", 1.0));
+        assertTrue(matches(null, "$ne", 1.0));
+    }
+}
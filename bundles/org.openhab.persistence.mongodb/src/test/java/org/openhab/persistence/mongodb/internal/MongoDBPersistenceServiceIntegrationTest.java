@@ -0,0 +1,307 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.mongodb.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.*;
+import static org.openhab.persistence.mongodb.internal.MongoDBBuckets.*;
+import static org.openhab.persistence.mongodb.internal.MongoDBPersistenceService.*;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.bson.types.ObjectId;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.openhab.core.items.ItemRegistry;
+import org.openhab.core.library.items.NumberItem;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.persistence.FilterCriteria;
+import org.openhab.core.persistence.FilterCriteria.Operator;
+import org.openhab.core.persistence.FilterCriteria.Ordering;
+import org.openhab.core.persistence.HistoricItem;
+import org.osgi.framework.BundleContext;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientURI;
+import com.mongodb.MongoException;
+
+/**
+ * Integration tests for the bucketed schema of {@link MongoDBPersistenceService}, which need a MongoDB server.
+ *
+ * The server is given by the system property <code>MONGODBTEST_URL</code> and defaults to a server on localhost. The
+ * tests are skipped if the server cannot be reached. Each test uses a new database, which is dropped afterwards.
+ *
+ * @author agent - Initial contribution
+ */
+@ExtendWith(MockitoExtension.class)
+@NonNullByDefault
+public class MongoDBPersistenceServiceIntegrationTest {
+
+    private static final String DEFAULT_URL = "mongodb://localhost:27017/?connectTimeoutMS=1000";
+    private static final String COLLECTION = "items";
+    private static final String SOURCE = "flat";
+    private static final String ITEM = "number";
+
+    private static final long HOUR = 3600000;
+    private static final long START = 1600000000000L - 1600000000000L % HOUR;
+
+    private static final String URL = System.getProperty("MONGODBTEST_URL", DEFAULT_URL);
+    private static boolean serverAvailable;
+
+    private @Mock @NonNullByDefault({}) ItemRegistry itemRegistry;
+
+    private @NonNullByDefault({}) MongoClient client;
+    private @NonNullByDefault({}) DB db;
+    private @NonNullByDefault({}) MongoDBPersistenceService service;
+
+    @BeforeAll
+    public static void checkServer() throws Exception {
+        MongoClient client = new MongoClient(new MongoClientURI(URL));
+        try {
+            client.getDB("admin").command("ping").throwOnError();
+            serverAvailable = true;
+        } catch (MongoException e) {
+            serverAvailable = false;
+        } finally {
+            client.close();
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        assumeTrue(serverAvailable, "No MongoDB server at " + URL + ", skipping integration tests");
+        client = new MongoClient(new MongoClientURI(URL));
+        db = client.getDB("openhab-test-" + UUID.randomUUID());
+
+        lenient().when(itemRegistry.getItem(ITEM)).thenReturn(new NumberItem(ITEM));
+
+        Map<String, Object> config = new HashMap<>();
+        config.put("url", URL);
+        config.put("database", db.getName());
+        config.put("collection", COLLECTION);
+        config.put("bucketed", "true");
+        service = new MongoDBPersistenceService(itemRegistry);
+        service.activate(mock(BundleContext.class), config);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (service != null) {
+            service.deactivate(0);
+        }
+        if (db != null) {
+            db.dropDatabase();
+            client.close();
+        }
+    }
+
+    private static DBObject sample(String item, long time, double value) {
+        return new BasicDBObject(FIELD_ID, new ObjectId()).append(FIELD_ITEM, item).append(FIELD_REALNAME, item)
+                .append(FIELD_TIMESTAMP, new Date(time)).append(FIELD_VALUE, value);
+    }
+
+    private static List<DBObject> samples(String item, long from, int count, long step) {
+        List<DBObject> samples = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            samples.add(sample(item, from + i * step, i));
+        }
+        return samples;
+    }
+
+    private DBCollection buckets() {
+        return db.getCollection(COLLECTION);
+    }
+
+    private long sampleCount() {
+        long count = 0;
+        for (DBObject bucket : buckets().find()) {
+            @SuppressWarnings("unchecked")
+            List<DBObject> bucketSamples = (List<DBObject>) bucket.get(FIELD_SAMPLES);
+            assertEquals(bucketSamples.size(), ((Number) bucket.get(FIELD_COUNT)).intValue());
+            count += bucketSamples.size();
+        }
+        return count;
+    }
+
+    private List<Long> query(FilterCriteria filter) {
+        List<Long> times = new ArrayList<>();
+        for (HistoricItem item : service.query(filter)) {
+            times.add(item.getTimestamp().toInstant().toEpochMilli());
+        }
+        return times;
+    }
+
+    private static List<Long> times(List<DBObject> samples) {
+        return samples.stream().map(sample -> ((Date) sample.get(FIELD_TIMESTAMP)).getTime())
+                .collect(Collectors.toList());
+    }
+
+    private static ZonedDateTime dateTime(long time) {
+        return ZonedDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+    }
+
+    @Test
+    public void testMigrationCopiesAllDocumentsToBuckets() {
+        List<DBObject> source = samples(ITEM, START + 1000, 5, HOUR / 2);
+        source.add(sample("other", START + 2000, 42));
+        db.getCollection(SOURCE).insert(source);
+        List<Long> progress = new ArrayList<>();
+
+        assertEquals(6, service.migrateToBuckets(SOURCE, progress::add));
+
+        assertEquals(List.of(6L), progress);
+        assertEquals(3, buckets().count(new BasicDBObject(FIELD_ITEM, ITEM)));
+        assertEquals(6, sampleCount());
+        assertEquals(times(source.subList(0, 5)),
+                query(new FilterCriteria().setItemName(ITEM).setOrdering(Ordering.ASCENDING)));
+        DBObject marker = db.getCollection(COLLECTION + ".migrations").findOne(new BasicDBObject(FIELD_ID, SOURCE));
+        assertEquals(source.get(4).get(FIELD_ID), marker.get("sourceId"));
+    }
+
+    @Test
+    public void testMigrationContinuesAfterTheMarker() {
+        List<DBObject> source = samples(ITEM, START, 6, HOUR / 4);
+        db.getCollection(SOURCE).insert(source.subList(0, 3));
+        assertEquals(3, service.migrateToBuckets(SOURCE, migrated -> {
+        }));
+
+        db.getCollection(SOURCE).insert(source.subList(3, 6));
+
+        assertEquals(3, service.migrateToBuckets(SOURCE, migrated -> {
+        }));
+        assertEquals(6, sampleCount());
+        assertEquals(times(source), query(new FilterCriteria().setItemName(ITEM).setOrdering(Ordering.ASCENDING)));
+    }
+
+    @Test
+    public void testRepeatedMigrationDoesNotDuplicateSamples() {
+        List<DBObject> source = samples(ITEM, START, 8, HOUR / 3);
+        db.getCollection(SOURCE).insert(source);
+        assertEquals(8, service.migrateToBuckets(SOURCE, migrated -> {
+        }));
+
+        // as if the migration was interrupted before the marker was written
+        db.getCollection(COLLECTION + ".migrations").remove(new BasicDBObject(FIELD_ID, SOURCE));
+
+        assertEquals(8, service.migrateToBuckets(SOURCE, migrated -> {
+        }));
+        assertEquals(8, sampleCount());
+        assertEquals(times(source), query(new FilterCriteria().setItemName(ITEM).setOrdering(Ordering.ASCENDING)));
+    }
+
+    @Test
+    public void testConcurrentWritesToNewBucketsAreAllApplied() throws Exception {
+        // writers race to create the same buckets, the losers get a duplicate key error and retry
+        int writers = 8;
+        int buckets = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try {
+            for (int b = 0; b < buckets; b++) {
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Integer>> results = new ArrayList<>();
+                for (int i = 0; i < writers; i++) {
+                    DBObject sample = sample(ITEM, START + b * HOUR + i, i);
+                    results.add(executor.submit(() -> {
+                        start.await();
+                        return write(buckets(), List.of(sample), false);
+                    }));
+                }
+                start.countDown();
+                for (Future<Integer> result : results) {
+                    assertEquals(0, result.get());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(buckets, buckets().count());
+        assertEquals(buckets * writers, sampleCount());
+    }
+
+    @Test
+    public void testQueryPagesAreSlicesOfAllSamples() {
+        List<DBObject> all = new ArrayList<>();
+        all.addAll(samples(ITEM, START + 100, 5, 1000));
+        all.addAll(samples(ITEM, START + HOUR + 100, 7, 1000));
+        all.addAll(samples(ITEM, START + 3 * HOUR + 100, 4, 1000));
+        write(buckets(), all, false);
+        write(buckets(), samples("other", START + 200, 3, 1000), false);
+
+        for (Ordering ordering : Ordering.values()) {
+            List<Long> expected = times(all);
+            if (ordering == Ordering.DESCENDING) {
+                Collections.reverse(expected);
+            }
+            assertPages(expected, new FilterCriteria().setItemName(ITEM).setOrdering(ordering));
+
+            // the first bucket lies partly before the begin date, so its samples can not be skipped by count
+            long begin = START + 2100;
+            assertPages(expected.stream().filter(time -> time >= begin).collect(Collectors.toList()),
+                    new FilterCriteria().setItemName(ITEM).setOrdering(ordering).setBeginDate(dateTime(begin)));
+
+            // samples with value 0 to 2 do not match the operator
+            List<Long> matching = new ArrayList<>();
+            for (DBObject sample : ordering == Ordering.ASCENDING ? all : reversed(all)) {
+                if (((Number) sample.get(FIELD_VALUE)).doubleValue() > 2) {
+                    matching.add(((Date) sample.get(FIELD_TIMESTAMP)).getTime());
+                }
+            }
+            assertPages(matching, new FilterCriteria().setItemName(ITEM).setOrdering(ordering)
+                    .setOperator(Operator.GT).setState(new DecimalType(2)));
+        }
+    }
+
+    private static List<DBObject> reversed(List<DBObject> list) {
+        List<DBObject> reversed = new ArrayList<>(list);
+        Collections.reverse(reversed);
+        return reversed;
+    }
+
+    private void assertPages(List<Long> expected, FilterCriteria filter) {
+        for (int pageSize : new int[] { 1, 3, 5, 6, 100 }) {
+            filter.setPageSize(pageSize);
+            for (int page = 0; page * pageSize <= expected.size(); page++) {
+                filter.setPageNumber(page);
+                List<Long> slice = expected.subList(Math.min(expected.size(), page * pageSize),
+                        Math.min(expected.size(), (page + 1) * pageSize));
+                assertEquals(slice, query(filter), "page " + page + " of size " + pageSize);
+            }
+        }
+    }
+}
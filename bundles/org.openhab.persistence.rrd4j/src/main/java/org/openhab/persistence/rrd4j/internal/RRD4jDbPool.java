@@ -0,0 +1,282 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.rrd4j.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.rrd4j.core.RrdBackendFactory;
+import org.rrd4j.core.RrdDb;
+import org.rrd4j.core.RrdDef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a bounded number of {@link RrdDb} instances open, so that the RRD header does not have to be parsed again for
+ * every sample that is stored.
+ *
+ * Every database file is guarded by its own lock. A database is handed out locked by {@link #acquire} and must be
+ * handed back with {@link #release}; only databases that are not in use are closed when the number of open files
+ * exceeds the capacity, starting with the least recently used one. The lock of a closed database is discarded, so
+ * that only the locks of open databases and of databases in use are kept.
+ *
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class RRD4jDbPool {
+
+    public static final int DEFAULT_CAPACITY = 250;
+
+    private final Logger logger = LoggerFactory.getLogger(RRD4jDbPool.class);
+
+    private final RrdBackendFactory backendFactory;
+
+    private final Map<String, PooledDb> pooledDbs = new ConcurrentHashMap<>();
+
+    // access ordered, guarded by itself
+    private final LinkedHashMap<String, PooledDb> openDbs = new LinkedHashMap<>(16, 0.75f, true);
+
+    private volatile int capacity;
+
+    public RRD4jDbPool(RrdBackendFactory backendFactory, int capacity) {
+        this.backendFactory = backendFactory;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the database stored in the given file and locks it for the calling thread. If the file does not exist
+     * yet, it is created from the definition returned by <code>rrdDefProvider</code>.
+     *
+     * @param file the database file
+     * @param rrdDefProvider provides the definition for a new database file, may return <code>null</code>
+     * @return the locked database or <code>null</code> if the file does not exist and no definition is available
+     * @throws IOException if the database cannot be opened or created
+     */
+    public @Nullable RrdDb acquire(File file, Function<File, @Nullable RrdDef> rrdDefProvider) throws IOException {
+        String path = file.getAbsolutePath();
+        PooledDb pooledDb = lock(path);
+        try {
+            RrdDb db = pooledDb.db;
+            if (db != null && !db.isClosed()) {
+                synchronized (openDbs) {
+                    // mark as most recently used
+                    openDbs.get(path);
+                }
+                return db;
+            }
+            if (file.exists()) {
+                db = new RrdDb(path, backendFactory);
+            } else {
+                RrdDef rrdDef = rrdDefProvider.apply(file);
+                if (rrdDef == null) {
+                    retire(pooledDb);
+                    pooledDb.lock.unlock();
+                    return null;
+                }
+                // create a new database file
+                db = new RrdDb(rrdDef, backendFactory);
+            }
+            pooledDb.db = db;
+        } catch (IOException | RuntimeException e) {
+            retire(pooledDb);
+            pooledDb.lock.unlock();
+            throw e;
+        }
+        registerOpen(pooledDb);
+        return pooledDb.db;
+    }
+
+    /**
+     * Reads from the database stored in the given file without adding it to the pool. A database which is open is
+     * read as it is, otherwise the file is opened read-only and closed again, so that reading the headers of many
+     * files does not evict the databases in use.
+     *
+     * @param file the database file
+     * @param reader reads the value from the database while it is locked
+     * @return the value returned by the reader or <code>null</code> if the file does not exist
+     * @throws IOException if the database cannot be opened or read
+     */
+    public <T> @Nullable T read(File file, DbReader<T> reader) throws IOException {
+        PooledDb pooledDb = lock(file.getAbsolutePath());
+        try {
+            RrdDb db = pooledDb.db;
+            if (db != null && !db.isClosed()) {
+                return reader.read(db);
+            }
+            if (!file.exists()) {
+                return null;
+            }
+            try (RrdDb unpooledDb = new RrdDb(pooledDb.path, true, backendFactory)) {
+                return reader.read(unpooledDb);
+            }
+        } finally {
+            if (pooledDb.db == null) {
+                retire(pooledDb);
+            }
+            pooledDb.lock.unlock();
+        }
+    }
+
+    /**
+     * Hands back a database that has been obtained from {@link #acquire} by the calling thread.
+     *
+     * @param file the database file
+     */
+    public void release(File file) {
+        PooledDb pooledDb = pooledDbs.get(file.getAbsolutePath());
+        if (pooledDb != null && pooledDb.lock.isHeldByCurrentThread()) {
+            pooledDb.lock.unlock();
+        } else {
+            logger.debug("Released rrd4j database '{}' which was not acquired from the pool", file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Sets the maximum number of database files that are kept open.
+     *
+     * @param capacity the new capacity, values smaller than one are ignored
+     */
+    public void setCapacity(int capacity) {
+        if (capacity > 0) {
+            this.capacity = capacity;
+            evict(null);
+        }
+    }
+
+    public int getOpenCount() {
+        synchronized (openDbs) {
+            return openDbs.size();
+        }
+    }
+
+    /**
+     * Closes all open database files, waiting for those that are currently in use. This flushes all pending changes
+     * to disk.
+     */
+    public void closeAll() {
+        List<PooledDb> toClose;
+        synchronized (openDbs) {
+            toClose = new ArrayList<>(openDbs.values());
+            openDbs.clear();
+        }
+        for (PooledDb pooledDb : toClose) {
+            pooledDb.lock.lock();
+            try {
+                close(pooledDb);
+                retire(pooledDb);
+            } finally {
+                pooledDb.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Locks the database stored at the given path for the calling thread.
+     */
+    private PooledDb lock(String path) {
+        while (true) {
+            PooledDb pooledDb = pooledDbs.computeIfAbsent(path, PooledDb::new);
+            pooledDb.lock.lock();
+            if (!pooledDb.retired) {
+                return pooledDb;
+            }
+            // closed and discarded while waiting for the lock, use the lock which replaced it
+            pooledDb.lock.unlock();
+        }
+    }
+
+    private void registerOpen(PooledDb pooledDb) {
+        synchronized (openDbs) {
+            openDbs.put(pooledDb.path, pooledDb);
+        }
+        evict(pooledDb);
+    }
+
+    private void evict(@Nullable PooledDb inUse) {
+        List<PooledDb> toClose = new ArrayList<>();
+        synchronized (openDbs) {
+            Iterator<PooledDb> iterator = openDbs.values().iterator();
+            int excess = openDbs.size() - capacity;
+            while (excess > 0 && iterator.hasNext()) {
+                PooledDb candidate = iterator.next();
+                // databases in use are skipped, the pool may temporarily exceed its capacity. tryLock() also succeeds
+                // for databases the calling thread holds itself, so these have to be excluded first.
+                if (candidate != inUse && !candidate.lock.isHeldByCurrentThread() && candidate.lock.tryLock()) {
+                    iterator.remove();
+                    toClose.add(candidate);
+                    excess--;
+                }
+            }
+        }
+        for (PooledDb pooledDb : toClose) {
+            try {
+                close(pooledDb);
+                retire(pooledDb);
+            } finally {
+                pooledDb.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Discards the lock of a database which is not open, must be called while holding the lock. Threads waiting for
+     * the lock acquire the one which replaces it.
+     */
+    private void retire(PooledDb pooledDb) {
+        pooledDb.retired = true;
+        pooledDbs.remove(pooledDb.path, pooledDb);
+    }
+
+    private void close(PooledDb pooledDb) {
+        RrdDb db = pooledDb.db;
+        pooledDb.db = null;
+        if (db != null) {
+            try {
+                db.close();
+                logger.trace("Closed rrd4j database '{}'", pooledDb.path);
+            } catch (IOException e) {
+                logger.debug("Error closing rrd4j database '{}': {}", pooledDb.path, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reads a value from a database, see {@link RRD4jDbPool#read(File, DbReader)}.
+     */
+    @FunctionalInterface
+    public interface DbReader<T> {
+        T read(RrdDb db) throws IOException;
+    }
+
+    private static class PooledDb {
+        private final String path;
+        private final ReentrantLock lock = new ReentrantLock();
+        private @Nullable RrdDb db;
+        // guarded by lock
+        private boolean retired;
+
+        private PooledDb(String path) {
+            this.path = path;
+        }
+    }
+}
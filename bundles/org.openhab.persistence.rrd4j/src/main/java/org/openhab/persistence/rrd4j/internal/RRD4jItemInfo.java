@@ -0,0 +1,190 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.rrd4j.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.persistence.PersistenceItemInfo;
+import org.rrd4j.ConsolFun;
+import org.rrd4j.core.ArcDef;
+import org.rrd4j.core.RrdDb;
+import org.rrd4j.core.RrdDef;
+
+/**
+ * Java bean used to return information about the items stored in rrd4j databases. Besides the standard
+ * information it also holds the archive layout of the database file.
+ *
+ * The name is the name of the database file, which is the alias of the item if one is configured. Items persisted
+ * under the same alias share one database and thus one entry.
+ *
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class RRD4jItemInfo implements PersistenceItemInfo {
+
+    private final String name;
+    private final long step;
+    private final List<ArcDef> archives;
+    private final long latest;
+
+    private RRD4jItemInfo(String name, long step, List<ArcDef> archives, long latest) {
+        this.name = name;
+        this.step = step;
+        this.archives = archives;
+        this.latest = latest;
+    }
+
+    /**
+     * Reads the information from an open database.
+     *
+     * @param name the item name or alias the database belongs to
+     * @param db the database to read the information from
+     * @return the item information
+     * @throws IOException if the database header cannot be read
+     */
+    public static RRD4jItemInfo fromDb(String name, RrdDb db) throws IOException {
+        RrdDef rrdDef = db.getRrdDef();
+        return new RRD4jItemInfo(name, rrdDef.getStep(), List.of(rrdDef.getArcDefs()), db.getLastUpdateTime());
+    }
+
+    /**
+     * Reads the information from an entry of the item info index, see {@link #toIndexEntry(long)}.
+     *
+     * @param name the item name or alias the database belongs to
+     * @param entry the index entry
+     * @param lastModified the current modification time of the database file
+     * @return the item information or <code>null</code> if the entry is malformed or the file has been modified since
+     *         the entry was written
+     */
+    public static @Nullable RRD4jItemInfo fromIndexEntry(String name, String entry, long lastModified) {
+        String[] parts = entry.split(";");
+        if (parts.length != 4) {
+            return null;
+        }
+        try {
+            if (Long.parseLong(parts[0]) != lastModified) {
+                return null;
+            }
+            List<ArcDef> archives = new ArrayList<>();
+            for (String archive : parts[3].split(",")) {
+                String[] fields = archive.split(":");
+                if (fields.length != 4) {
+                    return null;
+                }
+                archives.add(new ArcDef(ConsolFun.valueOf(fields[0]), Double.parseDouble(fields[1]),
+                        Integer.parseInt(fields[2]), Integer.parseInt(fields[3])));
+            }
+            return new RRD4jItemInfo(name, Long.parseLong(parts[1]), archives, Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Formats the information as an entry of the item info index.
+     *
+     * @param lastModified the modification time of the database file, the entry is only valid as long as the file
+     *            is not modified
+     * @return the index entry
+     */
+    public String toIndexEntry(long lastModified) {
+        StringBuilder entry = new StringBuilder();
+        entry.append(lastModified).append(';').append(step).append(';').append(latest).append(';');
+        for (int i = 0; i < archives.size(); i++) {
+            ArcDef archive = archives.get(i);
+            if (i > 0) {
+                entry.append(',');
+            }
+            entry.append(archive.getConsolFun()).append(':').append(archive.getXff()).append(':')
+                    .append(archive.getSteps()).append(':').append(archive.getRows());
+        }
+        return entry.toString();
+    }
+
+    /**
+     * Returns a copy of this information with an updated timestamp of the last stored value.
+     *
+     * @param latest the time of the last update in seconds since the epoch
+     * @return the updated item information
+     */
+    public RRD4jItemInfo withLatest(long latest) {
+        return latest == this.latest ? this : new RRD4jItemInfo(name, step, archives, latest);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns <code>null</code>, since a round robin database does not know how many values have been stored. See
+     * {@link #getRows()} for the capacity of the database.
+     */
+    @Override
+    public @Nullable Integer getCount() {
+        return null;
+    }
+
+    /**
+     * Returns the total number of rows of all archives of the database.
+     */
+    public int getRows() {
+        int rows = 0;
+        for (ArcDef archive : archives) {
+            rows += archive.getRows();
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the start of the time range that is covered by the archive with the longest time span.
+     */
+    @Override
+    public @Nullable Date getEarliest() {
+        long span = 0;
+        for (ArcDef archive : archives) {
+            span = Math.max(span, step * archive.getSteps() * archive.getRows());
+        }
+        return latest > 0 ? new Date((latest - span) * 1000) : null;
+    }
+
+    @Override
+    public @Nullable Date getLatest() {
+        return latest > 0 ? new Date(latest * 1000) : null;
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    public List<ArcDef> getArchives() {
+        return archives;
+    }
+
+    /**
+     * Returns the consolidation function of the first archive, which is used for querying the database.
+     */
+    public ConsolFun getConsolidationFunction() {
+        return archives.isEmpty() ? ConsolFun.MAX : archives.get(0).getConsolFun();
+    }
+
+    @Override
+    public String toString() {
+        return name + ": step = " + step + ", " + archives.size() + " archive(s), latest = " + latest;
+    }
+}
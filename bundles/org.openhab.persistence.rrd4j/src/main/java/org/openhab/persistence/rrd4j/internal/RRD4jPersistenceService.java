@@ -13,24 +13,36 @@
 package org.openhab.persistence.rrd4j.internal;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import javax.measure.Quantity;
 import javax.measure.Unit;
@@ -66,6 +78,7 @@ import org.openhab.core.types.State;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Modified;
 import org.osgi.service.component.annotations.Reference;
 import org.rrd4j.ConsolFun;
@@ -74,6 +87,7 @@ import org.rrd4j.core.FetchData;
 import org.rrd4j.core.FetchRequest;
 import org.rrd4j.core.RrdDb;
 import org.rrd4j.core.RrdDef;
+import org.rrd4j.core.RrdNioBackendFactory;
 import org.rrd4j.core.Sample;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -88,35 +102,50 @@ import org.slf4j.LoggerFactory;
  * @author Karel Goderis - remove TimerThread dependency
  */
 @NonNullByDefault
-@Component(service = { PersistenceService.class,
-        QueryablePersistenceService.class }, configurationPid = "org.openhab.rrd4j", configurationPolicy = ConfigurationPolicy.OPTIONAL)
+@Component(service = { PersistenceService.class, QueryablePersistenceService.class,
+        RRD4jPersistenceService.class }, configurationPid = "org.openhab.rrd4j", configurationPolicy = ConfigurationPolicy.OPTIONAL)
 public class RRD4jPersistenceService implements QueryablePersistenceService {
 
     private static final String DEFAULT_OTHER = "default_other";
     private static final String DEFAULT_NUMERIC = "default_numeric";
     private static final String DEFAULT_QUANTIFIABLE = "default_quantifiable";
 
+    private static final String CONFIG_MAX_OPEN_FILES = "maxOpenFiles";
+
+    private static final int QUERY_THREADS = 4;
+
     private static final Set<String> SUPPORTED_TYPES = Set.of(CoreItemFactory.SWITCH, CoreItemFactory.CONTACT,
             CoreItemFactory.DIMMER, CoreItemFactory.NUMBER, CoreItemFactory.ROLLERSHUTTER);
 
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(3,
             new NamedThreadFactory("RRD4j"));
 
+    // reads several databases at once for batched queries, so that these do not delay storing values on the scheduler
+    private final ThreadPoolExecutor queryExecutor = new ThreadPoolExecutor(QUERY_THREADS, QUERY_THREADS, 60,
+            TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new NamedThreadFactory("RRD4j-query"));
+
     private final Map<String, @Nullable RrdDefConfig> rrdDefs = new ConcurrentHashMap<>();
 
     private static final String DATASOURCE_STATE = "state";
 
     public static final String DB_FOLDER = getUserPersistenceDataFolder() + File.separator + "rrd4j";
 
+    private static final String ITEM_INFO_INDEX = "iteminfo.properties";
+
     private final Logger logger = LoggerFactory.getLogger(RRD4jPersistenceService.class);
 
-    private final Map<String, @Nullable ScheduledFuture<?>> scheduledJobs = new HashMap<>();
+    private final Map<String, @Nullable ScheduledFuture<?>> scheduledJobs = new ConcurrentHashMap<>();
+
+    private final RRD4jDbPool dbPool = new RRD4jDbPool(new RrdNioBackendFactory(), RRD4jDbPool.DEFAULT_CAPACITY);
+
+    private final Map<String, RRD4jItemInfo> itemInfos = new ConcurrentHashMap<>();
 
     protected final ItemRegistry itemRegistry;
 
     @Activate
     public RRD4jPersistenceService(final @Reference ItemRegistry itemRegistry) {
         this.itemRegistry = itemRegistry;
+        queryExecutor.allowCoreThreadTimeOut(true);
     }
 
     @Override
@@ -130,7 +159,7 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
     }
 
     @Override
-    public synchronized void store(final Item item, @Nullable final String alias) {
+    public void store(final Item item, @Nullable final String alias) {
         if (!isSupportedItemType(item)) {
             logger.trace("Ignoring item '{}' since its type {} is not supported", item.getName(), item.getType());
             return;
@@ -138,86 +167,86 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
         final String name = alias == null ? item.getName() : alias;
         RrdDb db = getDB(name);
         if (db != null) {
-            ConsolFun function = getConsolidationFunction(db);
-            long now = System.currentTimeMillis() / 1000;
-            if (function != ConsolFun.AVERAGE) {
-                try {
-                    // we store the last value again, so that the value change
-                    // in the database is not interpolated, but
-                    // happens right at this spot
-                    if (now - 1 > db.getLastUpdateTime()) {
-                        // only do it if there is not already a value
-                        double lastValue = db.getLastDatasourceValue(DATASOURCE_STATE);
-                        if (!Double.isNaN(lastValue)) {
-                            Sample sample = db.createSample();
-                            sample.setTime(now - 1);
-                            sample.setValue(DATASOURCE_STATE, lastValue);
-                            sample.update();
-                            logger.debug("Stored '{}' with state '{}' in rrd4j database (again)", name,
-                                    mapToState(lastValue, item.getName()));
+            try {
+                ConsolFun function = getConsolidationFunction(db);
+                long now = System.currentTimeMillis() / 1000;
+                if (function != ConsolFun.AVERAGE) {
+                    try {
+                        // we store the last value again, so that the value change
+                        // in the database is not interpolated, but
+                        // happens right at this spot
+                        if (now - 1 > db.getLastUpdateTime()) {
+                            // only do it if there is not already a value
+                            double lastValue = db.getLastDatasourceValue(DATASOURCE_STATE);
+                            if (!Double.isNaN(lastValue)) {
+                                Sample sample = db.createSample();
+                                sample.setTime(now - 1);
+                                sample.setValue(DATASOURCE_STATE, lastValue);
+                                sample.update();
+                                logger.debug("Stored '{}' with state '{}' in rrd4j database (again)", name,
+                                        mapToState(lastValue, item.getName()));
+                            }
                         }
+                    } catch (IOException e) {
+                        logger.debug("Error storing last value (again): {}", e.getMessage());
                     }
-                } catch (IOException e) {
-                    logger.debug("Error storing last value (again): {}", e.getMessage());
                 }
-            }
-            try {
-                Sample sample = db.createSample();
-                sample.setTime(now);
-
-                Double value = null;
-
-                if (item instanceof NumberItem && item.getState() instanceof QuantityType) {
-                    NumberItem nItem = (NumberItem) item;
-                    QuantityType<?> qState = (QuantityType<?>) item.getState();
-                    Unit<? extends Quantity<?>> unit = nItem.getUnit();
-                    if (unit != null) {
-                        QuantityType<?> convertedState = qState.toUnit(unit);
-                        if (convertedState != null) {
-                            value = convertedState.doubleValue();
+                try {
+                    Sample sample = db.createSample();
+                    sample.setTime(now);
+
+                    Double value = null;
+
+                    if (item instanceof NumberItem && item.getState() instanceof QuantityType) {
+                        NumberItem nItem = (NumberItem) item;
+                        QuantityType<?> qState = (QuantityType<?>) item.getState();
+                        Unit<? extends Quantity<?>> unit = nItem.getUnit();
+                        if (unit != null) {
+                            QuantityType<?> convertedState = qState.toUnit(unit);
+                            if (convertedState != null) {
+                                value = convertedState.doubleValue();
+                            } else {
+                                logger.warn(
+                                        "Failed to convert state '{}' to unit '{}'. Please check your item definition for correctness.",
+                                        qState, unit);
+                            }
                         } else {
-                            logger.warn(
-                                    "Failed to convert state '{}' to unit '{}'. Please check your item definition for correctness.",
-                                    qState, unit);
+                            value = qState.doubleValue();
                         }
                     } else {
-                        value = qState.doubleValue();
-                    }
-                } else {
-                    DecimalType state = item.getStateAs(DecimalType.class);
-                    if (state != null) {
-                        value = state.toBigDecimal().doubleValue();
+                        DecimalType state = item.getStateAs(DecimalType.class);
+                        if (state != null) {
+                            value = state.toBigDecimal().doubleValue();
+                        }
                     }
-                }
-                if (value != null) {
-                    if (db.getDatasource(DATASOURCE_STATE).getType() == DsType.COUNTER) { // counter values must be
-                                                                                          // adjusted by stepsize
-                        value = value * db.getRrdDef().getStep();
+                    if (value != null) {
+                        if (db.getDatasource(DATASOURCE_STATE).getType() == DsType.COUNTER) { // counter values must be
+                                                                                              // adjusted by stepsize
+                            value = value * db.getRrdDef().getStep();
+                        }
+                        sample.setValue(DATASOURCE_STATE, value);
+                        sample.update();
+                        itemInfos.computeIfPresent(name, (n, info) -> info.withLatest(now));
+                        logger.debug("Stored '{}' with state '{}' in rrd4j database", name, value);
                     }
-                    sample.setValue(DATASOURCE_STATE, value);
-                    sample.update();
-                    logger.debug("Stored '{}' with state '{}' in rrd4j database", name, value);
-                }
-            } catch (IllegalArgumentException e) {
-                if (e.getMessage().contains("at least one second step is required")) {
-                    // we try to store the value one second later
-                    ScheduledFuture<?> job = scheduledJobs.get(name);
-                    if (job != null) {
-                        job.cancel(true);
-                        scheduledJobs.remove(name);
+                } catch (IllegalArgumentException e) {
+                    if (e.getMessage().contains("at least one second step is required")) {
+                        // we try to store the value one second later
+                        ScheduledFuture<?> job = scheduledJobs.get(name);
+                        if (job != null) {
+                            job.cancel(true);
+                            scheduledJobs.remove(name);
+                        }
+                        job = scheduler.schedule(() -> store(item, name), 1, TimeUnit.SECONDS);
+                        scheduledJobs.put(name, job);
+                    } else {
+                        logger.warn("Could not persist '{}' to rrd4j database: {}", name, e.getMessage());
                     }
-                    job = scheduler.schedule(() -> store(item, name), 1, TimeUnit.SECONDS);
-                    scheduledJobs.put(name, job);
-                } else {
+                } catch (Exception e) {
                     logger.warn("Could not persist '{}' to rrd4j database: {}", name, e.getMessage());
                 }
-            } catch (Exception e) {
-                logger.warn("Could not persist '{}' to rrd4j database: {}", name, e.getMessage());
-            }
-            try {
-                db.close();
-            } catch (IOException e) {
-                logger.debug("Error closing rrd4j database: {}", e.getMessage());
+            } finally {
+                releaseDB(name);
             }
         }
     }
@@ -286,37 +315,160 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
                 return items;
             } catch (IOException e) {
                 logger.warn("Could not query rrd4j database for item '{}': {}", itemName, e.getMessage());
+            } finally {
+                releaseDB(itemName);
             }
         }
         return Collections.emptyList();
     }
 
+    /**
+     * Queries the databases of several items at once. The databases are read in parallel, which is considerably
+     * faster than querying them one after the other if many items are requested, e.g. for multi-series charts.
+     *
+     * @param filters the filters to query, at most one per item
+     * @return the query results by item name, in the order of the given filters
+     */
+    public Map<String, Iterable<HistoricItem>> query(Collection<FilterCriteria> filters) {
+        Map<String, FilterCriteria> filtersByItem = new LinkedHashMap<>();
+        for (FilterCriteria filter : filters) {
+            filtersByItem.put(filter.getItemName(), filter);
+        }
+        return readInParallel(filtersByItem.keySet(), itemName -> query(filtersByItem.get(itemName)));
+    }
+
+    /**
+     * Fetches the raw data of several databases at once, e.g. to draw them in a chart. The databases are read in
+     * parallel through the pool. Databases which do not exist are not created.
+     *
+     * @param aliases the item names or aliases of the databases
+     * @param start the start of the time range in seconds since the epoch
+     * @param end the end of the time range in seconds since the epoch
+     * @param resolution the preferred time between two values in seconds
+     * @return the data by item name or alias, in the given order, for the databases which exist
+     */
+    public Map<String, FetchData> fetchData(Collection<String> aliases, long start, long end, long resolution) {
+        return readInParallel(aliases, alias -> fetchData(alias, start, end, resolution));
+    }
+
+    private @Nullable FetchData fetchData(String alias, long start, long end, long resolution) {
+        if (!getDBFile(alias).exists()) {
+            return null;
+        }
+        RrdDb db = getDB(alias);
+        if (db == null) {
+            return null;
+        }
+        try {
+            return db.createFetchRequest(getConsolidationFunction(db), start, end, resolution).fetchData();
+        } catch (IOException e) {
+            logger.warn("Could not fetch data from rrd4j database '{}': {}", alias, e.getMessage());
+            return null;
+        } finally {
+            releaseDB(alias);
+        }
+    }
+
+    /**
+     * Applies the reader to every key on the query executor and waits for all results. Runtime exceptions of the
+     * reader are passed on to the caller.
+     *
+     * @return the non-null results by key, in the order of the keys
+     */
+    private <T> Map<String, T> readInParallel(Collection<String> keys, Function<String, @Nullable T> reader) {
+        Map<String, CompletableFuture<@Nullable T>> futures = new LinkedHashMap<>();
+        for (String key : keys) {
+            futures.computeIfAbsent(key, k -> CompletableFuture.supplyAsync(() -> reader.apply(k), queryExecutor));
+        }
+        Map<String, T> results = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, CompletableFuture<@Nullable T>> entry : futures.entrySet()) {
+                T result = entry.getValue().join();
+                if (result != null) {
+                    results.put(entry.getKey(), result);
+                }
+            }
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+        return results;
+    }
+
     @Override
     public Set<PersistenceItemInfo> getItemInfo() {
-        return Collections.emptySet();
+        File[] files = new File(DB_FOLDER).listFiles((dir, fileName) -> fileName.endsWith(".rrd"));
+        if (files != null) {
+            // read the headers of the databases which are neither in the index nor have been opened yet, without
+            // adding them to the pool
+            List<String> aliases = new ArrayList<>();
+            for (File file : files) {
+                String alias = file.getName().substring(0, file.getName().length() - ".rrd".length());
+                if (!itemInfos.containsKey(alias)) {
+                    aliases.add(alias);
+                }
+            }
+            readInParallel(aliases, this::readItemInfo).forEach(itemInfos::putIfAbsent);
+        }
+        return new HashSet<>(itemInfos.values());
     }
 
-    protected @Nullable synchronized RrdDb getDB(String alias) {
+    /**
+     * Returns information about the database of the given item, reading the database header if necessary.
+     *
+     * @param alias the item name or alias
+     * @return the item information or <code>null</code> if there is no database for the item
+     */
+    public @Nullable RRD4jItemInfo getItemInfo(String alias) {
+        RRD4jItemInfo info = itemInfos.get(alias);
+        if (info == null) {
+            info = readItemInfo(alias);
+            if (info != null) {
+                RRD4jItemInfo existing = itemInfos.putIfAbsent(alias, info);
+                return existing != null ? existing : info;
+            }
+        }
+        return info;
+    }
+
+    private @Nullable RRD4jItemInfo readItemInfo(String alias) {
+        try {
+            return dbPool.read(getDBFile(alias), db -> RRD4jItemInfo.fromDb(alias, db));
+        } catch (IOException e) {
+            logger.debug("Could not read rrd4j database header of '{}': {}", alias, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the pooled database for the given alias, creating the database file if necessary. The database is
+     * locked for the calling thread and must be handed back with {@link #releaseDB(String)}.
+     *
+     * @param alias the item name or alias
+     * @return the database or <code>null</code> if it could not be opened or created
+     */
+    protected @Nullable RrdDb getDB(String alias) {
         RrdDb db = null;
-        File file = new File(DB_FOLDER + File.separator + alias + ".rrd");
+        File file = getDBFile(alias);
         try {
-            if (file.exists()) {
-                // recreate the RrdDb instance from the file
-                db = new RrdDb(file.getAbsolutePath());
-            } else {
+            db = dbPool.acquire(file, f -> {
                 File folder = new File(DB_FOLDER);
                 if (!folder.exists()) {
                     folder.mkdirs();
                 }
-                RrdDef rrdDef = getRrdDef(alias, file);
-                if (rrdDef != null) {
-                    // create a new database file
-                    db = new RrdDb(rrdDef);
-                } else {
+                RrdDef rrdDef = getRrdDef(alias, f);
+                if (rrdDef == null) {
                     logger.debug(
                             "Did not create rrd4j database for item '{}' since no rrd definition could be determined. This is likely due to an unsupported item type.",
                             alias);
                 }
+                return rrdDef;
+            });
+            if (db != null && !itemInfos.containsKey(alias)) {
+                itemInfos.put(alias, RRD4jItemInfo.fromDb(alias, db));
             }
         } catch (IOException e) {
             logger.error("Could not create rrd4j database file '{}': {}", file.getAbsolutePath(), e.getMessage());
@@ -327,6 +479,14 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
         return db;
     }
 
+    protected void releaseDB(String alias) {
+        dbPool.release(getDBFile(alias));
+    }
+
+    private File getDBFile(String alias) {
+        return new File(DB_FOLDER + File.separator + alias + ".rrd");
+    }
+
     private @Nullable RrdDefConfig getRrdDefConfig(String itemName) {
         RrdDefConfig useRdc = null;
         for (Map.Entry<String, @Nullable RrdDefConfig> e : rrdDefs.entrySet()) {
@@ -419,9 +579,76 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
 
     @Activate
     protected void activate(final Map<String, Object> config) {
+        loadItemInfoIndex();
         modified(config);
     }
 
+    @Deactivate
+    protected void deactivate() {
+        for (ScheduledFuture<?> job : scheduledJobs.values()) {
+            if (job != null) {
+                job.cancel(false);
+            }
+        }
+        scheduledJobs.clear();
+        queryExecutor.shutdown();
+        // closing the databases writes all pending changes to disk
+        dbPool.closeAll();
+        storeItemInfoIndex();
+        logger.debug("rrd4j persistence service deactivated");
+    }
+
+    /**
+     * Loads the item info index written by {@link #storeItemInfoIndex()}. Entries of database files which have been
+     * modified since are ignored, their headers are read again when needed.
+     */
+    private void loadItemInfoIndex() {
+        File indexFile = new File(DB_FOLDER, ITEM_INFO_INDEX);
+        if (!indexFile.exists()) {
+            return;
+        }
+        Properties index = new Properties();
+        try (InputStream in = new FileInputStream(indexFile)) {
+            index.load(in);
+        } catch (IOException e) {
+            logger.debug("Could not read rrd4j item info index '{}': {}", indexFile.getAbsolutePath(), e.getMessage());
+            return;
+        }
+        for (String alias : index.stringPropertyNames()) {
+            File file = getDBFile(alias);
+            RRD4jItemInfo info = file.exists()
+                    ? RRD4jItemInfo.fromIndexEntry(alias, index.getProperty(alias), file.lastModified())
+                    : null;
+            if (info != null) {
+                itemInfos.putIfAbsent(alias, info);
+            }
+        }
+        logger.debug("Loaded {} of {} entries of the rrd4j item info index", itemInfos.size(), index.size());
+    }
+
+    /**
+     * Writes the item info index, so that the database headers do not have to be read again on the next start. The
+     * index is only written when the service is deactivated, after all databases have been closed.
+     */
+    private void storeItemInfoIndex() {
+        File folder = new File(DB_FOLDER);
+        if (!folder.exists()) {
+            return;
+        }
+        Properties index = new Properties();
+        for (RRD4jItemInfo info : itemInfos.values()) {
+            File file = getDBFile(info.getName());
+            if (file.exists()) {
+                index.setProperty(info.getName(), info.toIndexEntry(file.lastModified()));
+            }
+        }
+        try (OutputStream out = new FileOutputStream(new File(folder, ITEM_INFO_INDEX))) {
+            index.store(out, "rrd4j item info index, entries are ignored if the database file has been modified");
+        } catch (IOException e) {
+            logger.debug("Could not write rrd4j item info index: {}", e.getMessage());
+        }
+    }
+
     @Modified
     protected void modified(final Map<String, Object> config) {
         // clean existing definitions
@@ -480,6 +707,15 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
                 continue;
             }
 
+            if (key.equals(CONFIG_MAX_OPEN_FILES)) {
+                try {
+                    dbPool.setCapacity(Integer.parseInt(String.valueOf(config.get(key)).trim()));
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring illegal value for '{}': {}", CONFIG_MAX_OPEN_FILES, config.get(key));
+                }
+                continue;
+            }
+
             String[] subkeys = key.split("\\.");
             if (subkeys.length != 2) {
                 logger.debug("config '{}' should have the format 'name.configkey'", key);
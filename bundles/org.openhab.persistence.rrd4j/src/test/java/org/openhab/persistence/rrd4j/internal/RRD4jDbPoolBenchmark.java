@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.rrd4j.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.rrd4j.ConsolFun;
+import org.rrd4j.DsType;
+import org.rrd4j.core.RrdBackendFactory;
+import org.rrd4j.core.RrdDb;
+import org.rrd4j.core.RrdDef;
+import org.rrd4j.core.RrdNioBackendFactory;
+import org.rrd4j.core.Sample;
+
+/**
+ * Compares storing values through the {@link RRD4jDbPool} with opening and closing the database file for every value.
+ *
+ * The values are stored round-robin into <code>items</code> database files. With more files than the pool capacity of
+ * {@value RRD4jDbPool#DEFAULT_CAPACITY}, every store has to open a file and evict another one, which shows the cost of
+ * a pool that is too small.
+ *
+ * This is not run by the build. Run the main method with the test class path, e.g. from the IDE.
+ *
+ * @author agent - Initial contribution
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+@NonNullByDefault({})
+public class RRD4jDbPoolBenchmark {
+
+    private static final long START = 1600000000L;
+    private static final long STEP = 10;
+
+    @Param({ "10", "500" })
+    private int items;
+
+    private final RrdBackendFactory backendFactory = new RrdNioBackendFactory();
+    private File folder;
+    private File[] files;
+    private RRD4jDbPool pool;
+    private long counter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("rrd4j-benchmark").toFile();
+        files = new File[items];
+        for (int i = 0; i < items; i++) {
+            files[i] = new File(folder, "item" + i + ".rrd");
+            RrdDef rrdDef = new RrdDef(files[i].getAbsolutePath(), START, STEP);
+            rrdDef.addDatasource("state", DsType.GAUGE, 600, Double.NaN, Double.NaN);
+            rrdDef.addArchive(ConsolFun.AVERAGE, 0.5, 1, 360);
+            rrdDef.addArchive(ConsolFun.AVERAGE, 0.5, 6, 10080);
+            rrdDef.addArchive(ConsolFun.AVERAGE, 0.5, 90, 36500);
+            new RrdDb(rrdDef, backendFactory).close();
+        }
+        pool = new RRD4jDbPool(backendFactory, RRD4jDbPool.DEFAULT_CAPACITY);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.closeAll();
+        for (File file : files) {
+            file.delete();
+        }
+        folder.delete();
+    }
+
+    @Benchmark
+    public void storePooled() throws IOException {
+        File file = files[(int) (counter % items)];
+        RrdDb db = pool.acquire(file, f -> null);
+        if (db == null) {
+            throw new IllegalStateException("Missing database " + file);
+        }
+        try {
+            update(db);
+        } finally {
+            pool.release(file);
+        }
+    }
+
+    @Benchmark
+    public void storeOpeningEachFile() throws IOException {
+        File file = files[(int) (counter % items)];
+        try (RrdDb db = new RrdDb(file.getAbsolutePath(), backendFactory)) {
+            update(db);
+        }
+    }
+
+    private void update(RrdDb db) throws IOException {
+        // each file gets one value per step
+        Sample sample = db.createSample(START + (counter / items + 1) * STEP);
+        sample.setValue(0, counter % 100);
+        sample.update();
+        counter++;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RRD4jDbPoolBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -14,8 +14,11 @@ package org.openhab.transform.bin2json.internal;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.openhab.core.util.HexUtils;
 import org.slf4j.Logger;
@@ -66,6 +69,11 @@ import com.igormaznitsa.jbbp.model.JBBPFieldUShort;
  * json.toString() = {"a":3,"b":-6,"c":255}
  * </pre>
  *
+ * <p>
+ * A prepared parser is thread-safe, so an instance can be reused for all conversions with the same rule. The
+ * <code>convert(..., StringBuilder)</code> methods write the JSON text directly without building a Gson tree, the
+ * output is the same as the {@link JsonObject#toString()} of the tree.
+ *
  * @author Pauli Anttila - Initial contribution
  *
  */
@@ -73,7 +81,9 @@ public class Bin2Json {
 
     private final Logger logger = LoggerFactory.getLogger(Bin2Json.class);
 
-    private JBBPParser parser;
+    private static final String NONAMED = "nonamed";
+
+    private final JBBPParser parser;
 
     /**
      *
@@ -120,6 +130,17 @@ public class Bin2Json {
         }
     }
 
+    /**
+     * Convert the remaining bytes of a {@link ByteBuffer} to JSON object.
+     *
+     * @param data Data in byte buffer, its position is not changed
+     * @return Gson {@link JsonObject}
+     * @throws ConversionException
+     */
+    public JsonObject convert(ByteBuffer data) throws ConversionException {
+        return convert(toBytes(data));
+    }
+
     /**
      * Convert data from {@link InputStream} to JSON object.
      *
@@ -137,6 +158,49 @@ public class Bin2Json {
         }
     }
 
+    /**
+     * Convert byte array to JSON text, which is appended to the given buffer.
+     *
+     * @param data Data in byte array format.
+     * @param out buffer the JSON text is appended to
+     * @throws ConversionException
+     */
+    public void convert(byte[] data, StringBuilder out) throws ConversionException {
+        final JBBPFieldStruct struct;
+        try {
+            struct = parser.parse(data);
+        } catch (IOException | JBBPException e) {
+            throw new ConversionException(String.format("Unexpected error, reason: %s", e.getMessage(), e));
+        }
+        try {
+            appendStruct(out, struct);
+        } catch (JBBPException e) {
+            throw new ConversionException(String.format("Unexpected error, reason: %s", e.getMessage(), e));
+        }
+    }
+
+    /**
+     * Convert the remaining bytes of a {@link ByteBuffer} to JSON text, which is appended to the given buffer.
+     *
+     * @param data Data in byte buffer, its position is not changed
+     * @param out buffer the JSON text is appended to
+     * @throws ConversionException
+     */
+    public void convert(ByteBuffer data, StringBuilder out) throws ConversionException {
+        convert(toBytes(data), out);
+    }
+
+    private static byte[] toBytes(ByteBuffer data) {
+        final ByteBuffer buffer = data.duplicate();
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0
+                && buffer.remaining() == buffer.array().length) {
+            return buffer.array();
+        }
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
     private JsonObject convert(JBBPFieldStruct data) throws ConversionException {
         try {
             LocalDateTime start = LocalDateTime.now();
@@ -236,4 +300,139 @@ public class Bin2Json {
         }
         return jsn;
     }
+
+    /**
+     * Appends the fields of a struct as JSON object, with the same structure as the Gson tree built by
+     * <code>convertToJSon</code>.
+     */
+    private void appendStruct(final StringBuilder out, final JBBPFieldStruct struct) throws ConversionException {
+        final JBBPAbstractField[] fields = struct.getArray();
+        int nonamed = 0;
+        for (final JBBPAbstractField f : fields) {
+            if (f.getFieldName() == null) {
+                nonamed++;
+            }
+        }
+        out.append('{');
+        if (nonamed <= 1) {
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                appendField(out, fields[i]);
+            }
+        } else {
+            // a JSON object keeps only the last of the unnamed fields, at the position of the first one
+            final Map<String, JBBPAbstractField> unique = new LinkedHashMap<>();
+            for (final JBBPAbstractField f : fields) {
+                unique.put(f.getFieldName() == null ? NONAMED : f.getFieldName(), f);
+            }
+            boolean first = true;
+            for (final JBBPAbstractField f : unique.values()) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                appendField(out, f);
+            }
+        }
+        out.append('}');
+    }
+
+    private void appendField(final StringBuilder out, final JBBPAbstractField field) throws ConversionException {
+        final String fieldName = field.getFieldName() == null ? NONAMED : field.getFieldName();
+        appendName(out, fieldName);
+        if (field instanceof JBBPAbstractArrayField) {
+            out.append('[');
+            if (field instanceof JBBPFieldArrayBit) {
+                final byte[] array = ((JBBPFieldArrayBit) field).getArray();
+                for (int i = 0; i < array.length; i++) {
+                    appendSeparator(out, i).append(array[i]);
+                }
+            } else if (field instanceof JBBPFieldArrayBoolean) {
+                final boolean[] array = ((JBBPFieldArrayBoolean) field).getArray();
+                for (int i = 0; i < array.length; i++) {
+                    appendSeparator(out, i).append(array[i]);
+                }
+            } else if (field instanceof JBBPFieldArrayByte) {
+                final byte[] array = ((JBBPFieldArrayByte) field).getArray();
+                for (int i = 0; i < array.length; i++) {
+                    appendSeparator(out, i).append(array[i]);
+                }
+            } else if (field instanceof JBBPFieldArrayInt) {
+                final int[] array = ((JBBPFieldArrayInt) field).getArray();
+                for (int i = 0; i < array.length; i++) {
+                    appendSeparator(out, i).append(array[i]);
+                }
+            } else if (field instanceof JBBPFieldArrayLong) {
+                final long[] array = ((JBBPFieldArrayLong) field).getArray();
+                for (int i = 0; i < array.length; i++) {
+                    appendSeparator(out, i).append(array[i]);
+                }
+            } else if (field instanceof JBBPFieldArrayShort) {
+                final short[] array = ((JBBPFieldArrayShort) field).getArray();
+                for (int i = 0; i < array.length; i++) {
+                    appendSeparator(out, i).append(array[i]);
+                }
+            } else if (field instanceof JBBPFieldArrayStruct) {
+                final JBBPFieldArrayStruct array = (JBBPFieldArrayStruct) field;
+                for (int i = 0; i < array.size(); i++) {
+                    final JBBPFieldStruct element = array.getElementAt(i);
+                    appendSeparator(out, i).append('{');
+                    appendName(out, element.getFieldName() == null ? NONAMED : element.getFieldName());
+                    appendStruct(out, element);
+                    out.append('}');
+                }
+            } else if (field instanceof JBBPFieldArrayUByte) {
+                final byte[] array = ((JBBPFieldArrayUByte) field).getArray();
+                for (int i = 0; i < array.length; i++) {
+                    appendSeparator(out, i).append(array[i] & 0xFF);
+                }
+            } else if (field instanceof JBBPFieldArrayUShort) {
+                final short[] array = ((JBBPFieldArrayUShort) field).getArray();
+                for (int i = 0; i < array.length; i++) {
+                    appendSeparator(out, i).append(array[i] & 0xFFFF);
+                }
+            } else {
+                throw new ConversionException(String.format("Unexpected field type '%s'", field));
+            }
+            out.append(']');
+        } else if (field instanceof JBBPFieldBit) {
+            out.append(((JBBPFieldBit) field).getAsInt());
+        } else if (field instanceof JBBPFieldBoolean) {
+            out.append(((JBBPFieldBoolean) field).getAsBool());
+        } else if (field instanceof JBBPFieldByte) {
+            out.append(((JBBPFieldByte) field).getAsInt());
+        } else if (field instanceof JBBPFieldInt) {
+            out.append(((JBBPFieldInt) field).getAsInt());
+        } else if (field instanceof JBBPFieldLong) {
+            out.append(((JBBPFieldLong) field).getAsLong());
+        } else if (field instanceof JBBPFieldShort) {
+            out.append(((JBBPFieldShort) field).getAsInt());
+        } else if (field instanceof JBBPFieldStruct) {
+            appendStruct(out, (JBBPFieldStruct) field);
+        } else if (field instanceof JBBPFieldUByte) {
+            out.append(((JBBPFieldUByte) field).getAsInt());
+        } else if (field instanceof JBBPFieldUShort) {
+            out.append(((JBBPFieldUShort) field).getAsInt());
+        } else {
+            throw new ConversionException(String.format("Unexpected field '%s'", field));
+        }
+    }
+
+    private static StringBuilder appendSeparator(final StringBuilder out, final int index) {
+        return index > 0 ? out.append(',') : out;
+    }
+
+    private static void appendName(final StringBuilder out, final String name) {
+        out.append('"');
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\');
+            }
+            out.append(c);
+        }
+        out.append("\":");
+    }
 }
@@ -12,10 +12,16 @@
  */
 package org.openhab.transform.bin2json.internal;
 
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
 import org.openhab.core.transform.TransformationException;
 import org.openhab.core.transform.TransformationService;
+import org.openhab.core.util.HexUtils;
 import org.osgi.service.component.annotations.Component;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,14 +30,22 @@ import org.slf4j.LoggerFactory;
  * The implementation of {@link TransformationService} which transforms the
  * hexa string formatted binary data by Binary Block Parser syntax to JSON format.
  *
+ * Prepared parsers are cached by their rule. Binary data can also be transformed directly with
+ * {@link #transform(String, byte[])} or {@link #transform(String, ByteBuffer)}, which avoids the conversion to and from
+ * a hexa string, and {@link #transform(String, byte[], StringBuilder)} appends the JSON text to a buffer of the caller.
+ *
  * @author Pauli Anttila - Initial contribution
  */
 @NonNullByDefault
 @Component(property = { "smarthome.transform=BIN2JSON" })
 public class Bin2JsonTransformationService implements TransformationService {
 
+    static final int PARSER_CACHE_SIZE = 64;
+
     private Logger logger = LoggerFactory.getLogger(Bin2JsonTransformationService.class);
 
+    private final Map<String, Bin2Json> parserCache = new ConcurrentHashMap<>();
+
     /**
      * Transforms the input <code>source</code> by Java Binary Block Parser syntax.
      *
@@ -46,9 +60,12 @@ public class Bin2JsonTransformationService implements TransformationService {
         String result = "";
 
         try {
-            result = String.valueOf(new Bin2Json(syntax).convert(source));
+            result = convert(syntax, HexUtils.hexToBytes(source));
             logger.debug("transformation resulted '{}'", result);
             return result;
+        } catch (IllegalArgumentException e) {
+            throw new TransformationException("An error occurred while executing the converter. Illegal hexstring, "
+                    + e.getMessage(), e);
         } catch (ConversionException e) {
             throw new TransformationException("An error occurred while executing the converter. " + e.getMessage(), e);
         } finally {
@@ -56,4 +73,77 @@ public class Bin2JsonTransformationService implements TransformationService {
                     result);
         }
     }
+
+    /**
+     * Transforms binary data by Java Binary Block Parser syntax.
+     *
+     * @param syntax Java Binary Block Parser syntax.
+     * @param data the binary data to transform
+     * @return the data in JSON format
+     */
+    public String transform(String syntax, byte[] data) throws TransformationException {
+        StringBuilder buffer = new StringBuilder(256);
+        transform(syntax, data, buffer);
+        return buffer.toString();
+    }
+
+    /**
+     * Transforms the remaining bytes of a buffer by Java Binary Block Parser syntax.
+     *
+     * @param syntax Java Binary Block Parser syntax.
+     * @param data the binary data to transform, its position is not changed
+     * @return the data in JSON format
+     */
+    public String transform(String syntax, ByteBuffer data) throws TransformationException {
+        StringBuilder buffer = new StringBuilder(256);
+        try {
+            getParser(syntax).convert(data, buffer);
+        } catch (ConversionException e) {
+            throw new TransformationException("An error occurred while executing the converter. " + e.getMessage(), e);
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Transforms binary data by Java Binary Block Parser syntax and appends the JSON text to a buffer, so that the
+     * caller can reuse the buffer for a stream of frames.
+     *
+     * @param syntax Java Binary Block Parser syntax.
+     * @param data the binary data to transform
+     * @param out buffer the data in JSON format is appended to
+     */
+    public void transform(String syntax, byte[] data, StringBuilder out) throws TransformationException {
+        try {
+            getParser(syntax).convert(data, out);
+        } catch (ConversionException e) {
+            throw new TransformationException("An error occurred while executing the converter. " + e.getMessage(), e);
+        }
+    }
+
+    private String convert(String syntax, byte[] data) throws ConversionException {
+        StringBuilder buffer = new StringBuilder(256);
+        getParser(syntax).convert(data, buffer);
+        return buffer.toString();
+    }
+
+    private Bin2Json getParser(String syntax) throws ConversionException {
+        Bin2Json parser = parserCache.get(syntax);
+        if (parser == null) {
+            parser = new Bin2Json(syntax);
+            if (parserCache.size() >= PARSER_CACHE_SIZE) {
+                // evict an arbitrary entry, the cache only has to be large enough for the configured rules
+                Iterator<String> iterator = parserCache.keySet().iterator();
+                if (iterator.hasNext()) {
+                    iterator.next();
+                    iterator.remove();
+                }
+            }
+            parserCache.put(syntax, parser);
+        }
+        return parser;
+    }
+
+    int getParserCacheSize() {
+        return parserCache.size();
+    }
 }
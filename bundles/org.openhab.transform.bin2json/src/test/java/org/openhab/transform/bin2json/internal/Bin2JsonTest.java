@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.bin2json.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+import org.openhab.core.util.HexUtils;
+
+/**
+ * Tests that the JSON text written by {@link Bin2Json#convert(byte[], StringBuilder)} is the same as the text of the
+ * Gson tree.
+ *
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class Bin2JsonTest {
+
+    private static String assertSameAsGson(String rule, String hexString) throws ConversionException {
+        Bin2Json bin2Json = new Bin2Json(rule);
+        StringBuilder out = new StringBuilder();
+        bin2Json.convert(HexUtils.hexToBytes(hexString), out);
+        assertEquals(bin2Json.convert(hexString).toString(), out.toString());
+        return out.toString();
+    }
+
+    @Test
+    public void testPrimitives() throws ConversionException {
+        assertEquals("{\"a\":3,\"b\":-6,\"c\":255}", assertSameAsGson("byte a; byte b; ubyte c;", "03FAFF"));
+    }
+
+    @Test
+    public void testAllFieldTypes() throws ConversionException {
+        assertSameAsGson("bit:4 b1; bit:4 b2; bool f; short s; ushort us; int i; long l;",
+                "A5" + "01" + "FFFE" + "FFFE" + "80000000" + "7FFFFFFFFFFFFFFF");
+    }
+
+    @Test
+    public void testArrays() throws ConversionException {
+        assertSameAsGson("byte [2] a; ubyte [2] b; short [2] c; ushort [1] d; int [1] e; long [1] f; bool [2] g;"
+                + " bit:1 [8] h;", "01FF" + "01FF" + "0001FFFF" + "FFFF" + "FFFFFFFF" + "8000000000000000" + "0100"
+                        + "A5");
+    }
+
+    @Test
+    public void testEmptyArray() throws ConversionException {
+        assertEquals("{\"n\":0,\"a\":[]}", assertSameAsGson("ubyte n; byte [n] a;", "00"));
+    }
+
+    @Test
+    public void testNestedStructs() throws ConversionException {
+        assertEquals("{\"a\":1,\"inner\":{\"b\":255,\"deeper\":{\"c\":2}},\"d\":5}",
+                assertSameAsGson("byte a; inner { ubyte b; deeper { short c; } } byte d;", "01FF000205"));
+    }
+
+    @Test
+    public void testStructArray() throws ConversionException {
+        assertSameAsGson("ubyte n; items [n] { ubyte id; short v; }", "02" + "010001" + "02FFFF");
+    }
+
+    @Test
+    public void testNestedStructArray() throws ConversionException {
+        assertSameAsGson("outer [2] { ubyte n; inner [n] { byte v; } }", "01FF" + "00");
+    }
+
+    @Test
+    public void testSingleUnnamedField() throws ConversionException {
+        assertSameAsGson("byte; byte b;", "0102");
+    }
+
+    @Test
+    public void testMultipleUnnamedFields() throws ConversionException {
+        // a JSON object keeps only the last of the unnamed fields
+        assertSameAsGson("byte; byte b; ubyte; int [1];", "0102FF00000004");
+    }
+
+    @Test
+    public void testMultipleUnnamedFieldsInNestedStruct() throws ConversionException {
+        assertSameAsGson("byte a; inner { byte; byte; byte c; }", "01020304");
+    }
+
+    @Test
+    public void testByteBuffer() throws ConversionException {
+        Bin2Json bin2Json = new Bin2Json("byte a; byte b; ubyte c;");
+        ByteBuffer data = ByteBuffer.wrap(HexUtils.hexToBytes("0003FAFF00"), 1, 3);
+        StringBuilder out = new StringBuilder();
+
+        bin2Json.convert(data, out);
+
+        assertEquals("{\"a\":3,\"b\":-6,\"c\":255}", out.toString());
+        assertEquals(bin2Json.convert(data).toString(), out.toString());
+        assertEquals(1, data.position());
+    }
+
+    @Test
+    public void testIllegalRule() {
+        assertThrows(ConversionException.class, () -> new Bin2Json("byte a; unknown b;"));
+    }
+
+    @Test
+    public void testNotEnoughData() throws ConversionException {
+        Bin2Json bin2Json = new Bin2Json("int a;");
+
+        assertThrows(ConversionException.class, () -> bin2Json.convert(HexUtils.hexToBytes("01"), new StringBuilder()));
+    }
+}
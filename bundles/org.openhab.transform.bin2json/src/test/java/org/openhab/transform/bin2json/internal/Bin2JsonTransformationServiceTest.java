@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.bin2json.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+import org.openhab.core.transform.TransformationException;
+
+/**
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class Bin2JsonTransformationServiceTest {
+
+    private final Bin2JsonTransformationService processor = new Bin2JsonTransformationService();
+
+    @Test
+    public void testTransform() throws TransformationException {
+        assertEquals("{\"a\":3,\"b\":-6,\"c\":255}", processor.transform("byte a; byte b; ubyte c;", "03FAFF"));
+        assertEquals("{\"a\":1,\"b\":2,\"c\":3}", processor.transform("byte a; byte b; ubyte c;", "010203"));
+        assertEquals(1, processor.getParserCacheSize());
+    }
+
+    @Test
+    public void testTransformBinaryData() throws TransformationException {
+        String syntax = "byte a; byte b; ubyte c;";
+        byte[] data = new byte[] { 3, (byte) 0xFA, (byte) 0xFF };
+
+        assertEquals("{\"a\":3,\"b\":-6,\"c\":255}", processor.transform(syntax, data));
+
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 0, 3, (byte) 0xFA, (byte) 0xFF, 0 }, 1, 3);
+        assertEquals("{\"a\":3,\"b\":-6,\"c\":255}", processor.transform(syntax, buffer));
+        assertEquals(1, buffer.position());
+
+        StringBuilder out = new StringBuilder("[");
+        processor.transform(syntax, data, out);
+        out.append(',');
+        processor.transform(syntax, data, out);
+        assertEquals("[{\"a\":3,\"b\":-6,\"c\":255},{\"a\":3,\"b\":-6,\"c\":255}", out.toString());
+        assertEquals(1, processor.getParserCacheSize());
+    }
+
+    @Test
+    public void testIllegalHexString() {
+        assertThrows(TransformationException.class, () -> processor.transform("byte a;", "0G"));
+    }
+
+    @Test
+    public void testIllegalRule() {
+        assertThrows(TransformationException.class, () -> processor.transform("byte a; unknown b;", "03"));
+        assertEquals(0, processor.getParserCacheSize());
+    }
+
+    @Test
+    public void testParserCacheIsBounded() throws TransformationException {
+        for (int i = 0; i < 2 * Bin2JsonTransformationService.PARSER_CACHE_SIZE; i++) {
+            assertEquals("{\"a" + i + "\":3}", processor.transform("byte a" + i + ";", "03"));
+        }
+
+        assertEquals(Bin2JsonTransformationService.PARSER_CACHE_SIZE, processor.getParserCacheSize());
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.exec.internal;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A long-lived process which answers requests with a line based protocol: every request is written as one line to its
+ * standard input, the response is the next line it writes to its standard output.
+ *
+ * Responses are read by a dedicated thread, so that a request can time out. After a timeout the process is out of
+ * sync with its requests, so it is destroyed. What the process writes to its standard error is logged.
+ *
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class ExecCoProcess {
+
+    /* separates the arguments of a command line which contain spaces, as with the exec binding */
+    static final String CMD_LINE_DELIMITER = "@@";
+
+    private final Logger logger = LoggerFactory.getLogger(ExecCoProcess.class);
+
+    private final String commandLine;
+    private final Process process;
+    private final BufferedWriter writer;
+    /* an empty optional signals the end of the output */
+    private final BlockingQueue<Optional<String>> responses = new LinkedBlockingQueue<>();
+
+    /**
+     * Starts the process.
+     *
+     * @param commandLine the command line, see {@link #splitCommandLine(String)}
+     * @throws IOException if the process could not be started
+     */
+    public ExecCoProcess(String commandLine) throws IOException {
+        this.commandLine = commandLine;
+        this.process = new ProcessBuilder(splitCommandLine(commandLine)).start();
+        this.writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+
+        startDaemon(this::readResponses, "OH-exec-coprocess-" + process.pid());
+        startDaemon(this::logErrors, "OH-exec-coprocess-stderr-" + process.pid());
+        logger.debug("Started co-process '{}' with pid {}", commandLine, process.pid());
+    }
+
+    /**
+     * Splits the command line into the program and its arguments: at <code>@@</code> if the command line contains it,
+     * otherwise at spaces.
+     *
+     * @param commandLine the command line
+     * @return the program and its arguments
+     */
+    static String[] splitCommandLine(String commandLine) {
+        return commandLine.contains(CMD_LINE_DELIMITER) ? commandLine.split(CMD_LINE_DELIMITER)
+                : commandLine.split(" ");
+    }
+
+    private static void startDaemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void readResponses() {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                responses.add(Optional.of(line));
+            }
+        } catch (IOException e) {
+            logger.debug("Reading from co-process '{}' failed: {}", commandLine, e.getMessage());
+        }
+        responses.add(Optional.empty());
+    }
+
+    private void logErrors() {
+        InputStream errorStream = process.getErrorStream();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(errorStream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                logger.warn("co-process '{}': {}", commandLine, line);
+            }
+        } catch (IOException e) {
+            logger.debug("Reading the errors of co-process '{}' failed: {}", commandLine, e.getMessage());
+        }
+    }
+
+    /**
+     * Sends a request and waits for its response. Line breaks in the request are replaced by spaces.
+     *
+     * @param request the request
+     * @param timeout maximum time in milliseconds to wait for the response
+     * @return the response
+     * @throws IOException if the process terminated, or did not respond in time
+     * @throws InterruptedException if interrupted while waiting for the response
+     */
+    public synchronized String request(String request, long timeout) throws IOException, InterruptedException {
+        if (!isAlive()) {
+            throw new IOException("co-process '" + commandLine + "' has terminated");
+        }
+        // discard output which has not been requested
+        responses.removeIf(Optional::isPresent);
+
+        writer.write(request.replace('\r', ' ').replace('\n', ' '));
+        writer.newLine();
+        writer.flush();
+
+        @Nullable
+        Optional<String> response = responses.poll(timeout, TimeUnit.MILLISECONDS);
+        if (response == null) {
+            destroy();
+            throw new IOException("co-process '" + commandLine + "' did not respond within " + timeout + " ms");
+        }
+        if (response.isEmpty()) {
+            responses.add(response);
+            throw new IOException("co-process '" + commandLine + "' has terminated");
+        }
+        return response.get();
+    }
+
+    public boolean isAlive() {
+        return process.isAlive() && !responses.contains(Optional.empty());
+    }
+
+    /**
+     * Stops the process, closing its standard input first so that it can exit on its own.
+     */
+    public void destroy() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            // the process has already closed its input
+        }
+        process.destroy();
+        try {
+            if (!process.waitFor(1, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+        logger.debug("Stopped co-process '{}' with pid {}", commandLine, process.pid());
+    }
+}
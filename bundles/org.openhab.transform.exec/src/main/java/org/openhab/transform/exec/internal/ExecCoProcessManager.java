@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.exec.internal;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.common.ThreadPoolManager;
+import org.openhab.core.transform.TransformationException;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Manages the co-process pools of the exec transformation, one pool per command line. Pools which have not been used
+ * for {@link #IDLE_TIMEOUT_MINUTES} are closed, stopping their processes.
+ *
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+@Component(service = ExecCoProcessManager.class, configurationPid = "org.openhab.transform.exec")
+public class ExecCoProcessManager {
+
+    private static final String CONFIG_POOL_SIZE = "coprocessPoolSize";
+    private static final String CONFIG_TIMEOUT = "coprocessTimeout";
+    private static final int DEFAULT_POOL_SIZE = 1;
+    private static final long DEFAULT_TIMEOUT = 5000;
+    static final long IDLE_TIMEOUT_MINUTES = 10;
+
+    private final Logger logger = LoggerFactory.getLogger(ExecCoProcessManager.class);
+    private final Map<String, ExecCoProcessPool> pools = new ConcurrentHashMap<>();
+
+    private volatile int poolSize = DEFAULT_POOL_SIZE;
+    private volatile long timeout = DEFAULT_TIMEOUT;
+    private @Nullable ScheduledFuture<?> reaper;
+
+    @Activate
+    @Modified
+    protected void modified(@Nullable Map<String, Object> config) {
+        int newPoolSize = (int) getLong(config, CONFIG_POOL_SIZE, DEFAULT_POOL_SIZE);
+        long newTimeout = getLong(config, CONFIG_TIMEOUT, DEFAULT_TIMEOUT);
+        if (newPoolSize != poolSize) {
+            poolSize = newPoolSize;
+            // pools are created again with the new size on the next request
+            closeAll();
+        }
+        timeout = newTimeout;
+        logger.debug("Co-process pool size set to {}, timeout to {} ms", newPoolSize, newTimeout);
+        if (reaper == null) {
+            reaper = ThreadPoolManager.getScheduledPool(ThreadPoolManager.THREAD_POOL_NAME_COMMON)
+                    .scheduleWithFixedDelay(this::closeUnusedPools, 1, 1, TimeUnit.MINUTES);
+        }
+    }
+
+    private long getLong(@Nullable Map<String, Object> config, String key, long defaultValue) {
+        Object value = config != null ? config.get(key) : null;
+        if (value != null) {
+            try {
+                long parsed = Long.parseLong(value.toString().trim());
+                if (parsed > 0) {
+                    return parsed;
+                }
+            } catch (NumberFormatException e) {
+                // handled below
+            }
+            logger.warn("Ignoring invalid value '{}' for '{}', using {}", value, key, defaultValue);
+        }
+        return defaultValue;
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        ScheduledFuture<?> localReaper = reaper;
+        if (localReaper != null) {
+            localReaper.cancel(false);
+            reaper = null;
+        }
+        closeAll();
+    }
+
+    void closeUnusedPools() {
+        long idleNanos = TimeUnit.MINUTES.toNanos(IDLE_TIMEOUT_MINUTES);
+        pools.values().removeIf(pool -> {
+            boolean closed = pool.closeIfUnused(idleNanos);
+            if (closed) {
+                logger.debug("Closed the unused co-processes of '{}'", pool.getCommandLine());
+            }
+            return closed;
+        });
+    }
+
+    private void closeAll() {
+        pools.values().forEach(ExecCoProcessPool::close);
+        pools.clear();
+    }
+
+    /**
+     * Sends the input to a co-process of the command line, starting it if necessary.
+     *
+     * @param commandLine the command line of the co-process
+     * @param source the input to transform
+     * @return the response of the co-process
+     * @throws TransformationException if the co-process failed or did not respond in time
+     */
+    public String request(String commandLine, String source) throws TransformationException {
+        ExecCoProcessPool pool = pools.computeIfAbsent(commandLine, c -> new ExecCoProcessPool(c, poolSize));
+        try {
+            try {
+                return pool.request(source, timeout);
+            } catch (IOException e) {
+                if (!pool.isClosed()) {
+                    throw e;
+                }
+                // the pool was closed as unused, or reconfigured, while the request started
+                pools.remove(commandLine, pool);
+                pool = pools.computeIfAbsent(commandLine, c -> new ExecCoProcessPool(c, poolSize));
+                return pool.request(source, timeout);
+            }
+        } catch (IOException e) {
+            throw new TransformationException("Co-process transformation failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransformationException("Interrupted while waiting for co-process '" + commandLine + "'", e);
+        }
+    }
+
+    public Collection<ExecCoProcessPool> getPools() {
+        return pools.values();
+    }
+}
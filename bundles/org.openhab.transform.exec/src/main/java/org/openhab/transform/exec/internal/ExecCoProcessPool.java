@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.exec.internal;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Pool of co-processes for one command line.
+ *
+ * Processes are started on demand, up to the pool size, and serve one request at a time. A process which has
+ * terminated, or failed to answer in time, is replaced by a new one on the next request.
+ *
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class ExecCoProcessPool {
+
+    private final String commandLine;
+    private final int size;
+    private final Semaphore permits;
+    private final BlockingQueue<ExecCoProcess> idle = new LinkedBlockingQueue<>();
+    private volatile boolean closed;
+    private volatile long lastUsedNanos = System.nanoTime();
+
+    // metrics
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * @param commandLine the command line of the processes
+     * @param size maximum number of processes
+     */
+    public ExecCoProcessPool(String commandLine, int size) {
+        this.commandLine = commandLine;
+        this.size = size;
+        this.permits = new Semaphore(size, true);
+    }
+
+    /**
+     * Sends a request to an idle process of the pool.
+     *
+     * @param request the request
+     * @param timeout maximum time in milliseconds to wait for an idle process and for the response
+     * @return the response
+     * @throws IOException if no process was available in time, or the process could not be started, terminated or did
+     *             not respond in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public String request(String request, long timeout) throws IOException, InterruptedException {
+        long startTime = System.nanoTime();
+        lastUsedNanos = startTime;
+        if (closed) {
+            throw new IOException("co-process pool for '" + commandLine + "' is closed");
+        }
+        if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+            failures.incrementAndGet();
+            throw new IOException("all " + size + " co-processes of '" + commandLine + "' are busy");
+        }
+        @Nullable
+        ExecCoProcess process = null;
+        try {
+            process = idle.poll();
+            if (process != null && !process.isAlive()) {
+                process.destroy();
+                process = null;
+            }
+            if (process == null) {
+                process = new ExecCoProcess(commandLine);
+                started.incrementAndGet();
+            }
+            long remaining = timeout - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+            String response = process.request(request, Math.max(1, remaining));
+            record(System.nanoTime() - startTime);
+            return response;
+        } catch (IOException e) {
+            failures.incrementAndGet();
+            throw e;
+        } finally {
+            if (process != null) {
+                if (closed || !process.isAlive()) {
+                    process.destroy();
+                } else {
+                    idle.add(process);
+                }
+            }
+            permits.release();
+        }
+    }
+
+    private void record(long nanos) {
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Closes the pool if it has not been used for the given time and no request is in progress.
+     *
+     * @param idleNanos time in nanoseconds
+     * @return whether the pool is closed
+     */
+    public synchronized boolean closeIfUnused(long idleNanos) {
+        if (!closed && System.nanoTime() - lastUsedNanos >= idleNanos && permits.availablePermits() == size) {
+            close();
+        }
+        return closed;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Stops all idle processes, processes which are busy are stopped when their request finishes.
+     */
+    public void close() {
+        closed = true;
+        ExecCoProcess process;
+        while ((process = idle.poll()) != null) {
+            process.destroy();
+        }
+    }
+
+    public String getCommandLine() {
+        return commandLine;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return the number of processes which have been started, including restarts
+     */
+    public long getStarted() {
+        return started.get();
+    }
+
+    public double getAverageMillis() {
+        long requests = count.get();
+        return requests == 0 ? 0 : totalNanos.get() / (double) requests / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d requests, %d failed, %d processes started, avg %.3f ms, max %.3f ms",
+                commandLine, getCount(), getFailures(), getStarted(), getAverageMillis(), getMaxMillis());
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.exec.internal;
+
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.core.io.console.Console;
+import org.openhab.core.io.console.extensions.AbstractConsoleCommandExtension;
+import org.openhab.core.io.console.extensions.ConsoleCommandExtension;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+
+/**
+ * Console commands for the exec transformation service
+ *
+ * @author agent - Initial contribution
+ */
+@Component(service = ConsoleCommandExtension.class)
+@NonNullByDefault
+public class ExecConsoleCommandExtension extends AbstractConsoleCommandExtension {
+    private static final String SUBCMD_COPROCESSES = "coprocesses";
+
+    private final ExecCoProcessManager manager;
+
+    @Activate
+    public ExecConsoleCommandExtension(final @Reference ExecCoProcessManager manager) {
+        super("exectransform", "Interact with the exec transformation service.");
+        this.manager = manager;
+    }
+
+    @Override
+    public void execute(String[] args, Console console) {
+        if (args.length == 1 && SUBCMD_COPROCESSES.equals(args[0])) {
+            printCoProcesses(console);
+        } else {
+            printUsage(console);
+        }
+    }
+
+    @Override
+    public List<String> getUsages() {
+        return List.of(buildCommandUsage(SUBCMD_COPROCESSES,
+                "lists the requests, restarts and response times of all co-process command lines"));
+    }
+
+    private void printCoProcesses(Console console) {
+        if (manager.getPools().isEmpty()) {
+            console.println("No co-processes have been started yet.");
+            return;
+        }
+        manager.getPools().forEach(pool -> console.println(pool.toString()));
+    }
+}
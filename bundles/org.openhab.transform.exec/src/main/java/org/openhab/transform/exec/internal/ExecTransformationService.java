@@ -35,20 +35,27 @@ import org.slf4j.LoggerFactory;
 @NonNullByDefault
 @Component(property = { "smarthome.transform=EXEC" })
 public class ExecTransformationService implements TransformationService {
+    /* prefix of command lines which are executed as co-process */
+    static final String COPROCESS_PREFIX = "coprocess:";
+
     private final Logger logger = LoggerFactory.getLogger(ExecTransformationService.class);
     private final ExecTransformationWhitelistWatchService execTransformationWhitelistWatchService;
+    private final ExecCoProcessManager coProcessManager;
 
     @Activate
     public ExecTransformationService(
-            @Reference ExecTransformationWhitelistWatchService execTransformationWhitelistWatchService) {
+            @Reference ExecTransformationWhitelistWatchService execTransformationWhitelistWatchService,
+            @Reference ExecCoProcessManager coProcessManager) {
         this.execTransformationWhitelistWatchService = execTransformationWhitelistWatchService;
+        this.coProcessManager = coProcessManager;
     }
 
     /**
      * Transforms the input <code>source</code> by the command line.
      *
      * @param commandLine the command to execute. Command line should contain %s string, which will be replaced by the
-     *            input data.
+     *            input data. A command line starting with <code>coprocess:</code> is started once and kept running, it
+     *            gets the input data as a line on its standard input and answers with a line on its standard output.
      * @param source the input to transform
      */
     @Override
@@ -57,6 +64,16 @@ public class ExecTransformationService implements TransformationService {
             throw new TransformationException("the given parameters 'commandLine' and 'source' must not be null");
         }
 
+        if (commandLine.startsWith(COPROCESS_PREFIX)) {
+            String coProcessCommandLine = commandLine.substring(COPROCESS_PREFIX.length()).trim();
+            if (!execTransformationWhitelistWatchService.isWhitelisted(coProcessCommandLine)) {
+                logger.warn("Tried to execute '{}', but it is not contained in whitelist.", coProcessCommandLine);
+                return null;
+            }
+            logger.debug("about to transform '{}' by the co-process '{}'", source, coProcessCommandLine);
+            return coProcessManager.request(coProcessCommandLine, source);
+        }
+
         if (!execTransformationWhitelistWatchService.isWhitelisted(commandLine)) {
             logger.warn("Tried to execute '{}', but it is not contained in whitelist.", commandLine);
             return null;
@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.exec.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+/**
+ * @author agent - Initial contribution
+ */
+@DisabledOnOs(OS.WINDOWS)
+public class ExecCoProcessPoolTest {
+
+    private static final String SLOW_ECHO = "sh@@-c@@while read line; do sleep 1; echo \"$line\"; done";
+
+    private ExecCoProcessPool pool = new ExecCoProcessPool("cat", 1);
+
+    @AfterEach
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void testProcessIsReused() throws Exception {
+        assertEquals("a", pool.request("a", 1000));
+        assertEquals("b", pool.request("b", 1000));
+        assertEquals(2, pool.getCount());
+        assertEquals(0, pool.getFailures());
+        assertEquals(1, pool.getStarted());
+    }
+
+    @Test
+    public void testTerminatedProcessIsStartedAgain() throws Exception {
+        pool = new ExecCoProcessPool("sh@@-c@@read line; echo \"$line\"", 1);
+        assertEquals("a", pool.request("a", 1000));
+        // let the process exit
+        Thread.sleep(500);
+        assertEquals("b", pool.request("b", 1000));
+        assertEquals(2, pool.getStarted());
+    }
+
+    @Test
+    public void testAllProcessesBusy() throws Exception {
+        pool = new ExecCoProcessPool(SLOW_ECHO, 1);
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.request("first", 5000);
+            } catch (IOException | InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(200);
+        IOException e = assertThrows(IOException.class, () -> pool.request("second", 100));
+        assertTrue(e.getMessage().contains("busy"));
+        assertEquals("first", first.get(5, TimeUnit.SECONDS));
+        assertEquals(1, pool.getFailures());
+    }
+
+    @Test
+    public void testCloseIfUnused() throws Exception {
+        pool.request("a", 1000);
+        assertFalse(pool.closeIfUnused(TimeUnit.HOURS.toNanos(1)));
+        assertTrue(pool.closeIfUnused(0));
+        assertTrue(pool.isClosed());
+        assertThrows(IOException.class, () -> pool.request("b", 1000));
+    }
+
+    @Test
+    public void testBusyPoolIsNotClosed() throws Exception {
+        pool = new ExecCoProcessPool(SLOW_ECHO, 1);
+        CompletableFuture<String> request = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.request("first", 5000);
+            } catch (IOException | InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(200);
+        assertFalse(pool.closeIfUnused(0));
+        assertEquals("first", request.get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.exec.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+/**
+ * @author agent - Initial contribution
+ */
+@DisabledOnOs(OS.WINDOWS)
+public class ExecCoProcessTest {
+
+    @Test
+    public void testRequestResponse() throws Exception {
+        ExecCoProcess process = new ExecCoProcess("cat");
+        try {
+            assertEquals("hello", process.request("hello", 1000));
+            assertEquals("two lines", process.request("two\nlines", 1000));
+            assertTrue(process.isAlive());
+        } finally {
+            process.destroy();
+        }
+        assertFalse(process.isAlive());
+    }
+
+    @Test
+    public void testTimeoutStopsProcess() throws Exception {
+        ExecCoProcess process = new ExecCoProcess("sleep 10");
+        IOException e = assertThrows(IOException.class, () -> process.request("hello", 100));
+        assertTrue(e.getMessage().contains("did not respond"));
+        assertFalse(process.isAlive());
+    }
+
+    @Test
+    public void testTerminatedProcess() throws Exception {
+        ExecCoProcess process = new ExecCoProcess("sh@@-c@@read line; echo \"got $line\"");
+        try {
+            assertEquals("got first one", process.request("first one", 1000));
+            IOException e = assertThrows(IOException.class, () -> process.request("second", 1000));
+            assertTrue(e.getMessage().contains("terminated"));
+            assertFalse(process.isAlive());
+        } finally {
+            process.destroy();
+        }
+    }
+
+    @Test
+    public void testSplitCommandLine() {
+        assertArrayEquals(new String[] { "/usr/bin/python3", "convert.py", "-v" },
+                ExecCoProcess.splitCommandLine("/usr/bin/python3 convert.py -v"));
+        assertArrayEquals(new String[] { "/usr/bin/python3", "/etc/openhab/my scripts/convert.py" },
+                ExecCoProcess.splitCommandLine("/usr/bin/python3@@/etc/openhab/my scripts/convert.py"));
+    }
+}
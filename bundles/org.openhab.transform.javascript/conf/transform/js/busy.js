@@ -0,0 +1,6 @@
+(function(i) {
+    var end = Date.now() + 1000;
+    while (Date.now() < end) {
+    }
+    return i;
+})(input)
@@ -0,0 +1,3 @@
+(function(i) {
+    return undefinedFunction(i);
+})(input)
@@ -0,0 +1,5 @@
+(function(i) {
+    var result = typeof previousInput === 'undefined' ? 'clean' : 'leaked';
+    previousInput = i;
+    return result;
+})(input)
@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.javascript.internal;
+
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.core.io.console.Console;
+import org.openhab.core.io.console.extensions.AbstractConsoleCommandExtension;
+import org.openhab.core.io.console.extensions.ConsoleCommandExtension;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+
+/**
+ * Console commands for the JavaScript transformation service
+ *
+ * @author agent - Initial contribution
+ */
+@Component(service = ConsoleCommandExtension.class)
+@NonNullByDefault
+public class JavaScriptConsoleCommandExtension extends AbstractConsoleCommandExtension {
+    private static final String SUBCMD_METRICS = "metrics";
+
+    private final JavaScriptEngineManager manager;
+
+    @Activate
+    public JavaScriptConsoleCommandExtension(final @Reference JavaScriptEngineManager manager) {
+        super("jstransform", "Interact with the JavaScript transformation service.");
+        this.manager = manager;
+    }
+
+    @Override
+    public void execute(String[] args, Console console) {
+        if (args.length == 1 && SUBCMD_METRICS.equals(args[0])) {
+            printMetrics(console);
+        } else {
+            printUsage(console);
+        }
+    }
+
+    @Override
+    public List<String> getUsages() {
+        return List.of(buildCommandUsage(SUBCMD_METRICS,
+                "lists the execution times of all evaluated scripts, the slowest on average first"));
+    }
+
+    private void printMetrics(Console console) {
+        if (manager.getMetrics().isEmpty()) {
+            console.println("No scripts have been evaluated yet.");
+            return;
+        }
+        manager.getMetrics().values().stream()
+                .sorted(Comparator.comparingDouble(JavaScriptMetrics::getAverageMillis).reversed())
+                .forEach(metrics -> console.println(metrics.toString()));
+        int running = manager.getRunningTimedEvaluations();
+        if (running > 0) {
+            console.println(running + " evaluations are running, including those which exceeded the timeout.");
+        }
+    }
+}
@@ -18,8 +18,18 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.script.Bindings;
 import javax.script.Compilable;
 import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
@@ -27,53 +37,211 @@ import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.common.NamedThreadFactory;
 import org.openhab.core.transform.TransformationException;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Simple cache for compiled JavaScript files.
  *
+ * Lookups do not lock. A script which is not in the cache is compiled by the first thread requesting it, other threads
+ * requesting the same script wait for that compilation, while scripts which are already compiled stay available.
+ *
+ * A compiled script is shared by all threads. Each evaluation gets new bindings, and thus a global scope of its own,
+ * so that variables a script assigns do not leak into other evaluations.
+ *
+ * With a timeout, scripts are evaluated on threads owned by the manager. The script engine cannot interrupt a script,
+ * so a script which exceeds the timeout keeps its thread busy until it finishes; further evaluations use other threads.
+ * The number of these threads is limited by <code>maxevaluations</code>. Once that many evaluations are running or
+ * exceeded the timeout, further evaluations fail immediately instead of starting more threads.
+ *
  * @author Thomas Kordelle - pre compiled scripts
  *
  */
 @NonNullByDefault
-@Component(service = JavaScriptEngineManager.class)
+@Component(service = JavaScriptEngineManager.class, configurationPid = "org.openhab.transform.javascript")
 public class JavaScriptEngineManager {
 
+    private static final String CONFIG_TIMEOUT = "timeout";
+    private static final String CONFIG_MAX_EVALUATIONS = "maxevaluations";
+    private static final int DEFAULT_MAX_EVALUATIONS = 16;
+
     private final Logger logger = LoggerFactory.getLogger(JavaScriptEngineManager.class);
     private final ScriptEngineManager manager = new ScriptEngineManager();
-    /* keep memory foot print low. max 2 concurrent threads are estimated */
-    private final Map<String, CompiledScript> compiledScriptMap = new ConcurrentHashMap<>(4, 0.5f, 2);
+    private final Map<String, CompletableFuture<CompiledScript>> compiledScriptMap = new ConcurrentHashMap<>();
+    private final Map<String, JavaScriptMetrics> metrics = new ConcurrentHashMap<>();
+    /*
+     * not a shared pool, as scripts exceeding the timeout keep running on their threads. Without a queue, an
+     * evaluation is rejected if all threads are busy.
+     */
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(0, DEFAULT_MAX_EVALUATIONS, 60,
+            TimeUnit.SECONDS, new SynchronousQueue<>(), new NamedThreadFactory("javascript-transformation"));
+    private final AtomicInteger runningTimedEvaluations = new AtomicInteger();
+
+    /* maximum evaluation time in milliseconds, 0 to wait without limit */
+    private volatile long timeout;
+
+    @Activate
+    @Modified
+    protected void modified(@Nullable Map<String, Object> config) {
+        long newTimeout = 0;
+        Object value = config != null ? config.get(CONFIG_TIMEOUT) : null;
+        if (value != null) {
+            try {
+                newTimeout = Math.max(0, Long.parseLong(value.toString().trim()));
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring invalid JavaScript evaluation timeout '{}'", value);
+            }
+        }
+        int maxEvaluations = DEFAULT_MAX_EVALUATIONS;
+        value = config != null ? config.get(CONFIG_MAX_EVALUATIONS) : null;
+        if (value != null) {
+            try {
+                maxEvaluations = Math.max(1, Integer.parseInt(value.toString().trim()));
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring invalid maximum number of JavaScript evaluations '{}'", value);
+            }
+        }
+        executor.setMaximumPoolSize(maxEvaluations);
+        timeout = newTimeout;
+        logger.debug("JavaScript evaluation timeout set to {} ms, at most {} evaluations", newTimeout,
+                maxEvaluations);
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Evaluates a script, which is compiled and put into the cache if it is not in the cache yet.
+     *
+     * @param filename name of the JavaScript file
+     * @param input value of the 'input' variable
+     * @return the result of the script
+     * @throws TransformationException if the script could not be compiled, failed or timed out
+     */
+    protected String eval(final String filename, final String input) throws TransformationException {
+        final CompiledScript script = getScript(filename);
+        final Bindings bindings = script.getEngine().createBindings();
+        bindings.put("input", input);
+
+        final long startTime = System.nanoTime();
+        boolean failed = true;
+        try {
+            final long currentTimeout = timeout;
+            final Object result = currentTimeout > 0 ? evalWithTimeout(filename, script, bindings, currentTimeout)
+                    : script.eval(bindings);
+            failed = false;
+            return String.valueOf(result);
+        } catch (ScriptException e) {
+            throw new TransformationException("An error occurred while executing script. " + e.getMessage(), e);
+        } finally {
+            metrics.computeIfAbsent(filename, JavaScriptMetrics::new).record(System.nanoTime() - startTime, failed);
+        }
+    }
+
+    private Object evalWithTimeout(String filename, CompiledScript script, Bindings bindings, long timeoutMillis)
+            throws ScriptException, TransformationException {
+        runningTimedEvaluations.incrementAndGet();
+        final Future<Object> future;
+        try {
+            future = executor.submit(() -> {
+                try {
+                    return script.eval(bindings);
+                } finally {
+                    runningTimedEvaluations.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            runningTimedEvaluations.decrementAndGet();
+            if (executor.isShutdown()) {
+                throw new TransformationException("JavaScript transformation has been stopped", e);
+            }
+            logger.warn("Not evaluating JavaScript {}, {} evaluations are running or exceeded the timeout", filename,
+                    executor.getMaximumPoolSize());
+            throw new TransformationException("Too many JavaScript evaluations are running or exceeded the timeout, "
+                    + "not evaluating " + filename, e);
+        }
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // the script engine ignores the interruption, the script keeps running until it finishes
+            future.cancel(true);
+            logger.warn("JavaScript {} did not finish within {} ms and keeps running in the background. "
+                    + "Evaluations still running: {}", filename, timeoutMillis, runningTimedEvaluations.get());
+            throw new TransformationException(
+                    "JavaScript " + filename + " did not finish within " + timeoutMillis + " ms");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof ScriptException) {
+                throw (ScriptException) cause;
+            }
+            throw new TransformationException("An error occurred while executing script. " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new TransformationException("Interrupted while executing JavaScript " + filename, e);
+        }
+    }
 
     /**
-     * Get a pre compiled script {@link CompiledScript} from cache. If it is not in the cache, then load it from
-     * storage and put a pre compiled version into the cache.
+     * Get a pre compiled script from cache. If it is not in the cache, then load it from storage and put a pre
+     * compiled version into the cache.
      *
      * @param filename name of the JavaScript file to load
-     * @return a pre compiled script {@link CompiledScript}
+     * @return the pre compiled script
      * @throws TransformationException if compile of JavaScript failed
      */
     protected CompiledScript getScript(final String filename) throws TransformationException {
-        synchronized (compiledScriptMap) {
-            if (compiledScriptMap.containsKey(filename)) {
-                logger.debug("Loading JavaScript {} from cache.", filename);
-                return compiledScriptMap.get(filename);
-            } else {
-                final String path = TransformationScriptWatcher.TRANSFORM_FOLDER + File.separator + filename;
-                logger.debug("Loading script {} from storage ", path);
-                try (final Reader reader = new InputStreamReader(new FileInputStream(path))) {
-                    final ScriptEngine engine = manager.getEngineByName("javascript");
-                    final CompiledScript cScript = ((Compilable) engine).compile(reader);
-                    logger.debug("Putting compiled JavaScript {} to cache.", cScript);
-                    compiledScriptMap.put(filename, cScript);
-                    return cScript;
-                } catch (IOException | ScriptException e) {
-                    throw new TransformationException("An error occurred while loading JavaScript. " + e.getMessage(),
-                            e);
+        CompletableFuture<CompiledScript> future = compiledScriptMap.get(filename);
+        if (future == null) {
+            final CompletableFuture<CompiledScript> newFuture = new CompletableFuture<>();
+            future = compiledScriptMap.putIfAbsent(filename, newFuture);
+            if (future == null) {
+                future = newFuture;
+                try {
+                    newFuture.complete(compile(filename));
+                } catch (TransformationException | RuntimeException e) {
+                    // do not cache failures, the file may be fixed
+                    compiledScriptMap.remove(filename, newFuture);
+                    newFuture.completeExceptionally(e);
                 }
             }
+        } else {
+            logger.debug("Loading JavaScript {} from cache.", filename);
+        }
+
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof TransformationException) {
+                throw (TransformationException) cause;
+            }
+            throw new TransformationException("An error occurred while loading JavaScript. " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransformationException("Interrupted while loading JavaScript " + filename, e);
+        }
+    }
+
+    private CompiledScript compile(final String filename) throws TransformationException {
+        final String path = TransformationScriptWatcher.TRANSFORM_FOLDER + File.separator + filename;
+        logger.debug("Loading script {} from storage ", path);
+        try (final Reader reader = new InputStreamReader(new FileInputStream(path))) {
+            final ScriptEngine engine = manager.getEngineByName("javascript");
+            final CompiledScript cScript = ((Compilable) engine).compile(reader);
+            logger.debug("Putting compiled JavaScript {} to cache.", cScript);
+            return cScript;
+        } catch (IOException | ScriptException e) {
+            throw new TransformationException("An error occurred while loading JavaScript. " + e.getMessage(), e);
         }
     }
 
@@ -86,4 +254,19 @@ public class JavaScriptEngineManager {
         logger.debug("Removing JavaScript {} from cache.", fileName);
         compiledScriptMap.remove(fileName);
     }
+
+    /**
+     * Returns the execution time metrics of all scripts evaluated since the start.
+     */
+    public Map<String, JavaScriptMetrics> getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the number of evaluations with a timeout which are still running, including those which exceeded the
+     * timeout.
+     */
+    public int getRunningTimedEvaluations() {
+        return runningTimedEvaluations.get();
+    }
 }
@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.javascript.internal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * Execution time metrics of a JavaScript file.
+ *
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class JavaScriptMetrics {
+
+    private final String filename;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public JavaScriptMetrics(String filename) {
+        this.filename = filename;
+    }
+
+    void record(long nanos, boolean failed) {
+        count.incrementAndGet();
+        if (failed) {
+            failures.incrementAndGet();
+        }
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public double getAverageMillis() {
+        long evaluations = count.get();
+        return evaluations == 0 ? 0 : totalNanos.get() / (double) evaluations / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d evaluations, %d failed, avg %.3f ms, max %.3f ms", filename, getCount(),
+                getFailures(), getAverageMillis(), getMaxMillis());
+    }
+}
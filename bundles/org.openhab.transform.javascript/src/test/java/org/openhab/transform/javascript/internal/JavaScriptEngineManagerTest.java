@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.javascript.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.Map;
+
+import javax.script.ScriptEngineManager;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openhab.core.transform.TransformationException;
+
+/**
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+public class JavaScriptEngineManagerTest {
+
+    private @NonNullByDefault({}) JavaScriptEngineManager manager;
+
+    @BeforeEach
+    public void init() {
+        // the JavaScript engine is not part of every JRE
+        assumeTrue(new ScriptEngineManager().getEngineByName("javascript") != null);
+        manager = new JavaScriptEngineManager();
+        manager.modified(null);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (manager != null) {
+            manager.deactivate();
+        }
+    }
+
+    @Test
+    public void testEval() throws TransformationException {
+        assertEquals("foo!", manager.eval("js/echo.js", "foo"));
+        assertEquals("bar!", manager.eval("js/echo.js", "bar"));
+        assertEquals(2, manager.getMetrics().get("js/echo.js").getCount());
+    }
+
+    @Test
+    public void testCompiledScriptIsCached() throws TransformationException {
+        assertSame(manager.getScript("js/echo.js"), manager.getScript("js/echo.js"));
+
+        Object script = manager.getScript("js/echo.js");
+        manager.removeFromCache("js/echo.js");
+        assertNotSame(script, manager.getScript("js/echo.js"));
+    }
+
+    @Test
+    public void testGlobalsDoNotLeakBetweenEvaluations() throws TransformationException {
+        assertEquals("clean", manager.eval("js/global.js", "first"));
+        assertEquals("clean", manager.eval("js/global.js", "second"));
+    }
+
+    @Test
+    public void testGlobalsDoNotLeakBetweenEvaluationsWithTimeout() throws TransformationException {
+        manager.modified(Map.of("timeout", "5000"));
+
+        assertEquals("clean", manager.eval("js/global.js", "first"));
+        assertEquals("clean", manager.eval("js/global.js", "second"));
+    }
+
+    @Test
+    public void testScriptError() {
+        assertThrows(TransformationException.class, () -> manager.eval("js/error.js", "foo"));
+        assertEquals(1, manager.getMetrics().get("js/error.js").getFailures());
+    }
+
+    @Test
+    public void testMissingScript() {
+        assertThrows(TransformationException.class, () -> manager.eval("js/missing.js", "foo"));
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        manager.modified(Map.of("timeout", "100"));
+
+        assertThrows(TransformationException.class, () -> manager.eval("js/busy.js", "foo"));
+        // the script cannot be interrupted and keeps running, without blocking other evaluations
+        assertEquals(1, manager.getRunningTimedEvaluations());
+        assertEquals("foo!", manager.eval("js/echo.js", "foo"));
+
+        long end = System.currentTimeMillis() + 5000;
+        while (manager.getRunningTimedEvaluations() > 0 && System.currentTimeMillis() < end) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, manager.getRunningTimedEvaluations());
+    }
+
+    @Test
+    public void testEvaluationsExceedingTheTimeoutAreLimited() throws Exception {
+        manager.modified(Map.of("timeout", "100", "maxevaluations", "1"));
+
+        assertThrows(TransformationException.class, () -> manager.eval("js/busy.js", "foo"));
+        // the only thread is still busy with the script which exceeded the timeout
+        TransformationException e = assertThrows(TransformationException.class,
+                () -> manager.eval("js/echo.js", "foo"));
+        assertTrue(e.getMessage().startsWith("Too many JavaScript evaluations"));
+
+        long end = System.currentTimeMillis() + 5000;
+        while (manager.getRunningTimedEvaluations() > 0 && System.currentTimeMillis() < end) {
+            Thread.sleep(50);
+        }
+        // give the thread time to become idle after the script finished
+        Thread.sleep(100);
+        assertEquals("foo!", manager.eval("js/echo.js", "foo"));
+    }
+}
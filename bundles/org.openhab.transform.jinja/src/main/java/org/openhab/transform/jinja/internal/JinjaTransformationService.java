@@ -16,6 +16,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -30,12 +31,23 @@ import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.hubspot.jinjava.Jinjava;
+import com.hubspot.jinjava.interpret.Context;
+import com.hubspot.jinjava.interpret.FatalTemplateErrorsException;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.interpret.TemplateError;
+import com.hubspot.jinjava.interpret.TemplateError.ErrorType;
+import com.hubspot.jinjava.tree.Node;
 
 /**
  * <p>
  * The implementation of {@link TransformationService} which transforms the input by Jinja2 Expressions.
  *
+ * <p>
+ * Templates are parsed once and the parsed trees are kept in a bounded LRU cache keyed by the template text. Templates
+ * with parse errors are not cached, but rendered as before.
+ *
  * @author Jochen Klein - Initial contribution
  *
  */
@@ -43,10 +55,24 @@ import com.hubspot.jinjava.Jinjava;
 @Component(property = { "smarthome.transform=JINJA" })
 public class JinjaTransformationService implements TransformationService {
 
+    static final int TEMPLATE_CACHE_SIZE = 128;
+
+    /* an ObjectReader is immutable and thread-safe */
+    private static final ObjectReader JSON_READER = new ObjectMapper().reader();
+
     private final Logger logger = LoggerFactory.getLogger(JinjaTransformationService.class);
 
     private Jinjava jinjava = new Jinjava();
 
+    private final Map<String, Node> templateCache = new LinkedHashMap<>(32, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.@Nullable Entry<String, Node> eldest) {
+            return size() > TEMPLATE_CACHE_SIZE;
+        }
+    };
+
     /**
      * Transforms the input <code>value</code> by Jinja template.
      *
@@ -62,19 +88,72 @@ public class JinjaTransformationService implements TransformationService {
         bindings.put("value", value);
 
         try {
-            JsonNode tree = new ObjectMapper().readTree(value);
+            JsonNode tree = JSON_READER.readTree(value);
             bindings.put("value_json", toObject(tree));
         } catch (IOException e) {
             // ok, then value_json is null...
         }
 
-        String transformationResult = jinjava.render(template, bindings);
+        Node tree = getParsedTemplate(template);
+        String transformationResult = tree != null ? render(template, tree, bindings)
+                : jinjava.render(template, bindings);
 
         logger.debug("transformation resulted in '{}'", transformationResult);
 
         return transformationResult;
     }
 
+    /**
+     * Returns the parsed template from the cache, or parses and caches it.
+     *
+     * @return the parsed template, <code>null</code> if the template has errors
+     */
+    private @Nullable Node getParsedTemplate(String template) {
+        synchronized (templateCache) {
+            Node tree = templateCache.get(template);
+            if (tree != null) {
+                return tree;
+            }
+        }
+        JinjavaInterpreter interpreter = jinjava.newInterpreter();
+        Node tree;
+        JinjavaInterpreter.pushCurrent(interpreter);
+        try {
+            tree = interpreter.parse(template);
+        } finally {
+            JinjavaInterpreter.popCurrent();
+        }
+        if (!interpreter.getErrors().isEmpty()) {
+            // let the renderer report the errors as it did for uncached templates
+            return null;
+        }
+        synchronized (templateCache) {
+            templateCache.put(template, tree);
+        }
+        return tree;
+    }
+
+    /**
+     * Renders a parsed template the same way as {@link Jinjava#render(String, Map)}.
+     */
+    private String render(String template, Node tree, Map<String, @Nullable Object> bindings) {
+        Context context = new Context(jinjava.getGlobalContext(), bindings);
+        JinjavaInterpreter interpreter = new JinjavaInterpreter(jinjava, context, jinjava.getGlobalConfig());
+        JinjavaInterpreter.pushCurrent(interpreter);
+        try {
+            String result = interpreter.render(tree, true);
+            List<TemplateError> errors = interpreter.getErrors();
+            for (TemplateError error : errors) {
+                if (error.getSeverity() == ErrorType.FATAL) {
+                    throw new FatalTemplateErrorsException(template, errors);
+                }
+            }
+            return result;
+        } finally {
+            JinjavaInterpreter.popCurrent();
+        }
+    }
+
     private static @Nullable Object toObject(JsonNode node) {
         switch (node.getNodeType()) {
             case ARRAY: {
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.jinja.internal;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.core.transform.TransformationException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hubspot.jinjava.Jinjava;
+
+/**
+ * Compares transformations with the parsed templates cached by the service with parsing the template and creating an
+ * {@link ObjectMapper} for every transformation, as the service did before.
+ *
+ * This is not run by the build. Run the main method with the test class path, e.g. from the IDE.
+ *
+ * @author agent - Initial contribution
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+@NonNullByDefault({})
+public class JinjaTransformationServiceBenchmark {
+
+    private static final String VALUE = "{\"Time\":\"2019-01-05T22:45:12\","
+            + "\"AM2301\":{\"Temperature\":4.7,\"Humidity\":99.9},\"TempUnit\":\"C\","
+            + "\"Sensors\":[{\"id\":1,\"on\":true},{\"id\":2,\"on\":false},{\"id\":3,\"on\":true}]}";
+
+    @Param({ "{{value_json['AM2301'].Temperature}}",
+            "{% for sensor in value_json.Sensors %}{% if sensor.on %}{{ sensor.id }} {% endif %}{% endfor %}" })
+    private String template;
+
+    private JinjaTransformationService processor;
+    private Jinjava jinjava;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        processor = new JinjaTransformationService();
+        jinjava = new Jinjava();
+    }
+
+    @Benchmark
+    public String transformCached() throws TransformationException {
+        return processor.transform(template, VALUE);
+    }
+
+    @Benchmark
+    public String transformParsingEachTime() throws IOException {
+        Map<String, Object> bindings = new HashMap<>();
+        bindings.put("value", VALUE);
+        bindings.put("value_json", new ObjectMapper().readValue(VALUE, Object.class));
+        return jinjava.render(template, bindings);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JinjaTransformationServiceBenchmark.class.getSimpleName()).build())
+                .run();
+    }
+}
@@ -59,4 +59,13 @@ public class JinjaTransformationServiceTest {
         // Asserts
         assertEquals("Hello world!", transformedResponse);
     }
+
+    @Test
+    public void testCachedTemplateWithDifferentValues() throws TransformationException {
+        String template = "{% for v in value_json.readings %}{{ v * 2 }};{% endfor %}{{ value_json.unit }}";
+
+        assertEquals("2;4;W", processor.transform(template, "{\"readings\":[1,2],\"unit\":\"W\"}"));
+        assertEquals("6;kW", processor.transform(template, "{\"readings\":[3],\"unit\":\"kW\"}"));
+        assertEquals("", processor.transform(template, "not json"));
+    }
 }
@@ -12,7 +12,9 @@
  */
 package org.openhab.transform.jsonpath.internal;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
@@ -24,6 +26,7 @@ import org.osgi.service.component.annotations.Component;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.jayway.jsonpath.DocumentContext;
 import com.jayway.jsonpath.InvalidJsonException;
 import com.jayway.jsonpath.InvalidPathException;
 import com.jayway.jsonpath.JsonPath;
@@ -33,6 +36,11 @@ import com.jayway.jsonpath.PathNotFoundException;
  * <p>
  * The implementation of {@link TransformationService} which transforms the input by JSonPath Expressions.
  *
+ * <p>
+ * Compiled expressions are kept in a bounded LRU cache. A payload is often transformed by many channels with different
+ * expressions, so the most recently parsed payloads are kept as well and every payload is parsed only once. Both are
+ * safe to share between threads, as reading does not modify them.
+ *
  * @author Gaël L'hopital
  * @author Sebastian Janzen
  *
@@ -41,8 +49,32 @@ import com.jayway.jsonpath.PathNotFoundException;
 @Component(property = { "smarthome.transform=JSONPATH" })
 public class JSonPathTransformationService implements TransformationService {
 
+    static final int PATH_CACHE_SIZE = 256;
+    static final int DOCUMENT_CACHE_SIZE = 16;
+    /* larger payloads are not kept in the document cache to bound its memory use */
+    static final int MAX_CACHED_SOURCE_LENGTH = 256 * 1024;
+
     private final Logger logger = LoggerFactory.getLogger(JSonPathTransformationService.class);
 
+    private final Map<String, JsonPath> pathCache = new LinkedHashMap<>(64, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.@Nullable Entry<String, JsonPath> eldest) {
+            return size() > PATH_CACHE_SIZE;
+        }
+    };
+
+    /* keyed by the payload itself, its hash code is cached by String and equals is only called on a match */
+    private final Map<String, DocumentContext> documentCache = new LinkedHashMap<>(32, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.@Nullable Entry<String, DocumentContext> eldest) {
+            return size() > DOCUMENT_CACHE_SIZE;
+        }
+    };
+
     /**
      * Transforms the input <code>source</code> by JSonPath expression.
      *
@@ -60,7 +92,7 @@ public class JSonPathTransformationService implements TransformationService {
         logger.debug("about to transform '{}' by the function '{}'", source, jsonPathExpression);
 
         try {
-            Object transformationResult = JsonPath.read(source, jsonPathExpression);
+            Object transformationResult = getDocument(source).read(getPath(jsonPathExpression));
             logger.debug("transformation resulted in '{}'", transformationResult);
             if (transformationResult == null) {
                 return null;
@@ -76,6 +108,49 @@ public class JSonPathTransformationService implements TransformationService {
         }
     }
 
+    private JsonPath getPath(String jsonPathExpression) {
+        synchronized (pathCache) {
+            JsonPath path = pathCache.get(jsonPathExpression);
+            if (path != null) {
+                return path;
+            }
+        }
+        JsonPath path = JsonPath.compile(jsonPathExpression);
+        synchronized (pathCache) {
+            pathCache.put(jsonPathExpression, path);
+        }
+        return path;
+    }
+
+    private DocumentContext getDocument(String source) {
+        synchronized (documentCache) {
+            DocumentContext document = documentCache.get(source);
+            if (document != null) {
+                return document;
+            }
+        }
+        // parse outside of the lock, a payload parsed concurrently by two threads is simply stored twice
+        DocumentContext document = JsonPath.parse(source);
+        if (source.length() <= MAX_CACHED_SOURCE_LENGTH) {
+            synchronized (documentCache) {
+                documentCache.put(source, document);
+            }
+        }
+        return document;
+    }
+
+    int getPathCacheSize() {
+        synchronized (pathCache) {
+            return pathCache.size();
+        }
+    }
+
+    int getDocumentCacheSize() {
+        synchronized (documentCache) {
+            return documentCache.size();
+        }
+    }
+
     private String flattenList(List<?> list) {
         if (list.size() == 1) {
             return list.get(0).toString();
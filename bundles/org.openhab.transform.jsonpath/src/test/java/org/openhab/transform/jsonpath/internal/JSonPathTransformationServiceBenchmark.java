@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.jsonpath.internal;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.core.transform.TransformationException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.jayway.jsonpath.JsonPath;
+
+/**
+ * Compares transforming a payload by the expressions of several channels through the service, which parses the
+ * payload once and compiles every expression once, with parsing and compiling for every expression, as the service
+ * did before.
+ *
+ * Every invocation transforms a new payload, like a thing which polls a device, so the payload is parsed once per
+ * invocation by the service as well.
+ *
+ * This is not run by the build. Run the main method with the test class path, e.g. from the IDE.
+ *
+ * @author agent - Initial contribution
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+@NonNullByDefault({})
+public class JSonPathTransformationServiceBenchmark {
+
+    private static final String[] EXPRESSIONS = { "$.current.temperature", "$.current.humidity",
+            "$.current.pressure", "$.current.wind.speed", "$.current.wind.direction", "$.current.condition",
+            "$.forecast[0].high", "$.forecast[0].low", "$.forecast[1].high", "$.forecast[1].low" };
+
+    @Param({ "1", "10" })
+    private int channels;
+
+    private JSonPathTransformationService processor;
+    private int sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        processor = new JSonPathTransformationService();
+    }
+
+    private String nextPayload() {
+        StringBuilder payload = new StringBuilder("{\"sequence\":").append(sequence++).append(",\"current\":{")
+                .append("\"temperature\":21.5,\"humidity\":45,\"pressure\":1013.2,")
+                .append("\"wind\":{\"speed\":3.4,\"direction\":\"NW\"},\"condition\":\"cloudy\"},\"forecast\":[");
+        for (int day = 0; day < 7; day++) {
+            payload.append(day == 0 ? "" : ",").append("{\"day\":").append(day)
+                    .append(",\"high\":24.1,\"low\":12.3,\"condition\":\"sunny\",\"icon\":\"/icons/sunny.png\"}");
+        }
+        return payload.append("]}").toString();
+    }
+
+    @Benchmark
+    public void transformSharingTheDocument(Blackhole blackhole) throws TransformationException {
+        String payload = nextPayload();
+        for (int i = 0; i < channels; i++) {
+            blackhole.consume(processor.transform(EXPRESSIONS[i], payload));
+        }
+    }
+
+    @Benchmark
+    public void transformParsingEachTime(Blackhole blackhole) {
+        String payload = nextPayload();
+        for (int i = 0; i < channels; i++) {
+            blackhole.consume(JsonPath.<Object> read(payload, EXPRESSIONS[i]));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JSonPathTransformationServiceBenchmark.class.getSimpleName()).build())
+                .run();
+    }
+}
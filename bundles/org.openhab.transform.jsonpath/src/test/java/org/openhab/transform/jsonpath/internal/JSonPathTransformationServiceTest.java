@@ -127,4 +127,32 @@ public class JSonPathTransformationServiceTest {
         String transformedResponse = processor.transform("$.data", json);
         assertEquals(list, transformedResponse);
     }
+
+    @Test
+    public void testSameSourceWithDifferentPaths() throws TransformationException {
+        String json = "{\"temperature\":21.5,\"humidity\":45,\"battery\":{\"level\":87,\"low\":false}}";
+        for (int i = 0; i < 3; i++) {
+            assertEquals("21.5", processor.transform("$.temperature", json));
+            assertEquals("45", processor.transform("$.humidity", json));
+            assertEquals("87", processor.transform("$.battery.level", json));
+            assertEquals("false", processor.transform("$.battery.low", json));
+        }
+        assertEquals("22", processor.transform("$.temperature", json.replace("21.5", "22")));
+        assertEquals("21.5", processor.transform("$.temperature", json));
+    }
+
+    @Test
+    public void testCacheEviction() throws TransformationException {
+        for (int i = 0; i < JSonPathTransformationService.PATH_CACHE_SIZE * 2; i++) {
+            String json = "{\"value" + i + "\":" + i + "}";
+            assertEquals(String.valueOf(i), processor.transform("$.value" + i, json));
+            assertEquals(String.valueOf(i), processor.transform("$..value" + i, json));
+        }
+        assertEquals(JSonPathTransformationService.PATH_CACHE_SIZE, processor.getPathCacheSize());
+        assertEquals(JSonPathTransformationService.DOCUMENT_CACHE_SIZE, processor.getDocumentCacheSize());
+
+        // evicted entries are compiled and parsed again
+        assertEquals("0", processor.transform("$.value0", "{\"value0\":0}"));
+        assertEquals(JSonPathTransformationService.PATH_CACHE_SIZE, processor.getPathCacheSize());
+    }
 }
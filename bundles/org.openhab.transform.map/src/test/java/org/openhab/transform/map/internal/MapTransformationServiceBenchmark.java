@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.map.internal;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.core.transform.TransformationException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares lookups in the immutable map loaded by the service with lookups in a {@link Properties} table, as the
+ * service did before. The lookups run on several threads, as a <code>Properties</code> table locks on every lookup.
+ *
+ * This is not run by the build. Run the main method with the test class path, e.g. from the IDE.
+ *
+ * @author agent - Initial contribution
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class MapTransformationServiceBenchmark {
+
+    private static final int ENTRIES = 200;
+
+    private final MapTransformationService processor = new MapTransformationService();
+    private Map<String, String> mapping;
+    private final Properties properties = new Properties();
+
+    @State(Scope.Thread)
+    public static class Keys {
+        private int counter;
+
+        private String next() {
+            // every tenth key is not in the map and falls back to the default entry
+            return "key" + (counter++ % (ENTRIES + ENTRIES / 10));
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, TransformationException {
+        File file = File.createTempFile("benchmark", ".map");
+        try {
+            try (FileWriter writer = new FileWriter(file)) {
+                for (int i = 0; i < ENTRIES; i++) {
+                    writer.write("key" + i + "=value" + i + "\n");
+                }
+                writer.write("=default\n");
+            }
+            mapping = processor.internalLoadTransform(file.getAbsolutePath());
+            try (FileReader reader = new FileReader(file)) {
+                properties.load(reader);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Benchmark
+    public String transformWithMap(Keys keys) throws TransformationException {
+        return processor.internalTransform(mapping, keys.next());
+    }
+
+    @Benchmark
+    public String transformWithProperties(Keys keys) {
+        String target = properties.getProperty(keys.next());
+        return target != null ? target : properties.getProperty("");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MapTransformationServiceBenchmark.class.getSimpleName()).build())
+                .run();
+    }
+}
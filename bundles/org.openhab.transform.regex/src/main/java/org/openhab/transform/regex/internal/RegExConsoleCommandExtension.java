@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.regex.internal;
+
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.core.io.console.Console;
+import org.openhab.core.io.console.extensions.AbstractConsoleCommandExtension;
+import org.openhab.core.io.console.extensions.ConsoleCommandExtension;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+
+/**
+ * Console commands for the regular expression transformation service
+ *
+ * @author agent - Initial contribution
+ */
+@Component(service = ConsoleCommandExtension.class)
+@NonNullByDefault
+public class RegExConsoleCommandExtension extends AbstractConsoleCommandExtension {
+    private static final String SUBCMD_METRICS = "metrics";
+
+    private final RegExTransformationService service;
+
+    @Activate
+    public RegExConsoleCommandExtension(final @Reference RegExTransformationService service) {
+        super("regextransform", "Interact with the regular expression transformation service.");
+        this.service = service;
+    }
+
+    @Override
+    public void execute(String[] args, Console console) {
+        if (args.length == 1 && SUBCMD_METRICS.equals(args[0])) {
+            printMetrics(console);
+        } else {
+            printUsage(console);
+        }
+    }
+
+    @Override
+    public List<String> getUsages() {
+        return List.of(buildCommandUsage(SUBCMD_METRICS, "shows the hits and misses of the compiled expression cache"));
+    }
+
+    private void printMetrics(Console console) {
+        long hits = service.getCacheHits();
+        long misses = service.getCacheMisses();
+        console.println(String.format("%d cached expressions, %d hits, %d misses, hit rate %.1f %%",
+                service.getCacheSize(), hits, misses, hits + misses > 0 ? 100.0 * hits / (hits + misses) : 0.0));
+    }
+}
@@ -12,6 +12,10 @@
  */
 package org.openhab.transform.regex.internal;
 
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -30,16 +34,29 @@ import org.slf4j.LoggerFactory;
  * <p>
  * <b>Note:</b> the given Regular Expression must contain exactly one group!
  *
+ * <p>
+ * Compiled patterns of both the match and the substitution form are kept in a bounded cache. Its hits and misses are
+ * counted and shown by the console command <code>regextransform metrics</code>.
+ *
  * @author Thomas.Eichstaedt-Engelen
  */
 @NonNullByDefault
-@Component(property = { "smarthome.transform=REGEX" })
+@Component(service = { TransformationService.class,
+        RegExTransformationService.class }, property = { "smarthome.transform=REGEX" })
 public class RegExTransformationService implements TransformationService {
 
+    static final int PATTERN_CACHE_SIZE = 256;
+
     private final Logger logger = LoggerFactory.getLogger(RegExTransformationService.class);
 
     private static final Pattern SUBSTR_PATTERN = Pattern.compile("^s/(.*?[^\\\\])/(.*?[^\\\\])/(.*)$");
 
+    private final Map<String, CompiledRegex> patternCache = new ConcurrentHashMap<>();
+
+    // metrics
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
     @Override
     public @Nullable String transform(String regExpression, String source) throws TransformationException {
         if (regExpression == null || source == null) {
@@ -48,50 +65,98 @@ public class RegExTransformationService implements TransformationService {
 
         logger.debug("about to transform '{}' by the function '{}'", source, regExpression);
 
-        String result = "";
+        CompiledRegex regex = getCompiledRegex(regExpression);
+        Matcher matcher = regex.pattern.matcher(source.trim());
 
-        Matcher substMatcher = SUBSTR_PATTERN.matcher(regExpression);
-        if (substMatcher.matches()) {
+        String substitution = regex.substitution;
+        if (substitution != null) {
             logger.debug("Using substitution form of regex transformation");
-            String regex = substMatcher.group(1);
-            String substitution = substMatcher.group(2);
-            String options = substMatcher.group(3);
-            if (options.equals("g")) {
-                result = source.trim().replaceAll(regex, substitution);
-            } else {
-                result = source.trim().replaceFirst(regex, substitution);
-            }
-            if (result != null) {
-                return result;
-            }
+            return regex.global ? matcher.replaceAll(substitution) : matcher.replaceFirst(substitution);
         }
 
-        Matcher matcher = Pattern.compile("^" + regExpression + "$", Pattern.DOTALL).matcher(source.trim());
         if (!matcher.matches()) {
             logger.debug(
                     "the given regex '^{}$' doesn't match the given content '{}' -> couldn't compute transformation",
                     regExpression, source);
             return null;
         }
-        matcher.reset();
-
-        while (matcher.find()) {
-            if (matcher.groupCount() == 0) {
-                logger.info(
-                        "the given regular expression '^{}$' doesn't contain a group. No content will be extracted and returned!",
-                        regExpression);
-                continue;
-            }
 
-            result = matcher.group(1);
+        // the pattern is anchored at both ends, so there is exactly one match
+        if (matcher.groupCount() == 0) {
+            logger.info(
+                    "the given regular expression '^{}$' doesn't contain a group. No content will be extracted and returned!",
+                    regExpression);
+            return "";
+        }
+
+        if (matcher.groupCount() > 1) {
+            logger.debug(
+                    "the given regular expression '^{}$' contains more than one group. Only the first group will be returned!",
+                    regExpression);
+        }
+
+        return matcher.group(1);
+    }
 
-            if (matcher.groupCount() > 1) {
-                logger.debug(
-                        "the given regular expression '^{}$' contains more than one group. Only the first group will be returned!",
-                        regExpression);
+    private CompiledRegex getCompiledRegex(String regExpression) {
+        CompiledRegex regex = patternCache.get(regExpression);
+        if (regex != null) {
+            cacheHits.increment();
+            return regex;
+        }
+        cacheMisses.increment();
+        regex = compile(regExpression);
+        if (patternCache.size() >= PATTERN_CACHE_SIZE) {
+            // evict an arbitrary entry, the cache only has to be large enough for the configured transformations
+            Iterator<String> iterator = patternCache.keySet().iterator();
+            if (iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
             }
         }
+        patternCache.put(regExpression, regex);
+        return regex;
+    }
+
+    private static CompiledRegex compile(String regExpression) {
+        Matcher substMatcher = SUBSTR_PATTERN.matcher(regExpression);
+        if (substMatcher.matches()) {
+            return new CompiledRegex(Pattern.compile(substMatcher.group(1)), substMatcher.group(2),
+                    substMatcher.group(3).equals("g"));
+        }
+        return new CompiledRegex(Pattern.compile("^" + regExpression + "$", Pattern.DOTALL), null, false);
+    }
 
-        return result;
+    /**
+     * Returns the number of transformations which found their expression compiled in the cache.
+     */
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * Returns the number of transformations which had to compile their expression.
+     */
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    public int getCacheSize() {
+        return patternCache.size();
+    }
+
+    /**
+     * A compiled expression of either the match or the substitution form.
+     */
+    private static class CompiledRegex {
+        private final Pattern pattern;
+        private final @Nullable String substitution;
+        private final boolean global;
+
+        CompiledRegex(Pattern pattern, @Nullable String substitution, boolean global) {
+            this.pattern = pattern;
+            this.substitution = substitution;
+            this.global = global;
+        }
     }
 }
@@ -75,4 +75,30 @@ public class RegExTransformationServiceTest extends AbstractTransformationServic
         // Asserts
         assertEquals("varX=12 varY=54 ", transformedResponse);
     }
+
+    @Test
+    public void testCompiledPatternsAreCached() throws TransformationException {
+        assertEquals("SetMode(42)", processor.transform("s/^OP:(.*?),ARG:(.*)$/$1($2)/", "OP:SetMode,ARG:42"));
+        assertEquals("SetMode(43)", processor.transform("s/^OP:(.*?),ARG:(.*)$/$1($2)/", "OP:SetMode,ARG:43"));
+        assertEquals("8", processor.transform(".*?<temp_c data=\"(.*?)\".*", source));
+        assertEquals("8", processor.transform(".*?<temp_c data=\"(.*?)\".*", source));
+
+        assertEquals(2, processor.getCacheMisses());
+        assertEquals(2, processor.getCacheHits());
+        assertEquals(2, processor.getCacheSize());
+    }
+
+    @Test
+    public void testPatternCacheIsBounded() throws TransformationException {
+        for (int i = 0; i < RegExTransformationService.PATTERN_CACHE_SIZE * 2; i++) {
+            assertEquals(String.valueOf(i), processor.transform("(\\d+)" + "x{0," + i + "}", String.valueOf(i)));
+        }
+
+        assertTrue(processor.getCacheSize() <= RegExTransformationService.PATTERN_CACHE_SIZE);
+    }
+
+    @Test
+    public void testTransformByRegex_noMatch() throws TransformationException {
+        assertNull(processor.transform("ID=(\\d+)", "ID=abc"));
+    }
 }
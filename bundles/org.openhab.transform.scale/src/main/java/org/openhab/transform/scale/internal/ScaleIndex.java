@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.scale.internal;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Sorted interval index over the ranges of a scale file.
+ *
+ * All finite bounds of the ranges split the number line into elementary segments: the bounds themselves and the open
+ * intervals between them. Whether a range contains a value cannot change within a segment, so the label of the first
+ * range in file order which contains the segment is computed once per segment. A lookup is a binary search for the
+ * segment of the value, which gives the same result as testing the ranges one after another.
+ *
+ * @author agent - Initial contribution
+ */
+public class ScaleIndex {
+
+    private static final BigDecimal TWO = BigDecimal.valueOf(2);
+
+    /** the finite bounds of all ranges in ascending order */
+    private final BigDecimal[] bounds;
+    /**
+     * the labels of the segments, <code>null</code> if no range matches. Segment <code>2 * i + 1</code> is the bound
+     * <code>i</code>, segment <code>2 * i</code> is the open interval below it and the last segment is the open
+     * interval above the highest bound.
+     */
+    private final String[] labels;
+    private final String format;
+    private final String nonNumeric;
+
+    /**
+     * @param ranges the ranges and their labels in file order
+     * @param format the presentation format
+     * @param nonNumeric the label for non numeric values, may be <code>null</code>
+     */
+    public ScaleIndex(final LinkedHashMap<Range, String> ranges, final String format, final String nonNumeric) {
+        this.format = format;
+        this.nonNumeric = nonNumeric;
+
+        final TreeSet<BigDecimal> sortedBounds = new TreeSet<>();
+        for (final Range range : ranges.keySet()) {
+            if (range.min != null) {
+                sortedBounds.add(range.min);
+            }
+            if (range.max != null) {
+                sortedBounds.add(range.max);
+            }
+        }
+        bounds = sortedBounds.toArray(new BigDecimal[0]);
+
+        labels = new String[2 * bounds.length + 1];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = findFirst(ranges, representative(i));
+        }
+    }
+
+    /**
+     * Returns a value within the given segment.
+     */
+    private BigDecimal representative(final int segment) {
+        if (bounds.length == 0) {
+            return BigDecimal.ZERO;
+        }
+        if (segment % 2 == 1) {
+            return bounds[segment / 2];
+        }
+        final int upper = segment / 2;
+        if (upper == 0) {
+            return bounds[0].subtract(BigDecimal.ONE);
+        } else if (upper == bounds.length) {
+            return bounds[bounds.length - 1].add(BigDecimal.ONE);
+        } else {
+            return bounds[upper - 1].add(bounds[upper]).divide(TWO);
+        }
+    }
+
+    private static String findFirst(final Map<Range, String> ranges, final BigDecimal value) {
+        for (final Map.Entry<Range, String> entry : ranges.entrySet()) {
+            if (entry.getKey().contains(value)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the label of the first range containing the value.
+     *
+     * @return the label, <code>null</code> if no range contains the value
+     */
+    public String getLabel(final BigDecimal value) {
+        final int index = Arrays.binarySearch(bounds, value);
+        return labels[index >= 0 ? 2 * index + 1 : -2 * (index + 1)];
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    /**
+     * @return the label for non numeric values, <code>null</code> if there is none
+     */
+    public String getNonNumeric() {
+        return nonNumeric;
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.scale.internal;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares looking up a label in a {@link ScaleIndex} with testing the ranges one after another, as the service did
+ * before. The scale consists of adjacent ranges of width 10, the values are spread over all of them.
+ *
+ * Building the index is measured as well, as it is done when a scale file is loaded.
+ *
+ * This is not run by the build. Run the main method with the test class path, e.g. from the IDE.
+ *
+ * @author agent - Initial contribution
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScaleIndexBenchmark {
+
+    private static final int VALUES = 1024;
+
+    @Param({ "5", "50", "500" })
+    private int ranges;
+
+    private final LinkedHashMap<Range, String> scale = new LinkedHashMap<>();
+    private final BigDecimal[] values = new BigDecimal[VALUES];
+    private ScaleIndex index;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int i = 0; i < ranges; i++) {
+            scale.put(Range.closedOpen(BigDecimal.valueOf(10L * i), BigDecimal.valueOf(10L * (i + 1))), "label" + i);
+        }
+        Random random = new Random(0);
+        for (int i = 0; i < VALUES; i++) {
+            values[i] = BigDecimal.valueOf(random.nextInt(ranges * 100), 1);
+        }
+        index = new ScaleIndex(scale, "%label%", null);
+    }
+
+    @Benchmark
+    public String lookUpInIndex() {
+        return index.getLabel(values[counter++ & (VALUES - 1)]);
+    }
+
+    @Benchmark
+    public String lookUpByLinearScan() {
+        BigDecimal value = values[counter++ & (VALUES - 1)];
+        for (Map.Entry<Range, String> entry : scale.entrySet()) {
+            if (entry.getKey().contains(value)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public ScaleIndex buildIndex() {
+        return new ScaleIndex(scale, "%label%", null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ScaleIndexBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.scale.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author agent - Initial contribution
+ */
+public class ScaleIndexTest {
+
+    private static BigDecimal bd(String value) {
+        return new BigDecimal(value);
+    }
+
+    @Test
+    public void testInclusiveAndExclusiveBounds() {
+        LinkedHashMap<Range, String> ranges = new LinkedHashMap<>();
+        ranges.put(Range.open(bd("0"), bd("10")), "a");
+        ranges.put(Range.closed(bd("10"), bd("20")), "b");
+        ranges.put(Range.openClosed(bd("20"), bd("30")), "c");
+        ScaleIndex index = new ScaleIndex(ranges, "%label%", null);
+
+        assertNull(index.getLabel(bd("-1")));
+        assertNull(index.getLabel(bd("0")));
+        assertEquals("a", index.getLabel(bd("0.0001")));
+        assertEquals("b", index.getLabel(bd("10")));
+        assertEquals("b", index.getLabel(bd("10.00")));
+        assertEquals("b", index.getLabel(bd("20")));
+        assertEquals("c", index.getLabel(bd("20.5")));
+        assertEquals("c", index.getLabel(bd("30")));
+        assertNull(index.getLabel(bd("30.0001")));
+    }
+
+    @Test
+    public void testFirstRangeInFileOrderWins() {
+        LinkedHashMap<Range, String> ranges = new LinkedHashMap<>();
+        ranges.put(Range.lessThan(bd("15")), "first");
+        ranges.put(Range.closedOpen(bd("10"), bd("17")), "second");
+        ranges.put(Range.atLeast(bd("15")), "last");
+        ScaleIndex index = new ScaleIndex(ranges, "%label%", null);
+
+        assertEquals("first", index.getLabel(bd("12")));
+        assertEquals("second", index.getLabel(bd("15")));
+        assertEquals("second", index.getLabel(bd("16.9")));
+        assertEquals("last", index.getLabel(bd("17")));
+        assertEquals("first", index.getLabel(bd("-1000")));
+    }
+
+    @Test
+    public void testUnboundedRange() {
+        LinkedHashMap<Range, String> ranges = new LinkedHashMap<>();
+        ranges.put(Range.all(), "all");
+        ScaleIndex index = new ScaleIndex(ranges, "%label%", "nan");
+
+        assertEquals("all", index.getLabel(bd("-1e10")));
+        assertEquals("all", index.getLabel(bd("1e10")));
+        assertEquals("nan", index.getNonNumeric());
+    }
+
+    @Test
+    public void testSameResultAsLinearScan() {
+        Random random = new Random(42);
+        LinkedHashMap<Range, String> ranges = new LinkedHashMap<>();
+        for (int i = 0; i < 200; i++) {
+            BigDecimal lower = BigDecimal.valueOf(random.nextInt(1000));
+            BigDecimal upper = lower.add(BigDecimal.valueOf(random.nextInt(50)));
+            ranges.put(Range.range(lower, random.nextBoolean(), upper, random.nextBoolean()), "r" + i);
+        }
+        ScaleIndex index = new ScaleIndex(ranges, "%label%", null);
+
+        for (int i = -20; i < 2100; i++) {
+            BigDecimal value = BigDecimal.valueOf(i, 1).multiply(BigDecimal.valueOf(5));
+            String expected = null;
+            for (Map.Entry<Range, String> entry : ranges.entrySet()) {
+                if (entry.getKey().contains(value)) {
+                    expected = entry.getValue();
+                    break;
+                }
+            }
+            assertEquals(expected, index.getLabel(value), "value " + value);
+        }
+    }
+}
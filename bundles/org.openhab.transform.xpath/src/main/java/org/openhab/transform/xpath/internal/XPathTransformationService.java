@@ -12,13 +12,20 @@
  */
 package org.openhab.transform.xpath.internal;
 
+import java.io.IOException;
 import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
@@ -26,23 +33,58 @@ import org.eclipse.jdt.annotation.Nullable;
 import org.openhab.core.transform.TransformationException;
 import org.openhab.core.transform.TransformationService;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
 import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
 
 /**
  * <p>
  * The implementation of {@link TransformationService} which transforms the input by XPath Expressions.
  *
+ * <p>
+ * Neither DOM parsers, compiled XPath expressions nor parsed documents are thread-safe. The service keeps a small pool
+ * of parsers, each with a bounded cache of compiled expressions, and a cache of the few documents it parsed most
+ * recently. A cached document is taken out of the cache while it is evaluated, so that a concurrent transformation of
+ * the same payload parses its own copy. Channels which read different expressions from the same polled payload thus
+ * parse it only once per poll cycle.
+ *
  * @author Thomas.Eichstaedt-Engelen
  */
 @NonNullByDefault
 @Component(property = { "smarthome.transform=XPATH" })
 public class XPathTransformationService implements TransformationService {
 
+    static final int EXPRESSION_CACHE_SIZE = 64;
+    static final int DOCUMENT_CACHE_SIZE = 4;
+    static final int PARSER_POOL_SIZE = 4;
+    /* larger payloads are not kept in the document cache to bound the memory used */
+    static final int MAX_CACHED_SOURCE_LENGTH = 256 * 1024;
+
     private final Logger logger = LoggerFactory.getLogger(XPathTransformationService.class);
 
+    /* idle parsers, further parsers needed by concurrent transformations are discarded after use */
+    private final BlockingQueue<Parser> parsers = new ArrayBlockingQueue<>(PARSER_POOL_SIZE);
+    /* keyed by the payload itself, its hash code is cached by String and equals is only called on a match */
+    private final Map<String, Document> documents = new LinkedHashMap<>(8, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.@Nullable Entry<String, Document> eldest) {
+            return size() > DOCUMENT_CACHE_SIZE;
+        }
+    };
+
+    @Deactivate
+    public void deactivate() {
+        parsers.clear();
+        synchronized (documents) {
+            documents.clear();
+        }
+    }
+
     @Override
     public @Nullable String transform(String xpathExpression, String source) throws TransformationException {
         if (xpathExpression == null || source == null) {
@@ -51,33 +93,101 @@ public class XPathTransformationService implements TransformationService {
 
         logger.debug("about to transform '{}' by the function '{}'", source, xpathExpression);
 
-        StringReader stringReader = null;
-
         try {
-            DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
-            domFactory.setNamespaceAware(true);
-            domFactory.setValidating(false);
-            DocumentBuilder builder = domFactory.newDocumentBuilder();
+            Parser parser = parsers.poll();
+            if (parser == null) {
+                parser = new Parser();
+            }
+            try {
+                Document doc = takeDocument(source);
+                if (doc == null) {
+                    doc = parser.parse(source);
+                }
+                XPathExpression expr = parser.getExpression(xpathExpression);
+
+                String transformationResult = (String) expr.evaluate(doc, XPathConstants.STRING);
+                returnDocument(source, doc);
+
+                logger.debug("transformation resulted in '{}'", transformationResult);
+
+                return transformationResult;
+            } finally {
+                parsers.offer(parser);
+            }
+        } catch (ParserConfigurationException | SAXException | IOException | XPathExpressionException
+                | RuntimeException e) {
+            throw new TransformationException("transformation throws exceptions", e);
+        }
+    }
 
-            stringReader = new StringReader(source);
-            InputSource inputSource = new InputSource(stringReader);
-            inputSource.setEncoding("UTF-8");
+    /**
+     * Removes the parsed document of the payload from the cache, for the exclusive use by the caller.
+     */
+    private @Nullable Document takeDocument(String source) {
+        synchronized (documents) {
+            return documents.remove(source);
+        }
+    }
 
-            Document doc = builder.parse(inputSource);
+    /**
+     * Puts a parsed document back into the cache once it is not used anymore.
+     */
+    private void returnDocument(String source, Document doc) {
+        if (source.length() <= MAX_CACHED_SOURCE_LENGTH) {
+            synchronized (documents) {
+                documents.put(source, doc);
+            }
+        }
+    }
 
-            XPath xpath = XPathFactory.newInstance().newXPath();
-            XPathExpression expr = xpath.compile(xpathExpression);
+    int getCachedDocumentCount() {
+        synchronized (documents) {
+            return documents.size();
+        }
+    }
 
-            String transformationResult = (String) expr.evaluate(doc, XPathConstants.STRING);
+    int getIdleParserCount() {
+        return parsers.size();
+    }
 
-            logger.debug("transformation resulted in '{}'", transformationResult);
+    /**
+     * Parser, XPath and cache of compiled expressions, which may only be used by one thread at a time.
+     */
+    private static class Parser {
+        private final DocumentBuilder builder;
+        private final XPath xpath = XPathFactory.newInstance().newXPath();
+        private final Map<String, XPathExpression> expressions = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
 
-            return transformationResult;
-        } catch (Exception e) {
-            throw new TransformationException("transformation throws exceptions", e);
-        } finally {
-            if (stringReader != null) {
-                stringReader.close();
+            @Override
+            protected boolean removeEldestEntry(Map.@Nullable Entry<String, XPathExpression> eldest) {
+                return size() > EXPRESSION_CACHE_SIZE;
+            }
+        };
+
+        Parser() throws ParserConfigurationException {
+            DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
+            domFactory.setNamespaceAware(true);
+            domFactory.setValidating(false);
+            builder = domFactory.newDocumentBuilder();
+        }
+
+        XPathExpression getExpression(String xpathExpression) throws XPathExpressionException {
+            XPathExpression expr = expressions.get(xpathExpression);
+            if (expr == null) {
+                expr = xpath.compile(xpathExpression);
+                expressions.put(xpathExpression, expr);
+            }
+            return expr;
+        }
+
+        Document parse(String source) throws SAXException, IOException {
+            try (StringReader stringReader = new StringReader(source)) {
+                InputSource inputSource = new InputSource(stringReader);
+                inputSource.setEncoding("UTF-8");
+                return builder.parse(inputSource);
+            } finally {
+                builder.reset();
             }
         }
     }
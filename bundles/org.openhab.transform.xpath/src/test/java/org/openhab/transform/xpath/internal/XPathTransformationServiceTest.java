@@ -14,6 +14,13 @@ package org.openhab.transform.xpath.internal;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.jdt.annotation.Nullable;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.openhab.core.transform.TransformationException;
@@ -38,4 +45,75 @@ public class XPathTransformationServiceTest extends AbstractTransformationServic
         // Asserts
         assertEquals("8", transformedResponse);
     }
+
+    @Test
+    public void testMultipleExpressionsOnSameSource() throws TransformationException {
+        assertEquals("8", processor.transform("//current_conditions/temp_c/@data", source));
+        assertEquals("46", processor.transform("//current_conditions/temp_f/@data", source));
+        assertEquals("8", processor.transform("//current_conditions/temp_c/@data", source));
+    }
+
+    @Test
+    public void testChangedSourceIsParsedAgain() throws TransformationException {
+        assertEquals("8", processor.transform("//current_conditions/temp_c/@data", source));
+
+        String changedSource = source.replace("<temp_c data=\"8\"/>", "<temp_c data=\"9\"/>");
+        assertEquals("9", processor.transform("//current_conditions/temp_c/@data", changedSource));
+        assertEquals("8", processor.transform("//current_conditions/temp_c/@data", source));
+    }
+
+    @Test
+    public void testExpressionCacheIsBounded() throws TransformationException {
+        for (int i = 0; i < XPathTransformationService.EXPRESSION_CACHE_SIZE * 2; i++) {
+            assertEquals("8", processor.transform("//current_conditions/temp_c[" + (i + 1) + " > 0]/@data", source));
+        }
+        assertEquals("8", processor.transform("//current_conditions/temp_c/@data", source));
+    }
+
+    @Test
+    public void testDocumentCacheIsBounded() throws TransformationException {
+        for (int i = 0; i < XPathTransformationService.DOCUMENT_CACHE_SIZE * 2; i++) {
+            String changedSource = source.replace("<temp_c data=\"8\"/>", "<temp_c data=\"" + i + "\"/>");
+            assertEquals(String.valueOf(i), processor.transform("//current_conditions/temp_c/@data", changedSource));
+        }
+        assertEquals(XPathTransformationService.DOCUMENT_CACHE_SIZE, processor.getCachedDocumentCount());
+    }
+
+    @Test
+    public void testDeactivateClearsCaches() throws TransformationException {
+        assertEquals("8", processor.transform("//current_conditions/temp_c/@data", source));
+        assertEquals(1, processor.getCachedDocumentCount());
+        assertEquals(1, processor.getIdleParserCount());
+
+        processor.deactivate();
+
+        assertEquals(0, processor.getCachedDocumentCount());
+        assertEquals(0, processor.getIdleParserCount());
+    }
+
+    @Test
+    public void testConcurrentTransformations() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<@Nullable String>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String expression = i % 2 == 0 ? "//current_conditions/temp_c/@data"
+                        : "//current_conditions/temp_f/@data";
+                results.add(executor.submit(() -> processor.transform(expression, source)));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(i % 2 == 0 ? "8" : "46", results.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(processor.getIdleParserCount() <= XPathTransformationService.PARSER_POOL_SIZE);
+        assertEquals(1, processor.getCachedDocumentCount());
+    }
+
+    @Test
+    public void testInvalidInput() {
+        assertThrows(TransformationException.class, () -> processor.transform("//temp_c/@data", "<invalid"));
+        assertThrows(TransformationException.class, () -> processor.transform("//temp_c[", source));
+    }
 }
@@ -0,0 +1,8 @@
+<?xml version="1.0"?>
+<xsl:stylesheet xmlns:xsl="http://www.w3.org/1999/XSL/Transform" version="1.0">
+
+	<xsl:output indent="yes" method="xml" encoding="UTF-8" omit-xml-declaration="yes" />
+
+	<xsl:include href="google_weather_templates.xsl" />
+
+</xsl:stylesheet>
@@ -0,0 +1,8 @@
+<?xml version="1.0"?>
+<xsl:stylesheet xmlns:xsl="http://www.w3.org/1999/XSL/Transform" version="1.0">
+
+	<xsl:template match="//current_conditions">
+		<xsl:value-of select="temp_c/@data" />
+	</xsl:template>
+
+</xsl:stylesheet>
@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.xslt.internal;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamSource;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.OpenHAB;
+import org.openhab.core.transform.TransformationException;
+import org.openhab.core.transform.TransformationService;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache for compiled XSLT stylesheets.
+ *
+ * A stylesheet is compiled once into thread-safe {@link Templates}, from which a new {@link Transformer} is created
+ * for every transformation. Entries are removed by the {@link XsltTransformationWatcher} when the file or a file it
+ * includes or imports is modified or deleted.
+ *
+ * @author agent - Initial contribution
+ */
+@NonNullByDefault
+@Component(service = XsltTemplatesCache.class)
+public class XsltTemplatesCache {
+
+    public static final String TRANSFORM_FOLDER = OpenHAB.getConfigFolder() + File.separator
+            + TransformationService.TRANSFORM_FOLDER_NAME;
+
+    private final Logger logger = LoggerFactory.getLogger(XsltTemplatesCache.class);
+
+    /* a TransformerFactory is not thread-safe, access is synchronized on the factory */
+    private final TransformerFactory factory = TransformerFactory.newInstance();
+    private final Map<String, Templates> templatesMap = new ConcurrentHashMap<>();
+    /* the files included or imported by each compiled stylesheet */
+    private final Map<String, Set<Path>> includesMap = new ConcurrentHashMap<>();
+
+    /**
+     * Records the files included or imported while a stylesheet is compiled, and leaves their resolution to the
+     * factory.
+     */
+    private static class IncludeRecorder implements URIResolver {
+        private final Set<Path> includes = ConcurrentHashMap.newKeySet();
+        private volatile boolean compiled;
+
+        @Override
+        public @Nullable Source resolve(@Nullable String href, @Nullable String base) {
+            // the compiled stylesheet keeps the resolver for document() calls, these are not recorded
+            if (!compiled && href != null) {
+                try {
+                    URI uri = base == null ? new URI(href) : new URI(base).resolve(href);
+                    if ("file".equals(uri.getScheme())) {
+                        includes.add(Paths.get(uri).toAbsolutePath().normalize());
+                    }
+                } catch (Exception e) {
+                    // not a file, it cannot be watched
+                }
+            }
+            return null;
+        }
+    }
+
+    @Deactivate
+    public void deactivate() {
+        clear();
+    }
+
+    /**
+     * Get a new {@link Transformer} for the given stylesheet. The stylesheet is compiled and put into the cache if it
+     * is not in the cache yet.
+     *
+     * @param filename name of the XSLT file, relative to the transform folder
+     * @return a new transformer, which may only be used by one thread at a time
+     * @throws TransformationException if the stylesheet could not be compiled
+     */
+    public Transformer getTransformer(String filename) throws TransformationException {
+        try {
+            return getTemplates(filename).newTransformer();
+        } catch (TransformerConfigurationException e) {
+            throw new TransformationException("creating a transformer for '" + filename + "' throws exception", e);
+        }
+    }
+
+    /**
+     * Get the compiled stylesheet from the cache. If it is not in the cache, then compile it from the file and put it
+     * into the cache.
+     *
+     * @param filename name of the XSLT file, relative to the transform folder
+     * @return the compiled stylesheet
+     * @throws TransformationException if the stylesheet could not be compiled
+     */
+    protected Templates getTemplates(String filename) throws TransformationException {
+        Templates templates = templatesMap.get(filename);
+        if (templates != null) {
+            return templates;
+        }
+        File file = new File(TRANSFORM_FOLDER + File.separator + filename);
+        if (!file.isFile()) {
+            throw new TransformationException("file '" + filename + "' does not exist");
+        }
+        logger.debug("Compiling XSLT file {}", file);
+        IncludeRecorder recorder = new IncludeRecorder();
+        try {
+            synchronized (factory) {
+                factory.setURIResolver(recorder);
+                try {
+                    templates = factory.newTemplates(new StreamSource(file));
+                } finally {
+                    factory.setURIResolver(null);
+                }
+            }
+        } catch (TransformerConfigurationException e) {
+            String message = "compiling file '" + filename + "' throws exception";
+            logger.error("{}", message, e);
+            throw new TransformationException(message, e);
+        }
+        recorder.compiled = true;
+        includesMap.put(filename, recorder.includes);
+        // another thread may have compiled the file concurrently, keep the first one
+        Templates previous = templatesMap.putIfAbsent(filename, templates);
+        return previous != null ? previous : templates;
+    }
+
+    /**
+     * Remove a compiled stylesheet from the cache, together with all stylesheets which include or import it.
+     *
+     * @param filename name of the XSLT file, relative to the transform folder
+     */
+    protected void removeFromCache(String filename) {
+        Path file = Paths.get(TRANSFORM_FOLDER, filename).toAbsolutePath().normalize();
+        includesMap.forEach((compiled, includes) -> {
+            if (compiled.equals(filename) || includes.contains(file)) {
+                includesMap.remove(compiled);
+                if (templatesMap.remove(compiled) != null) {
+                    logger.debug("Removed XSLT file {} from cache", compiled);
+                }
+            }
+        });
+        templatesMap.remove(filename);
+    }
+
+    /**
+     * Remove all compiled stylesheets from the cache.
+     */
+    protected void clear() {
+        templatesMap.clear();
+        includesMap.clear();
+    }
+}
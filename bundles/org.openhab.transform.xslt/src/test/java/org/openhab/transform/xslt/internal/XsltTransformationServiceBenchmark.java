@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.xslt.internal;
+
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.core.transform.TransformationException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares transformations with a stylesheet from the {@link XsltTemplatesCache} with compiling the stylesheet for
+ * every transformation, as the service did before the cache. A transformation right after the stylesheet has been
+ * removed from the cache shows the cost of a modified file.
+ *
+ * This is not run by the build. Run the main method with the test class path from the directory of this bundle, so
+ * that the stylesheets in <code>conf/transform</code> are found.
+ *
+ * @author agent - Initial contribution
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+@NonNullByDefault({})
+public class XsltTransformationServiceBenchmark extends AbstractTransformationServiceTest {
+
+    private static final String FILENAME = "http/google_weather.xsl";
+
+    private XsltTemplatesCache cache;
+    private XsltTransformationService processor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cache = new XsltTemplatesCache();
+        processor = new XsltTransformationService(cache);
+    }
+
+    @Benchmark
+    public String transformCached() throws TransformationException {
+        return processor.transform(FILENAME, source);
+    }
+
+    @Benchmark
+    public String transformAfterRemovalFromCache() throws TransformationException {
+        cache.removeFromCache(FILENAME);
+        return processor.transform(FILENAME, source);
+    }
+
+    @Benchmark
+    public String transformCompilingEachTime() throws TransformerException {
+        StringWriter out = new StringWriter();
+        TransformerFactory.newInstance()
+                .newTransformer(new StreamSource(new File(XsltTemplatesCache.TRANSFORM_FOLDER, FILENAME)))
+                .transform(new StreamSource(new StringReader(source)), new StreamResult(out));
+        return out.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(XsltTransformationServiceBenchmark.class.getSimpleName()).build())
+                .run();
+    }
+}
@@ -23,11 +23,13 @@ import org.openhab.core.transform.TransformationException;
  */
 public class XsltTransformationServiceTest extends AbstractTransformationServiceTest {
 
+    private XsltTemplatesCache cache;
     private XsltTransformationService processor;
 
     @BeforeEach
     public void init() {
-        processor = new XsltTransformationService();
+        cache = new XsltTemplatesCache();
+        processor = new XsltTransformationService(cache);
     }
 
     @Test
@@ -38,4 +40,45 @@ public class XsltTransformationServiceTest extends AbstractTransformationService
         // Asserts
         assertEquals("8", transformedResponse);
     }
+
+    @Test
+    public void testTemplatesAreCompiledOnce() throws TransformationException {
+        assertEquals("8", processor.transform("http/google_weather.xsl", source));
+        assertEquals("8", processor.transform("http/google_weather.xsl", source));
+
+        assertSame(cache.getTemplates("http/google_weather.xsl"), cache.getTemplates("http/google_weather.xsl"));
+    }
+
+    @Test
+    public void testRemoveFromCacheRecompiles() throws TransformationException {
+        Object templates = cache.getTemplates("http/google_weather.xsl");
+        cache.removeFromCache("http/google_weather.xsl");
+
+        assertNotSame(templates, cache.getTemplates("http/google_weather.xsl"));
+        assertEquals("8", processor.transform("http/google_weather.xsl", source));
+    }
+
+    @Test
+    public void testNewTransformerPerCall() throws TransformationException {
+        assertNotSame(cache.getTransformer("http/google_weather.xsl"),
+                cache.getTransformer("http/google_weather.xsl"));
+    }
+
+    @Test
+    public void testRemoveIncludedFileRecompilesIncludingFile() throws TransformationException {
+        assertEquals("8", processor.transform("http/google_weather_include.xsl", source));
+        Object including = cache.getTemplates("http/google_weather_include.xsl");
+        Object other = cache.getTemplates("http/google_weather.xsl");
+
+        cache.removeFromCache("http/google_weather_templates.xsl");
+
+        assertNotSame(including, cache.getTemplates("http/google_weather_include.xsl"));
+        assertSame(other, cache.getTemplates("http/google_weather.xsl"));
+        assertEquals("8", processor.transform("http/google_weather_include.xsl", source));
+    }
+
+    @Test
+    public void testMissingFileThrowsException() {
+        assertThrows(TransformationException.class, () -> processor.transform("http/missing.xsl", source));
+    }
 }